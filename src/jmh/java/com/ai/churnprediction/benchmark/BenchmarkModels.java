@@ -0,0 +1,58 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.trainmodel.TrainModel;
+import com.ai.churnprediction.trainmodel.api.datavec.DatavecUtility;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.schema.InferredSchema;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Model files for benchmarks: the real TransformProcess of a customer CSV and an untrained network of the
+ * production architecture. Serving cost does not depend on the trained weights, so no training is needed.
+ */
+final class BenchmarkModels {
+
+    static final String MODEL_FILE = "churn-model.zip";
+    static final String TRANSFORM_FILE = "transformProcess.json";
+
+    private BenchmarkModels() {
+    }
+
+    /**
+     * Same steps as {@link TrainModel}: clean, analyze, build the full transform.
+     */
+    static TransformProcess transformProcess(Path csvFile) throws Exception {
+        File cleaned = Files.createTempFile("cleaned_telco", ".csv").toFile();
+        try {
+            TrainModel.cleanCsvFile(csvFile.toString(), cleaned);
+            TransformProcess preProcess = DatavecUtility.simplifyTotalCharges(new InferredSchema(csvFile.toString()).build());
+            DataAnalysis analysis = DatavecUtility.staticalAnalysis(cleaned, preProcess);
+            // Round trip through JSON like the service does with transformProcess.json
+            return TransformProcess.fromJson(DatavecUtility.buildFullTransform(preProcess.getFinalSchema(), analysis).toJson());
+        } finally {
+            cleaned.delete();
+        }
+    }
+
+    static MultiLayerNetwork untrainedModel(int numFeatures) {
+        return DeepLearning4JUtility.configureModel(numFeatures);
+    }
+
+    /**
+     * Writes {@link #MODEL_FILE} and {@link #TRANSFORM_FILE} for {@code csvFile} into {@code directory}.
+     */
+    static void writeModelFiles(Path csvFile, Path directory) throws Exception {
+        TransformProcess transformProcess = transformProcess(csvFile);
+        int numFeatures = transformProcess.getFinalSchema().numColumns() - 1;
+        ModelSerializer.writeModel(untrainedModel(numFeatures), directory.resolve(MODEL_FILE).toFile(), false);
+        Files.writeString(directory.resolve(TRANSFORM_FILE), transformProcess.toJson());
+    }
+}
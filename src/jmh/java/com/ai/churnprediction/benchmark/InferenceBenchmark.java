@@ -0,0 +1,95 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.service.DenseNetwork;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward pass cost of the churn network: {@code rows} customers scored as one batch versus one
+ * {@code model.output} call per customer, and the same with the pure Java {@link DenseNetwork} with float and
+ * int8 weights. All benchmarks score the same rows, so their times compare directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InferenceBenchmark {
+
+    private static final int NUM_FEATURES = 45;
+
+    @Param({"1", "32", "256", "1024"})
+    private int rows;
+
+    private MultiLayerNetwork model;
+    private INDArray batch;
+    private INDArray[] singleRows;
+    private DenseNetwork floatNetwork;
+    private DenseNetwork int8Network;
+    private double[] features;
+    private double[][] singleFeatures;
+
+    @Setup
+    public void setUp() {
+        model = BenchmarkModels.untrainedModel(NUM_FEATURES);
+        batch = Nd4j.rand(rows, NUM_FEATURES);
+        singleRows = new INDArray[rows];
+        for (int i = 0; i < rows; i++) {
+            singleRows[i] = batch.getRow(i, true).dup();
+        }
+        floatNetwork = DenseNetwork.extract(model, false);
+        int8Network = DenseNetwork.extract(model, true);
+        features = batch.dup('c').data().asDouble();
+        singleFeatures = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            singleFeatures[i] = singleRows[i].data().asDouble();
+        }
+    }
+
+    @Benchmark
+    public INDArray batched() {
+        return model.output(batch);
+    }
+
+    @Benchmark
+    public void rowByRow(Blackhole blackhole) {
+        for (INDArray row : singleRows) {
+            blackhole.consume(model.output(row));
+        }
+    }
+
+    @Benchmark
+    public double[] javaFloatBatched() {
+        return floatNetwork.predict(features, rows);
+    }
+
+    @Benchmark
+    public void javaFloatRowByRow(Blackhole blackhole) {
+        for (double[] row : singleFeatures) {
+            blackhole.consume(floatNetwork.predict(row, 1));
+        }
+    }
+
+    @Benchmark
+    public void javaInt8RowByRow(Blackhole blackhole) {
+        for (double[] row : singleFeatures) {
+            blackhole.consume(int8Network.predict(row, 1));
+        }
+    }
+}
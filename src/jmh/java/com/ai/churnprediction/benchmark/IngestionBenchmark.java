@@ -0,0 +1,88 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.repository.ColumnarCustomerRepository;
+import com.ai.churnprediction.repository.CustomerSnapshot;
+import com.ai.churnprediction.trainmodel.TrainModel;
+import com.ai.churnprediction.util.AiUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and cleaning a synthetic customer file of {@code rows} customers, one full pass per operation:
+ * the map based {@link AiUtil#loadCsvData(String)}, the columnar repository (sequential, parallel and from a
+ * snapshot) and {@link TrainModel#cleanCsvFile(String, File)}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    private Path csvFile;
+    private Path snapshotFile;
+    private CustomerSnapshot.Source source;
+    private File cleanedFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        csvFile = SyntheticTelcoData.telcoCsv(rows);
+        source = CustomerSnapshot.Source.of(csvFile);
+        snapshotFile = Files.createTempFile("customers", ".snapshot");
+        CustomerSnapshot.write(ColumnarCustomerRepository.load(csvFile), source, snapshotFile);
+        cleanedFile = Files.createTempFile("cleaned_telco", ".csv").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(cleanedFile.toPath());
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> loadCsvData() throws IOException {
+        return AiUtil.loadCsvData(csvFile.toString());
+    }
+
+    @Benchmark
+    public ColumnarCustomerRepository columnarLoad() throws IOException {
+        return ColumnarCustomerRepository.load(csvFile);
+    }
+
+    @Benchmark
+    public ColumnarCustomerRepository columnarLoadParallel() throws IOException {
+        return ColumnarCustomerRepository.loadParallel(csvFile, 0);
+    }
+
+    @Benchmark
+    public ColumnarCustomerRepository snapshotRead() throws IOException {
+        return CustomerSnapshot.read(snapshotFile, source).orElseThrow();
+    }
+
+    @Benchmark
+    public File cleanCsvFile() throws IOException {
+        return TrainModel.cleanCsvFile(csvFile.toString(), cleanedFile);
+    }
+}
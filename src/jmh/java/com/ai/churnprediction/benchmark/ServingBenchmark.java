@@ -0,0 +1,125 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.ChurnPredictionApplication;
+import com.ai.churnprediction.repository.CustomerRepository;
+import com.ai.churnprediction.service.ChurnPrediction;
+import com.ai.churnprediction.service.PredictionCache;
+import com.ai.churnprediction.service.ReportWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end serving paths on the real Spring context, without the HTTP layer:
+ * <ul>
+ *     <li>{@code predictChurn}: {@link ChurnPrediction#predictChurn(Map)} for ad-hoc payloads, cycling over
+ *     1024 customers. With {@code cacheEntries=0} every call encodes and runs the model.</li>
+ *     <li>{@code writeReport}: the full prediction report of {@code rows} synthetic customers written to a
+ *     null output stream, from the filled prediction cache.</li>
+ * </ul>
+ * The service runs an untrained model (see {@link BenchmarkModels}) from a temporary directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServingBenchmark {
+
+    private static final int PAYLOADS = 1024;
+
+    @Param({"10000"})
+    private int rows;
+
+    @Param({"0", "10000"})
+    private int cacheEntries;
+
+    private Path modelDirectory;
+    private ConfigurableApplicationContext context;
+    private ChurnPrediction churnPrediction;
+    private ReportWriter reportWriter;
+    private List<Map<String, Object>> payloads;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path csvFile = SyntheticTelcoData.telcoCsv(rows);
+        modelDirectory = Files.createTempDirectory("churn-benchmark");
+        BenchmarkModels.writeModelFiles(csvFile, modelDirectory);
+
+        context = new SpringApplicationBuilder(ChurnPredictionApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "churn.model.file=" + modelDirectory.resolve(BenchmarkModels.MODEL_FILE),
+                        "churn.model.transform-file=" + modelDirectory.resolve(BenchmarkModels.TRANSFORM_FILE),
+                        // The untrained model has no golden sample and is never replaced
+                        "churn.model.golden-file=" + modelDirectory.resolve("golden-predictions.csv"),
+                        "churn.model.watch=false",
+                        // JMH warms up on its own, a background warm-up would skew the first iterations
+                        "churn.warmup.enabled=false",
+                        "churn.repository.csv-file=" + csvFile,
+                        "churn.repository.snapshot-file=",
+                        "churn.repository.refresh-interval-seconds=0",
+                        // Computing report drivers in the background would compete with the measured threads
+                        "churn.explain.report-drivers=0",
+                        "churn.cache.adhoc-max-entries=" + cacheEntries,
+                        "spring.main.banner-mode=off",
+                        "logging.level.com.ai.churnprediction=warn")
+                .run();
+        churnPrediction = context.getBean(ChurnPrediction.class);
+        reportWriter = context.getBean(ReportWriter.class);
+
+        // The report is served from the prediction cache, filled in the background after startup
+        PredictionCache predictionCache = context.getBean(PredictionCache.class);
+        while (predictionCache.customerScores(churnPrediction.getModelVersion()) == null) {
+            Thread.sleep(50);
+        }
+
+        CustomerRepository customerRepository = context.getBean(CustomerRepository.class);
+        payloads = new ArrayList<>(PAYLOADS);
+        for (int row = 0; row < Math.min(PAYLOADS, customerRepository.size()); row++) {
+            payloads.add(customerRepository.getRow(row));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(modelDirectory);
+    }
+
+    @Benchmark
+    public double predictChurn() {
+        next = next + 1 == payloads.size() ? 0 : next + 1;
+        return churnPrediction.predictChurn(payloads.get(next));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int writeReport() throws IOException {
+        return reportWriter.writeReport(OutputStream.nullOutputStream());
+    }
+}
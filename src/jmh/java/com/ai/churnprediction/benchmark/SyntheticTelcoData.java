@@ -0,0 +1,92 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.util.AiUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scales the bundled Telco dataset to any number of rows for benchmarks.
+ * Every generated customer copies the categorical values of a random real customer, gets a unique customerID
+ * and has MonthlyCharges and TotalCharges scaled by the same random factor. Blank TotalCharges stay blank,
+ * so the cleaning paths see the same kind of data as in production.
+ * <p>
+ * Files are written once to build/jmh-data and reused by later forks and runs.
+ * Generate one by hand with {@code java ... SyntheticTelcoData <rows> [target.csv]}.
+ */
+public final class SyntheticTelcoData {
+
+    private static final Path DATA_DIRECTORY = Path.of("build", "jmh-data");
+    private static final long SEED = 42;
+
+    private SyntheticTelcoData() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rows = Integer.parseInt(args[0]);
+        Path target = args.length > 1 ? Path.of(args[1]) : DATA_DIRECTORY.resolve("telco-" + rows + ".csv");
+        generate(Path.of(AiUtil.DATASET_PATH), target, rows);
+        System.out.println("Wrote " + rows + " customers to " + target);
+    }
+
+    /**
+     * @return a CSV of {@code rows} synthetic customers with the Telco header, generated on first use
+     */
+    public static synchronized Path telcoCsv(int rows) throws IOException {
+        Path target = DATA_DIRECTORY.resolve("telco-" + rows + ".csv");
+        if (!Files.exists(target)) {
+            generate(Path.of(AiUtil.DATASET_PATH), target, rows);
+        }
+        return target;
+    }
+
+    static void generate(Path source, Path target, int rows) throws IOException {
+        List<String> lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        List<String> header = Arrays.asList(lines.get(0).split(","));
+        int idColumn = header.indexOf("customerID");
+        int monthlyColumn = header.indexOf("MonthlyCharges");
+        int totalColumn = header.indexOf("TotalCharges");
+        String[][] templates = lines.stream().skip(1).map(line -> line.split(",", -1)).toArray(String[][]::new);
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(lines.get(0));
+            writer.newLine();
+            for (int row = 0; row < rows; row++) {
+                String[] values = templates[random.nextInt(templates.length)].clone();
+                double factor = 0.8 + 0.4 * random.nextDouble();
+                values[idColumn] = customerId(row, random);
+                values[monthlyColumn] = scale(values[monthlyColumn], factor);
+                values[totalColumn] = scale(values[totalColumn], factor);
+                writer.write(String.join(",", values));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Telco style ID ("7590-VHVEG"), the letters encode the row so IDs stay unique up to 26^5 rows
+    private static String customerId(int row, Random random) {
+        char[] letters = new char[5];
+        for (int i = letters.length - 1, rest = row; i >= 0; i--, rest /= 26) {
+            letters[i] = (char) ('A' + rest % 26);
+        }
+        return String.format("%04d-%s", random.nextInt(10_000), new String(letters));
+    }
+
+    private static String scale(String value, double factor) {
+        if (value.isBlank()) {
+            return value;
+        }
+        return Double.toString(Math.round(Double.parseDouble(value) * factor * 100) / 100.0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.TrainingThroughput;
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One training epoch over {@code rows} in-memory customers, on one thread and on {@code workers} averaged replicas.
+ * The time for workers=1 divided by the time for workers=N is the data-parallel speedup.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingBenchmark {
+
+    private static final int NUM_FEATURES = 45;
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"1", "2", "4", "8"})
+    private int workers;
+
+    @Param({"100000"})
+    private int rows;
+
+    private List<DataSet> trainBatches;
+    private List<DataSet> validationBatches;
+    private MultiLayerNetwork model;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        Nd4j.getRandom().setSeed(42);
+        trainBatches = dataSet(rows).batchBy(BATCH_SIZE);
+        validationBatches = dataSet(BATCH_SIZE).batchBy(BATCH_SIZE);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpModel() {
+        model = BenchmarkModels.untrainedModel(NUM_FEATURES);
+    }
+
+    @Benchmark
+    public MultiLayerNetwork epoch() {
+        return DeepLearning4JUtility.trainWithEarlyStopping(model, new ListDataSetIterator<>(trainBatches, 1),
+                new ListDataSetIterator<>(validationBatches, 1), 1, 1, workers, 4, 5,
+                new TrainingThroughput()).getBestModel();
+    }
+
+    private static DataSet dataSet(int rows) {
+        INDArray features = Nd4j.rand(rows, NUM_FEATURES);
+        INDArray labels = Nd4j.rand(rows, 1).gt(0.5).castTo(features.dataType());
+        return new DataSet(features, labels);
+    }
+}
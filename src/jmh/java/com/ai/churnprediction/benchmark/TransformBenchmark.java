@@ -0,0 +1,80 @@
+package com.ai.churnprediction.benchmark;
+
+import com.ai.churnprediction.service.FeatureEncoder;
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feature encoding of one customer: {@code TransformProcess.execute} alone (records are converted to
+ * writables up front) and the compiled {@link FeatureEncoder} the service uses instead.
+ * Customers of the bundled dataset are encoded in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransformBenchmark {
+
+    private TransformProcess transformProcess;
+    private FeatureEncoder featureEncoder;
+    private List<Map<String, Object>> customers;
+    private List<List<Writable>> records;
+    private double[] features;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        transformProcess = BenchmarkModels.transformProcess(Path.of(AiUtil.DATASET_PATH));
+        featureEncoder = FeatureEncoder.compile(transformProcess);
+        features = new double[featureEncoder.numFeatures()];
+
+        customers = AiUtil.loadCsvData();
+        records = new ArrayList<>(customers.size());
+        List<String> columns = transformProcess.getInitialSchema().getColumnNames();
+        for (Map<String, Object> customer : customers) {
+            // Same cleaning as ChurnPrediction before encoding
+            if (customer.get("TotalCharges").toString().trim().isEmpty()) {
+                customer.put("TotalCharges", "0.0");
+            }
+            List<Writable> record = new ArrayList<>(columns.size());
+            columns.forEach(column -> record.add(new Text(customer.get(column).toString())));
+            records.add(record);
+        }
+    }
+
+    @Benchmark
+    public List<Writable> transformProcessExecute() {
+        return transformProcess.execute(records.get(nextIndex()));
+    }
+
+    @Benchmark
+    public double[] featureEncoder() {
+        featureEncoder.encode(customers.get(nextIndex()), features, 0);
+        return features;
+    }
+
+    private int nextIndex() {
+        next = next + 1 == customers.size() ? 0 : next + 1;
+        return next;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ai.churnprediction.config;
+
+import com.ai.churnprediction.repository.CustomerLoader;
+import com.ai.churnprediction.repository.RefreshableCustomerRepository;
+import com.ai.churnprediction.util.AiUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class CustomerRepositoryConfig {
+
+    @Value("${churn.repository.csv-file:" + AiUtil.DATASET_PATH + "}")
+    private String csvPath;
+
+    // Binary copy of the customer CSV, empty to always parse the CSV
+    @Value("${churn.repository.snapshot-file:customers.snapshot}")
+    private String snapshotFile;
+
+    // Threads parsing the customer CSV, 0 means one per core
+    @Value("${churn.repository.parse-parallelism:0}")
+    private int parseParallelism;
+
+    // Load full dataset for UI and bulk scoring: from the snapshot when it matches the CSV, otherwise parse the CSV.
+    // Replaced by CustomerRefresher when the CSV changes
+    @Bean
+    public RefreshableCustomerRepository customerRepository() throws IOException {
+        return new RefreshableCustomerRepository(CustomerLoader.load(Path.of(csvPath),
+                snapshotFile.isBlank() ? null : Path.of(snapshotFile), parseParallelism));
+    }
+}
@@ -0,0 +1,37 @@
+package com.ai.churnprediction.controller;
+
+import com.ai.churnprediction.service.CustomerRefresher;
+import com.ai.churnprediction.service.ModelRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/admin")
+@AllArgsConstructor
+public class AdminController {
+    private final ModelRegistry modelRegistry;
+    private final CustomerRefresher customerRefresher;
+
+    // Active model version, when it was loaded and the outcome of the last reload
+    @GetMapping("/model")
+    public ModelRegistry.ModelStatus model() {
+        return modelRegistry.status();
+    }
+
+    // Reloads the model files now instead of waiting for the file watcher
+    @PostMapping("/model/reload")
+    public ModelRegistry.ModelStatus reload() {
+        return modelRegistry.reload();
+    }
+
+    // Reloads the customer file now and rescores the customers that changed
+    @PostMapping("/customers/refresh")
+    public CustomerRefresher.RefreshResult refreshCustomers() throws IOException {
+        return customerRefresher.refresh();
+    }
+}
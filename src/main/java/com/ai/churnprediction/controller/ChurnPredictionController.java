@@ -1,32 +1,312 @@
 package com.ai.churnprediction.controller;
 
+import com.ai.churnprediction.metrics.Histogram;
+import com.ai.churnprediction.metrics.ServingMetrics;
 import com.ai.churnprediction.service.ChurnPrediction;
-import lombok.AllArgsConstructor;
+import com.ai.churnprediction.service.CustomerChangeLog;
+import com.ai.churnprediction.service.DriftMonitor;
+import com.ai.churnprediction.service.OverloadedException;
+import com.ai.churnprediction.service.PredictionBatcher;
+import com.ai.churnprediction.service.PredictionCache;
+import com.ai.churnprediction.service.ServingBulkheads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/churn")
-@AllArgsConstructor
 @Slf4j
 public class ChurnPredictionController {
+    private static final String MODEL_VERSION_HEADER = "X-Model-Version";
+
     private final ChurnPrediction churnPredictionService;
+    private final PredictionCache predictionCache;
+    private final PredictionBatcher predictionBatcher;
+    private final ServingMetrics servingMetrics;
+    private final ServingBulkheads bulkheads;
+    private final CustomerChangeLog changeLog;
+    private final DriftMonitor driftMonitor;
+    private final ObjectMapper objectMapper;
+    // Customers or binary rows accepted by one /predict/batch call
+    private final int maxBatchSize;
+    // Request body size accepted by one /predict/batch call, checked before anything is parsed
+    private final int maxBatchBytes;
+
+    public ChurnPredictionController(ChurnPrediction churnPredictionService, PredictionCache predictionCache,
+                                     PredictionBatcher predictionBatcher, ServingMetrics servingMetrics,
+                                     ServingBulkheads bulkheads, CustomerChangeLog changeLog,
+                                     DriftMonitor driftMonitor, ObjectMapper objectMapper,
+                                     @Value("${churn.api.max-batch-size:10000}") int maxBatchSize,
+                                     @Value("${churn.api.max-batch-bytes:16777216}") int maxBatchBytes) {
+        this.churnPredictionService = churnPredictionService;
+        this.predictionCache = predictionCache;
+        this.predictionBatcher = predictionBatcher;
+        this.servingMetrics = servingMetrics;
+        this.bulkheads = bulkheads;
+        this.changeLog = changeLog;
+        this.driftMonitor = driftMonitor;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+    }
 
     @PostMapping("/predict")
     public String predict(@RequestBody Map<String, Object> payload) {
-        log.info("Received churn prediction request: {}", payload.get("customerID"));
+        long start = System.nanoTime();
+        long allocated = servingMetrics.threadAllocatedBytes();
+        log.debug("Received churn prediction request: {}", payload.get("customerID"));
+        boolean failed = false;
         try {
-            double probability = churnPredictionService.predictChurn(payload);
+            double probability = bulkheads.single(() -> churnPredictionService.predictChurn(payload));
+            driftMonitor.record(payload, probability);
             String label = probability >= 0.5 ? "Yes" : "No";
             return String.format("Churn Prediction: %s (Probability: %.4f)", label, probability);
+        } catch (OverloadedException e) {
+            failed = true;
+            throw e;
         } catch (Exception e) {
+            failed = true;
             return "Prediction failed: " + e.getMessage();
+        } finally {
+            servingMetrics.recordRequest(start, allocated, failed);
+        }
+    }
+
+    /**
+     * Typed single prediction.
+     */
+    @PostMapping("/score")
+    public Prediction score(@RequestBody ChurnRequest request) {
+        long start = System.nanoTime();
+        long allocated = servingMetrics.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            Map<String, Object> payload = request.toPayload();
+            double probability = bulkheads.single(() -> churnPredictionService.predictChurn(payload));
+            driftMonitor.record(payload, probability);
+            failed = false;
+            return new Prediction(request.customerID(), probability, probability >= 0.5);
+        } catch (OverloadedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } finally {
+            servingMetrics.recordRequest(start, allocated, failed);
+        }
+    }
+
+    /**
+     * Scores up to {@code churn.api.max-batch-size} customers with batched forward passes.
+     * A customer that cannot be scored gets a null probability and an entry in {@code errors}; the others are
+     * still scored. The body is limited to {@code churn.api.max-batch-bytes} and parsed one customer at a time,
+     * so an oversized batch is rejected without being bound.
+     */
+    @PostMapping(path = "/predict/batch", consumes = "application/json")
+    public BatchPrediction predictBatch(HttpServletRequest request) throws IOException {
+        List<ChurnRequest> requests = readRequests(readBody(request));
+        long start = System.nanoTime();
+        long allocated = servingMetrics.threadAllocatedBytes();
+        List<Map<String, Object>> payloads = new ArrayList<>(requests.size());
+        requests.forEach(request -> payloads.add(request.toPayload()));
+        ChurnPrediction.ItemPredictions result = bulkheads.interactive(
+                () -> churnPredictionService.predictChurnItems(payloads));
+
+        Float[] probabilities = new Float[requests.size()];
+        List<ItemError> errors = new ArrayList<>();
+        for (int i = 0; i < probabilities.length; i++) {
+            if (result.errors()[i] == null) {
+                probabilities[i] = (float) result.probabilities()[i];
+                driftMonitor.record(payloads.get(i), result.probabilities()[i]);
+            } else {
+                errors.add(new ItemError(i, requests.get(i).customerID(), result.errors()[i]));
+            }
+        }
+        servingMetrics.getFailures().add(errors.size());
+        servingMetrics.recordRequest(start, allocated, false);
+        return new BatchPrediction(result.modelVersion(), probabilities, errors);
+    }
+
+    /**
+     * Binary form of {@link #predictBatch}, see {@link FeatureRows}. Rows that do not have the width of the
+     * current model score NaN. The model version is returned in {@value #MODEL_VERSION_HEADER}.
+     */
+    @PostMapping(path = "/predict/batch", consumes = FeatureRows.REQUEST_TYPE, produces = FeatureRows.RESPONSE_TYPE)
+    public ResponseEntity<byte[]> predictBatchBinary(HttpServletRequest request) throws IOException {
+        byte[] body = readBody(request);
+        long start = System.nanoTime();
+        long allocated = servingMetrics.threadAllocatedBytes();
+        FeatureRows.Decoded rows = decodeRows(body, start, allocated);
+        ChurnPrediction.ItemPredictions result;
+        try {
+            result = bulkheads.interactive(() -> churnPredictionService.predictEncoded(rows.features(), rows.rows()));
+        } catch (IllegalArgumentException e) {
+            // A model with another width was swapped in while decoding
+            servingMetrics.recordRequest(start, allocated, true);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+        double[] probabilities = result.probabilities();
+        int invalid = 0;
+        for (int i = 0; i < probabilities.length; i++) {
+            if (!rows.valid()[i]) {
+                probabilities[i] = Double.NaN;
+                invalid++;
+            }
+        }
+        driftMonitor.recordPredictions(probabilities);
+        servingMetrics.getFailures().add(invalid);
+        servingMetrics.recordRequest(start, allocated, false);
+        return ResponseEntity.ok()
+                .header(MODEL_VERSION_HEADER, result.modelVersion())
+                .body(FeatureRows.encode(probabilities));
+    }
+
+    // Feature order of the binary batch format for the current model
+    @GetMapping("/predict/features")
+    public ResponseEntity<List<String>> features() {
+        return ResponseEntity.ok()
+                .header(MODEL_VERSION_HEADER, churnPredictionService.getModelVersion())
+                .body(churnPredictionService.getFeatureNames());
+    }
+
+    /**
+     * Customers added, changed or removed by customer file refreshes after sequence {@code since}, with their new
+     * probability. When {@code complete} is false or {@value #MODEL_VERSION_HEADER} differs from the version of
+     * the last poll, the feed cannot be applied on top of what the caller has and the full report is needed.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<CustomerChangeLog.Changes> changes(@RequestParam(defaultValue = "0") long since,
+                                                             @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok()
+                .header(MODEL_VERSION_HEADER, churnPredictionService.getModelVersion())
+                .body(changeLog.since(since, Math.max(1, Math.min(limit, maxBatchSize))));
+    }
+
+    /**
+     * Contributions of the {@code top} input columns to the churn probability of a known customer.
+     */
+    @GetMapping("/explain/{customerID}")
+    public ChurnPrediction.Explanation explainCustomer(@PathVariable String customerID,
+                                                       @RequestParam(defaultValue = "10") int top) {
+        return bulkheads.interactive(() -> churnPredictionService.explainCustomer(customerID, top))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Unknown customer " + customerID));
+    }
+
+    /**
+     * Contributions of the {@code top} input columns to the churn probability of an ad-hoc customer.
+     */
+    @PostMapping("/explain")
+    public ChurnPrediction.Explanation explain(@RequestBody ChurnRequest request,
+                                               @RequestParam(defaultValue = "10") int top) {
+        try {
+            return bulkheads.interactive(() -> churnPredictionService.explain(request.toPayload(), top));
+        } catch (OverloadedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Live request inputs and predictions compared with the training data, see {@link DriftMonitor}. The
+     * predictions are compared with the probabilities of the known customers.
+     */
+    @GetMapping("/drift")
+    public DriftMonitor.DriftReport drift() {
+        PredictionCache.CustomerScores scores = predictionCache.customerScores(
+                churnPredictionService.getModelVersion());
+        return driftMonitor.report(scores != null ? scores.probabilities() : null);
+    }
+
+    public record Prediction(String customerID, double probability, boolean churn) {
+    }
+
+    /**
+     * @param probabilities churn probability per customer in request order, null where {@code errors} has an entry
+     */
+    public record BatchPrediction(String modelVersion, Float[] probabilities, List<ItemError> errors) {
+    }
+
+    /**
+     * @param index position of the customer in the request
+     */
+    public record ItemError(int index, String customerID, String message) {
+    }
+
+    private FeatureRows.Decoded decodeRows(byte[] body, long start, long allocated) {
+        FeatureRows.Decoded rows;
+        try {
+            rows = FeatureRows.decode(body, churnPredictionService.getNumFeatures(), maxBatchSize);
+        } catch (IllegalArgumentException e) {
+            servingMetrics.recordRequest(start, allocated, true);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         }
+        if (rows.rows() > maxBatchSize) {
+            // Same answer as an oversized JSON batch
+            servingMetrics.recordRequest(start, allocated, true);
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "More than " + maxBatchSize + " rows in one call");
+        }
+        return rows;
+    }
+
+    // Reads the whole body, but never more than maxBatchBytes of it whatever Content-Length claims
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        long declared = request.getContentLengthLong();
+        if (declared > maxBatchBytes) {
+            throw bodyTooLarge(declared + " bytes");
+        }
+        byte[] body = request.getInputStream().readNBytes(Math.max(0, maxBatchBytes) + 1);
+        if (body.length > maxBatchBytes) {
+            throw bodyTooLarge("More than " + maxBatchBytes + " bytes");
+        }
+        return body;
+    }
+
+    private List<ChurnRequest> readRequests(byte[] body) {
+        List<ChurnRequest> requests;
+        try {
+            requests = CustomerBatch.read(objectMapper, body, maxBatchSize);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "More than " + maxBatchSize + " customers in one call");
+        }
+        return requests;
+    }
+
+    private ResponseStatusException bodyTooLarge(String size) {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                size + " in one call, at most " + maxBatchBytes + " allowed");
+    }
+
+    @GetMapping("/cache/stats")
+    public PredictionCache.CacheStats cacheStats() {
+        return predictionCache.getStats();
+    }
+
+    @GetMapping("/batcher/stats")
+    public Map<String, Histogram.Snapshot> batcherStats() {
+        return Map.of("batchSize", predictionBatcher.getBatchSizes().snapshot(),
+                "queueWaitMicros", predictionBatcher.getQueueWaitMicros().snapshot());
     }
 
 }
@@ -0,0 +1,65 @@
+package com.ai.churnprediction.controller;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One customer as sent to the typed prediction API, with the columns of {@code DatavecUtility.buildInputSchema}.
+ * Jackson binds the fields directly instead of building a {@code Map} per request. Missing fields stay null
+ * and are reported as an error for this customer only.
+ */
+public record ChurnRequest(
+        @JsonProperty("customerID") String customerID,
+        @JsonProperty("gender") String gender,
+        @JsonProperty("SeniorCitizen") Integer seniorCitizen,
+        @JsonProperty("Partner") String partner,
+        @JsonProperty("Dependents") String dependents,
+        @JsonProperty("tenure") Integer tenure,
+        @JsonProperty("PhoneService") String phoneService,
+        @JsonProperty("MultipleLines") String multipleLines,
+        @JsonProperty("InternetService") String internetService,
+        @JsonProperty("OnlineSecurity") String onlineSecurity,
+        @JsonProperty("OnlineBackup") String onlineBackup,
+        @JsonProperty("DeviceProtection") String deviceProtection,
+        @JsonProperty("TechSupport") String techSupport,
+        @JsonProperty("StreamingTV") String streamingTV,
+        @JsonProperty("StreamingMovies") String streamingMovies,
+        @JsonProperty("Contract") String contract,
+        @JsonProperty("PaperlessBilling") String paperlessBilling,
+        @JsonProperty("PaymentMethod") String paymentMethod,
+        @JsonProperty("MonthlyCharges") Double monthlyCharges,
+        @JsonProperty("TotalCharges") Double totalCharges) {
+
+    /**
+     * @return the record keyed by input column, as expected by {@code ModelBundle.encode}
+     */
+    public Map<String, Object> toPayload() {
+        Map<String, Object> payload = new LinkedHashMap<>(32);
+        payload.put("customerID", customerID);
+        payload.put("gender", gender);
+        payload.put("SeniorCitizen", seniorCitizen);
+        payload.put("Partner", partner);
+        payload.put("Dependents", dependents);
+        payload.put("tenure", tenure);
+        payload.put("PhoneService", phoneService);
+        payload.put("MultipleLines", multipleLines);
+        payload.put("InternetService", internetService);
+        payload.put("OnlineSecurity", onlineSecurity);
+        payload.put("OnlineBackup", onlineBackup);
+        payload.put("DeviceProtection", deviceProtection);
+        payload.put("TechSupport", techSupport);
+        payload.put("StreamingTV", streamingTV);
+        payload.put("StreamingMovies", streamingMovies);
+        payload.put("Contract", contract);
+        payload.put("PaperlessBilling", paperlessBilling);
+        payload.put("PaymentMethod", paymentMethod);
+        payload.put("MonthlyCharges", monthlyCharges);
+        // Blank for new customers, encoded as 0.0 like in training
+        payload.put("TotalCharges", totalCharges);
+        // Label column of the schema, dropped by the transform but required by TransformProcess.execute
+        payload.put("Churn", "No");
+        return payload;
+    }
+}
@@ -0,0 +1,54 @@
+package com.ai.churnprediction.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON body of {@code /api/churn/predict/batch}: an array of {@link ChurnRequest}. The array is read one customer
+ * at a time, so a batch that is too large is detected after {@code maxCustomers + 1} customers instead of after
+ * binding all of them.
+ */
+final class CustomerBatch {
+
+    private CustomerBatch() {
+    }
+
+    /**
+     * @return the customers in request order, {@code maxCustomers + 1} of them when the array has more than
+     * {@code maxCustomers}
+     * @throws IllegalArgumentException when the body is not an array of customers
+     */
+    static List<ChurnRequest> read(ObjectMapper mapper, byte[] body, int maxCustomers) {
+        List<ChurnRequest> requests = new ArrayList<>();
+        try (JsonParser parser = mapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of customers");
+            }
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException(token == null
+                            ? "Truncated array after " + requests.size() + " customers"
+                            : "Customer " + requests.size() + " is not an object");
+                }
+                requests.add(mapper.readValue(parser, ChurnRequest.class));
+                if (requests.size() > maxCustomers) {
+                    // Enough to reject the batch, the rest is never bound
+                    return requests;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON at customer " + requests.size() + ": "
+                    + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            // Parsing a byte array does not do I/O
+            throw new IllegalStateException(e);
+        }
+        return requests;
+    }
+}
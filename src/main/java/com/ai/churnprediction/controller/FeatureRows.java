@@ -0,0 +1,79 @@
+package com.ai.churnprediction.controller;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Binary wire format of {@code /api/churn/predict/batch} for internal callers, big-endian like
+ * {@link java.io.DataOutputStream}.
+ * <ul>
+ *     <li>Request ({@value #REQUEST_TYPE}): a sequence of rows, each an {@code int32} feature count followed by
+ *     that many {@code float32} features in the order of {@code GET /api/churn/predict/features}.</li>
+ *     <li>Response ({@value #RESPONSE_TYPE}): an {@code int32} row count followed by one {@code float32}
+ *     probability per row, NaN for a row that could not be scored.</li>
+ * </ul>
+ */
+final class FeatureRows {
+
+    static final String REQUEST_TYPE = "application/x-churn-features";
+    static final String RESPONSE_TYPE = "application/x-churn-probabilities";
+
+    /**
+     * @param features row-major matrix of the rows with the expected width, zeros in place of the others
+     * @param valid    whether each row had the expected width
+     */
+    record Decoded(double[] features, boolean[] valid) {
+        int rows() {
+            return valid.length;
+        }
+    }
+
+    private FeatureRows() {
+    }
+
+    /**
+     * @return the decoded rows, {@code maxRows + 1} of them when the body has more than {@code maxRows}; the rest of
+     * the body is not decoded
+     * @throws IllegalArgumentException when the body is truncated or a row claims more features than it has
+     */
+    static Decoded decode(byte[] body, int numFeatures, int maxRows) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        // Smallest possible row is its length prefix, which bounds the row count before the first pass
+        int capacity = Math.min(body.length / Integer.BYTES, maxRows + 1);
+        double[] features = new double[capacity * numFeatures];
+        boolean[] valid = new boolean[capacity];
+        int rows = 0;
+        try {
+            // One row past maxRows is enough to reject the batch
+            while (buffer.hasRemaining() && rows <= maxRows) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining() / Float.BYTES) {
+                    throw new IllegalArgumentException("Row " + rows + " claims " + length + " features");
+                }
+                if (length == numFeatures) {
+                    int offset = rows * numFeatures;
+                    for (int i = 0; i < length; i++) {
+                        features[offset + i] = buffer.getFloat();
+                    }
+                    valid[rows] = true;
+                } else {
+                    buffer.position(buffer.position() + length * Float.BYTES);
+                }
+                rows++;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated row " + rows, e);
+        }
+        return new Decoded(Arrays.copyOf(features, rows * numFeatures), Arrays.copyOf(valid, rows));
+    }
+
+    static byte[] encode(double[] probabilities) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + probabilities.length * Float.BYTES);
+        buffer.putInt(probabilities.length);
+        for (double probability : probabilities) {
+            buffer.putFloat((float) probability);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,88 @@
+package com.ai.churnprediction.controller;
+
+import com.ai.churnprediction.metrics.PrometheusWriter;
+import com.ai.churnprediction.metrics.ServingMetrics;
+import com.ai.churnprediction.service.ModelRegistry;
+import com.ai.churnprediction.service.PredictionBatcher;
+import com.ai.churnprediction.service.PredictionCache;
+import com.ai.churnprediction.service.ServingBulkheads;
+import lombok.AllArgsConstructor;
+import org.bytedeco.javacpp.Pointer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Prometheus scrape endpoint. Histograms and counters are read at scrape time only, recording them on the
+ * serving path costs nothing here.
+ */
+@RestController
+@AllArgsConstructor
+public class MetricsController {
+    private static final double NANOS = 1e-9;
+    private static final double MICROS = 1e-6;
+    // Latency buckets in seconds, for dashboards that aggregate several instances
+    private static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+            5, 10};
+
+    private final ServingMetrics servingMetrics;
+    private final PredictionCache predictionCache;
+    private final PredictionBatcher predictionBatcher;
+    private final ModelRegistry modelRegistry;
+    private final ServingBulkheads bulkheads;
+
+    @GetMapping("/metrics")
+    public ResponseEntity<String> metrics() {
+        PrometheusWriter writer = new PrometheusWriter()
+                .counter("churn_requests_total", "Prediction requests served",
+                        servingMetrics.getRequests().sum())
+                .counter("churn_request_failures_total", "Prediction requests that failed",
+                        servingMetrics.getFailures().sum())
+                .counter("churn_report_rows_total", "Rows written to prediction reports",
+                        servingMetrics.getReportRows().sum())
+                .summary("churn_request_duration_seconds", "End-to-end latency of a prediction request",
+                        servingMetrics.getRequestNanos(), NANOS)
+                .histogram("churn_request_latency_seconds", "End-to-end latency of a prediction request, in buckets",
+                        servingMetrics.getRequestNanos(), NANOS, LATENCY_BUCKETS)
+                .summary("churn_request_allocated_bytes",
+                        "Heap allocated by the request thread per prediction, only when predictions run on it",
+                        servingMetrics.getRequestAllocatedBytes(), 1)
+                .summary("churn_stage_duration_seconds", "Latency of one call of a prediction stage");
+        for (ServingMetrics.Stage stage : ServingMetrics.Stage.values()) {
+            writer.summarySamples("churn_stage_duration_seconds", PrometheusWriter.label("stage", stage.getLabel()),
+                    servingMetrics.getStageNanos(stage), NANOS);
+        }
+
+        PredictionCache.CacheStats cache = predictionCache.getStats();
+        ModelRegistry.ModelStatus model = modelRegistry.status();
+        writer.summary("churn_batch_size", "Rows per micro-batched forward pass",
+                        predictionBatcher.getBatchSizes(), 1)
+                .summary("churn_batch_queue_wait_seconds", "Time a request waited for its micro-batch",
+                        predictionBatcher.getQueueWaitMicros(), MICROS)
+                .counter("churn_batch_rejected_total", "Predictions shed because the micro-batch queue was full",
+                        predictionBatcher.getRejected().sum())
+                .counter("churn_cache_hits_total", "Prediction cache hits", cache.hits())
+                .counter("churn_cache_misses_total", "Prediction cache misses", cache.misses())
+                .counter("churn_cache_evictions_total", "Prediction cache evictions", cache.evictions())
+                .counter("churn_model_reloads_total", "Models swapped in without a restart", model.reloads())
+                .counter("churn_model_failed_reloads_total", "Reloads that kept the old model", model.failedReloads())
+                .counter("churn_bulkhead_rejected_predictions_total", "Predictions shed with 429",
+                        bulkheads.getRejectedPredictions().sum())
+                .counter("churn_bulkhead_rejected_reports_total", "Report downloads shed with 429",
+                        bulkheads.getRejectedReports().sum())
+                .gauge("churn_bulkhead_queued_predictions", "Predictions waiting for a compute thread",
+                        bulkheads.getQueuedPredictions())
+                .gauge("churn_bulkhead_active_reports", "Report downloads running", bulkheads.getActiveReports())
+                // Off-heap memory of ND4J arrays and workspaces, tracked by JavaCPP
+                .gauge("churn_nd4j_native_bytes", "Native memory allocated through JavaCPP", Pointer.totalBytes())
+                .gauge("churn_nd4j_native_max_bytes", "Limit of native memory allocated through JavaCPP",
+                        Pointer.maxBytes())
+                .gauge("churn_nd4j_physical_bytes", "Resident memory of the process", Pointer.physicalBytes())
+                .gauge("churn_nd4j_physical_max_bytes", "Limit of resident memory before JavaCPP triggers a GC",
+                        Pointer.maxPhysicalBytes());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, PrometheusWriter.CONTENT_TYPE)
+                .body(writer.toString());
+    }
+}
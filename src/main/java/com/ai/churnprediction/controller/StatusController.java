@@ -1,12 +1,31 @@
 package com.ai.churnprediction.controller;
 
+import com.ai.churnprediction.service.WarmupService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
+@AllArgsConstructor
 public class StatusController {
+    private final WarmupService warmupService;
+
+    // Liveness: the process is up, with the warm-up state and its result once finished
     @GetMapping("/")
-    public String status() {
-        return "Churn Prediction Service is running!";
+    public Status status() {
+        return new Status(warmupService.getState(), warmupService.getReport());
+    }
+
+    // Readiness: 200 once the warm-up has finished, 503 while it is running
+    @GetMapping("/ready")
+    public ResponseEntity<Status> ready() {
+        Status status = status();
+        HttpStatus code = status.state() == WarmupService.State.READY ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(code).body(status);
+    }
+
+    public record Status(WarmupService.State state, WarmupService.WarmupReport warmup) {
     }
 }
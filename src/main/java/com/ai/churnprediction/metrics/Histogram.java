@@ -0,0 +1,123 @@
+package com.ai.churnprediction.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram for non-negative long values (latencies in microseconds, batch sizes, ...).
+ * Values below 16 are counted exactly; above that every power of two is split into 16 buckets,
+ * so recorded values keep roughly 6% relative precision over the whole long range.
+ * Recording is a few array and adder updates, with no allocation and no locking.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return an estimate of the value at {@code quantile}, 0 when nothing was recorded
+     */
+    public long percentile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Cumulative counts for Prometheus buckets. A value counts under a bound when its whole log-linear bucket is at
+     * or below the bound, so counts are exact to the bucket resolution.
+     *
+     * @param bounds upper bounds in ascending order
+     * @return the count at or below each bound, followed by the total count, taken from one pass over the buckets
+     */
+    public long[] cumulativeCounts(long[] bounds) {
+        long[] cumulative = new long[bounds.length + 1];
+        long seen = 0;
+        int bound = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            while (bound < bounds.length && upperBound(i) > bounds[bound]) {
+                cumulative[bound++] = seen;
+            }
+            seen += counts.get(i);
+        }
+        while (bound < bounds.length) {
+            cumulative[bound++] = seen;
+        }
+        cumulative[bounds.length] = seen;
+        return cumulative;
+    }
+
+    public Snapshot snapshot() {
+        long total = getCount();
+        return new Snapshot(total, total == 0 ? 0 : (double) getSum() / total,
+                percentile(0.5), percentile(0.9), percentile(0.99), getMax());
+    }
+
+    /**
+     * Summary of a histogram at one point in time.
+     */
+    public record Snapshot(long count, double mean, long p50, long p90, long p99, long max) {
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ai.churnprediction.metrics;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Renders metrics in the Prometheus text exposition format (version 0.0.4).
+ * {@link Histogram}s are written as summaries with a few quantiles, since their log-linear buckets are far too
+ * many to expose as Prometheus buckets. {@link #histogram} exposes one with a few chosen buckets instead, for
+ * metrics that have to be aggregated across instances.
+ */
+public final class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder(8 * 1024);
+
+    public PrometheusWriter counter(String name, String help, long value) {
+        header(name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter gauge(String name, String help, double value) {
+        header(name, help, "gauge");
+        out.append(name).append(' ').append(format(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the help and type lines of a summary, followed by {@link #summarySamples} for each label value.
+     */
+    public PrometheusWriter summary(String name, String help) {
+        header(name, help, "summary");
+        return this;
+    }
+
+    /**
+     * Writes the quantiles, sum and count of {@code histogram}.
+     *
+     * @param label label pair from {@link #label}, or null
+     * @param scale factor applied to the recorded values, e.g. {@code 1e-9} to turn nanoseconds into seconds
+     */
+    public PrometheusWriter summarySamples(String name, String label, Histogram histogram, double scale) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{');
+            if (label != null) {
+                out.append(label).append(',');
+            }
+            out.append("quantile=\"").append(quantile).append("\"} ")
+                    .append(format(histogram.percentile(quantile) * scale)).append('\n');
+        }
+        String labels = label != null ? "{" + label + "}" : "";
+        out.append(name).append("_sum").append(labels).append(' ').append(format(histogram.getSum() * scale)).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(histogram.getCount()).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter summary(String name, String help, Histogram histogram, double scale) {
+        return summary(name, help).summarySamples(name, null, histogram, scale);
+    }
+
+    /**
+     * Writes {@code histogram} as a Prometheus histogram: cumulative {@code _bucket} samples for each bound and
+     * {@code +Inf}, then {@code _sum} and {@code _count}.
+     *
+     * @param bounds bucket upper bounds in ascending order, in the unit of the output (e.g. seconds)
+     * @param scale  factor applied to the recorded values, e.g. {@code 1e-9} to turn nanoseconds into seconds
+     */
+    public PrometheusWriter histogram(String name, String help, Histogram histogram, double scale, double... bounds) {
+        header(name, help, "histogram");
+        long[] recordedBounds = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            recordedBounds[i] = Math.round(bounds[i] / scale);
+        }
+        long[] cumulative = histogram.cumulativeCounts(recordedBounds);
+        for (int i = 0; i < bounds.length; i++) {
+            out.append(name).append("_bucket{le=\"").append(formatBound(bounds[i])).append("\"} ")
+                    .append(cumulative[i]).append('\n');
+        }
+        long count = cumulative[bounds.length];
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum ").append(format(histogram.getSum() * scale)).append('\n');
+        out.append(name).append("_count ").append(count).append('\n');
+        return this;
+    }
+
+    /**
+     * @return the label pair {@code name="value"}, with backslashes, double quotes and line feeds of the value
+     * escaped
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void header(String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ')
+                .append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.9g", value);
+    }
+
+    // Bucket bounds as written by hand, e.g. 0.005 rather than 0.00500000000
+    private static String formatBound(double bound) {
+        return BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,125 @@
+package com.ai.churnprediction.metrics;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and allocation of the serving path.
+ * <p>
+ * Everything is recorded into {@link Histogram}s and {@link LongAdder}s: no locks, no allocation, and a request
+ * pays for a handful of {@code System.nanoTime()} calls and atomic increments, well below a microsecond.
+ * Stage histograms hold nanoseconds per call, so a batched forward pass counts once however many rows it has.
+ * <p>
+ * Allocation per request is read from the allocation counter of the request thread, so it only covers work done
+ * on that thread. It is turned off when the work runs elsewhere: on the bulkhead compute pool, on the micro-batch
+ * thread, or when requests run on virtual threads, whose counter the JVM does not report.
+ */
+@Slf4j
+@Component
+public class ServingMetrics {
+
+    /**
+     * Steps of one prediction. {@link #ENCODE} is the compiled encoder, which replaces
+     * {@link #PAYLOAD_TO_WRITABLE} and {@link #TRANSFORM} when the transform could be compiled.
+     */
+    public enum Stage {
+        PAYLOAD_TO_WRITABLE("payload_to_writable"),
+        TRANSFORM("transform"),
+        ENCODE("encode"),
+        NDARRAY("ndarray_create"),
+        FORWARD("forward_pass");
+
+        @Getter
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Map<Stage, Histogram> stageNanos = new EnumMap<>(Stage.class);
+    // End-to-end latency of /api/churn/predict, in nanoseconds
+    @Getter
+    private final Histogram requestNanos = new Histogram();
+    // Heap bytes allocated by the request thread per request, empty when allocation tracking is off
+    @Getter
+    private final Histogram requestAllocatedBytes = new Histogram();
+    @Getter
+    private final LongAdder requests = new LongAdder();
+    @Getter
+    private final LongAdder failures = new LongAdder();
+    @Getter
+    private final LongAdder reportRows = new LongAdder();
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    @Autowired
+    public ServingMetrics(@Value("${churn.metrics.allocation-tracking:true}") boolean allocationTracking,
+                          @Value("${churn.serving.bulkhead.enabled:false}") boolean bulkheads,
+                          @Value("${churn.serving.micro-batch.enabled:false}") boolean microBatching,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(allocationTracking && !(bulkheads || microBatching || virtualThreads));
+        if (allocationTracking && (bulkheads || microBatching || virtualThreads)) {
+            log.info("Allocation per request is not tracked: predictions do not run on the request thread "
+                            + "(bulkheads={}, micro-batching={}, virtual threads={})",
+                    bulkheads, microBatching, virtualThreads);
+        }
+    }
+
+    public ServingMetrics(boolean allocationTracking) {
+        for (Stage stage : Stage.values()) {
+            stageNanos.put(stage, new Histogram());
+        }
+        this.threads = allocationTracking ? allocationCounter() : null;
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageNanos.get(stage).record(nanos);
+    }
+
+    public Histogram getStageNanos(Stage stage) {
+        return stageNanos.get(stage);
+    }
+
+    /**
+     * @return bytes allocated so far by the calling thread, -1 when allocation tracking is off or not supported
+     */
+    public long threadAllocatedBytes() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Records one finished request.
+     *
+     * @param startNanos          {@code System.nanoTime()} when the request started
+     * @param startAllocatedBytes {@link #threadAllocatedBytes()} when the request started
+     */
+    public void recordRequest(long startNanos, long startAllocatedBytes, boolean failed) {
+        requestNanos.record(System.nanoTime() - startNanos);
+        long allocatedBytes = threadAllocatedBytes();
+        if (startAllocatedBytes >= 0 && allocatedBytes >= 0) {
+            requestAllocatedBytes.record(allocatedBytes - startAllocatedBytes);
+        }
+        requests.increment();
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+}
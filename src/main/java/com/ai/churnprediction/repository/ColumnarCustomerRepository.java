@@ -0,0 +1,456 @@
+package com.ai.churnprediction.repository;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, column oriented customer store.
+ * <ul>
+ *     <li>customerIDs are kept in a plain array with a hash index for O(1) lookups
+ *     and a trigram index for substring search</li>
+ *     <li>numeric columns (tenure, charges) are stored as {@code double[]}</li>
+ *     <li>all other columns are dictionary encoded: one shared string per distinct value plus a byte code per row</li>
+ *     <li>a content hash per row, so a refreshed file can be diffed against the previous one</li>
+ * </ul>
+ * Rows are materialized as maps only when a caller asks for them, e.g. for the current UI page.
+ * Besides the CSV loaders, a repository can be saved to and restored from a {@link CustomerSnapshot}.
+ */
+public final class ColumnarCustomerRepository implements CustomerRepository {
+
+    public static final String ID_COLUMN = "customerID";
+    public static final Set<String> NUMERIC_COLUMNS = Set.of("tenure", "MonthlyCharges", "TotalCharges");
+
+    private final List<String> columnNames;
+    private final Column[] columns;
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private final String[] customerIds;
+    private final int size;
+    private final Map<String, Integer> idIndex;
+    private final TrigramIndex trigramIndex;
+    private final long[] rowHashes;
+
+    ColumnarCustomerRepository(List<String> columnNames, Column[] columns, String[] customerIds) {
+        this(columnNames, columns, customerIds, new TrigramIndex(customerIds));
+    }
+
+    ColumnarCustomerRepository(List<String> columnNames, Column[] columns, String[] customerIds,
+                               TrigramIndex trigramIndex) {
+        this.columnNames = List.copyOf(columnNames);
+        this.columns = columns;
+        for (int i = 0; i < columnNames.size(); i++) {
+            columnIndex.put(columnNames.get(i), i);
+        }
+        this.customerIds = customerIds;
+        this.size = customerIds.length;
+        this.idIndex = new HashMap<>(size * 4 / 3 + 1);
+        for (int row = 0; row < size; row++) {
+            // Keep the first occurrence, like the previous linear search did
+            idIndex.putIfAbsent(customerIds[row], row);
+        }
+        this.trigramIndex = trigramIndex;
+        this.rowHashes = new long[size];
+        for (int row = 0; row < size; row++) {
+            rowHashes[row] = hashRow(row);
+        }
+    }
+
+    /**
+     * Loads a customer CSV with a header line, on the calling thread.
+     */
+    public static ColumnarCustomerRepository load(Path csvFile) throws IOException {
+        try (CSVReader reader = new CSVReader(new FileReader(csvFile.toFile()))) {
+            String[] headers = reader.readNext();
+            if (headers == null) {
+                throw new IOException("Empty customer file: " + csvFile);
+            }
+            Builder builder = new Builder(Arrays.asList(headers));
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                builder.addRow(row);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Loads a customer CSV with a header line, memory mapped and split across {@code parallelism} threads
+     * (0 means one per core). Quoted values may not contain line breaks.
+     */
+    public static ColumnarCustomerRepository loadParallel(Path csvFile, int parallelism) throws IOException {
+        return ParallelCsvParser.parse(csvFile, parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public int indexOf(String customerID) {
+        Integer row = idIndex.get(customerID);
+        return row == null ? -1 : row;
+    }
+
+    @Override
+    public String getCustomerId(int row) {
+        return customerIds[row];
+    }
+
+    @Override
+    public String getValue(int row, String column) {
+        Integer index = columnIndex.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown customer column: " + column);
+        }
+        return columns[index].get(row);
+    }
+
+    @Override
+    public Map<String, Object> getRow(int row) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            values.put(columnNames.get(i), columns[i].get(row));
+        }
+        return values;
+    }
+
+    @Override
+    public long getRowHash(int row) {
+        return rowHashes[row];
+    }
+
+    @Override
+    public int[] searchByCustomerId(String fragment) {
+        return trigramIndex.search(fragment, customerIds);
+    }
+
+    // 64-bit FNV-1a over the source text of every value, with a separator that cannot appear in a CSV value
+    private long hashRow(int row) {
+        long hash = 0xcbf29ce484222325L;
+        for (Column column : columns) {
+            String value = column.get(row);
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    Column[] columns() {
+        return columns;
+    }
+
+    String[] customerIds() {
+        return customerIds;
+    }
+
+    TrigramIndex trigramIndex() {
+        return trigramIndex;
+    }
+
+    /**
+     * One stored column; returns the value exactly as it appeared in the source file.
+     */
+    interface Column {
+        String get(int row);
+    }
+
+    static final class IdColumn implements Column {
+        private final String[] ids;
+
+        IdColumn(String[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int row) {
+            return ids[row];
+        }
+    }
+
+    /**
+     * Distinct values are stored once, rows hold a byte code (widened to int above 256 distinct values).
+     */
+    static final class DictionaryColumn implements Column {
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private byte[] byteCodes = new byte[1024];
+        private int[] intCodes;
+        private int size;
+
+        DictionaryColumn() {
+        }
+
+        /**
+         * Restores a column from its dictionary and codes, exactly one of which arrays is non-null.
+         */
+        DictionaryColumn(List<String> dictionary, byte[] byteCodes, int[] intCodes) {
+            for (String value : dictionary) {
+                codes.put(value, this.dictionary.size());
+                this.dictionary.add(value);
+            }
+            this.byteCodes = byteCodes;
+            this.intCodes = intCodes;
+            this.size = byteCodes != null ? byteCodes.length : intCodes.length;
+        }
+
+        void add(String value) {
+            addCode(codes.computeIfAbsent(value, v -> {
+                dictionary.add(v);
+                return dictionary.size() - 1;
+            }));
+        }
+
+        /**
+         * Appends all rows of {@code other}, translating its codes into this dictionary.
+         */
+        void addAll(DictionaryColumn other) {
+            int[] translated = new int[other.dictionary.size()];
+            for (int code = 0; code < translated.length; code++) {
+                String value = other.dictionary.get(code);
+                translated[code] = codes.computeIfAbsent(value, v -> {
+                    dictionary.add(v);
+                    return dictionary.size() - 1;
+                });
+            }
+            for (int row = 0; row < other.size; row++) {
+                addCode(translated[other.code(row)]);
+            }
+        }
+
+        private void addCode(int code) {
+            if (intCodes == null && code > 0xFF) {
+                intCodes = new int[byteCodes.length];
+                for (int i = 0; i < size; i++) {
+                    intCodes[i] = byteCodes[i] & 0xFF;
+                }
+                byteCodes = null;
+            }
+            if (intCodes != null) {
+                if (size == intCodes.length) {
+                    intCodes = Arrays.copyOf(intCodes, size * 2);
+                }
+                intCodes[size++] = code;
+            } else {
+                if (size == byteCodes.length) {
+                    byteCodes = Arrays.copyOf(byteCodes, size * 2);
+                }
+                byteCodes[size++] = (byte) code;
+            }
+        }
+
+        void trim() {
+            if (intCodes != null) {
+                intCodes = Arrays.copyOf(intCodes, size);
+            } else {
+                byteCodes = Arrays.copyOf(byteCodes, size);
+            }
+        }
+
+        int code(int row) {
+            return intCodes != null ? intCodes[row] : byteCodes[row] & 0xFF;
+        }
+
+        List<String> dictionary() {
+            return dictionary;
+        }
+
+        /**
+         * @return the codes, or null once they have been widened to {@link #intCodes()}
+         */
+        byte[] byteCodes() {
+            return byteCodes;
+        }
+
+        int[] intCodes() {
+            return intCodes;
+        }
+
+        @Override
+        public String get(int row) {
+            return dictionary.get(code(row));
+        }
+    }
+
+    /**
+     * Values are stored as doubles. Values that do not print back to the same text
+     * (blanks such as the empty TotalCharges, or unusual formatting) are kept verbatim on the side.
+     */
+    static final class NumericColumn implements Column {
+        private double[] values = new double[1024];
+        private final Map<Integer, String> verbatim = new HashMap<>();
+        private int size;
+
+        NumericColumn() {
+        }
+
+        NumericColumn(double[] values, Map<Integer, String> verbatim) {
+            this.values = values;
+            this.verbatim.putAll(verbatim);
+            this.size = values.length;
+        }
+
+        void add(String value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            double parsed = parse(value);
+            if (Double.isNaN(parsed) || !format(parsed).equals(value)) {
+                verbatim.put(size, value);
+                parsed = Double.NaN;
+            }
+            values[size++] = parsed;
+        }
+
+        void addAll(NumericColumn other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            other.verbatim.forEach((row, value) -> verbatim.put(size + row, value));
+            size += other.size;
+        }
+
+        void trim() {
+            values = Arrays.copyOf(values, size);
+        }
+
+        /**
+         * @return the stored values, NaN where {@link #verbatim()} holds the source text
+         */
+        double[] values() {
+            return values;
+        }
+
+        Map<Integer, String> verbatim() {
+            return verbatim;
+        }
+
+        /**
+         * @return the numeric value or NaN when the source value was not a plain number
+         */
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public String get(int row) {
+            double value = values[row];
+            return Double.isNaN(value) ? verbatim.get(row) : format(value);
+        }
+
+        private static double parse(String value) {
+            if (value.isBlank()) {
+                return Double.NaN;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        static String format(double value) {
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                return Long.toString((long) value);
+            }
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * Collects rows column by column, then freezes them into a repository.
+     */
+    public static final class Builder {
+        private final List<String> columnNames;
+        private final Column[] columns;
+        private final int idColumn;
+        private String[] customerIds = new String[1024];
+        private int size;
+
+        public Builder(List<String> columnNames) {
+            this.columnNames = List.copyOf(columnNames);
+            this.idColumn = columnNames.indexOf(ID_COLUMN);
+            if (idColumn < 0) {
+                throw new IllegalArgumentException("Customer data has no " + ID_COLUMN + " column: " + columnNames);
+            }
+            this.columns = new Column[columnNames.size()];
+            for (int i = 0; i < columns.length; i++) {
+                if (i != idColumn) {
+                    columns[i] = NUMERIC_COLUMNS.contains(columnNames.get(i)) ? new NumericColumn() : new DictionaryColumn();
+                }
+            }
+        }
+
+        public Builder addRow(String[] values) {
+            if (size == customerIds.length) {
+                customerIds = Arrays.copyOf(customerIds, size * 2);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                String value = i < values.length ? values[i] : "";
+                if (i == idColumn) {
+                    customerIds[size] = value;
+                } else if (columns[i] instanceof NumericColumn numeric) {
+                    numeric.add(value);
+                } else {
+                    ((DictionaryColumn) columns[i]).add(value);
+                }
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * Appends all rows collected by {@code other}, which must have the same columns.
+         * Lets chunks of a file be parsed into separate builders and joined in file order.
+         */
+        public Builder addAll(Builder other) {
+            if (!columnNames.equals(other.columnNames)) {
+                throw new IllegalArgumentException("Column mismatch: " + columnNames + " vs " + other.columnNames);
+            }
+            if (size + other.size > customerIds.length) {
+                customerIds = Arrays.copyOf(customerIds, Math.max(customerIds.length * 2, size + other.size));
+            }
+            System.arraycopy(other.customerIds, 0, customerIds, size, other.size);
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] instanceof NumericColumn numeric) {
+                    numeric.addAll((NumericColumn) other.columns[i]);
+                } else if (columns[i] instanceof DictionaryColumn dictionary) {
+                    dictionary.addAll((DictionaryColumn) other.columns[i]);
+                }
+            }
+            size += other.size;
+            return this;
+        }
+
+        public ColumnarCustomerRepository build() {
+            String[] ids = Arrays.copyOf(customerIds, size);
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] instanceof NumericColumn numeric) {
+                    numeric.trim();
+                } else if (columns[i] instanceof DictionaryColumn dictionary) {
+                    dictionary.trim();
+                } else {
+                    columns[i] = new IdColumn(ids);
+                }
+            }
+            return new ColumnarCustomerRepository(columnNames, columns, ids);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ai.churnprediction.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Loads the customer file: from the binary snapshot when it matches the CSV, otherwise by parsing the CSV and
+ * writing a new snapshot for the next start.
+ */
+@Slf4j
+public final class CustomerLoader {
+
+    private CustomerLoader() {
+    }
+
+    /**
+     * @param snapshot    binary copy of the CSV, null to always parse the CSV
+     * @param parallelism threads parsing the CSV, 0 means one per core
+     */
+    public static ColumnarCustomerRepository load(Path csvFile, Path snapshot, int parallelism) throws IOException {
+        return load(csvFile, CustomerSnapshot.Source.of(csvFile), snapshot, parallelism);
+    }
+
+    /**
+     * @param source state of {@code csvFile} taken by the caller, so the file is not read once more to hash it
+     */
+    public static ColumnarCustomerRepository load(Path csvFile, CustomerSnapshot.Source source, Path snapshot,
+                                                  int parallelism) throws IOException {
+        long start = System.currentTimeMillis();
+
+        if (snapshot != null) {
+            try {
+                Optional<ColumnarCustomerRepository> restored = CustomerSnapshot.read(snapshot, source);
+                if (restored.isPresent()) {
+                    log.info("Loaded {} customers from snapshot {} in {} ms",
+                            restored.get().size(), snapshot, System.currentTimeMillis() - start);
+                    return restored.get();
+                }
+                log.info("No up-to-date customer snapshot at {}, parsing {}", snapshot, csvFile);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable customer snapshot {}", snapshot, e);
+            }
+        }
+
+        ColumnarCustomerRepository repository;
+        try {
+            repository = ColumnarCustomerRepository.loadParallel(csvFile, parallelism);
+        } catch (IOException e) {
+            log.warn("Parallel parsing of {} failed, falling back to sequential parsing", csvFile, e);
+            repository = ColumnarCustomerRepository.load(csvFile);
+        }
+        log.info("Loaded {} customers in {} ms", repository.size(), System.currentTimeMillis() - start);
+
+        if (snapshot != null) {
+            try {
+                if (CustomerSnapshot.write(repository, source, snapshot)) {
+                    log.info("Wrote customer snapshot {}", snapshot);
+                } else {
+                    log.warn("{} customers are too many for a snapshot, {} is parsed on every start",
+                            repository.size(), csvFile);
+                }
+            } catch (IOException e) {
+                log.warn("Could not write customer snapshot {}", snapshot, e);
+            }
+        }
+        return repository;
+    }
+}
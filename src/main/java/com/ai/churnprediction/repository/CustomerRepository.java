@@ -0,0 +1,59 @@
+package com.ai.churnprediction.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read access to the customer base shown in the UI and scored by the service.
+ * Customers are addressed by a stable row index in {@code [0, size())}, in file order.
+ */
+public interface CustomerRepository {
+
+    int size();
+
+    /**
+     * @return the CSV header, in file order
+     */
+    List<String> getColumnNames();
+
+    /**
+     * @return the row index of the customer or -1 when unknown
+     */
+    int indexOf(String customerID);
+
+    String getCustomerId(int row);
+
+    /**
+     * @return the value of one column, exactly as it appeared in the source file
+     */
+    String getValue(int row, String column);
+
+    /**
+     * @return the customer as a column name to value map, in the order of {@link #getColumnNames()}
+     */
+    Map<String, Object> getRow(int row);
+
+    /**
+     * @return a 64-bit hash of all values of the row, equal for rows with equal values
+     */
+    long getRowHash(int row);
+
+    /**
+     * @return a repository whose rows do not change while the caller uses it, so row indices taken from it stay
+     * valid; this repository itself unless it can be refreshed
+     */
+    default CustomerRepository snapshot() {
+        return this;
+    }
+
+    default Optional<Map<String, Object>> findById(String customerID) {
+        int row = indexOf(customerID);
+        return row < 0 ? Optional.empty() : Optional.of(getRow(row));
+    }
+
+    /**
+     * @return row indices, ascending, of all customers whose customerID contains {@code fragment}
+     */
+    int[] searchByCustomerId(String fragment);
+}
@@ -0,0 +1,343 @@
+package com.ai.churnprediction.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of a {@link ColumnarCustomerRepository}, so a restart maps one file instead of parsing the CSV again.
+ * <p>
+ * Layout (big endian): magic, format version, size, modification time and CRC32C of the source CSV, row and
+ * column counts, then every column in its stored form (customerIDs as one UTF-8 block with offsets, dictionary
+ * columns as dictionary plus codes, numeric columns as raw doubles plus the verbatim values), the trigram
+ * postings of the customerID search and a CRC32 of everything before it.
+ * <p>
+ * A snapshot written for another source file state or format version is stale and ignored;
+ * a snapshot that fails its checksum is rejected with an {@link IOException}. Snapshots are mapped as one buffer,
+ * so a repository whose snapshot would exceed {@value #MAX_SNAPSHOT_BYTES} bytes is not written at all.
+ */
+public final class CustomerSnapshot {
+
+    private static final byte[] MAGIC = "CUSTSNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = MAGIC.length + Integer.BYTES + 3 * Long.BYTES;
+    // Largest file a single MappedByteBuffer can hold
+    static final long MAX_SNAPSHOT_BYTES = Integer.MAX_VALUE;
+
+    private static final byte KIND_ID = 0;
+    private static final byte KIND_DICTIONARY = 1;
+    private static final byte KIND_NUMERIC = 2;
+
+    private CustomerSnapshot() {
+    }
+
+    /**
+     * Identifies the state of the source CSV a snapshot was built from. Size and modification time alone miss an
+     * edit that keeps the size within one mtime tick, or a file copied in with its timestamps preserved, so the
+     * CRC32C of the whole content is part of it. Reading the file once costs far less than parsing it.
+     */
+    public record Source(long size, long lastModified, long crc) {
+
+        public static Source of(Path csvFile) throws IOException {
+            long lastModified = Files.getLastModifiedTime(csvFile).toMillis();
+            CRC32C crc = new CRC32C();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+                while (channel.read(buffer.clear()) > 0) {
+                    size += buffer.flip().remaining();
+                    crc.update(buffer);
+                }
+            }
+            return new Source(size, lastModified, crc.getValue());
+        }
+    }
+
+    /**
+     * @return the repository stored in {@code snapshotFile}, or empty when the file is missing
+     * or was not built from {@code source} with the current format
+     * @throws IOException when the file is unreadable or corrupt
+     */
+    public static Optional<ColumnarCustomerRepository> read(Path snapshotFile, Source source) throws IOException {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Customer snapshot too large to map: " + snapshotFile);
+            }
+            if (fileSize < HEADER_BYTES + Long.BYTES) {
+                throw new IOException("Truncated customer snapshot: " + snapshotFile);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a customer snapshot: " + snapshotFile);
+            }
+            if (buffer.getInt() != FORMAT_VERSION
+                    || !source.equals(new Source(buffer.getLong(), buffer.getLong(), buffer.getLong()))) {
+                return Optional.empty();
+            }
+
+            int contentBytes = (int) fileSize - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, contentBytes));
+            if (crc.getValue() != buffer.getLong(contentBytes)) {
+                throw new IOException("Checksum mismatch in customer snapshot: " + snapshotFile);
+            }
+            return Optional.of(readColumns(buffer.limit(contentBytes)));
+        } catch (RuntimeException e) {
+            // Buffer underflow or inconsistent counts behind a valid checksum
+            throw new IOException("Malformed customer snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Writes {@code repository} to {@code snapshotFile}, replacing it atomically.
+     *
+     * @param source state of the CSV the repository was loaded from, taken before loading it
+     * @return false, without writing anything, when the snapshot would be too large to map
+     */
+    public static boolean write(ColumnarCustomerRepository repository, Source source, Path snapshotFile)
+            throws IOException {
+        if (minimumBytes(repository) > MAX_SNAPSHOT_BYTES) {
+            return false;
+        }
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            CheckedOutputStream checked = new CheckedOutputStream(Files.newOutputStream(temporary), new CRC32());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(source.size());
+                out.writeLong(source.lastModified());
+                out.writeLong(source.crc());
+                writeColumns(repository, out);
+                // The estimate leaves out the variable length strings; size() saturates at Integer.MAX_VALUE
+                if (out.size() + (long) Long.BYTES > MAX_SNAPSHOT_BYTES) {
+                    return false;
+                }
+                out.flush();
+                out.writeLong(checked.getChecksum().getValue());
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Size of the fixed width parts of a snapshot, a lower bound that needs no encoding
+    static long minimumBytes(ColumnarCustomerRepository repository) {
+        long rows = repository.size();
+        long bytes = HEADER_BYTES + 2L * Integer.BYTES + Long.BYTES;
+        for (ColumnarCustomerRepository.Column column : repository.columns()) {
+            if (column instanceof ColumnarCustomerRepository.DictionaryColumn dictionary) {
+                bytes += rows * (dictionary.byteCodes() != null ? Byte.BYTES : Integer.BYTES);
+            } else if (column instanceof ColumnarCustomerRepository.NumericColumn) {
+                bytes += rows * Double.BYTES;
+            } else {
+                bytes += (rows + 1) * Integer.BYTES;
+                for (String id : repository.customerIds()) {
+                    bytes += id.length();
+                }
+            }
+        }
+        Map<Long, int[]> postings = repository.trigramIndex().postings();
+        bytes += postings.size() * (long) (Long.BYTES + Integer.BYTES);
+        for (int[] postingRows : postings.values()) {
+            bytes += postingRows.length * (long) Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    private static void writeColumns(ColumnarCustomerRepository repository, DataOutputStream out) throws IOException {
+        List<String> columnNames = repository.getColumnNames();
+        ColumnarCustomerRepository.Column[] columns = repository.columns();
+        int rows = repository.size();
+        out.writeInt(rows);
+        out.writeInt(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            writeString(out, columnNames.get(i));
+            if (columns[i] instanceof ColumnarCustomerRepository.DictionaryColumn dictionary) {
+                out.writeByte(KIND_DICTIONARY);
+                out.writeInt(dictionary.dictionary().size());
+                for (String value : dictionary.dictionary()) {
+                    writeString(out, value);
+                }
+                if (dictionary.byteCodes() != null) {
+                    out.writeByte(Byte.BYTES);
+                    out.write(dictionary.byteCodes(), 0, rows);
+                } else {
+                    out.writeByte(Integer.BYTES);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeInt(dictionary.intCodes()[row]);
+                    }
+                }
+            } else if (columns[i] instanceof ColumnarCustomerRepository.NumericColumn numeric) {
+                out.writeByte(KIND_NUMERIC);
+                for (int row = 0; row < rows; row++) {
+                    out.writeDouble(numeric.values()[row]);
+                }
+                out.writeInt(numeric.verbatim().size());
+                for (Map.Entry<Integer, String> entry : numeric.verbatim().entrySet()) {
+                    out.writeInt(entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+            } else {
+                out.writeByte(KIND_ID);
+                writeIds(out, repository.customerIds());
+            }
+        }
+        writePostings(out, repository.trigramIndex().postings());
+    }
+
+    private static ColumnarCustomerRepository readColumns(ByteBuffer buffer) {
+        int rows = buffer.getInt();
+        int columnCount = buffer.getInt();
+        List<String> columnNames = new ArrayList<>(columnCount);
+        ColumnarCustomerRepository.Column[] columns = new ColumnarCustomerRepository.Column[columnCount];
+        String[] customerIds = null;
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.add(readString(buffer));
+            byte kind = buffer.get();
+            switch (kind) {
+                case KIND_DICTIONARY -> {
+                    int dictionarySize = buffer.getInt();
+                    List<String> dictionary = new ArrayList<>(dictionarySize);
+                    for (int code = 0; code < dictionarySize; code++) {
+                        dictionary.add(readString(buffer));
+                    }
+                    if (buffer.get() == Byte.BYTES) {
+                        byte[] codes = new byte[rows];
+                        buffer.get(codes);
+                        columns[i] = new ColumnarCustomerRepository.DictionaryColumn(dictionary, codes, null);
+                    } else {
+                        int[] codes = new int[rows];
+                        buffer.asIntBuffer().get(codes);
+                        buffer.position(buffer.position() + rows * Integer.BYTES);
+                        columns[i] = new ColumnarCustomerRepository.DictionaryColumn(dictionary, null, codes);
+                    }
+                }
+                case KIND_NUMERIC -> {
+                    double[] values = new double[rows];
+                    buffer.asDoubleBuffer().get(values);
+                    buffer.position(buffer.position() + rows * Double.BYTES);
+                    int verbatimCount = buffer.getInt();
+                    Map<Integer, String> verbatim = new HashMap<>();
+                    for (int v = 0; v < verbatimCount; v++) {
+                        verbatim.put(buffer.getInt(), readString(buffer));
+                    }
+                    columns[i] = new ColumnarCustomerRepository.NumericColumn(values, verbatim);
+                }
+                case KIND_ID -> {
+                    customerIds = readIds(buffer, rows);
+                    columns[i] = new ColumnarCustomerRepository.IdColumn(customerIds);
+                }
+                default -> throw new IllegalStateException("Unknown column kind " + kind);
+            }
+        }
+        if (customerIds == null) {
+            throw new IllegalStateException("Snapshot has no " + ColumnarCustomerRepository.ID_COLUMN + " column");
+        }
+        return new ColumnarCustomerRepository(columnNames, columns, customerIds, new TrigramIndex(readPostings(buffer)));
+    }
+
+    // Grams, then end offsets into one block of all their rows
+    private static void writePostings(DataOutputStream out, Map<Long, int[]> postings) throws IOException {
+        out.writeInt(postings.size());
+        for (Long gram : postings.keySet()) {
+            out.writeLong(gram);
+        }
+        int offset = 0;
+        out.writeInt(0);
+        for (int[] rows : postings.values()) {
+            offset += rows.length;
+            out.writeInt(offset);
+        }
+        for (int[] rows : postings.values()) {
+            for (int row : rows) {
+                out.writeInt(row);
+            }
+        }
+    }
+
+    private static Map<Long, int[]> readPostings(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        long[] grams = new long[count];
+        buffer.asLongBuffer().get(grams);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        int[] offsets = new int[count + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + offsets.length * Integer.BYTES);
+        int[] rows = new int[offsets[count]];
+        buffer.asIntBuffer().get(rows);
+        buffer.position(buffer.position() + rows.length * Integer.BYTES);
+        Map<Long, int[]> postings = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            postings.put(grams[i], Arrays.copyOfRange(rows, offsets[i], offsets[i + 1]));
+        }
+        return postings;
+    }
+
+    // All IDs as one UTF-8 block preceded by rows + 1 end offsets, so reading them back is two bulk copies
+    private static void writeIds(DataOutputStream out, String[] ids) throws IOException {
+        byte[][] encoded = new byte[ids.length][];
+        int offset = 0;
+        out.writeInt(0);
+        for (int row = 0; row < ids.length; row++) {
+            encoded[row] = ids[row].getBytes(StandardCharsets.UTF_8);
+            offset += encoded[row].length;
+            out.writeInt(offset);
+        }
+        for (byte[] id : encoded) {
+            out.write(id);
+        }
+    }
+
+    private static String[] readIds(ByteBuffer buffer, int rows) {
+        int[] offsets = new int[rows + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + offsets.length * Integer.BYTES);
+        byte[] block = new byte[offsets[rows]];
+        buffer.get(block);
+        String[] ids = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            ids[row] = new String(block, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+        }
+        return ids;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package com.ai.churnprediction.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Memory mapped CSV parser for customer files.
+ * The file is cut into byte ranges that end on a line break, every range is parsed into its own
+ * {@link ColumnarCustomerRepository.Builder} on a worker thread and the builders are joined in file order.
+ * <p>
+ * Values are separated by commas and may be quoted, with {@code ""} for a quote inside a quoted value.
+ * Quoted line breaks are rejected, since a range boundary could fall inside one. Empty lines are skipped.
+ */
+final class ParallelCsvParser {
+
+    // Mapped ranges stay well below the 2 GB limit of a single MappedByteBuffer
+    private static final long MAX_CHUNK_BYTES = 256L * 1024 * 1024;
+
+    private ParallelCsvParser() {
+    }
+
+    static ColumnarCustomerRepository parse(Path csvFile, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long headerEnd = lineEnd(channel, 0, fileSize);
+            if (headerEnd == 0) {
+                throw new IOException("Empty customer file: " + csvFile);
+            }
+            List<String> headers = new LineParser(channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd), csvFile, 0)
+                    .nextLine();
+
+            List<long[]> ranges = split(channel, headerEnd, fileSize, parallelism);
+            int threads = Math.max(1, Math.min(parallelism, ranges.size()));
+            ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "customer-csv-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<ColumnarCustomerRepository.Builder>> parts = new ArrayList<>();
+                for (long[] range : ranges) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                    parts.add(workers.submit(() -> parseRange(new LineParser(buffer, csvFile, range[0]), headers)));
+                }
+                ColumnarCustomerRepository.Builder builder = new ColumnarCustomerRepository.Builder(headers);
+                for (Future<ColumnarCustomerRepository.Builder> part : parts) {
+                    builder.addAll(part.get());
+                }
+                return builder.build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + csvFile, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("Failed to parse " + csvFile, e.getCause());
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    private static ColumnarCustomerRepository.Builder parseRange(LineParser parser, List<String> headers) throws IOException {
+        ColumnarCustomerRepository.Builder builder = new ColumnarCustomerRepository.Builder(headers);
+        List<String> values;
+        while ((values = parser.nextLine()) != null) {
+            builder.addRow(values.toArray(new String[0]));
+        }
+        return builder;
+    }
+
+    // Ranges [start, end) of roughly equal size, each ending right after a line break or at the end of the file
+    private static List<long[]> split(FileChannel channel, long from, long fileSize, int parallelism) throws IOException {
+        long bytes = fileSize - from;
+        long chunks = Math.max(parallelism, (bytes + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        long target = Math.max(1, bytes / chunks);
+        List<long[]> ranges = new ArrayList<>();
+        long start = from;
+        while (start < fileSize) {
+            long end = start + target >= fileSize ? fileSize : lineEnd(channel, start + target, fileSize);
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    // Position just after the first line break at or after `position`, or the file size
+    private static long lineEnd(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Splits the lines of one mapped range into values.
+     */
+    private static final class LineParser {
+        private final ByteBuffer buffer;
+        private final Path file;
+        private final long offset;
+        private byte[] value = new byte[256];
+
+        LineParser(ByteBuffer buffer, Path file, long offset) {
+            this.buffer = buffer;
+            this.file = file;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the values of the next non-empty line, null at the end of the range
+         */
+        List<String> nextLine() throws IOException {
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                int end = start;
+                while (end < buffer.limit() && buffer.get(end) != '\n') {
+                    end++;
+                }
+                buffer.position(Math.min(end + 1, buffer.limit()));
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                if (end > start) {
+                    return split(start, end);
+                }
+            }
+            return null;
+        }
+
+        private List<String> split(int start, int end) throws IOException {
+            List<String> values = new ArrayList<>(32);
+            int position = start;
+            while (true) {
+                int length = 0;
+                if (position < end && buffer.get(position) == '"') {
+                    position++;
+                    while (true) {
+                        if (position >= end) {
+                            throw new IOException("Unterminated quoted value at byte " + (offset + start) + " of " + file
+                                    + " (quoted line breaks are not supported)");
+                        }
+                        byte b = buffer.get(position++);
+                        if (b == '"') {
+                            if (position < end && buffer.get(position) == '"') {
+                                position++;
+                            } else {
+                                break;
+                            }
+                        }
+                        length = put(length, b);
+                    }
+                }
+                while (position < end && buffer.get(position) != ',') {
+                    length = put(length, buffer.get(position++));
+                }
+                values.add(new String(value, 0, length, StandardCharsets.UTF_8));
+                if (position >= end) {
+                    return values;
+                }
+                position++; // separator
+            }
+        }
+
+        private int put(int length, byte b) {
+            if (length == value.length) {
+                value = Arrays.copyOf(value, length * 2);
+            }
+            value[length] = b;
+            return length + 1;
+        }
+    }
+}
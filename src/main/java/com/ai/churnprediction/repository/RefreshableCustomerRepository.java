@@ -0,0 +1,70 @@
+package com.ai.churnprediction.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Customer repository whose content can be replaced by a newer load of the customer file.
+ * Every call is answered by the repository current at that moment; callers that use row indices across
+ * several calls take a {@link #snapshot()} first.
+ */
+public final class RefreshableCustomerRepository implements CustomerRepository {
+
+    private volatile ColumnarCustomerRepository current;
+
+    public RefreshableCustomerRepository(ColumnarCustomerRepository initial) {
+        this.current = initial;
+    }
+
+    @Override
+    public ColumnarCustomerRepository snapshot() {
+        return current;
+    }
+
+    /**
+     * Serves {@code next} from now on. Snapshots taken before keep the previous rows.
+     */
+    public void replace(ColumnarCustomerRepository next) {
+        current = next;
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return current.getColumnNames();
+    }
+
+    @Override
+    public int indexOf(String customerID) {
+        return current.indexOf(customerID);
+    }
+
+    @Override
+    public String getCustomerId(int row) {
+        return current.getCustomerId(row);
+    }
+
+    @Override
+    public String getValue(int row, String column) {
+        return current.getValue(row, column);
+    }
+
+    @Override
+    public Map<String, Object> getRow(int row) {
+        return current.getRow(row);
+    }
+
+    @Override
+    public long getRowHash(int row) {
+        return current.getRowHash(row);
+    }
+
+    @Override
+    public int[] searchByCustomerId(String fragment) {
+        return current.searchByCustomerId(fragment);
+    }
+}
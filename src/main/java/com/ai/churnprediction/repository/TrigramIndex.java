@@ -0,0 +1,109 @@
+package com.ai.churnprediction.repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Substring index over customerIDs.
+ * Every key is split into overlapping 3-character grams, each gram maps to the ascending rows containing it.
+ * A search only verifies the rows of the rarest gram of the query instead of scanning every key.
+ */
+final class TrigramIndex {
+
+    private static final int GRAM = 3;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final Map<Long, int[]> postings;
+
+    TrigramIndex(String[] keys) {
+        Map<Long, RowList> building = new HashMap<>();
+        for (int row = 0; row < keys.length; row++) {
+            String key = keys[row];
+            for (int i = 0; i + GRAM <= key.length(); i++) {
+                building.computeIfAbsent(gram(key, i), gram -> new RowList()).add(row);
+            }
+        }
+        Map<Long, int[]> frozen = new HashMap<>(building.size() * 4 / 3 + 1);
+        building.forEach((gram, rows) -> frozen.put(gram, rows.toArray()));
+        this.postings = frozen;
+    }
+
+    /**
+     * Restores an index from the postings of {@link #postings()}.
+     */
+    TrigramIndex(Map<Long, int[]> postings) {
+        this.postings = postings;
+    }
+
+    /**
+     * @return every gram packed as in {@link #gram(String, int)}, mapped to its ascending rows
+     */
+    Map<Long, int[]> postings() {
+        return postings;
+    }
+
+    /**
+     * @return ascending rows whose key contains {@code fragment}
+     */
+    int[] search(String fragment, String[] keys) {
+        if (fragment.length() < GRAM) {
+            return scan(fragment, keys);
+        }
+        int[] candidates = null;
+        for (int i = 0; i + GRAM <= fragment.length(); i++) {
+            int[] rows = postings.get(gram(fragment, i));
+            if (rows == null) {
+                return NO_ROWS;
+            }
+            if (candidates == null || rows.length < candidates.length) {
+                candidates = rows;
+            }
+        }
+        int[] matches = new int[candidates.length];
+        int count = 0;
+        for (int row : candidates) {
+            if (keys[row].contains(fragment)) {
+                matches[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private static int[] scan(String fragment, String[] keys) {
+        int[] matches = new int[16];
+        int count = 0;
+        for (int row = 0; row < keys.length; row++) {
+            if (keys[row].contains(fragment)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private static long gram(String s, int offset) {
+        return ((long) s.charAt(offset) << 32) | ((long) s.charAt(offset + 1) << 16) | s.charAt(offset + 2);
+    }
+
+    private static final class RowList {
+        private int[] rows = new int[4];
+        private int size;
+
+        void add(int row) {
+            if (size > 0 && rows[size - 1] == row) {
+                return; // gram repeated within the same key
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
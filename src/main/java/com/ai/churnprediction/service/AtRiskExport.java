@@ -0,0 +1,219 @@
+package com.ai.churnprediction.service;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.ai.churnprediction.util.AiUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Exports the customers most likely to churn, optionally ranked per segment such as Contract or PaymentMethod,
+ * as CSV: {@code [<segment>,]Rank,CustomerID,Probability}.
+ * <p>
+ * Customers are streamed from the customer file in chunks of {@code churn.export.chunk-size} rows, scored with
+ * batched forward passes of one model version and offered to a {@link SpillingTopK} per segment, so neither the
+ * file nor the scored customers have to fit in memory. All segments share one budget of
+ * {@code churn.export.max-in-memory} ranked customers; when it is used up, the largest ranking spills to disk.
+ * Rows that cannot be scored are skipped. Segments are written in alphabetical order, customers within a segment
+ * by descending probability.
+ */
+@Component
+@Slf4j
+public class AtRiskExport {
+
+    private static final String CUSTOMER_ID_COLUMN = "customerID";
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final Supplier<Function<List<Map<String, Object>>, ChurnPrediction.ItemPredictions>> scorers;
+    private final Path csvPath;
+    // Customers read from the file and scored per step
+    private final int chunkSize;
+    // Ranked customers kept in memory across all segments, more spill sorted runs to disk
+    private final int maxInMemory;
+    // Directory for the spilled runs, empty for the system temp directory
+    private final String spillDirectory;
+    // Distinct values of the segment column, so the number of rankings stays bounded
+    private final int maxSegments;
+
+    @Autowired
+    public AtRiskExport(ChurnPrediction churnPrediction,
+                        @Value("${churn.repository.csv-file:" + AiUtil.DATASET_PATH + "}") String csvPath,
+                        @Value("${churn.export.chunk-size:4096}") int chunkSize,
+                        @Value("${churn.export.max-in-memory:100000}") int maxInMemory,
+                        @Value("${churn.export.spill-directory:}") String spillDirectory,
+                        @Value("${churn.export.max-segments:1000}") int maxSegments) {
+        this(churnPrediction::pinnedItemScorer, Path.of(csvPath), chunkSize, maxInMemory, spillDirectory,
+                maxSegments);
+    }
+
+    /**
+     * @param scorers returns the scorer of one export, pinned to one model version
+     */
+    AtRiskExport(Supplier<Function<List<Map<String, Object>>, ChurnPrediction.ItemPredictions>> scorers,
+                 Path csvPath, int chunkSize, int maxInMemory, String spillDirectory, int maxSegments) {
+        this.scorers = scorers;
+        this.csvPath = csvPath;
+        this.chunkSize = chunkSize;
+        this.maxInMemory = maxInMemory;
+        this.spillDirectory = spillDirectory;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Writes the {@code top} customers of every segment to {@code out}, without closing it. Nothing is written
+     * before the whole file has been scored, so a failure leaves {@code out} untouched.
+     *
+     * @param segmentColumn column to rank separately per value, null or blank for one ranking
+     * @return the number of customers written
+     * @throws IllegalArgumentException when {@code top} is not positive, the segment column does not exist or has
+     *                                  more than {@code churn.export.max-segments} values
+     */
+    public long write(int top, String segmentColumn, OutputStream out) throws IOException {
+        if (top < 1) {
+            throw new IllegalArgumentException("top must be positive");
+        }
+        long start = System.currentTimeMillis();
+        Path spill = Path.of(spillDirectory.isBlank() ? System.getProperty("java.io.tmpdir") : spillDirectory);
+        Files.createDirectories(spill);
+        Map<String, SpillingTopK> rankings = new TreeMap<>();
+        SpillingTopK.MemoryBudget budget = new SpillingTopK.MemoryBudget(Math.max(1, maxInMemory));
+        try {
+            boolean segmented = segmentColumn != null && !segmentColumn.isBlank();
+            long[] counts = scan(top, segmented ? segmentColumn : null, spill, budget, rankings);
+            long written = writeRankings(segmented ? segmentColumn : null, rankings, out);
+            int runs = rankings.values().stream().mapToInt(SpillingTopK::spilledRuns).sum();
+            log.info("At-risk export of {} customers out of {} in {} segments in {} ms ({} skipped, {} spilled runs)",
+                    written, counts[0], rankings.size(), System.currentTimeMillis() - start, counts[1], runs);
+            return written;
+        } finally {
+            for (SpillingTopK ranking : rankings.values()) {
+                ranking.close();
+            }
+        }
+    }
+
+    // Returns the number of scanned and skipped rows
+    private long[] scan(int top, String segmentColumn, Path spill, SpillingTopK.MemoryBudget budget,
+                        Map<String, SpillingTopK> rankings) throws IOException {
+        Function<List<Map<String, Object>>, ChurnPrediction.ItemPredictions> scorer = scorers.get();
+        int step = Math.max(1, chunkSize);
+        long scanned = 0;
+        long skipped = 0;
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(csvPath, StandardCharsets.UTF_8))) {
+            String[] header = reader.readNext();
+            if (header == null) {
+                throw new IOException("Empty customer file: " + csvPath);
+            }
+            List<String> columns = Arrays.asList(header);
+            int idColumn = columns.indexOf(CUSTOMER_ID_COLUMN);
+            if (idColumn < 0) {
+                throw new IOException("No " + CUSTOMER_ID_COLUMN + " column in " + csvPath);
+            }
+            int segment = segmentColumn != null ? columns.indexOf(segmentColumn) : -1;
+            if (segmentColumn != null && segment < 0) {
+                throw new IllegalArgumentException("Unknown segment column " + segmentColumn);
+            }
+
+            List<String[]> rows = new ArrayList<>(step);
+            List<Map<String, Object>> payloads = new ArrayList<>(step);
+            boolean end = false;
+            while (!end) {
+                rows.clear();
+                payloads.clear();
+                while (rows.size() < step) {
+                    String[] row = reader.readNext();
+                    if (row == null) {
+                        end = true;
+                        break;
+                    }
+                    scanned++;
+                    if (row.length != header.length) {
+                        // Blank or malformed line
+                        skipped++;
+                        continue;
+                    }
+                    Map<String, Object> payload = new LinkedHashMap<>();
+                    for (int i = 0; i < header.length; i++) {
+                        payload.put(header[i], row[i]);
+                    }
+                    rows.add(row);
+                    payloads.add(payload);
+                }
+                if (rows.isEmpty()) {
+                    continue;
+                }
+
+                ChurnPrediction.ItemPredictions scored = scorer.apply(payloads);
+                for (int i = 0; i < rows.size(); i++) {
+                    double probability = scored.probabilities()[i];
+                    if (scored.errors()[i] != null || Double.isNaN(probability)) {
+                        skipped++;
+                        continue;
+                    }
+                    String key = segment >= 0 ? rows.get(i)[segment] : "";
+                    SpillingTopK ranking = rankings.get(key);
+                    if (ranking == null) {
+                        if (rankings.size() >= maxSegments) {
+                            throw new IllegalArgumentException("Segment column " + segmentColumn + " has more than "
+                                    + maxSegments + " values");
+                        }
+                        ranking = new SpillingTopK(top, budget, spill, SpillingTopK.DEFAULT_FAN_IN);
+                        rankings.put(key, ranking);
+                    }
+                    ranking.offer(rows.get(i)[idColumn], probability);
+                }
+            }
+        }
+        return new long[]{scanned, skipped};
+    }
+
+    private static long writeRankings(String segmentColumn, Map<String, SpillingTopK> rankings, OutputStream out)
+            throws IOException {
+        ReportWriter.LineBuffer buffer = new ReportWriter.LineBuffer(FLUSH_BYTES + 1024);
+        if (segmentColumn != null) {
+            buffer.appendText(segmentColumn);
+            buffer.append((byte) ',');
+        }
+        buffer.appendText("Rank,CustomerID,Probability");
+        buffer.append(LINE_SEPARATOR);
+        long written = 0;
+        for (Map.Entry<String, SpillingTopK> segment : rankings.entrySet()) {
+            long[] rank = {0};
+            segment.getValue().drain(ranked -> {
+                if (segmentColumn != null) {
+                    buffer.appendText(segment.getKey());
+                    buffer.append((byte) ',');
+                }
+                buffer.appendLong(++rank[0]);
+                buffer.append((byte) ',');
+                buffer.appendText(ranked.customerID());
+                buffer.append((byte) ',');
+                ReportWriter.appendProbability(buffer, ranked.probability());
+                buffer.append(LINE_SEPARATOR);
+                if (buffer.size() >= FLUSH_BYTES) {
+                    buffer.writeTo(out);
+                }
+            });
+            written += rank[0];
+        }
+        buffer.writeTo(out);
+        out.flush();
+        return written;
+    }
+}
@@ -1,111 +1,596 @@
 package com.ai.churnprediction.service;
 
-import com.ai.churnprediction.util.AiUtil;
+import com.ai.churnprediction.repository.CustomerRepository;
 import jakarta.annotation.PostConstruct;
-import jakarta.servlet.http.HttpServletResponse;
-import lombok.Getter;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.datavec.api.transform.TransformProcess;
-import org.datavec.api.transform.schema.Schema;
-import org.datavec.api.writable.Text;
-import org.datavec.api.writable.Writable;
-import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
-import org.deeplearning4j.util.ModelSerializer;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class ChurnPrediction {
-    private MultiLayerNetwork model;
-    private TransformProcess transformProcess;
-    private Schema inputSchema;
-    @Getter
-    private List<Map<String, Object>> fullData = new ArrayList<>();
+    // Model and transform currently serving, replaced as a pair on reload
+    private volatile ModelBundle bundle;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private PredictionCache predictionCache;
+    @Autowired
+    private PredictionBatcher predictionBatcher;
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    // Number of records transformed and scored together in one forward pass
+    @Value("${churn.scoring.batch-size:1024}")
+    private int scoringBatchSize;
+
+    // Categorical columns the index page can filter on
+    @Value("${churn.index.filter-columns:Contract,InternetService,PaymentMethod}")
+    private List<String> filterColumns;
+
+    // Sampled column orders per explanation, each costs one row per input column in the forward pass
+    @Value("${churn.explain.permutations:32}")
+    private int explainPermutations;
+
+    // Random known customers the explained customer is compared to
+    @Value("${churn.explain.background-size:100}")
+    private int backgroundSize;
+
+    // Top churn drivers precomputed per customer for the report, 0 to skip
+    @Value("${churn.explain.report-drivers:3}")
+    private int reportDrivers;
+
+    // Sampled column orders per customer for the report drivers
+    @Value("${churn.explain.report-permutations:4}")
+    private int reportPermutations;
+
+    private final ExecutorService cacheFiller = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("prediction-cache-fill").daemon().factory());
+    private final ExecutorService driverFiller = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("report-driver-fill").daemon().factory());
+
+    private static final long BACKGROUND_SEED = 123;
+    // Attribution of the current model, built on first use
+    private volatile VersionedAttribution attribution;
+    private final Object attributionLock = new Object();
+
+    private record VersionedAttribution(String modelVersion, FeatureAttribution attribution) {
+    }
+
+    public ChurnPrediction() {
+    }
+
+    // Serves `bundle` without a registry, for tests
+    ChurnPrediction(ModelBundle bundle, PredictionCache predictionCache, PredictionBatcher predictionBatcher,
+                    int scoringBatchSize) {
+        this.bundle = bundle;
+        this.predictionCache = predictionCache;
+        this.predictionBatcher = predictionBatcher;
+        this.scoringBatchSize = scoringBatchSize;
+    }
 
     @PostConstruct
     public void init() throws Exception {
-        // Load full dataset for UI
-        fullData = AiUtil.loadCsvData();
-        //
-        // Load trained model
-        model = ModelSerializer.restoreMultiLayerNetwork(new File("churn-model.zip"));
-        log.info("Model loaded successfully! {}", model.summary());
-        // Load TransformProcess from JSON
-        String json = Files.readString(new File("transformProcess.json").toPath());
-        transformProcess = TransformProcess.fromJson(json);
+        modelRegistry.start(this::activate);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cacheFiller.shutdownNow();
+        driverFiller.shutdownNow();
+    }
 
-        // Save schema for mapping incoming JSON
-        inputSchema = transformProcess.getInitialSchema();
-        log.info("TransformProcess loaded successfully! {}", transformProcess.getFinalSchema());
+    /**
+     * Serves {@code loaded} from now on and invalidates the prediction cache.
+     * Requests that already picked up the previous bundle finish on it.
+     * The probabilities of all known customers are then recomputed in the background.
+     */
+    private void activate(ModelBundle loaded) {
+        predictionCache.reset(loaded.getVersion());
+        bundle = loaded;
+        cacheFiller.execute(() -> fillCache(loaded));
+    }
+
+    public String getModelVersion() {
+        return bundle.getVersion();
+    }
+
+    private void fillCache(ModelBundle loaded) {
+        long start = System.currentTimeMillis();
+        try {
+            CustomerRepository customers = customerRepository.snapshot();
+            double[] probabilities = new double[customers.size()];
+            int chunkSize = Math.max(1, scoringBatchSize);
+            for (int from = 0; from < probabilities.length; from += chunkSize) {
+                int to = Math.min(from + chunkSize, probabilities.length);
+                double[] scores = predictChurnBatch(loaded, customerRows(customers, from, to));
+                System.arraycopy(scores, 0, probabilities, from, scores.length);
+            }
+            publishCustomers(loaded, customers, probabilities);
+            log.info("Cached and ranked predictions of {} customers for model {} in {} ms",
+                    probabilities.length, loaded.getVersion(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Prediction cache fill for model {} failed", loaded.getVersion(), e);
+        }
+    }
+
+    private void publishCustomers(ModelBundle loaded, CustomerRepository customers, double[] probabilities) {
+        predictionCache.putCustomers(loaded.getVersion(), customers, probabilities);
+        predictionCache.putScoreIndex(loaded.getVersion(), ScoreIndex.build(customers, probabilities, filterColumns));
+        if (reportDrivers > 0) {
+            driverFiller.execute(() -> fillDrivers(loaded, customers));
+        }
+    }
+
+    /**
+     * Computes the top churn drivers of every customer of {@code customers} for the report, reusing those of
+     * unchanged customers from the previous snapshot. Gives up when a newer model or snapshot was published.
+     */
+    private void fillDrivers(ModelBundle loaded, CustomerRepository customers) {
+        long start = System.currentTimeMillis();
+        try {
+            FeatureAttribution attribution = attribution(loaded);
+            int perCustomer = Math.min(reportDrivers, attribution.numColumns());
+            int permutations = Math.max(1, reportPermutations);
+            short[] drivers = new short[customers.size() * perCustomer];
+            Arrays.fill(drivers, (short) -1);
+            PredictionCache.CustomerDrivers previous = predictionCache.customerDrivers(loaded.getVersion());
+            boolean reusable = previous != null && previous.perCustomer() == perCustomer;
+
+            int[] pending = new int[customers.size()];
+            int count = 0;
+            for (int row = 0; row < customers.size(); row++) {
+                int previousRow = reusable ? previous.customers().indexOf(customers.getCustomerId(row)) : -1;
+                if (previousRow >= 0 && previous.customers().getRowHash(previousRow) == customers.getRowHash(row)) {
+                    System.arraycopy(previous.drivers(), previousRow * perCustomer, drivers, row * perCustomer,
+                            perCustomer);
+                } else {
+                    pending[count++] = row;
+                }
+            }
+
+            // Customers per forward pass, so a pass stays near churn.scoring.batch-size rows
+            int chunkSize = Math.max(1, scoringBatchSize / (1 + permutations * attribution.numColumns()));
+            int numFeatures = loaded.getNumFeatures();
+            for (int from = 0; from < count; from += chunkSize) {
+                if (bundle != loaded || customerRepository.snapshot() != customers) {
+                    return;
+                }
+                int to = Math.min(from + chunkSize, count);
+                double[] features = new double[(to - from) * numFeatures];
+                long[] seeds = new long[to - from];
+                for (int i = from; i < to; i++) {
+                    loaded.encode(customers.getRow(pending[i]), features, (i - from) * numFeatures);
+                    seeds[i - from] = customers.getCustomerId(pending[i]).hashCode();
+                }
+                FeatureAttribution.Attribution[] explained = attribution.explain(loaded::predict, features, to - from,
+                        permutations, seeds);
+                for (int i = from; i < to; i++) {
+                    int[] top = FeatureAttribution.topDrivers(explained[i - from].contributions(), perCustomer);
+                    for (int d = 0; d < top.length; d++) {
+                        drivers[pending[i] * perCustomer + d] = (short) top[d];
+                    }
+                }
+            }
+            predictionCache.putCustomerDrivers(loaded.getVersion(), new PredictionCache.CustomerDrivers(customers,
+                    attribution.getColumns(), perCustomer, drivers));
+            log.info("Computed churn drivers of {} of {} customers for model {} in {} ms", count, customers.size(),
+                    loaded.getVersion(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Churn driver fill for model {} failed", loaded.getVersion(), e);
+        }
+    }
+
+    /**
+     * Scores a refreshed customer file, reusing the cached probability of every row that did not change.
+     * Runs on the cache fill thread, so it never races with a fill for a new model.
+     *
+     * @param next          the refreshed customers
+     * @param previous      the snapshot {@code previousRows} refers to
+     * @param previousRows  for every row of {@code next}, the row of {@code previous} with the same customer and
+     *                      content, -1 for new and changed customers
+     * @param onScored      called with the model version and the probabilities of all rows of {@code next} before
+     *                      they are published
+     * @return the number of rows that went through the transform and the model
+     */
+    public int rescoreChanged(CustomerRepository next, CustomerRepository previous, int[] previousRows,
+                              BiConsumer<String, double[]> onScored) {
+        try {
+            return cacheFiller.submit(() -> {
+                ModelBundle current = bundle;
+                double[] cached = predictionCache.customerProbabilities(current.getVersion(), previous);
+                double[] probabilities = new double[next.size()];
+                int changed = rescore(next, cached, previousRows, Math.max(1, scoringBatchSize),
+                        payloads -> predictChurnBatch(current, payloads), probabilities);
+                onScored.accept(current.getVersion(), probabilities);
+                publishCustomers(current, next, probabilities);
+                return changed;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rescoring customers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rescoring customers failed", e.getCause());
+        }
+    }
+
+    /**
+     * Copies the cached probability of every unchanged row of {@code next} and scores the other rows in chunks.
+     *
+     * @param cached        probabilities of the previous snapshot, null to score every row
+     * @param probabilities filled with the probability of every row of {@code next}
+     * @return the number of rows that were scored
+     */
+    static int rescore(CustomerRepository next, double[] cached, int[] previousRows, int chunkSize,
+                       Function<List<Map<String, Object>>, double[]> scorer, double[] probabilities) {
+        int[] rows = new int[next.size()];
+        int changed = 0;
+        for (int row = 0; row < next.size(); row++) {
+            if (cached != null && previousRows[row] >= 0) {
+                probabilities[row] = cached[previousRows[row]];
+            } else {
+                rows[changed++] = row;
+            }
+        }
+        for (int from = 0; from < changed; from += chunkSize) {
+            int to = Math.min(from + chunkSize, changed);
+            List<Map<String, Object>> payloads = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                payloads.add(next.getRow(rows[i]));
+            }
+            double[] scores = scorer.apply(payloads);
+            for (int i = from; i < to; i++) {
+                probabilities[rows[i]] = scores[i - from];
+            }
+        }
+        return changed;
     }
 
     public double predictChurn(Map<String, Object> payload) {
-        if (payload.get("TotalCharges") == null || payload.get("TotalCharges").toString().trim().isEmpty()) {
-            payload.put("TotalCharges", 0.0);
+        return predictChurn(payload, true);
+    }
+
+    /**
+     * Same as {@link #predictChurn(Map)} without reading or filling the prediction cache, for synthetic payloads
+     * such as the warm-up's that would evict real entries and skew the hit ratio.
+     */
+    public double predictChurnUncached(Map<String, Object> payload) {
+        return predictChurn(payload, false);
+    }
+
+    private double predictChurn(Map<String, Object> payload, boolean useCache) {
+        ModelBundle current = bundle;
+        // Step 1 + 2: Convert JSON payload into features using the same TransformProcess as training
+        double[] features = new double[current.getNumFeatures()];
+        current.encode(payload, features, 0);
+
+        if (useCache) {
+            double cached = predictionCache.getPayload(current.getVersion(), features);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+        }
+        // Step 3: Predict, coalesced with concurrent requests when micro-batching is enabled
+        double probability = predictionBatcher.isEnabled()
+                ? predictionBatcher.predict(current, features)
+                : current.predict(features, 1)[0];
+        if (useCache) {
+            predictionCache.putPayload(current.getVersion(), features, probability);
         }
+        return probability;
+    }
 
-        // Step 1: Convert JSON payload into List<Writable> using schema
-        List<Writable> record = convertPayloadToWritable(payload);
+    /**
+     * @return the ranking of all customers by churn probability, null until the background fill has finished
+     */
+    public ScoreIndex getScoreIndex() {
+        return predictionCache.getScoreIndex(bundle.getVersion());
+    }
+
+    /**
+     * Predicts a known customer, served from the prediction cache once it has been filled.
+     *
+     * @return the churn probability or empty when the customer is unknown
+     */
+    public OptionalDouble predictCustomer(String customerID) {
+        CustomerRepository customers = customerRepository.snapshot();
+        int row = customers.indexOf(customerID);
+        if (row < 0) {
+            return OptionalDouble.empty();
+        }
+        ModelBundle current = bundle;
+        double cached = predictionCache.getCustomer(current.getVersion(), customers, row);
+        if (!Double.isNaN(cached)) {
+            return OptionalDouble.of(cached);
+        }
+        return OptionalDouble.of(predictChurnBatch(current, List.of(customers.getRow(row)))[0]);
+    }
+
+    /**
+     * Contribution of every input column to a churn probability, see {@link FeatureAttribution}.
+     *
+     * @param baseline      mean probability of the background customers; {@code baseline} plus all contributions
+     *                      is {@code probability}
+     * @param contributions the {@code top} columns with the largest absolute contribution, largest first
+     */
+    public record Explanation(String customerID, String modelVersion, double probability, double baseline,
+                              List<Contribution> contributions) {
+    }
+
+    /**
+     * @param value        the customer's value of {@code column}
+     * @param contribution how much the value moves the probability, positive towards churn
+     */
+    public record Contribution(String column, Object value, double contribution) {
+    }
+
+    /**
+     * Explains the probability of a known customer.
+     *
+     * @return the explanation or empty when the customer is unknown
+     */
+    public Optional<Explanation> explainCustomer(String customerID, int top) {
+        CustomerRepository customers = customerRepository.snapshot();
+        int row = customers.indexOf(customerID);
+        return row < 0 ? Optional.empty() : Optional.of(explain(bundle, customerID, customers.getRow(row), top));
+    }
+
+    /**
+     * Explains the probability of an ad-hoc record, with one batched forward pass over all perturbed rows.
+     */
+    public Explanation explain(Map<String, Object> payload, int top) {
+        Object customerID = payload.get("customerID");
+        return explain(bundle, customerID != null ? customerID.toString() : null, payload, top);
+    }
 
-        // Step 2: Apply the same TransformProcess as training
-        double[] features = convertRecordToFeatures(record);
+    private Explanation explain(ModelBundle current, String customerID, Map<String, Object> payload, int top) {
+        double[] features = new double[current.getNumFeatures()];
+        current.encode(payload, features, 0);
+        FeatureAttribution attribution = attribution(current);
+        // Seeded by the customer, so the same customer gets the same explanation
+        long seed = customerID != null ? customerID.hashCode() : Arrays.hashCode(features);
+        FeatureAttribution.Attribution result = attribution.explain(current::predict, features, 1,
+                Math.max(1, explainPermutations), new long[]{seed})[0];
+        String[] columns = attribution.getColumns();
+        List<Contribution> contributions = new ArrayList<>(columns.length);
+        for (int c = 0; c < columns.length; c++) {
+            contributions.add(new Contribution(columns[c], payload.get(columns[c]), result.contributions()[c]));
+        }
+        contributions.sort(Comparator.comparingDouble((Contribution c) -> Math.abs(c.contribution())).reversed());
+        return new Explanation(customerID, current.getVersion(), result.probability(), result.baseline(),
+                List.copyOf(contributions.subList(0, Math.max(0, Math.min(top, contributions.size())))));
+    }
+
+    /**
+     * @return the attribution of {@code current}, compared against {@code churn.explain.background-size} random
+     * known customers drawn once per model version, so explanations stay stable across customer refreshes
+     */
+    private FeatureAttribution attribution(ModelBundle current) {
+        VersionedAttribution cached = attribution;
+        if (cached != null && cached.modelVersion().equals(current.getVersion())) {
+            return cached.attribution();
+        }
+        synchronized (attributionLock) {
+            cached = attribution;
+            if (cached != null && cached.modelVersion().equals(current.getVersion())) {
+                return cached.attribution();
+            }
+            CustomerRepository customers = customerRepository.snapshot();
+            int numFeatures = current.getNumFeatures();
+            int rows = Math.min(Math.max(1, backgroundSize), customers.size());
+            double[] background;
+            if (rows == 0) {
+                // No known customers: all-zero inputs, the mean of standardized columns and no category set
+                rows = 1;
+                background = new double[numFeatures];
+            } else {
+                background = new double[rows * numFeatures];
+                SplittableRandom random = new SplittableRandom(BACKGROUND_SEED);
+                for (int i = 0; i < rows; i++) {
+                    current.encode(customers.getRow(random.nextInt(customers.size())), background, i * numFeatures);
+                }
+            }
+            FeatureAttribution created = new FeatureAttribution(featureNames(current), background, rows);
+            attribution = new VersionedAttribution(current.getVersion(), created);
+            return created;
+        }
+    }
+
+    /**
+     * Scores many records with one forward pass per chunk of {@code churn.scoring.batch-size} rows
+     * instead of one {@code model.output} call per record.
+     * Every row goes through the same transform as {@link #predictChurn(Map)}, so the features are identical.
+     * With the {@code float32} and {@code int8} engines every row is computed on its own and the probabilities are
+     * bit for bit those of {@link #predictChurn(Map)}. With ND4J the BLAS library may pick another kernel, and so
+     * another summation order, for one row than for a chunk, so they can differ in the last float bits.
+     *
+     * @param payloads records to score
+     * @return churn probabilities in the same order as {@code payloads}
+     */
+    public double[] predictChurnBatch(List<Map<String, Object>> payloads) {
+        return predictChurnBatch(bundle, payloads);
+    }
+
+    private double[] predictChurnBatch(ModelBundle current, List<Map<String, Object>> payloads) {
+        int numFeatures = current.getNumFeatures();
+        double[] probabilities = new double[payloads.size()];
+        int chunkSize = Math.max(1, scoringBatchSize);
+        for (int from = 0; from < payloads.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, payloads.size());
+            double[] chunk = new double[(to - from) * numFeatures];
+            for (int i = from; i < to; i++) {
+                current.encode(payloads.get(i), chunk, (i - from) * numFeatures);
+            }
+            double[] scores = current.predict(chunk, to - from);
+            System.arraycopy(scores, 0, probabilities, from, scores.length);
+        }
+        return probabilities;
+    }
 
-        // Step 3: Predict
-        return predictChurn(features);
+    /**
+     * Outcome of scoring many records that may fail individually.
+     *
+     * @param probabilities churn probability of every record, NaN where it failed
+     * @param errors        why a record failed, null where it was scored
+     */
+    public record ItemPredictions(String modelVersion, double[] probabilities, String[] errors) {
     }
 
-    public void getAllPredictions(HttpServletResponse response) throws IOException {
-        // Write CSV content
-        PrintWriter writer = response.getWriter();
-        writer.println("CustomerID,Prediction,Probability");
+    /**
+     * Like {@link #predictChurnBatch(List)}, but a record that cannot be encoded fails alone instead of failing
+     * the whole call. The records that could be encoded are scored with one forward pass per chunk.
+     */
+    public ItemPredictions predictChurnItems(List<Map<String, Object>> payloads) {
+        return predictChurnItems(bundle, payloads);
+    }
 
-        fullData.forEach(stringObjectMap -> {
-            double prob = predictChurn(stringObjectMap);
-            String label = prob >= 0.5 ? "Yes" : "No";
-            writer.printf("%s,%s,%.4f%n", stringObjectMap.get("customerID").toString(), label, prob);
-        });
-        writer.flush();
-        writer.close();
+    /**
+     * @return a function scoring records like {@link #predictChurnItems}, always with the model version current
+     * now, for jobs that score many chunks and must not mix versions
+     */
+    public Function<List<Map<String, Object>>, ItemPredictions> pinnedItemScorer() {
+        ModelBundle current = bundle;
+        return payloads -> predictChurnItems(current, payloads);
     }
 
-    private List<Writable> convertPayloadToWritable(Map<String, Object> payload) {
-        List<Writable> record = new ArrayList<>();
-        for (String col : inputSchema.getColumnNames()) {
-            Object value = payload.get(col);
-            if (value == null || value.toString().trim().isEmpty()) {
-                throw new RuntimeException("Missing or empty value for input column: " + col);
+    private ItemPredictions predictChurnItems(ModelBundle current, List<Map<String, Object>> payloads) {
+        int numFeatures = current.getNumFeatures();
+        double[] features = new double[payloads.size() * numFeatures];
+        double[] probabilities = new double[payloads.size()];
+        String[] errors = new String[payloads.size()];
+        int[] rows = new int[payloads.size()];
+        int valid = 0;
+        for (int i = 0; i < payloads.size(); i++) {
+            try {
+                current.encode(payloads.get(i), features, valid * numFeatures);
+                rows[valid++] = i;
+            } catch (RuntimeException e) {
+                probabilities[i] = Double.NaN;
+                errors[i] = e.getMessage();
             }
-            // Even if it's not used, still include it in the raw record
-            record.add(new Text(value.toString()));
         }
-        return record;
+        double[] scores = predictEncoded(current, features, valid);
+        for (int i = 0; i < valid; i++) {
+            probabilities[rows[i]] = scores[i];
+        }
+        return new ItemPredictions(current.getVersion(), probabilities, errors);
+    }
+
+    /**
+     * Scores rows that were already encoded by the caller, in the order of {@link #getFeatureNames()}.
+     *
+     * @param features row-major {@code [rows, numFeatures]} matrix
+     * @throws IllegalArgumentException when the rows do not have the width of the current model
+     */
+    public ItemPredictions predictEncoded(double[] features, int rows) {
+        ModelBundle current = bundle;
+        if (features.length != (long) rows * current.getNumFeatures()) {
+            throw new IllegalArgumentException("Model " + current.getVersion() + " expects "
+                    + current.getNumFeatures() + " features per row");
+        }
+        return new ItemPredictions(current.getVersion(), predictEncoded(current, features, rows), new String[rows]);
     }
 
-    private double[] convertRecordToFeatures(List<Writable> record) {
-        List<Writable> transformed = transformProcess.execute(record);
-        // Remove `churn` if it's a label or not needed for prediction
-        transformed.removeLast();
+    private double[] predictEncoded(ModelBundle current, double[] features, int rows) {
+        int numFeatures = current.getNumFeatures();
+        double[] probabilities = new double[rows];
+        int chunkSize = Math.max(1, scoringBatchSize);
+        for (int from = 0; from < rows; from += chunkSize) {
+            int to = Math.min(from + chunkSize, rows);
+            double[] chunk = from == 0 && to * numFeatures == features.length
+                    ? features : Arrays.copyOfRange(features, from * numFeatures, to * numFeatures);
+            double[] scores = current.predict(chunk, to - from);
+            System.arraycopy(scores, 0, probabilities, from, scores.length);
+        }
+        return probabilities;
+    }
+
+    public int getNumFeatures() {
+        return bundle.getNumFeatures();
+    }
+
+    /**
+     * @return names of the model inputs after the transform, e.g. {@code Contract[One year]}
+     */
+    public List<String> getFeatureNames() {
+        return featureNames(bundle);
+    }
 
-        //Convert List<Writable> to INDArray
-        return transformed.stream()
-                .mapToDouble(w -> Double.parseDouble(w.toString()))
-                .toArray();
+    private static List<String> featureNames(ModelBundle current) {
+        List<String> columns = current.getTransformProcess().getFinalSchema().getColumnNames();
+        // Without the `Churn` label
+        return columns.subList(0, columns.size() - 1);
     }
 
-    private double predictChurn(double[] features) {
-        // Create INDArray with shape [1, numFeatures]
-        INDArray input = Nd4j.create(features).reshape(1, features.length);
-        return model.output(input).getDouble(0);
+    /**
+     * Scores ranges of rows of one repository snapshot, all with the model version current when the scorer
+     * was created.
+     */
+    public interface CustomerScorer {
+        /**
+         * @return the snapshot the row indices refer to
+         */
+        CustomerRepository customers();
+
+        double[] score(int from, int to);
+
+        /**
+         * @return the top churn drivers of {@code row} joined by {@code |}, empty until they are computed
+         */
+        String topDrivers(int row);
+    }
+
+    /**
+     * @return a scorer bound to the current model and customers that serves from the prediction cache when it
+     * is filled
+     */
+    public CustomerScorer customerScorer() {
+        ModelBundle current = bundle;
+        CustomerRepository customers = customerRepository.snapshot();
+        double[] cached = predictionCache.customerProbabilities(current.getVersion(), customers);
+        PredictionCache.CustomerDrivers drivers = predictionCache.customerDrivers(current.getVersion());
+        boolean driversCurrent = drivers != null && drivers.customers() == customers;
+        return new CustomerScorer() {
+            @Override
+            public CustomerRepository customers() {
+                return customers;
+            }
+
+            @Override
+            public double[] score(int from, int to) {
+                return cached != null
+                        ? Arrays.copyOfRange(cached, from, to)
+                        : predictChurnBatch(current, customerRows(customers, from, to));
+            }
+
+            @Override
+            public String topDrivers(int row) {
+                return driversCurrent ? drivers.format(row) : "";
+            }
+        };
+    }
+
+    private static List<Map<String, Object>> customerRows(CustomerRepository customers, int from, int to) {
+        List<Map<String, Object>> rows = new ArrayList<>(to - from);
+        for (int row = from; row < to; row++) {
+            rows.add(customers.getRow(row));
+        }
+        return rows;
     }
 }
@@ -0,0 +1,74 @@
+package com.ai.churnprediction.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded feed of customers whose prediction changed because the customer file was refreshed.
+ * Every change gets a sequence number; consumers poll with the last sequence they have seen. Once the feed
+ * has dropped changes a consumer has not seen, or the model changed, the consumer has to read the full report.
+ */
+@Component
+public class CustomerChangeLog {
+
+    public enum Type {
+        ADDED, CHANGED, REMOVED
+    }
+
+    /**
+     * @param probability churn probability with {@code modelVersion}, null for removed customers
+     */
+    public record Change(long sequence, Instant at, String customerID, Type type, Double probability,
+                         String modelVersion) {
+    }
+
+    /**
+     * @param latestSequence sequence of the newest change, to poll with next time
+     * @param complete       false when changes after {@code since} were already dropped from the feed or the
+     *                       service restarted since
+     */
+    public record Changes(long latestSequence, boolean complete, List<Change> changes) {
+    }
+
+    // Changes kept for consumers, older ones are dropped first
+    private final int maxChanges;
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private long sequence;
+
+    public CustomerChangeLog(@Value("${churn.repository.change-log-size:100000}") int maxChanges) {
+        this.maxChanges = maxChanges;
+    }
+
+    public synchronized void add(String customerID, Type type, Double probability, String modelVersion, Instant at) {
+        changes.addLast(new Change(++sequence, at, customerID, type, probability, modelVersion));
+        while (changes.size() > Math.max(1, maxChanges)) {
+            changes.removeFirst();
+        }
+    }
+
+    /**
+     * @return up to {@code limit} changes with a sequence above {@code since}, oldest first
+     */
+    public synchronized Changes since(long since, int limit) {
+        // A `since` above the newest sequence comes from before a restart
+        boolean complete = since <= sequence
+                && (changes.isEmpty() ? since == sequence : changes.peekFirst().sequence() <= since + 1);
+        List<Change> result = new ArrayList<>(Math.min(limit, changes.size()));
+        for (Change change : changes) {
+            if (change.sequence() > since) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(change);
+            }
+        }
+        long latest = result.isEmpty() ? sequence : result.getLast().sequence();
+        return new Changes(latest, complete, result);
+    }
+}
@@ -0,0 +1,171 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.repository.ColumnarCustomerRepository;
+import com.ai.churnprediction.repository.CustomerLoader;
+import com.ai.churnprediction.repository.CustomerRepository;
+import com.ai.churnprediction.repository.CustomerSnapshot;
+import com.ai.churnprediction.repository.RefreshableCustomerRepository;
+import com.ai.churnprediction.util.AiUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks up a refreshed customer file and scores only the customers that changed.
+ * <p>
+ * The new file is loaded next to the served one and diffed by customerID and row content hash. Customers whose
+ * row is unchanged keep their cached probability; only new and changed customers go through the transform and
+ * the model. The new customers and probabilities are then swapped in, and every added, changed and removed
+ * customer is appended to the {@link CustomerChangeLog}.
+ */
+@Component
+@Slf4j
+public class CustomerRefresher {
+
+    /**
+     * @param rescored customers that went through the transform and the model, all of them when the predictions
+     *                 of the previous file were not cached yet
+     */
+    public record RefreshResult(int customers, int added, int changed, int removed, int rescored,
+                                long durationMillis) {
+    }
+
+    /**
+     * @param previousRows for every row of the new file, the row of the same, unchanged customer in the previous
+     *                     file, -1 for added and changed customers
+     * @param removed      customers of the previous file missing from the new one
+     */
+    record Diff(int[] previousRows, int added, int changed, List<String> removed) {
+    }
+
+    @Autowired
+    private RefreshableCustomerRepository customerRepository;
+    @Autowired
+    private ChurnPrediction churnPrediction;
+    @Autowired
+    private CustomerChangeLog changeLog;
+
+    @Value("${churn.repository.csv-file:" + AiUtil.DATASET_PATH + "}")
+    private String csvPath;
+
+    @Value("${churn.repository.snapshot-file:customers.snapshot}")
+    private String snapshotFile;
+
+    @Value("${churn.repository.parse-parallelism:0}")
+    private int parseParallelism;
+
+    // How often the customer file is checked for changes, 0 to refresh only through /admin/customers/refresh
+    @Value("${churn.repository.refresh-interval-seconds:60}")
+    private long refreshIntervalSeconds;
+
+    private volatile CustomerSnapshot.Source loadedSource;
+    // Size, modification time and content hash seen by the previous poll, the file is refreshed once they stop
+    // changing. Hashing reads the file on every poll, which also catches edits that keep its size and mtime
+    private CustomerSnapshot.Source polledSource;
+    private ScheduledExecutorService poller;
+
+    @PostConstruct
+    public void start() throws IOException {
+        loadedSource = CustomerSnapshot.Source.of(Path.of(csvPath));
+        if (refreshIntervalSeconds > 0) {
+            poller = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("customer-refresher").daemon().factory());
+            poller.scheduleWithFixedDelay(this::refreshIfChanged, refreshIntervalSeconds, refreshIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the customer file now and applies the differences to the served customers.
+     */
+    public synchronized RefreshResult refresh() throws IOException {
+        long start = System.currentTimeMillis();
+        CustomerSnapshot.Source source = CustomerSnapshot.Source.of(Path.of(csvPath));
+        ColumnarCustomerRepository previous = customerRepository.snapshot();
+        ColumnarCustomerRepository next = CustomerLoader.load(Path.of(csvPath), source,
+                snapshotFile.isBlank() ? null : Path.of(snapshotFile), parseParallelism);
+
+        Diff diff = diff(previous, next);
+        int[] previousRows = diff.previousRows();
+
+        Instant at = Instant.now();
+        int rescored = churnPrediction.rescoreChanged(next, previous, previousRows, (modelVersion, probabilities) -> {
+            customerRepository.replace(next);
+            for (int row = 0; row < next.size(); row++) {
+                if (previousRows[row] < 0) {
+                    String customerID = next.getCustomerId(row);
+                    CustomerChangeLog.Type type = previous.indexOf(customerID) < 0
+                            ? CustomerChangeLog.Type.ADDED : CustomerChangeLog.Type.CHANGED;
+                    changeLog.add(customerID, type, probabilities[row], modelVersion, at);
+                }
+            }
+            diff.removed().forEach(customerID -> changeLog.add(customerID, CustomerChangeLog.Type.REMOVED, null,
+                    modelVersion, at));
+        });
+        loadedSource = source;
+
+        RefreshResult result = new RefreshResult(next.size(), diff.added(), diff.changed(), diff.removed().size(),
+                rescored, System.currentTimeMillis() - start);
+        log.info("Refreshed customers: {}", result);
+        return result;
+    }
+
+    // Matches customers by customerID and compares their rows by content hash
+    static Diff diff(CustomerRepository previous, CustomerRepository next) {
+        int[] previousRows = new int[next.size()];
+        int added = 0;
+        int changed = 0;
+        for (int row = 0; row < next.size(); row++) {
+            int previousRow = previous.indexOf(next.getCustomerId(row));
+            if (previousRow < 0) {
+                added++;
+                previousRows[row] = -1;
+            } else if (previous.getRowHash(previousRow) != next.getRowHash(row)) {
+                changed++;
+                previousRows[row] = -1;
+            } else {
+                previousRows[row] = previousRow;
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (int row = 0; row < previous.size(); row++) {
+            if (next.indexOf(previous.getCustomerId(row)) < 0) {
+                removed.add(previous.getCustomerId(row));
+            }
+        }
+        return new Diff(previousRows, added, changed, removed);
+    }
+
+    private void refreshIfChanged() {
+        try {
+            CustomerSnapshot.Source source = CustomerSnapshot.Source.of(Path.of(csvPath));
+            // Skip a file that is still being written
+            boolean settled = source.equals(polledSource);
+            polledSource = source;
+            if (settled && !source.equals(loadedSource)) {
+                refresh();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Customer refresh of {} failed, still serving the previous customers", csvPath, e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.ai.churnprediction.service;
+
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.activations.impl.ActivationReLU;
+import org.nd4j.linalg.activations.impl.ActivationSigmoid;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forward pass of a stack of dense layers in plain Java over {@code float} arrays.
+ * <p>
+ * The churn network is tiny (inputs, 32, 16, 1), so a {@code model.output} call spends far more time creating
+ * arrays and dispatching native ops than multiplying. Here the weights are copied out of the trained
+ * {@link MultiLayerNetwork} once, transposed so every output neuron reads one contiguous row, and a row is scored
+ * with unrolled dot products and no allocation besides one small scratch array.
+ * <p>
+ * Results stay within {@link #FLOAT_TOLERANCE} of {@code model.output} with float weights, the data type ND4J
+ * runs the network in. With {@code quantize}, weights are stored as int8 with one scale per output neuron, which
+ * shrinks them four times and keeps results within {@link #INT8_TOLERANCE}.
+ * Instances are immutable and can be shared by any number of threads.
+ */
+public final class DenseNetwork {
+
+    /**
+     * Largest difference to {@code model.output} with float weights.
+     */
+    public static final double FLOAT_TOLERANCE = 1e-5;
+    /**
+     * Largest difference to {@code model.output} with int8 weights.
+     */
+    public static final double INT8_TOLERANCE = 2e-2;
+
+    private enum Activation {IDENTITY, RELU, SIGMOID}
+
+    private final Dense[] layers;
+    private final int numInputs;
+    private final int scratchSize;
+    private final boolean quantized;
+
+    private DenseNetwork(List<Dense> layers, boolean quantized) {
+        this.layers = layers.toArray(new Dense[0]);
+        this.numInputs = this.layers[0].nIn;
+        this.scratchSize = layers.stream().mapToInt(layer -> layer.nOut).sum();
+        this.quantized = quantized;
+    }
+
+    /**
+     * Copies the weights of {@code model}.
+     *
+     * @param quantize whether to store the weights as int8
+     * @throws UnsupportedOperationException when a layer is not dense or uses another activation than
+     *                                       identity, ReLU or sigmoid, so callers can fall back to ND4J
+     */
+    public static DenseNetwork extract(MultiLayerNetwork model, boolean quantize) {
+        List<Dense> layers = new ArrayList<>();
+        for (Layer layer : model.getLayers()) {
+            org.deeplearning4j.nn.conf.layers.Layer conf = layer.conf().getLayer();
+            if (!(conf instanceof DenseLayer || conf instanceof OutputLayer)) {
+                throw new UnsupportedOperationException("Not a dense layer: " + conf.getClass().getSimpleName());
+            }
+            if (conf instanceof DenseLayer dense && dense.hasLayerNorm() || !layer.paramTable().containsKey("b")) {
+                throw new UnsupportedOperationException("Dense layer without bias or with layer norm: " + conf.getLayerName());
+            }
+            Activation activation = activationOf(((BaseLayer) conf).getActivationFn());
+            // DL4J stores W as [nIn, nOut]
+            INDArray weights = layer.getParam("W");
+            int nIn = (int) weights.size(0);
+            int nOut = (int) weights.size(1);
+            float[] transposed = new float[nOut * nIn];
+            for (int o = 0; o < nOut; o++) {
+                for (int i = 0; i < nIn; i++) {
+                    transposed[o * nIn + i] = weights.getFloat(i, o);
+                }
+            }
+            float[] bias = layer.getParam("b").toFloatVector();
+            layers.add(quantize
+                    ? Dense.quantized(nIn, nOut, transposed, bias, activation)
+                    : new Dense(nIn, nOut, transposed, null, null, bias, activation));
+        }
+        if (layers.isEmpty()) {
+            throw new UnsupportedOperationException("Model without layers");
+        }
+        return new DenseNetwork(layers, quantize);
+    }
+
+    public int numInputs() {
+        return numInputs;
+    }
+
+    /**
+     * @return the largest documented difference to {@code model.output}
+     */
+    public double tolerance() {
+        return quantized ? INT8_TOLERANCE : FLOAT_TOLERANCE;
+    }
+
+    /**
+     * Scores a row-major {@code [rows, numInputs]} matrix.
+     *
+     * @return the first output of every row, the churn probability for the churn network
+     */
+    public double[] predict(double[] features, int rows) {
+        double[] probabilities = new double[rows];
+        float[] scratch = new float[numInputs + scratchSize];
+        for (int r = 0; r < rows; r++) {
+            probabilities[r] = predictRow(features, r * numInputs, scratch);
+        }
+        return probabilities;
+    }
+
+    private double predictRow(double[] features, int offset, float[] scratch) {
+        for (int i = 0; i < numInputs; i++) {
+            scratch[i] = (float) features[offset + i];
+        }
+        int in = 0;
+        int out = numInputs;
+        for (Dense layer : layers) {
+            layer.forward(scratch, in, out);
+            in = out;
+            out += layer.nOut;
+        }
+        return scratch[in];
+    }
+
+    private static Activation activationOf(IActivation activation) {
+        if (activation instanceof ActivationReLU) {
+            return Activation.RELU;
+        }
+        if (activation instanceof ActivationSigmoid) {
+            return Activation.SIGMOID;
+        }
+        if (activation instanceof ActivationIdentity) {
+            return Activation.IDENTITY;
+        }
+        throw new UnsupportedOperationException("Unsupported activation: " + activation);
+    }
+
+    /**
+     * One layer, weights row-major {@code [nOut, nIn]}. Exactly one of {@code weights} and {@code quantizedWeights}
+     * is set; a quantized weight times {@code scales[o]} is the original weight.
+     */
+    private record Dense(int nIn, int nOut, float[] weights, byte[] quantizedWeights, float[] scales, float[] bias,
+                         Activation activation) {
+
+        // Symmetric per-neuron quantization: the largest weight of a row maps to +-127
+        static Dense quantized(int nIn, int nOut, float[] weights, float[] bias, Activation activation) {
+            byte[] quantized = new byte[weights.length];
+            float[] scales = new float[nOut];
+            for (int o = 0; o < nOut; o++) {
+                float max = 0;
+                for (int i = 0; i < nIn; i++) {
+                    max = Math.max(max, Math.abs(weights[o * nIn + i]));
+                }
+                float scale = max > 0 ? max / 127f : 1f;
+                scales[o] = scale;
+                for (int i = 0; i < nIn; i++) {
+                    quantized[o * nIn + i] = (byte) Math.round(weights[o * nIn + i] / scale);
+                }
+            }
+            return new Dense(nIn, nOut, null, quantized, scales, bias, activation);
+        }
+
+        // Reads nIn values at `in`, writes nOut values at `out`
+        void forward(float[] scratch, int in, int out) {
+            for (int o = 0; o < nOut; o++) {
+                float sum = weights != null
+                        ? dot(weights, o * nIn, scratch, in, nIn)
+                        : dot(quantizedWeights, o * nIn, scratch, in, nIn) * scales[o];
+                scratch[out + o] = activate(sum + bias[o]);
+            }
+        }
+
+        private float activate(float x) {
+            return switch (activation) {
+                case RELU -> Math.max(0f, x);
+                case SIGMOID -> (float) (1.0 / (1.0 + Math.exp(-x)));
+                case IDENTITY -> x;
+            };
+        }
+
+        // Four independent accumulators so the additions do not wait on each other
+        private static float dot(float[] w, int wOffset, float[] x, int xOffset, int length) {
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                s0 += w[wOffset + i] * x[xOffset + i];
+                s1 += w[wOffset + i + 1] * x[xOffset + i + 1];
+                s2 += w[wOffset + i + 2] * x[xOffset + i + 2];
+                s3 += w[wOffset + i + 3] * x[xOffset + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += w[wOffset + i] * x[xOffset + i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        private static float dot(byte[] w, int wOffset, float[] x, int xOffset, int length) {
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                s0 += w[wOffset + i] * x[xOffset + i];
+                s1 += w[wOffset + i + 1] * x[xOffset + i + 1];
+                s2 += w[wOffset + i + 2] * x[xOffset + i + 2];
+                s3 += w[wOffset + i + 3] * x[xOffset + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += w[wOffset + i] * x[xOffset + i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+}
@@ -0,0 +1,580 @@
+package com.ai.churnprediction.service;
+
+import com.tdunning.math.stats.TDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.analysis.columns.CategoricalAnalysis;
+import org.datavec.api.transform.analysis.columns.ColumnAnalysis;
+import org.datavec.api.transform.analysis.columns.NumericalColumnAnalysis;
+import org.datavec.api.transform.schema.Schema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Compares the inputs and predictions of live requests with the training data, so drift away from the frozen
+ * normalization of the transform shows up before campaigns fail.
+ * <p>
+ * The baseline is the training {@link DataAnalysis} that {@code TrainModel} writes to {@code data-analysis.json}:
+ * histogram and moments of every numeric column and the count of every category. Live traffic is summarized in
+ * fixed-size sketches per column, so memory does not grow with the number of requests:
+ * <ul>
+ *     <li>Numeric columns: Welford mean and variance, counts in the training histogram buckets (plus one bucket
+ *     below and one above the training range) and a t-digest for quantiles. These are striped by thread, and a
+ *     stripe is only locked by the threads that map to it.</li>
+ *     <li>Categorical columns: one {@link LongAdder} per category plus one for unknown values, lock free.</li>
+ *     <li>The churn probability: a striped sketch over 20 buckets between 0 and 1.</li>
+ * </ul>
+ * The report merges the stripes and scores every column with the population stability index (PSI) and, for
+ * numeric columns, the Kolmogorov-Smirnov distance over the bucket edges. A column drifts once it has
+ * {@code churn.drift.min-samples} values and one score is above its threshold. Sketches cover the current and
+ * the previous window of {@code churn.drift.window-minutes}, so old traffic ages out; after an idle gap of two
+ * windows the old one is dropped instead of kept as the previous window. The analysis file is checked for changes
+ * on every report and at most every ten seconds while requests are recorded, so a retrained baseline is picked
+ * up without polling the report.
+ */
+@Component
+@Slf4j
+public class DriftMonitor {
+
+    private static final int OUTPUT_BUCKETS = 20;
+    private static final double DIGEST_COMPRESSION = 100;
+    // Smallest bucket share in PSI, so empty buckets do not make it infinite
+    private static final double MIN_SHARE = 1e-4;
+    private static final double[] QUANTILES = {0.05, 0.5, 0.95};
+    private static final double[] OUTPUT_EDGES = new double[OUTPUT_BUCKETS + 1];
+    private static final long RELOAD_CHECK_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    static {
+        for (int i = 0; i <= OUTPUT_BUCKETS; i++) {
+            OUTPUT_EDGES[i] = (double) i / OUTPUT_BUCKETS;
+        }
+    }
+
+    private final Path analysisFile;
+    private final long windowNanos;
+    private final long minSamples;
+    private final double psiThreshold;
+    private final double ksThreshold;
+    private final int stripes;
+
+    private volatile Tracking tracking;
+    private long analysisModified;
+    // Last periodic check of the analysis file by a recording thread
+    private final AtomicLong reloadCheckedNanos = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    public DriftMonitor(@Value("${churn.drift.analysis-file:data-analysis.json}") String analysisFile,
+                        @Value("${churn.drift.window-minutes:60}") long windowMinutes,
+                        @Value("${churn.drift.min-samples:500}") long minSamples,
+                        @Value("${churn.drift.psi-threshold:0.2}") double psiThreshold,
+                        @Value("${churn.drift.ks-threshold:0.1}") double ksThreshold) {
+        this(analysisFile.isBlank() ? null : Path.of(analysisFile), null, Duration.ofMinutes(windowMinutes),
+                minSamples, psiThreshold, ksThreshold);
+    }
+
+    DriftMonitor(Path analysisFile, DataAnalysis baseline, Duration window, long minSamples, double psiThreshold,
+                 double ksThreshold) {
+        this.analysisFile = analysisFile;
+        this.windowNanos = Math.max(1, window.toNanos());
+        this.minSamples = minSamples;
+        this.psiThreshold = psiThreshold;
+        this.ksThreshold = ksThreshold;
+        // Power of two, so a thread picks its stripe with a mask
+        this.stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        if (baseline != null) {
+            this.tracking = track(new Baseline("in memory", baseline));
+        } else {
+            reloadIfChanged();
+        }
+    }
+
+    /**
+     * Adds one scored request. Columns the baseline does not know are ignored.
+     */
+    public void record(Map<String, Object> payload, double probability) {
+        Tracking current = current(System.nanoTime());
+        if (current == null) {
+            return;
+        }
+        Window window = current.window;
+        int stripe = stripe();
+        Baseline baseline = current.baseline;
+        for (int i = 0; i < baseline.numeric.size(); i++) {
+            NumericBaseline column = baseline.numeric.get(i);
+            double value = toDouble(payload.get(column.name));
+            if (Double.isNaN(value)) {
+                window.numericInvalid[i].increment();
+            } else {
+                window.numeric[i][stripe].add(value);
+            }
+        }
+        for (int i = 0; i < baseline.categorical.size(); i++) {
+            CategoricalBaseline column = baseline.categorical.get(i);
+            Object value = payload.get(column.name);
+            Integer index = value == null ? null : column.index.get(value.toString());
+            window.categorical[i][index != null ? index : column.categories.size()].increment();
+        }
+        if (!Double.isNaN(probability)) {
+            window.output[stripe].add(probability);
+        }
+        window.requests.increment();
+    }
+
+    /**
+     * Adds the predictions of scored requests whose inputs are not available by column, such as encoded feature
+     * rows. Only the output distribution sees them; NaN marks rows that were not scored.
+     */
+    public void recordPredictions(double[] probabilities) {
+        Tracking current = current(System.nanoTime());
+        if (current == null) {
+            return;
+        }
+        Sketch output = current.window.output[stripe()];
+        for (double probability : probabilities) {
+            if (!Double.isNaN(probability)) {
+                output.add(probability);
+                current.window.requests.increment();
+            }
+        }
+    }
+
+    /**
+     * @param customerProbabilities probabilities of the known customers to compare the live predictions with,
+     *                              null when they are not scored yet
+     * @return drift scores of every column, empty when there is no training analysis
+     */
+    public DriftReport report(double[] customerProbabilities) {
+        reloadIfChanged();
+        Tracking current = current(System.nanoTime());
+        if (current == null) {
+            return new DriftReport(analysisFile == null ? null : analysisFile.toString(), null, 0, List.of(),
+                    List.of(), null);
+        }
+        List<Window> windows = current.previous == null
+                ? List.of(current.window) : List.of(current.previous, current.window);
+        Baseline baseline = current.baseline;
+
+        List<ColumnDrift> columns = new ArrayList<>();
+        List<String> drifting = new ArrayList<>();
+        for (int i = 0; i < baseline.numeric.size(); i++) {
+            NumericBaseline column = baseline.numeric.get(i);
+            int index = i;
+            Sketch live = merge(windows, window -> window.numeric[index]);
+            long invalid = windows.stream().mapToLong(window -> window.numericInvalid[index].sum()).sum();
+            double psi = psi(column.counts, live.buckets);
+            double ks = ks(column.counts, live.buckets);
+            boolean drift = live.count >= minSamples && (psi > psiThreshold || ks > ksThreshold);
+            columns.add(new ColumnDrift(column.name, "numeric", live.count, invalid, column.mean, live.mean(),
+                    column.stdev, live.stdev(), live.quantiles(), null, null, psi, ks, drift));
+            if (drift) {
+                drifting.add(column.name);
+            }
+        }
+        for (int i = 0; i < baseline.categorical.size(); i++) {
+            CategoricalBaseline column = baseline.categorical.get(i);
+            long[] live = new long[column.categories.size() + 1];
+            for (Window window : windows) {
+                for (int c = 0; c < live.length; c++) {
+                    live[c] += window.categorical[i][c].sum();
+                }
+            }
+            long samples = sum(live);
+            double psi = psi(column.counts, live);
+            boolean drift = samples >= minSamples && psi > psiThreshold;
+            columns.add(new ColumnDrift(column.name, "categorical", samples, live[live.length - 1], null, null,
+                    null, null, null, shares(column.categories, column.counts), shares(column.categories, live), psi,
+                    null, drift));
+            if (drift) {
+                drifting.add(column.name);
+            }
+        }
+
+        Sketch output = merge(windows, window -> window.output);
+        OutputDrift outputDrift;
+        if (customerProbabilities != null && customerProbabilities.length > 0) {
+            Sketch customers = new Sketch(OUTPUT_EDGES, DIGEST_COMPRESSION);
+            for (double probability : customerProbabilities) {
+                customers.add(probability);
+            }
+            double psi = psi(customers.buckets, output.buckets);
+            double ks = ks(customers.buckets, output.buckets);
+            boolean drift = output.count >= minSamples && (psi > psiThreshold || ks > ksThreshold);
+            outputDrift = new OutputDrift(output.count, output.mean(), output.quantiles(), customers.mean(), psi, ks,
+                    drift);
+            if (drift) {
+                drifting.add("probability");
+            }
+        } else {
+            outputDrift = new OutputDrift(output.count, output.mean(), output.quantiles(), null, null, null, false);
+        }
+        long requests = windows.stream().mapToLong(window -> window.requests.sum()).sum();
+        return new DriftReport(baseline.source, Instant.ofEpochMilli(windows.getFirst().startMillis), requests,
+                drifting, columns, outputDrift);
+    }
+
+    /**
+     * @param source   the training analysis compared with
+     * @param since    start of the oldest window in the report
+     * @param drifting columns (and {@code probability}) that drift
+     */
+    public record DriftReport(String source, Instant since, long requests, List<String> drifting,
+                              List<ColumnDrift> columns, OutputDrift output) {
+    }
+
+    /**
+     * @param invalid     values that were missing, not numeric or not a known category
+     * @param quantiles   live 5th, 50th and 95th percentile of numeric columns
+     * @param trainShares share of every category in training, then of unknown values
+     * @param liveShares  share of every category in live requests, then of unknown values
+     * @param ks          Kolmogorov-Smirnov distance, numeric columns only
+     */
+    public record ColumnDrift(String column, String type, long samples, long invalid, Double trainMean,
+                              Double liveMean, Double trainStdev, Double liveStdev, double[] quantiles,
+                              Map<String, Double> trainShares, Map<String, Double> liveShares, double psi, Double ks,
+                              boolean drifting) {
+    }
+
+    /**
+     * @param customerMean mean probability of the known customers, whose distribution {@code psi} and {@code ks}
+     *                     compare with
+     */
+    public record OutputDrift(long samples, double mean, double[] quantiles, Double customerMean, Double psi,
+                              Double ks, boolean drifting) {
+    }
+
+    /**
+     * Population stability index of {@code actual} against {@code expected}, both bucket counts.
+     */
+    static double psi(long[] expected, long[] actual) {
+        double expectedTotal = sum(expected);
+        double actualTotal = sum(actual);
+        if (expectedTotal == 0 || actualTotal == 0) {
+            return 0;
+        }
+        double psi = 0;
+        for (int i = 0; i < expected.length; i++) {
+            double e = Math.max(expected[i] / expectedTotal, MIN_SHARE);
+            double a = Math.max(actual[i] / actualTotal, MIN_SHARE);
+            psi += (a - e) * Math.log(a / e);
+        }
+        return psi;
+    }
+
+    /**
+     * Largest difference of the cumulative distributions of two bucket counts, read at the bucket edges.
+     */
+    static double ks(long[] expected, long[] actual) {
+        double expectedTotal = sum(expected);
+        double actualTotal = sum(actual);
+        if (expectedTotal == 0 || actualTotal == 0) {
+            return 0;
+        }
+        double expectedCumulative = 0;
+        double actualCumulative = 0;
+        double distance = 0;
+        for (int i = 0; i < expected.length; i++) {
+            expectedCumulative += expected[i];
+            actualCumulative += actual[i];
+            distance = Math.max(distance, Math.abs(expectedCumulative / expectedTotal
+                    - actualCumulative / actualTotal));
+        }
+        return distance;
+    }
+
+    // Tracking for a request at `now`, after the periodic reload check and window rotation; null without baseline
+    private Tracking current(long now) {
+        long checked = reloadCheckedNanos.get();
+        if (now - checked >= RELOAD_CHECK_NANOS && reloadCheckedNanos.compareAndSet(checked, now)) {
+            reloadIfChanged();
+        }
+        Tracking current = tracking;
+        if (current != null && now - current.window.startNanos >= windowNanos) {
+            current = rotate(now);
+        }
+        return current;
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().threadId() & (stripes - 1);
+    }
+
+    private synchronized Tracking rotate(long now) {
+        Tracking current = tracking;
+        if (current == null || now - current.window.startNanos < windowNanos) {
+            // Rotated or reloaded by another thread in the meantime
+            return current;
+        }
+        // A window that ended a whole window ago would report stale traffic next to the new one
+        Window previous = now - current.window.startNanos - windowNanos >= windowNanos ? null : current.window;
+        Tracking next = new Tracking(current.baseline, new Window(current.baseline, stripes), previous);
+        tracking = next;
+        return next;
+    }
+
+    private synchronized void reloadIfChanged() {
+        if (analysisFile == null) {
+            return;
+        }
+        try {
+            long modified = Files.exists(analysisFile) ? Files.getLastModifiedTime(analysisFile).toMillis() : 0;
+            if (modified == analysisModified) {
+                return;
+            }
+            analysisModified = modified;
+            if (modified == 0) {
+                log.warn("No training analysis {}, drift monitoring is off", analysisFile);
+                tracking = null;
+                return;
+            }
+            DataAnalysis analysis = DataAnalysis.fromJson(Files.readString(analysisFile));
+            tracking = track(new Baseline(analysisFile.toString(), analysis));
+            log.info("Monitoring drift against {} ({} numeric, {} categorical columns)", analysisFile,
+                    tracking.baseline.numeric.size(), tracking.baseline.categorical.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read training analysis {}, drift monitoring is off", analysisFile, e);
+            tracking = null;
+        }
+    }
+
+    private Tracking track(Baseline baseline) {
+        return new Tracking(baseline, new Window(baseline, stripes), null);
+    }
+
+    private static Sketch merge(List<Window> windows, Function<Window, Sketch[]> stripes) {
+        Sketch merged = null;
+        for (Window window : windows) {
+            for (Sketch stripe : stripes.apply(window)) {
+                synchronized (stripe) {
+                    if (merged == null) {
+                        merged = new Sketch(stripe.edges, DIGEST_COMPRESSION);
+                    }
+                    merged.merge(stripe);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static Map<String, Double> shares(List<String> categories, long[] counts) {
+        double total = sum(counts);
+        Map<String, Double> shares = new LinkedHashMap<>();
+        for (int c = 0; c < categories.size(); c++) {
+            shares.put(categories.get(c), total == 0 ? 0 : counts[c] / total);
+        }
+        if (counts.length > categories.size()) {
+            shares.put("(unknown)", total == 0 ? 0 : counts[categories.size()] / total);
+        }
+        return shares;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    // NaN for missing and non-numeric values
+    private static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value == null || value.toString().isBlank()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The baseline columns and the windows of live sketches, replaced as a whole on rotation or reload.
+     */
+    private record Tracking(Baseline baseline, Window window, Window previous) {
+    }
+
+    private record NumericBaseline(String name, double[] edges, long[] counts, double mean, double stdev) {
+    }
+
+    private record CategoricalBaseline(String name, List<String> categories, Map<String, Integer> index,
+                                       long[] counts) {
+    }
+
+    /**
+     * The columns of a training analysis that can be compared: numeric columns with a histogram and categorical
+     * columns. Bucket counts get an empty bucket below and above the training range, where live values may fall.
+     */
+    private static final class Baseline {
+        private final String source;
+        private final List<NumericBaseline> numeric = new ArrayList<>();
+        private final List<CategoricalBaseline> categorical = new ArrayList<>();
+
+        Baseline(String source, DataAnalysis analysis) {
+            this.source = source;
+            Schema schema = analysis.getSchema();
+            for (int i = 0; i < schema.numColumns(); i++) {
+                ColumnAnalysis column = analysis.getColumnAnalysis().get(i);
+                if (column instanceof NumericalColumnAnalysis numericColumn
+                        && numericColumn.getHistogramBuckets() != null
+                        && numericColumn.getHistogramBucketCounts() != null) {
+                    long[] trainCounts = numericColumn.getHistogramBucketCounts();
+                    long[] counts = new long[trainCounts.length + 2];
+                    System.arraycopy(trainCounts, 0, counts, 1, trainCounts.length);
+                    numeric.add(new NumericBaseline(schema.getName(i), numericColumn.getHistogramBuckets(), counts,
+                            numericColumn.getMean(), numericColumn.getSampleStdev()));
+                } else if (column instanceof CategoricalAnalysis categoricalColumn) {
+                    List<String> categories = new ArrayList<>(categoricalColumn.getMapOfCounts().keySet());
+                    Map<String, Integer> index = new LinkedHashMap<>();
+                    long[] counts = new long[categories.size() + 1];
+                    for (int c = 0; c < categories.size(); c++) {
+                        index.put(categories.get(c), c);
+                        counts[c] = categoricalColumn.getMapOfCounts().get(categories.get(c));
+                    }
+                    categorical.add(new CategoricalBaseline(schema.getName(i), List.copyOf(categories),
+                            Map.copyOf(index), counts));
+                }
+            }
+        }
+    }
+
+    /**
+     * Live sketches of one time window.
+     */
+    private static final class Window {
+        private final long startNanos = System.nanoTime();
+        private final long startMillis = System.currentTimeMillis();
+        // [column][stripe]
+        private final Sketch[][] numeric;
+        private final LongAdder[] numericInvalid;
+        // [column][category], the last one counts unknown values
+        private final LongAdder[][] categorical;
+        private final Sketch[] output;
+        private final LongAdder requests = new LongAdder();
+
+        Window(Baseline baseline, int stripes) {
+            numeric = new Sketch[baseline.numeric.size()][stripes];
+            numericInvalid = new LongAdder[baseline.numeric.size()];
+            for (int i = 0; i < numeric.length; i++) {
+                numericInvalid[i] = new LongAdder();
+                for (int s = 0; s < stripes; s++) {
+                    numeric[i][s] = new Sketch(baseline.numeric.get(i).edges, DIGEST_COMPRESSION);
+                }
+            }
+            categorical = new LongAdder[baseline.categorical.size()][];
+            for (int i = 0; i < categorical.length; i++) {
+                categorical[i] = new LongAdder[baseline.categorical.get(i).categories.size() + 1];
+                for (int c = 0; c < categorical[i].length; c++) {
+                    categorical[i][c] = new LongAdder();
+                }
+            }
+            output = new Sketch[stripes];
+            for (int s = 0; s < stripes; s++) {
+                output[s] = new Sketch(OUTPUT_EDGES, DIGEST_COMPRESSION);
+            }
+        }
+    }
+
+    /**
+     * Mergeable summary of a stream of values: Welford moments, counts per bucket of fixed edges (index 0 below
+     * the first edge, the last index above the last edge) and a t-digest. Guarded by its own monitor.
+     */
+    static final class Sketch {
+        private final double[] edges;
+        private final long[] buckets;
+        private final TDigest digest;
+        private long count;
+        private double mean;
+        private double m2;
+
+        Sketch(double[] edges, double compression) {
+            this.edges = edges;
+            this.buckets = new long[edges.length + 1];
+            this.digest = TDigest.createDigest(compression);
+        }
+
+        synchronized void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            buckets[bucket(value)]++;
+            digest.add(value);
+        }
+
+        // Called with the monitor of `other` held; `this` is only seen by the merging thread
+        void merge(Sketch other) {
+            if (other.count == 0) {
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+            count = total;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            digest.add(other.digest);
+        }
+
+        double mean() {
+            return count == 0 ? Double.NaN : mean;
+        }
+
+        double stdev() {
+            return count > 1 ? Math.sqrt(m2 / (count - 1)) : Double.NaN;
+        }
+
+        double[] quantiles() {
+            double[] values = new double[QUANTILES.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = count == 0 ? Double.NaN : digest.quantile(QUANTILES[i]);
+            }
+            return values;
+        }
+
+        // Bucket i + 1 holds [edges[i], edges[i + 1]), the last edge belongs to the last bucket in range
+        int bucket(double value) {
+            int last = edges.length - 1;
+            if (value < edges[0]) {
+                return 0;
+            }
+            if (value > edges[last]) {
+                return edges.length;
+            }
+            if (value == edges[last]) {
+                return last;
+            }
+            // Number of edges <= value
+            int low = 0;
+            int high = edges.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (edges[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
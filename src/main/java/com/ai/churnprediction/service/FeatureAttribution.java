@@ -0,0 +1,161 @@
+package com.ai.churnprediction.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Attributes a churn probability to the input columns with sampled Shapley values.
+ * <p>
+ * Model inputs are grouped back into the column they were encoded from, so the one-hot block
+ * {@code Contract[Month-to-month]}, {@code Contract[One year]}, ... is one player called {@code Contract}.
+ * For every sampled permutation of the columns, a background customer is turned into the explained customer one
+ * column at a time in permutation order, and the change in probability at each step is the marginal contribution
+ * of that column. Averaged over the permutations this estimates the (interventional) Shapley values, and the
+ * contributions of one explanation always add up exactly to the probability minus {@code baseline}, the mean
+ * probability of the background customers used.
+ * <p>
+ * All perturbed rows of one call are scored with a single {@link Model#predict} call: explaining a customer costs
+ * one batched forward pass of {@code permutations * columns} rows instead of as many single-row calls.
+ * The result only depends on the seed. Instances are immutable and can be shared by any number of threads.
+ */
+public final class FeatureAttribution {
+
+    /**
+     * The forward pass, e.g. {@code ModelBundle::predict}.
+     */
+    @FunctionalInterface
+    public interface Model {
+        double[] predict(double[] features, int rows);
+    }
+
+    /**
+     * @param contributions change of the probability per column, in {@link #getColumns()} order
+     */
+    public record Attribution(double probability, double baseline, double[] contributions) {
+    }
+
+    private final String[] columns;
+    // Model input indices of every column
+    private final int[][] columnFeatures;
+    private final int numFeatures;
+    private final double[] background;
+    private final int backgroundRows;
+
+    /**
+     * @param featureNames names of the model inputs; {@code Column[state]} names are grouped into {@code Column}
+     * @param background   row-major {@code [backgroundRows, numFeatures]} encoded customers the explained customer
+     *                     is compared to
+     */
+    public FeatureAttribution(List<String> featureNames, double[] background, int backgroundRows) {
+        if (backgroundRows < 1 || background.length != backgroundRows * featureNames.size()) {
+            throw new IllegalArgumentException("Expected at least one background row of " + featureNames.size()
+                    + " features");
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < featureNames.size(); i++) {
+            String name = featureNames.get(i);
+            int state = name.indexOf('[');
+            groups.computeIfAbsent(state > 0 ? name.substring(0, state) : name, column -> new ArrayList<>()).add(i);
+        }
+        this.columns = groups.keySet().toArray(new String[0]);
+        this.columnFeatures = groups.values().stream()
+                .map(indices -> indices.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+        this.numFeatures = featureNames.size();
+        this.background = background.clone();
+        this.backgroundRows = backgroundRows;
+    }
+
+    /**
+     * @return the input columns contributions are reported for
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    /**
+     * Explains {@code rows} encoded customers with one forward pass.
+     *
+     * @param features     row-major {@code [rows, numFeatures]} matrix
+     * @param permutations sampled column orders per customer, more give more stable contributions
+     * @param seeds        seed of the permutations and background rows of every customer
+     */
+    public Attribution[] explain(Model model, double[] features, int rows, int permutations, long[] seeds) {
+        int players = columns.length;
+        // Per customer: the customer itself, then `players` steps per permutation
+        int perCustomer = 1 + permutations * players;
+        double[] batch = new double[rows * perCustomer * numFeatures];
+        int[][] orders = new int[rows * permutations][];
+        for (int r = 0; r < rows; r++) {
+            int customer = r * perCustomer;
+            System.arraycopy(features, r * numFeatures, batch, customer * numFeatures, numFeatures);
+            SplittableRandom random = new SplittableRandom(seeds[r]);
+            for (int m = 0; m < permutations; m++) {
+                int[] order = shuffledColumns(random);
+                orders[r * permutations + m] = order;
+                int row = customer + 1 + m * players;
+                System.arraycopy(background, random.nextInt(backgroundRows) * numFeatures, batch,
+                        row * numFeatures, numFeatures);
+                // Step j has the first j columns of the order taken from the customer
+                for (int j = 1; j < players; j++) {
+                    System.arraycopy(batch, (row + j - 1) * numFeatures, batch, (row + j) * numFeatures, numFeatures);
+                    for (int feature : columnFeatures[order[j - 1]]) {
+                        batch[(row + j) * numFeatures + feature] = features[r * numFeatures + feature];
+                    }
+                }
+            }
+        }
+
+        double[] probabilities = model.predict(batch, rows * perCustomer);
+        Attribution[] attributions = new Attribution[rows];
+        for (int r = 0; r < rows; r++) {
+            int customer = r * perCustomer;
+            double probability = probabilities[customer];
+            double[] contributions = new double[players];
+            double baseline = 0;
+            for (int m = 0; m < permutations; m++) {
+                int[] order = orders[r * permutations + m];
+                int row = customer + 1 + m * players;
+                baseline += probabilities[row];
+                for (int j = 0; j < players; j++) {
+                    double after = j + 1 < players ? probabilities[row + j + 1] : probability;
+                    contributions[order[j]] += after - probabilities[row + j];
+                }
+            }
+            for (int c = 0; c < players; c++) {
+                contributions[c] /= permutations;
+            }
+            attributions[r] = new Attribution(probability, baseline / permutations, contributions);
+        }
+        return attributions;
+    }
+
+    /**
+     * @return up to {@code k} column indices with the largest positive contributions, largest first
+     */
+    public static int[] topDrivers(double[] contributions, int k) {
+        Integer[] indices = new Integer[contributions.length];
+        Arrays.setAll(indices, i -> i);
+        Arrays.sort(indices, (a, b) -> Double.compare(contributions[b], contributions[a]));
+        return Arrays.stream(indices).limit(k).filter(i -> contributions[i] > 0).mapToInt(Integer::intValue).toArray();
+    }
+
+    // Fisher-Yates shuffle of the column indices
+    private int[] shuffledColumns(SplittableRandom random) {
+        int[] order = new int[columns.length];
+        for (int i = 0; i < order.length; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+}
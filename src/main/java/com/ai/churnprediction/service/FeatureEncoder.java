@@ -0,0 +1,246 @@
+package com.ai.churnprediction.service;
+
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.metadata.CategoricalMetaData;
+import org.datavec.api.transform.metadata.ColumnMetaData;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.transform.categorical.CategoricalToIntegerTransform;
+import org.datavec.api.transform.transform.categorical.CategoricalToOneHotTransform;
+import org.datavec.api.transform.transform.categorical.StringToCategoricalTransform;
+import org.datavec.api.transform.transform.column.RemoveColumnsTransform;
+import org.datavec.api.transform.transform.doubletransform.ConvertToDouble;
+import org.datavec.api.transform.transform.doubletransform.StandardizeNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled form of the serving {@link TransformProcess}.
+ * Instead of wrapping every field in a {@code Text}, running each transform step and parsing the output
+ * {@code Writable}s back to numbers, the steps are resolved once into per-column index tables
+ * (one-hot columns) and mean/std constants (standardized columns). Features are then written straight
+ * into a caller supplied {@code double[]}.
+ * <p>
+ * The output is identical to {@code transformProcess.execute(record)} with the last (label) column removed.
+ * Only the steps used by {@code DatavecUtility.buildFullTransform} are supported; {@link #compile} throws
+ * {@link UnsupportedOperationException} for anything else so callers can fall back to the TransformProcess.
+ */
+public final class FeatureEncoder {
+
+    /**
+     * Looks up the raw value of an input column, e.g. {@code payload::get}.
+     */
+    @FunctionalInterface
+    public interface FieldSource {
+        Object get(String column);
+    }
+
+    private enum Kind {NUMERIC, STANDARDIZE, ONE_HOT, CATEGORY_INDEX}
+
+    private final Step[] steps;
+    private final int numFeatures;
+    private final String[] featureSources;
+
+    private FeatureEncoder(List<Step> steps) {
+        this.steps = steps.toArray(new Step[0]);
+        this.numFeatures = steps.stream().mapToInt(step -> step.width).sum();
+        this.featureSources = new String[numFeatures];
+        int offset = 0;
+        for (Step step : steps) {
+            Arrays.fill(featureSources, offset, offset + step.width, step.source);
+            offset += step.width;
+        }
+    }
+
+    /**
+     * Resolves all steps of the transform into encoder tables.
+     * The last column of the final schema is treated as the label and is not encoded.
+     *
+     * @throws UnsupportedOperationException if the transform contains a step the encoder does not know
+     */
+    public static FeatureEncoder compile(TransformProcess transformProcess) {
+        Schema schema = transformProcess.getInitialSchema();
+        List<Column> columns = new ArrayList<>();
+        for (String name : schema.getColumnNames()) {
+            columns.add(new Column(name, name, Kind.NUMERIC, null, 0, 1, -1));
+        }
+
+        for (DataAction action : transformProcess.getActionList()) {
+            Transform transform = action.getTransform();
+            if (transform == null) {
+                throw new UnsupportedOperationException("Unsupported transform action: " + action);
+            }
+            Schema next = transform.transform(schema);
+            columns = applyTransform(transform, columns, next);
+            schema = next;
+        }
+
+        // The label is always the last column of the final schema (see ChurnPrediction)
+        columns.removeLast();
+        return new FeatureEncoder(toSteps(columns));
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    /**
+     * @return for every feature index, the name of the input column it was derived from
+     */
+    public String[] featureSources() {
+        return featureSources.clone();
+    }
+
+    public void encode(Map<String, ?> payload, double[] out, int offset) {
+        encode((FieldSource) payload::get, out, offset);
+    }
+
+    /**
+     * Writes {@link #numFeatures()} values into {@code out} starting at {@code offset}.
+     */
+    public void encode(FieldSource source, double[] out, int offset) {
+        for (Step step : steps) {
+            Object value = source.get(step.source);
+            if (value == null || value.toString().trim().isEmpty()) {
+                throw new RuntimeException("Missing or empty value for input column: " + step.source);
+            }
+            switch (step.kind) {
+                case NUMERIC -> out[offset] = toDouble(value);
+                case STANDARDIZE -> out[offset] = (toDouble(value) - step.mean) / step.stdev;
+                case CATEGORY_INDEX -> out[offset] = stateIndex(step, value);
+                case ONE_HOT -> {
+                    Arrays.fill(out, offset, offset + step.width, 0.0);
+                    out[offset + stateIndex(step, value)] = 1.0;
+                }
+            }
+            offset += step.width;
+        }
+    }
+
+    private static int stateIndex(Step step, Object value) {
+        Integer index = step.states.get(value.toString());
+        if (index == null) {
+            throw new IllegalStateException("Unknown category \"" + value + "\" for column " + step.source
+                    + ", expected one of " + step.states.keySet());
+        }
+        return index;
+    }
+
+    // Same result as parsing new Text(value.toString()), without the string round trip for numbers
+    private static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    private static List<Column> applyTransform(Transform transform, List<Column> columns, Schema next) {
+        Map<String, Column> byName = new LinkedHashMap<>();
+        columns.forEach(column -> byName.put(column.name, column));
+        List<String> targets = transform instanceof RemoveColumnsTransform
+                ? List.of() : Arrays.asList(transform.columnNames());
+
+        List<Column> result = new ArrayList<>();
+        for (String name : next.getColumnNames()) {
+            Column column = byName.get(name);
+            if (column != null && !targets.contains(name)) {
+                result.add(column.rename(name));
+            } else if (transform instanceof StringToCategoricalTransform && column != null) {
+                ColumnMetaData metaData = next.getMetaData(name);
+                result.add(column.withStates(((CategoricalMetaData) metaData).getStateNames()));
+            } else if (transform instanceof CategoricalToIntegerTransform && column != null && column.states != null) {
+                result.add(column.with(Kind.CATEGORY_INDEX));
+            } else if (transform instanceof StandardizeNormalizer normalizer && column != null && column.kind == Kind.NUMERIC) {
+                result.add(column.standardized(normalizer.getMean(), normalizer.getStdev()));
+            } else if (transform instanceof ConvertToDouble && column != null && column.kind == Kind.NUMERIC) {
+                result.add(column);
+            } else if (transform instanceof CategoricalToOneHotTransform) {
+                Column categorical = byName.get(transform.columnName());
+                if (categorical == null || categorical.states == null) {
+                    throw new UnsupportedOperationException("One-hot column without categorical states: " + name);
+                }
+                String state = name.substring(categorical.name.length() + 1, name.length() - 1);
+                int stateIndex = categorical.states.indexOf(state);
+                result.add(new Column(name, categorical.source, Kind.ONE_HOT, categorical.states, 0, 1, stateIndex));
+            } else {
+                throw new UnsupportedOperationException("Unsupported transform for compiled encoding: " + transform);
+            }
+        }
+        return result;
+    }
+
+    // Collapses consecutive one-hot columns of the same source into a single block
+    private static List<Step> toSteps(List<Column> columns) {
+        List<Step> steps = new ArrayList<>();
+        int i = 0;
+        while (i < columns.size()) {
+            Column column = columns.get(i);
+            if (column.kind != Kind.ONE_HOT) {
+                steps.add(new Step(column.source, column.kind, 1, column.mean, column.stdev, indexStates(column.states)));
+                i++;
+                continue;
+            }
+            int width = 0;
+            Map<String, Integer> offsets = new HashMap<>();
+            while (i < columns.size() && columns.get(i).kind == Kind.ONE_HOT
+                    && columns.get(i).source.equals(column.source)) {
+                offsets.put(column.states.get(columns.get(i).stateIndex), width++);
+                i++;
+            }
+            if (width != column.states.size()) {
+                throw new UnsupportedOperationException("Partial one-hot block for column " + column.source);
+            }
+            steps.add(new Step(column.source, Kind.ONE_HOT, width, 0, 1, offsets));
+        }
+        return steps;
+    }
+
+    private static Map<String, Integer> indexStates(List<String> states) {
+        if (states == null) {
+            return null;
+        }
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < states.size(); i++) {
+            index.put(states.get(i), i);
+        }
+        return index;
+    }
+
+    /**
+     * One input column as it moves through the transform steps.
+     */
+    private record Column(String name, String source, Kind kind, List<String> states,
+                          double mean, double stdev, int stateIndex) {
+
+        Column rename(String newName) {
+            return new Column(newName, source, kind, states, mean, stdev, stateIndex);
+        }
+
+        Column withStates(List<String> newStates) {
+            if (kind != Kind.NUMERIC) {
+                throw new UnsupportedOperationException("Column " + name + " is already encoded");
+            }
+            return new Column(name, source, kind, List.copyOf(newStates), mean, stdev, stateIndex);
+        }
+
+        Column with(Kind newKind) {
+            return new Column(name, source, newKind, states, mean, stdev, stateIndex);
+        }
+
+        Column standardized(double newMean, double newStdev) {
+            return new Column(name, source, Kind.STANDARDIZE, states, newMean, newStdev, stateIndex);
+        }
+    }
+
+    /**
+     * One compiled encoding step writing {@code width} consecutive features.
+     */
+    private record Step(String source, Kind kind, int width, double mean, double stdev, Map<String, Integer> states) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.ai.churnprediction.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Customer records with the churn probabilities the model predicted for them at training time.
+ * Written next to the model by {@code TrainModel}; a model and transform pair is only served when it reproduces
+ * these probabilities, which catches a model deployed with the wrong transform or a half-written file.
+ * <p>
+ * The file is a CSV with the input columns of the transform followed by {@value #PROBABILITY_COLUMN}.
+ */
+public final class GoldenSample {
+
+    public static final String PROBABILITY_COLUMN = "churn_probability";
+
+    private final List<Map<String, Object>> payloads;
+    private final double[] probabilities;
+
+    private GoldenSample(List<Map<String, Object>> payloads, double[] probabilities) {
+        this.payloads = payloads;
+        this.probabilities = probabilities;
+    }
+
+    public static GoldenSample read(File file) throws IOException {
+        List<Map<String, Object>> payloads = new ArrayList<>();
+        List<Double> probabilities = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Empty golden sample: " + file);
+            }
+            List<String> columns = Arrays.asList(header.split(","));
+            int probabilityIndex = columns.indexOf(PROBABILITY_COLUMN);
+            if (probabilityIndex < 0) {
+                throw new IOException("No " + PROBABILITY_COLUMN + " column in " + file);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",", -1);
+                if (values.length != columns.size()) {
+                    throw new IOException("Expected " + columns.size() + " values in " + file + ": " + line);
+                }
+                Map<String, Object> payload = new LinkedHashMap<>();
+                for (int i = 0; i < values.length; i++) {
+                    if (i != probabilityIndex) {
+                        payload.put(columns.get(i), values[i]);
+                    }
+                }
+                payloads.add(payload);
+                probabilities.add(Double.parseDouble(values[probabilityIndex]));
+            }
+        }
+        return new GoldenSample(payloads, probabilities.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    /**
+     * @param columns       input columns, in the order of {@code rows}
+     * @param rows          raw values of every record
+     * @param probabilities predicted churn probability of every record
+     */
+    public static void write(File file, List<String> columns, List<String[]> rows, double[] probabilities)
+            throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", columns) + "," + PROBABILITY_COLUMN);
+            writer.newLine();
+            for (int i = 0; i < rows.size(); i++) {
+                writer.write(String.join(",", rows.get(i)) + "," + probabilities[i]);
+                writer.newLine();
+            }
+        }
+    }
+
+    public int size() {
+        return payloads.size();
+    }
+
+    /**
+     * @return copies of the records, safe to pass to code that modifies payloads
+     */
+    public List<Map<String, Object>> payloads() {
+        List<Map<String, Object>> copies = new ArrayList<>(payloads.size());
+        payloads.forEach(payload -> copies.add(new LinkedHashMap<>(payload)));
+        return copies;
+    }
+
+    /**
+     * Scores every record with {@code bundle} in one forward pass.
+     *
+     * @return the largest difference to the recorded probabilities
+     * @throws IllegalStateException when a probability differs by more than {@code tolerance}
+     */
+    public double verify(ModelBundle bundle, double tolerance) {
+        if (payloads.isEmpty()) {
+            return 0;
+        }
+        int numFeatures = bundle.getNumFeatures();
+        List<Map<String, Object>> records = payloads();
+        double[] features = new double[records.size() * numFeatures];
+        for (int i = 0; i < records.size(); i++) {
+            bundle.encode(records.get(i), features, i * numFeatures);
+        }
+        double[] actual = bundle.predict(features, records.size());
+        double maxDeviation = 0;
+        for (int i = 0; i < actual.length; i++) {
+            double deviation = Math.abs(actual[i] - probabilities[i]);
+            // NaN never passes
+            if (!(deviation <= tolerance)) {
+                throw new IllegalStateException(String.format(
+                        "Model %s predicts %.6f for golden record %d (%s), expected %.6f",
+                        bundle.getVersion(), actual[i], i, records.get(i).get("customerID"), probabilities[i]));
+            }
+            maxDeviation = Math.max(maxDeviation, deviation);
+        }
+        return maxDeviation;
+    }
+}
@@ -0,0 +1,59 @@
+package com.ai.churnprediction.service;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed pool of model replicas for concurrent inference.
+ * A {@link MultiLayerNetwork} keeps per-call layer state (inputs, activations, masks), so one instance must not
+ * run {@code output} on several threads at once. Every replica has its own layers but shares the parameter
+ * array of the trained model, which inference only reads, so extra replicas cost almost no memory.
+ * A caller borrows a replica for the duration of one forward pass.
+ */
+public final class InferencePool {
+
+    private final BlockingQueue<MultiLayerNetwork> replicas;
+    private final int size;
+
+    /**
+     * @param replicas number of forward passes that can run at the same time, 0 means one per core
+     */
+    public InferencePool(MultiLayerNetwork model, int replicas) {
+        this.size = replicas > 0 ? replicas : Runtime.getRuntime().availableProcessors();
+        this.replicas = new ArrayBlockingQueue<>(size);
+        this.replicas.add(model);
+        for (int i = 1; i < size; i++) {
+            this.replicas.add(replicaOf(model));
+        }
+    }
+
+    // New layers over the same (not cloned) parameter array
+    private static MultiLayerNetwork replicaOf(MultiLayerNetwork model) {
+        return new MultiLayerNetwork(model.getLayerWiseConfigurations().clone(), model.params());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Runs {@code model.output(input)} on a free replica, waiting for one if all are busy.
+     */
+    public INDArray output(INDArray input) {
+        MultiLayerNetwork replica;
+        try {
+            replica = replicas.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a model replica", e);
+        }
+        try {
+            return replica.output(input);
+        } finally {
+            replicas.add(replica);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.ServingMetrics;
+import com.ai.churnprediction.metrics.ServingMetrics.Stage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A trained model together with the TransformProcess it was trained with.
+ * Both are always swapped together; {@link #getVersion()} identifies the pair by content.
+ */
+@Getter
+@Slf4j
+public final class ModelBundle {
+
+    /**
+     * Runs the forward pass: ND4J, or {@link DenseNetwork} with float or int8 weights.
+     */
+    public enum Engine {
+        ND4J, FLOAT32, INT8;
+
+        public static Engine parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final MultiLayerNetwork model;
+    // Replicas of `model` used for all forward passes
+    private final InferencePool inferencePool;
+    private final TransformProcess transformProcess;
+    // Compiled TransformProcess used on the serving path, null when the transform cannot be compiled
+    private final FeatureEncoder featureEncoder;
+    // Pure Java forward pass, null when the ND4J engine is used
+    private final DenseNetwork denseNetwork;
+    private final int numFeatures;
+    private final String version;
+    private final Instant loadedAt;
+    // Stage latencies of encode and predict
+    private final ServingMetrics metrics;
+
+    private ModelBundle(MultiLayerNetwork model, int replicas, TransformProcess transformProcess,
+                        FeatureEncoder featureEncoder, DenseNetwork denseNetwork, String version,
+                        ServingMetrics metrics) {
+        this.model = model;
+        this.inferencePool = new InferencePool(model, replicas);
+        this.transformProcess = transformProcess;
+        this.featureEncoder = featureEncoder;
+        this.denseNetwork = denseNetwork;
+        // Final schema minus the `Churn` label
+        this.numFeatures = transformProcess.getFinalSchema().numColumns() - 1;
+        this.version = version;
+        this.loadedAt = Instant.now();
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param replicas       model replicas for concurrent inference, 0 means one per core
+     * @param compileEncoder whether to compile the transform into a {@link FeatureEncoder}
+     * @param engine         forward pass implementation, ND4J when the network is not supported by {@link DenseNetwork}
+     * @param metrics        where {@link #encode} and {@link #predict} record their stage latencies
+     */
+    public static ModelBundle load(File modelFile, File transformFile, int replicas, boolean compileEncoder,
+                                   Engine engine, ServingMetrics metrics) throws IOException {
+        byte[] modelBytes = Files.readAllBytes(modelFile.toPath());
+        String json = Files.readString(transformFile.toPath());
+
+        // Load trained model from the bytes that were hashed, so a file replaced meanwhile cannot pair the version
+        // with other weights
+        MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(new ByteArrayInputStream(modelBytes));
+        log.info("Model loaded successfully! {}", model.summary());
+        // Load TransformProcess from JSON
+        TransformProcess transformProcess = TransformProcess.fromJson(json);
+        log.info("TransformProcess loaded successfully! {}", transformProcess.getFinalSchema());
+
+        FeatureEncoder encoder = compileEncoder ? compileEncoder(transformProcess) : null;
+        DenseNetwork denseNetwork = engine != Engine.ND4J ? extractDenseNetwork(model, engine) : null;
+        return new ModelBundle(model, replicas, transformProcess, encoder, denseNetwork,
+                contentHash(modelBytes, json), metrics);
+    }
+
+    /**
+     * Runs one forward pass over a row-major {@code [rows, numFeatures]} matrix.
+     * Single rows and batches share this path.
+     *
+     * @return the churn probability of every row
+     */
+    public double[] predict(double[] features, int rows) {
+        if (denseNetwork != null) {
+            long start = System.nanoTime();
+            double[] probabilities = denseNetwork.predict(features, rows);
+            metrics.recordStage(Stage.FORWARD, System.nanoTime() - start);
+            return probabilities;
+        }
+        long start = System.nanoTime();
+        INDArray input = Nd4j.create(features, new long[]{rows, numFeatures}, 'c');
+        long created = System.nanoTime();
+        INDArray output = inferencePool.output(input);
+        long end = System.nanoTime();
+        metrics.recordStage(Stage.NDARRAY, created - start);
+        metrics.recordStage(Stage.FORWARD, end - created);
+        double[] probabilities = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            probabilities[i] = output.getDouble(i, 0);
+        }
+        return probabilities;
+    }
+
+    /**
+     * Writes the features of one record into {@code out} at {@code offset}, with the compiled encoder when
+     * available and {@code TransformProcess.execute} otherwise. A blank TotalCharges is replaced with 0.0 first.
+     */
+    public void encode(Map<String, Object> payload, double[] out, int offset) {
+        if (payload.get("TotalCharges") == null || payload.get("TotalCharges").toString().trim().isEmpty()) {
+            payload.put("TotalCharges", 0.0);
+        }
+        long start = System.nanoTime();
+        if (featureEncoder != null) {
+            featureEncoder.encode(payload, out, offset);
+            metrics.recordStage(Stage.ENCODE, System.nanoTime() - start);
+            return;
+        }
+        List<Writable> record = convertPayloadToWritable(payload);
+        long converted = System.nanoTime();
+        double[] features = convertRecordToFeatures(record);
+        System.arraycopy(features, 0, out, offset, features.length);
+        long end = System.nanoTime();
+        metrics.recordStage(Stage.PAYLOAD_TO_WRITABLE, converted - start);
+        metrics.recordStage(Stage.TRANSFORM, end - converted);
+    }
+
+    private List<Writable> convertPayloadToWritable(Map<String, Object> payload) {
+        List<Writable> record = new ArrayList<>();
+        // Schema for mapping incoming JSON
+        for (String col : transformProcess.getInitialSchema().getColumnNames()) {
+            Object value = payload.get(col);
+            if (value == null || value.toString().trim().isEmpty()) {
+                throw new RuntimeException("Missing or empty value for input column: " + col);
+            }
+            // Even if it's not used, still include it in the raw record
+            record.add(new Text(value.toString()));
+        }
+        return record;
+    }
+
+    private double[] convertRecordToFeatures(List<Writable> record) {
+        List<Writable> transformed = transformProcess.execute(record);
+        // Remove `churn` if it's a label or not needed for prediction
+        transformed.removeLast();
+
+        //Convert List<Writable> to INDArray
+        return transformed.stream()
+                .mapToDouble(w -> Double.parseDouble(w.toString()))
+                .toArray();
+    }
+
+    /**
+     * @return how far {@link #predict} may be from {@code model.output}: 0 for ND4J, the tolerance of the
+     * {@link DenseNetwork} otherwise
+     */
+    public double getPredictionTolerance() {
+        return denseNetwork != null ? denseNetwork.tolerance() : 0;
+    }
+
+    private static DenseNetwork extractDenseNetwork(MultiLayerNetwork model, Engine engine) {
+        try {
+            DenseNetwork network = DenseNetwork.extract(model, engine == Engine.INT8);
+            log.info("Serving with the {} Java forward pass (tolerance {})", engine, network.tolerance());
+            return network;
+        } catch (UnsupportedOperationException e) {
+            log.warn("Network not supported by the {} engine, falling back to ND4J: {}", engine, e.getMessage());
+            return null;
+        }
+    }
+
+    private static FeatureEncoder compileEncoder(TransformProcess transformProcess) {
+        try {
+            FeatureEncoder encoder = FeatureEncoder.compile(transformProcess);
+            log.info("Compiled feature encoder with {} features", encoder.numFeatures());
+            return encoder;
+        } catch (UnsupportedOperationException e) {
+            log.warn("TransformProcess cannot be compiled, falling back to TransformProcess.execute: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Short SHA-256 of the model bytes and transform JSON, changes whenever either file changes
+    private static String contentHash(byte[] modelBytes, String transformJson) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelBytes);
+            digest.update(transformJson.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.ServingMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Owns the model and transform pair being served and replaces it without a restart.
+ * <p>
+ * A watcher thread follows the directories of the model, transform and golden sample files. Once none of them
+ * has changed for {@code churn.model.reload-quiet-millis}, so a deployment that copies several files is picked up
+ * as a whole, the new pair is loaded, checked against the {@link GoldenSample} and warmed up, all on the watcher
+ * thread. Only then is it handed to the activation callback, which swaps it in with a single volatile write:
+ * requests that already picked up the old bundle finish on it. A pair that fails to load or validate is logged
+ * and the old one keeps serving. Without a golden sample a pair fails validation, unless
+ * {@code churn.model.require-golden} is turned off to serve unvalidated models.
+ */
+@Component
+@Slf4j
+public class ModelRegistry {
+
+    @Autowired
+    private ServingMetrics servingMetrics;
+
+    @Value("${churn.model.file:churn-model.zip}")
+    private String modelFile;
+
+    @Value("${churn.model.transform-file:transformProcess.json}")
+    private String transformFile;
+
+    // Predictions recorded at training time, a pair is only served when it reproduces them
+    @Value("${churn.model.golden-file:golden-predictions.csv}")
+    private String goldenFile;
+
+    // Whether a missing golden file rejects the pair; false serves it without validation
+    @Value("${churn.model.require-golden:true}")
+    private boolean requireGolden;
+
+    @Value("${churn.model.golden-tolerance:1e-4}")
+    private double goldenTolerance;
+
+    @Value("${churn.model.watch:true}")
+    private boolean watchEnabled;
+
+    @Value("${churn.model.reload-quiet-millis:2000}")
+    private long reloadQuietMillis;
+
+    // Forward passes over the golden sample before a new pair serves traffic
+    @Value("${churn.model.warmup-rounds:20}")
+    private int warmupRounds;
+
+    @Value("${churn.serving.compiled-encoder:true}")
+    private boolean compiledEncoderEnabled;
+
+    // Forward pass: nd4j, float32 or int8 (pure Java, see DenseNetwork)
+    @Value("${churn.inference.engine:nd4j}")
+    private String inferenceEngine;
+
+    // Model replicas for concurrent forward passes, 0 means one per core
+    @Value("${churn.inference.replicas:0}")
+    private int inferenceReplicas;
+
+    private volatile ModelBundle active;
+    private volatile Instant activatedAt;
+    private volatile Instant lastAttemptAt;
+    private volatile String lastError;
+    private volatile int reloads;
+    private volatile int failedReloads;
+    private Consumer<ModelBundle> onActivate;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public ModelRegistry() {
+    }
+
+    // Loads the given files with the ND4J engine and a single warm-up round, without watching them, for tests
+    ModelRegistry(ServingMetrics servingMetrics, String modelFile, String transformFile, String goldenFile,
+                  double goldenTolerance, boolean requireGolden) {
+        this.servingMetrics = servingMetrics;
+        this.modelFile = modelFile;
+        this.transformFile = transformFile;
+        this.goldenFile = goldenFile;
+        this.goldenTolerance = goldenTolerance;
+        this.requireGolden = requireGolden;
+        this.warmupRounds = 1;
+        this.compiledEncoderEnabled = true;
+        this.inferenceEngine = "nd4j";
+        this.inferenceReplicas = 1;
+    }
+
+    /**
+     * Loads and activates the current files, then starts watching them when {@code churn.model.watch} is set.
+     *
+     * @param onActivate called with every pair that passed validation and warm-up, on the thread that loaded it
+     * @throws IOException when the initial pair cannot be loaded, has no golden sample although one is required,
+     *                     or does not reproduce it
+     */
+    public synchronized void start(Consumer<ModelBundle> onActivate) throws IOException {
+        this.onActivate = onActivate;
+        try {
+            activate(loadAndValidate());
+        } catch (RuntimeException e) {
+            throw new IOException("Model " + modelFile + " failed validation", e);
+        }
+        if (watchEnabled) {
+            startWatcher();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    public ModelBundle getActive() {
+        return active;
+    }
+
+    /**
+     * Loads, validates and warms up the files now and swaps them in when their content differs from the active pair.
+     *
+     * @return the status after the attempt, with the error when the active pair was kept
+     */
+    public synchronized ModelStatus reload() {
+        lastAttemptAt = Instant.now();
+        try {
+            ModelBundle loaded = loadAndValidate();
+            if (active != null && loaded.getVersion().equals(active.getVersion())) {
+                log.info("Model files unchanged (version {}), keeping the active model", loaded.getVersion());
+            } else {
+                activate(loaded);
+                reloads++;
+            }
+            lastError = null;
+        } catch (IOException | RuntimeException e) {
+            failedReloads++;
+            lastError = e.getMessage();
+            log.warn("Model reload failed, still serving version {}", active != null ? active.getVersion() : null, e);
+        }
+        return status();
+    }
+
+    public ModelStatus status() {
+        ModelBundle current = active;
+        return new ModelStatus(current != null ? current.getVersion() : null,
+                current != null ? current.getLoadedAt() : null, activatedAt,
+                new File(modelFile).getAbsolutePath(), new File(transformFile).getAbsolutePath(),
+                watcher != null && watcher.isAlive(), reloads, failedReloads, lastAttemptAt, lastError);
+    }
+
+    /**
+     * @param loadedAt    when the files of the active pair were read
+     * @param activatedAt when the active pair started serving, after validation and warm-up
+     * @param lastError   why the last reload kept the old pair, null when it succeeded
+     */
+    public record ModelStatus(String version, Instant loadedAt, Instant activatedAt, String modelFile,
+                              String transformFile, boolean watching, int reloads, int failedReloads,
+                              Instant lastAttemptAt, String lastError) {
+    }
+
+    private ModelBundle loadAndValidate() throws IOException {
+        long start = System.currentTimeMillis();
+        ModelBundle loaded = ModelBundle.load(new File(modelFile), new File(transformFile),
+                inferenceReplicas, compiledEncoderEnabled, ModelBundle.Engine.parse(inferenceEngine), servingMetrics);
+        File golden = new File(goldenFile);
+        if (golden.exists()) {
+            GoldenSample sample = GoldenSample.read(golden);
+            // The Java engines may differ from the ND4J predictions the sample was recorded with by their tolerance
+            double deviation = sample.verify(loaded, goldenTolerance + loaded.getPredictionTolerance());
+            log.info("Model {} reproduces {} golden predictions (max deviation {})",
+                    loaded.getVersion(), sample.size(), deviation);
+            warmUp(loaded, sample);
+        } else if (requireGolden) {
+            throw new IOException("No golden sample " + golden + " for model " + loaded.getVersion()
+                    + ", set churn.model.require-golden=false to serve models without validation");
+        } else {
+            log.warn("No golden sample {}, model {} is served without validation", golden, loaded.getVersion());
+        }
+        log.info("Model {} loaded, validated and warmed up in {} ms",
+                loaded.getVersion(), System.currentTimeMillis() - start);
+        return loaded;
+    }
+
+    // Runs the golden records through the serving path one by one and as a batch, so the first requests
+    // on the new model do not pay for JIT compilation and native buffer setup
+    private void warmUp(ModelBundle bundle, GoldenSample sample) {
+        int numFeatures = bundle.getNumFeatures();
+        double[] batch = new double[sample.size() * numFeatures];
+        double[] single = new double[numFeatures];
+        for (int round = 0; round < warmupRounds; round++) {
+            int i = 0;
+            for (Map<String, Object> payload : sample.payloads()) {
+                bundle.encode(payload, single, 0);
+                bundle.predict(single, 1);
+                System.arraycopy(single, 0, batch, i++ * numFeatures, numFeatures);
+            }
+            if (i > 0) {
+                bundle.predict(batch, i);
+            }
+        }
+    }
+
+    private void activate(ModelBundle loaded) {
+        active = loaded;
+        activatedAt = Instant.now();
+        onActivate.accept(loaded);
+        log.info("Serving model version {}", loaded.getVersion());
+    }
+
+    private void startWatcher() throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String file : new String[]{modelFile, transformFile, goldenFile}) {
+            files.add(Path.of(file).toAbsolutePath());
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> directories = new LinkedHashSet<>();
+        files.forEach(file -> directories.add(file.getParent()));
+        for (Path directory : directories) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        watcher = Thread.ofPlatform().name("model-registry-watcher").daemon().start(() -> watch(files));
+        log.info("Watching {} for new models", directories);
+    }
+
+    private void watch(Set<Path> files) {
+        boolean pending = false;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Wait for the first change, then until the files have been quiet for reloadQuietMillis
+                WatchKey key = pending
+                        ? watchService.poll(reloadQuietMillis, TimeUnit.MILLISECONDS)
+                        : watchService.take();
+                if (key == null) {
+                    pending = false;
+                    reload();
+                    continue;
+                }
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || event.context() instanceof Path changed && files.contains(directory.resolve(changed))) {
+                        pending = true;
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.ai.churnprediction.service;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a bulkhead is full and the request is shed instead of queued; answered with 429 and
+ * {@code Retry-After}.
+ */
+@Getter
+public class OverloadedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public OverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,207 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.Histogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in micro-batching for single predictions.
+ * Concurrent requests are queued and flushed as one forward pass once {@code max-batch-size}
+ * requests are waiting or the oldest one has waited {@code max-wait-micros}, whichever comes first.
+ * Each caller gets a future that completes with its own probability.
+ * <p>
+ * The queue holds at most {@code queue-size} requests; further requests are shed with an
+ * {@link OverloadedException}. Once stopped, queued and in-flight requests fail instead of waiting forever.
+ */
+@Component
+@Slf4j
+public class PredictionBatcher {
+
+    @Getter
+    @Value("${churn.serving.micro-batch.enabled:false}")
+    private boolean enabled;
+
+    @Getter
+    @Value("${churn.serving.micro-batch.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${churn.serving.micro-batch.max-wait-micros:2000}")
+    private long maxWaitMicros;
+
+    // Requests waiting for a flush before new ones are shed
+    @Value("${churn.serving.micro-batch.queue-size:1024}")
+    private int queueSize;
+
+    // Longest a caller waits for its batched prediction
+    @Value("${churn.serving.micro-batch.timeout-millis:1000}")
+    private long timeoutMillis;
+
+    @Value("${churn.serving.bulkhead.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    private BlockingQueue<Pending> queue;
+    private volatile boolean stopped;
+    @Getter
+    private final LongAdder rejected = new LongAdder();
+    // Rows per flushed forward pass
+    @Getter
+    private final Histogram batchSizes = new Histogram();
+    // Time from enqueue to flush, in microseconds
+    @Getter
+    private final Histogram queueWaitMicros = new Histogram();
+    private Thread flusher;
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            queue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+            flusher = Thread.ofPlatform().name("prediction-batcher").daemon().start(this::run);
+            log.info("Micro-batching enabled: max batch size {}, max wait {} us", maxBatchSize, maxWaitMicros);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+
+    /**
+     * Scores one row of features with {@code bundle} in the next batch and waits for it.
+     *
+     * @throws OverloadedException   when the queue is full
+     * @throws IllegalStateException when the batcher has stopped or the prediction timed out
+     */
+    public double predict(ModelBundle bundle, double[] features) {
+        CompletableFuture<Double> result = submit(bundle, features);
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a prediction", e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Micro-batched prediction timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Queues one row of features scored with {@code bundle}.
+     *
+     * @throws OverloadedException   when the queue is full
+     * @throws IllegalStateException when the batcher is disabled or has stopped
+     */
+    public CompletableFuture<Double> submit(ModelBundle bundle, double[] features) {
+        if (queue == null || stopped) {
+            throw new IllegalStateException("Prediction batcher is not running");
+        }
+        Pending pending = new Pending(bundle, features, System.nanoTime(), new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            throw new OverloadedException("Micro-batch queue full", retryAfterSeconds);
+        }
+        if (stopped) {
+            // The flusher may have exited between the check and the offer, so nothing would drain the queue
+            failQueued();
+        }
+        return pending.result;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        long maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Pending first = queue.take();
+                batch.add(first);
+                long deadline = first.enqueuedNanos + maxWaitNanos;
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Fail what was taken but not scored and whatever is still queued, so no caller waits forever
+            stopped = true;
+            batch.forEach(pending -> pending.result.completeExceptionally(stoppedException()));
+            failQueued();
+        }
+    }
+
+    private void failQueued() {
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.result.completeExceptionally(stoppedException()));
+    }
+
+    private static IllegalStateException stoppedException() {
+        return new IllegalStateException("Prediction batcher stopped");
+    }
+
+    private void flush(List<Pending> batch) {
+        long now = System.nanoTime();
+        int from = 0;
+        // Requests queued across a model reload are scored with the bundle they were encoded for
+        while (from < batch.size()) {
+            ModelBundle bundle = batch.get(from).bundle;
+            int to = from;
+            while (to < batch.size() && batch.get(to).bundle == bundle) {
+                to++;
+            }
+            score(bundle, batch.subList(from, to), now);
+            from = to;
+        }
+    }
+
+    private void score(ModelBundle bundle, List<Pending> group, long now) {
+        int numFeatures = bundle.getNumFeatures();
+        double[] features = new double[group.size() * numFeatures];
+        for (int i = 0; i < group.size(); i++) {
+            Pending pending = group.get(i);
+            System.arraycopy(pending.features, 0, features, i * numFeatures, numFeatures);
+            queueWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(now - pending.enqueuedNanos));
+        }
+        batchSizes.record(group.size());
+        try {
+            double[] probabilities = bundle.predict(features, group.size());
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result.complete(probabilities[i]);
+            }
+        } catch (RuntimeException e) {
+            group.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    private record Pending(ModelBundle bundle, double[] features, long enqueuedNanos, CompletableFuture<Double> result) {
+    }
+}
@@ -0,0 +1,232 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.repository.CustomerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches churn probabilities for one model version.
+ * <ul>
+ *     <li>Known customers: a probability per row of one repository snapshot, filled in the background after a
+ *     model load and updated when the customer file is refreshed</li>
+ *     <li>Ad-hoc payloads from {@code /api/churn/predict}: a bounded LRU keyed by the encoded feature vector</li>
+ *     <li>The {@link ScoreIndex} built from the customer probabilities</li>
+ *     <li>The top churn drivers of every known customer for the report, computed after the probabilities</li>
+ * </ul>
+ * All entries belong to a generation tagged with the model version. Loading a new model replaces the
+ * generation in one step, and entries computed with any other version are neither returned nor stored.
+ */
+@Component
+public class PredictionCache {
+
+    @Value("${churn.cache.adhoc-max-entries:10000}")
+    private int adhocMaxEntries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile Generation generation = new Generation("", 0);
+
+    public PredictionCache() {
+    }
+
+    // Keeps at most `adhocMaxEntries` payloads, for tests
+    PredictionCache(int adhocMaxEntries) {
+        this.adhocMaxEntries = adhocMaxEntries;
+    }
+
+    /**
+     * Drops everything cached and starts an empty generation for {@code modelVersion}.
+     */
+    public void reset(String modelVersion) {
+        generation = new Generation(modelVersion, adhocMaxEntries);
+    }
+
+    /**
+     * Publishes the probabilities of all rows of {@code customers} computed with {@code modelVersion},
+     * replacing those of an older snapshot.
+     */
+    public void putCustomers(String modelVersion, CustomerRepository customers, double[] probabilities) {
+        Generation current = generation;
+        if (current.modelVersion.equals(modelVersion)) {
+            current.customers = new CustomerScores(customers, probabilities);
+        }
+    }
+
+    public void putScoreIndex(String modelVersion, ScoreIndex scoreIndex) {
+        Generation current = generation;
+        if (current.modelVersion.equals(modelVersion)) {
+            current.scoreIndex = scoreIndex;
+        }
+    }
+
+    /**
+     * @return the ranking of all customers for {@code modelVersion}, or null until the background fill has built it
+     */
+    public ScoreIndex getScoreIndex(String modelVersion) {
+        Generation current = generation;
+        return current.modelVersion.equals(modelVersion) ? current.scoreIndex : null;
+    }
+
+    /**
+     * @return the cached probability of a row of {@code customers}, NaN on a miss
+     */
+    public double getCustomer(String modelVersion, CustomerRepository customers, int row) {
+        double[] probabilities = customerProbabilities(modelVersion, customers);
+        double probability = probabilities != null && row < probabilities.length ? probabilities[row] : Double.NaN;
+        (Double.isNaN(probability) ? misses : hits).increment();
+        return probability;
+    }
+
+    /**
+     * @return probabilities of all rows of {@code customers}, or null while the background fill is still running
+     * or when they were computed for another snapshot
+     */
+    public double[] customerProbabilities(String modelVersion, CustomerRepository customers) {
+        CustomerScores scores = customerScores(modelVersion);
+        return scores != null && scores.customers() == customers ? scores.probabilities() : null;
+    }
+
+    /**
+     * @return the cached probabilities with the snapshot they belong to, null until the background fill has finished
+     */
+    public CustomerScores customerScores(String modelVersion) {
+        Generation current = generation;
+        return current.modelVersion.equals(modelVersion) ? current.customers : null;
+    }
+
+    /**
+     * @param customers     the repository snapshot the probabilities were computed for
+     * @param probabilities probability per row of {@code customers}
+     */
+    public record CustomerScores(CustomerRepository customers, double[] probabilities) {
+    }
+
+    public void putCustomerDrivers(String modelVersion, CustomerDrivers drivers) {
+        Generation current = generation;
+        if (current.modelVersion.equals(modelVersion)) {
+            current.drivers = drivers;
+        }
+    }
+
+    /**
+     * @return the top drivers of the rows of the latest snapshot they were computed for, null before
+     */
+    public CustomerDrivers customerDrivers(String modelVersion) {
+        Generation current = generation;
+        return current.modelVersion.equals(modelVersion) ? current.drivers : null;
+    }
+
+    /**
+     * @param customers    the repository snapshot the drivers were computed for
+     * @param columns      input column names the drivers refer to
+     * @param perCustomer  driver slots per row
+     * @param drivers      {@code perCustomer} column indices per row of {@code customers}, largest contribution
+     *                     to churn first, -1 for unused slots
+     */
+    public record CustomerDrivers(CustomerRepository customers, String[] columns, int perCustomer, short[] drivers) {
+
+        /**
+         * @return the driver columns of {@code row} joined by {@code |}
+         */
+        public String format(int row) {
+            StringBuilder text = new StringBuilder();
+            for (int i = row * perCustomer; i < (row + 1) * perCustomer && drivers[i] >= 0; i++) {
+                if (!text.isEmpty()) {
+                    text.append('|');
+                }
+                text.append(columns[drivers[i]]);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * @return the cached probability for these features, NaN on a miss
+     */
+    public double getPayload(String modelVersion, double[] features) {
+        Generation current = generation;
+        Double probability = null;
+        if (current.modelVersion.equals(modelVersion)) {
+            synchronized (current.payloads) {
+                probability = current.payloads.get(new FeatureKey(features));
+            }
+        }
+        (probability == null ? misses : hits).increment();
+        return probability == null ? Double.NaN : probability;
+    }
+
+    public void putPayload(String modelVersion, double[] features, double probability) {
+        Generation current = generation;
+        if (current.modelVersion.equals(modelVersion)) {
+            synchronized (current.payloads) {
+                current.payloads.put(new FeatureKey(features.clone()), probability);
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        Generation current = generation;
+        int payloadEntries;
+        synchronized (current.payloads) {
+            payloadEntries = current.payloads.size();
+        }
+        CustomerScores customers = current.customers;
+        return new CacheStats(current.modelVersion, customers != null ? customers.probabilities().length : 0,
+                payloadEntries,
+                hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    public record CacheStats(String modelVersion, int cachedCustomers, int cachedPayloads,
+                             long hits, long misses, long evictions) {
+    }
+
+    private final class Generation {
+        private final String modelVersion;
+        private final Map<FeatureKey, Double> payloads;
+        private volatile CustomerScores customers;
+        private volatile ScoreIndex scoreIndex;
+        private volatile CustomerDrivers drivers;
+
+        private Generation(String modelVersion, int maxPayloads) {
+            this.modelVersion = modelVersion;
+            // Access ordered LinkedHashMap: evicts the least recently used payload once full
+            this.payloads = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<FeatureKey, Double> eldest) {
+                    if (size() > maxPayloads) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private static final class FeatureKey {
+        private final double[] features;
+        private final int hash;
+
+        private FeatureKey(double[] features) {
+            this.features = features;
+            this.hash = Arrays.hashCode(features);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FeatureKey other && hash == other.hash && Arrays.equals(features, other.features);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.ServingMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the prediction report (CustomerID,Prediction,Probability) as CSV, plus the precomputed top churn
+ * drivers of every customer (TopDrivers, e.g. {@code Contract|tenure}) unless {@code churn.explain.report-drivers}
+ * is 0. Drivers are left empty while they are still being computed for the current model.
+ * Rows are cut into chunks that are scored and formatted in parallel on a fork-join pool.
+ * Finished chunks are written to the response in order and flushed, while the chunks after them
+ * are still being computed. At most {@code 2 * parallelism} chunks are in flight, so memory stays bounded.
+ */
+@Component
+@Slf4j
+public class ReportWriter {
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final String HEADER = "CustomerID,Prediction,Probability";
+    private static final byte[] YES = ",Yes,".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO = ",No,".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY = new byte[0];
+
+    @Autowired
+    private ChurnPrediction churnPrediction;
+    @Autowired
+    private ServingMetrics servingMetrics;
+
+    @Value("${churn.report.chunk-size:4096}")
+    private int chunkSize;
+
+    @Value("${churn.report.gzip:true}")
+    private boolean gzipEnabled;
+
+    @Value("${churn.explain.report-drivers:3}")
+    private int reportDrivers;
+
+    private final ForkJoinPool scoringPool;
+
+    public ReportWriter(@Value("${churn.report.parallelism:0}") int parallelism,
+                        @Value("${churn.serving.bulkhead.enabled:false}") boolean bulkheads,
+                        @Value("${churn.serving.bulkhead.compute-threads:0}") int computeThreads) {
+        this.scoringPool = new ForkJoinPool(parallelism(parallelism, bulkheads, computeThreads,
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return {@code configured} when set, otherwise one thread per core, or with bulkheads the cores left by the
+     * interactive compute pool (at least one), so report scoring does not take the cores inference runs on
+     */
+    static int parallelism(int configured, boolean bulkheads, int computeThreads, int cores) {
+        if (configured > 0) {
+            return configured;
+        }
+        if (!bulkheads) {
+            return cores;
+        }
+        return Math.max(1, cores - (computeThreads > 0 ? computeThreads : cores));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scoringPool.shutdownNow();
+    }
+
+    /**
+     * Writes the full report, gzip encoded when the client accepts it.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long start = System.currentTimeMillis();
+        boolean gzip = gzipEnabled && acceptsGzip(request.getHeader("Accept-Encoding"));
+        if (gzipEnabled) {
+            // The body depends on Accept-Encoding, so shared caches must not serve gzip to other clients
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            // Sync flush pushes every finished chunk to the client instead of buffering inside the deflater
+            out = new GZIPOutputStream(out, 64 * 1024, true);
+        }
+        try (OutputStream stream = out) {
+            int rows = writeReport(stream);
+            log.info("Report of {} rows written in {} ms (gzip: {})", rows, System.currentTimeMillis() - start, gzip);
+        }
+    }
+
+    /**
+     * Writes the header and all report rows to {@code out}, without closing it.
+     *
+     * @return the number of rows written
+     */
+    public int writeReport(OutputStream out) throws IOException {
+        String header = reportDrivers > 0 ? HEADER + ",TopDrivers" : HEADER;
+        out.write((header + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return writeRows(out);
+    }
+
+    private int writeRows(OutputStream out) throws IOException {
+        ChurnPrediction.CustomerScorer scorer = churnPrediction.customerScorer();
+        int size = scorer.customers().size();
+        int step = Math.max(1, chunkSize);
+        int window = 2 * scoringPool.getParallelism();
+        Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        int next = 0;
+        int written = 0;
+        try {
+            while (next < size || !inFlight.isEmpty()) {
+                while (next < size && inFlight.size() < window) {
+                    int from = next;
+                    int to = Math.min(from + step, size);
+                    inFlight.add(CompletableFuture.supplyAsync(() -> formatChunk(scorer, from, to, abandoned),
+                            scoringPool));
+                    next = to;
+                }
+                out.write(inFlight.poll().join());
+                out.flush();
+                // Chunks are written in order and all but the last hold `step` rows
+                int rows = Math.min(step, size - written);
+                written += rows;
+                servingMetrics.getReportRows().add(rows);
+            }
+        } finally {
+            // Client went away or scoring failed. Cancelling keeps queued chunks from starting, but cannot interrupt
+            // a running supplyAsync task, so running chunks check the flag and skip their remaining work
+            abandoned.set(true);
+            inFlight.forEach(future -> future.cancel(false));
+        }
+        return size;
+    }
+
+    private byte[] formatChunk(ChurnPrediction.CustomerScorer scorer, int from, int to, AtomicBoolean abandoned) {
+        if (abandoned.get()) {
+            return EMPTY;
+        }
+        double[] probabilities = scorer.score(from, to);
+        if (abandoned.get()) {
+            return EMPTY;
+        }
+        LineBuffer buffer = new LineBuffer((to - from) * 32);
+        for (int i = 0; i < probabilities.length; i++) {
+            double prob = probabilities[i];
+            buffer.appendText(scorer.customers().getCustomerId(from + i));
+            buffer.append(prob >= 0.5 ? YES : NO);
+            appendProbability(buffer, prob);
+            if (reportDrivers > 0) {
+                buffer.append((byte) ',');
+                buffer.appendText(scorer.topDrivers(from + i));
+            }
+            buffer.append(LINE_SEPARATOR);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @return whether an {@code Accept-Encoding} header allows gzip: listed as {@code gzip} (or {@code x-gzip}) with a
+     * q-value above 0, or not listed and covered by {@code *} with a q-value above 0
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parts) > 0;
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard;
+    }
+
+    // q parameter of one coding, 1 when absent and 0 when malformed
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 1 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')
+                    && parameter.substring(1).trim().startsWith("=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(parameter.indexOf('=') + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Appends {@code value} with 4 decimals, exactly like {@code String.format("%.4f", value)} but without
+     * a Formatter, locale lookups or intermediate strings.
+     */
+    static void appendProbability(LineBuffer buffer, double value) {
+        double scaled = Math.abs(value) * 10_000;
+        double fraction = scaled - Math.floor(scaled);
+        if (Double.isNaN(value) || Double.isInfinite(value) || scaled >= 1e15 || Math.abs(fraction - 0.5) < 1e-6) {
+            // Ties and out of range values: Formatter rounds the shortest decimal representation HALF_UP
+            buffer.appendText(Double.isFinite(value)
+                    ? new BigDecimal(Double.toString(value)).setScale(4, RoundingMode.HALF_UP).toPlainString()
+                    : Double.toString(value));
+            return;
+        }
+        long units = Math.round(scaled);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buffer.append((byte) '-');
+        }
+        buffer.appendLong(units / 10_000);
+        buffer.append((byte) '.');
+        long decimals = units % 10_000;
+        for (long divisor = 1000; divisor > 0; divisor /= 10) {
+            buffer.append((byte) ('0' + decimals / divisor % 10));
+        }
+    }
+
+    /**
+     * Growable byte buffer for one chunk of CSV lines.
+     */
+    static final class LineBuffer {
+        private byte[] bytes;
+        private int size;
+
+        LineBuffer(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void append(byte b) {
+            ensureCapacity(1);
+            bytes[size++] = b;
+        }
+
+        void append(byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        void appendText(String text) {
+            ensureCapacity(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Not ASCII (never the case for Telco IDs): fall back to a real UTF-8 encoding
+                    append(text.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                bytes[size + i] = (byte) c;
+            }
+            size += text.length();
+        }
+
+        void appendLong(long value) {
+            if (value >= 10) {
+                appendLong(value / 10);
+            }
+            append((byte) ('0' + value % 10));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        // Writes the buffered bytes and empties the buffer for reuse
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+            size = 0;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.repository.CustomerRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Customers ranked by churn probability, built once per model version from the prediction cache.
+ * <ul>
+ *     <li>All rows, sorted by probability (high to low, ties in file order). A probability band is one
+ *     contiguous range found by binary search, so a page of the ranking costs O(page size).</li>
+ *     <li>The same ranking split into segments, one per combination of the filter columns (e.g. Contract x
+ *     InternetService). A filtered page merges the matching segments, after skipping the rows before the page by
+ *     bisecting on their score.</li>
+ * </ul>
+ * Customer order (no sorting) is only available without a probability or attribute filter; with a filter the
+ * page is served in risk order instead.
+ */
+public final class ScoreIndex {
+
+    public enum Sort {
+        CUSTOMER, RISK_DESC, RISK_ASC;
+
+        public static Sort parse(String value) {
+            for (Sort sort : values()) {
+                if (sort.name().equalsIgnoreCase(value)) {
+                    return sort;
+                }
+            }
+            return CUSTOMER;
+        }
+    }
+
+    /**
+     * @param search         customerID fragment, null or empty for all customers
+     * @param minProbability inclusive lower bound of the probability band
+     * @param maxProbability inclusive upper bound of the probability band
+     * @param filters        filter column to required value, missing or empty values match everything
+     */
+    public record Query(String search, Sort sort, double minProbability, double maxProbability, Map<String, String> filters) {
+
+        boolean isFiltered() {
+            return minProbability > 0 || maxProbability < 1
+                    || filters.values().stream().anyMatch(value -> value != null && !value.isEmpty());
+        }
+    }
+
+    /**
+     * @param rows  repository rows of the requested page
+     * @param total number of customers matching the query
+     */
+    public record Page(int[] rows, int total) {
+    }
+
+    private final CustomerRepository customers;
+    private final float[] probabilities;
+    // Rows sorted by probability, highest first, and their probabilities
+    private final int[] ranked;
+    private final float[] rankedScores;
+    private final List<String> filterColumns;
+    private final Map<String, List<String>> filterValues;
+    private final List<Segment> segments;
+
+    private ScoreIndex(CustomerRepository customers, float[] probabilities, int[] ranked, float[] rankedScores,
+                       List<String> filterColumns, Map<String, List<String>> filterValues, List<Segment> segments) {
+        this.customers = customers;
+        this.probabilities = probabilities;
+        this.ranked = ranked;
+        this.rankedScores = rankedScores;
+        this.filterColumns = filterColumns;
+        this.filterValues = filterValues;
+        this.segments = segments;
+    }
+
+    /**
+     * @param probabilities probability per repository row
+     * @param filterColumns categorical columns that can be filtered on
+     */
+    public static ScoreIndex build(CustomerRepository customers, double[] probabilities, List<String> filterColumns) {
+        int size = probabilities.length;
+        float[] scores = new float[size];
+        // Sort (probability desc, row asc) as packed longs to avoid boxing millions of rows
+        long[] keys = new long[size];
+        for (int row = 0; row < size; row++) {
+            scores[row] = (float) Math.max(0, probabilities[row]);
+            keys[row] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[row])) << 32) | row;
+        }
+        Arrays.sort(keys);
+        int[] ranked = new int[size];
+        float[] rankedScores = new float[size];
+        for (int i = 0; i < size; i++) {
+            ranked[i] = (int) keys[i];
+            rankedScores[i] = scores[ranked[i]];
+        }
+
+        // Segment of every row, keyed by its values of the filter columns
+        Map<List<String>, Integer> segmentIds = new LinkedHashMap<>();
+        Map<String, Set<String>> distinct = new LinkedHashMap<>();
+        filterColumns.forEach(column -> distinct.put(column, new LinkedHashSet<>()));
+        int[] segmentOfRow = new int[size];
+        for (int row = 0; row < size; row++) {
+            List<String> key = new ArrayList<>(filterColumns.size());
+            for (String column : filterColumns) {
+                String value = customers.getValue(row, column);
+                key.add(value);
+                distinct.get(column).add(value);
+            }
+            segmentOfRow[row] = segmentIds.computeIfAbsent(key, k -> segmentIds.size());
+        }
+        int[] segmentSizes = new int[segmentIds.size()];
+        for (int row = 0; row < size; row++) {
+            segmentSizes[segmentOfRow[row]]++;
+        }
+        List<Segment> segments = new ArrayList<>();
+        segmentIds.forEach((key, id) -> segments.add(new Segment(key, new int[segmentSizes[id]], new float[segmentSizes[id]])));
+        int[] fill = new int[segments.size()];
+        // Walking the global ranking keeps every segment sorted as well
+        for (int i = 0; i < size; i++) {
+            int row = ranked[i];
+            Segment segment = segments.get(segmentOfRow[row]);
+            int position = fill[segmentOfRow[row]]++;
+            segment.rows[position] = row;
+            segment.scores[position] = rankedScores[i];
+        }
+
+        Map<String, List<String>> filterValues = new LinkedHashMap<>();
+        distinct.forEach((column, values) -> filterValues.put(column, values.stream().sorted().toList()));
+        return new ScoreIndex(customers, scores, ranked, rankedScores, List.copyOf(filterColumns), filterValues, segments);
+    }
+
+    /**
+     * @return the customers the ranked rows refer to
+     */
+    public CustomerRepository getCustomers() {
+        return customers;
+    }
+
+    public float getProbability(int row) {
+        return probabilities[row];
+    }
+
+    public List<String> getFilterColumns() {
+        return filterColumns;
+    }
+
+    /**
+     * @return distinct values of every filter column, for the UI drop-downs
+     */
+    public Map<String, List<String>> getFilterValues() {
+        return filterValues;
+    }
+
+    /**
+     * @param offset rows of the result to skip, not negative
+     * @param limit  most rows to return, not negative
+     */
+    public Page query(Query query, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        if (query.search() != null && !query.search().isEmpty()) {
+            return searchPage(query, offset, limit);
+        }
+        if (!query.isFiltered() && query.sort() == Sort.CUSTOMER) {
+            int from = Math.min(offset, ranked.length);
+            int to = Math.min(from + limit, ranked.length);
+            int[] rows = new int[to - from];
+            Arrays.setAll(rows, i -> from + i);
+            return new Page(rows, ranked.length);
+        }
+        boolean ascending = query.sort() == Sort.RISK_ASC;
+        List<Range> ranges = new ArrayList<>();
+        for (Segment segment : matchingSegments(query.filters())) {
+            ranges.add(band(segment.rows, segment.scores, query));
+        }
+        int total = ranges.stream().mapToInt(Range::size).sum();
+        return new Page(merge(ranges, offset, limit, ascending), total);
+    }
+
+    private List<Segment> matchingSegments(Map<String, String> filters) {
+        boolean anyFilter = filters.values().stream().anyMatch(value -> value != null && !value.isEmpty());
+        if (!anyFilter) {
+            return List.of(new Segment(List.of(), ranked, rankedScores));
+        }
+        List<Segment> matching = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.matches(filterColumns, filters)) {
+                matching.add(segment);
+            }
+        }
+        return matching;
+    }
+
+    // Rows of a segment inside [minProbability, maxProbability], scores sorted high to low
+    private static Range band(int[] rows, float[] scores, Query query) {
+        int from = firstIndexAtMost(scores, (float) query.maxProbability(), false);
+        int to = firstIndexAtMost(scores, (float) query.minProbability(), true);
+        return new Range(rows, scores, from, Math.max(from, to));
+    }
+
+    // First index whose score is <= bound (or < bound when strict), scores sorted high to low
+    private static int firstIndexAtMost(float[] scores, float bound, boolean strict) {
+        return firstIndexAtMost(scores, 0, scores.length, bound, strict);
+    }
+
+    private static int firstIndexAtMost(float[] scores, int from, int to, float bound, boolean strict) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            boolean inside = strict ? scores[mid] < bound : scores[mid] <= bound;
+            if (inside) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Takes rows [offset, offset + limit) of the merged ranking of all ranges
+    private static int[] merge(List<Range> ranges, int offset, int limit, boolean ascending) {
+        if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            int from = Math.min(offset, range.size());
+            int to = Math.min(from + limit, range.size());
+            int[] rows = new int[to - from];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = range.at(from + i, ascending);
+            }
+            return rows;
+        }
+        int total = ranges.stream().mapToInt(Range::size).sum();
+        if (offset >= total) {
+            return new int[0];
+        }
+        // Rows scored before the first row of the page are skipped by binary search, only its ties are walked
+        float first = scoreAt(ranges, offset, ascending);
+        int[] positions = new int[ranges.size()];
+        int taken = 0;
+        for (int r = 0; r < ranges.size(); r++) {
+            positions[r] = ranges.get(r).countBefore(first, ascending);
+            taken += positions[r];
+        }
+        int[] rows = new int[Math.min(limit, total - offset)];
+        int count = 0;
+        for (; count < rows.length; taken++) {
+            int best = -1;
+            for (int r = 0; r < ranges.size(); r++) {
+                Range range = ranges.get(r);
+                if (positions[r] < range.size()
+                        && (best < 0 || range.before(positions[r], ranges.get(best), positions[best], ascending))) {
+                    best = r;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            if (taken >= offset) {
+                rows[count++] = ranges.get(best).at(positions[best], ascending);
+            }
+            positions[best]++;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Score of the row at `offset` of the merged ranking, bisecting the bits of the scores, which are not negative
+    // and therefore ordered like their values
+    private static float scoreAt(List<Range> ranges, int offset, boolean ascending) {
+        int low = Integer.MAX_VALUE;
+        int high = 0;
+        for (Range range : ranges) {
+            if (range.size() > 0) {
+                low = Math.min(low, Float.floatToIntBits(range.scores[range.to - 1]));
+                high = Math.max(high, Float.floatToIntBits(range.scores[range.from]));
+            }
+        }
+        // Descending: the lowest score with at most `offset` rows above it; ascending: the highest with at most
+        // `offset` rows below it
+        while (low < high) {
+            int mid = ascending ? (low + high + 1) >>> 1 : (low + high) >>> 1;
+            int before = 0;
+            for (Range range : ranges) {
+                before += range.countBefore(Float.intBitsToFloat(mid), ascending);
+            }
+            if (ascending == (before <= offset)) {
+                low = ascending ? mid : mid + 1;
+            } else {
+                high = ascending ? mid - 1 : mid;
+            }
+        }
+        return Float.intBitsToFloat(low);
+    }
+
+    // Search results are few: filter and sort the matching rows directly
+    private Page searchPage(Query query, int offset, int limit) {
+        int[] candidates = customers.searchByCustomerId(query.search());
+        List<Integer> matching = new ArrayList<>();
+        for (int row : candidates) {
+            float probability = probabilities[row];
+            if (probability >= query.minProbability() && probability <= query.maxProbability()
+                    && matchesFilters(row, query.filters())) {
+                matching.add(row);
+            }
+        }
+        if (query.sort() == Sort.RISK_DESC) {
+            matching.sort((a, b) -> Float.compare(probabilities[b], probabilities[a]));
+        } else if (query.sort() == Sort.RISK_ASC) {
+            matching.sort((a, b) -> Float.compare(probabilities[a], probabilities[b]));
+        }
+        int from = Math.min(offset, matching.size());
+        int to = Math.min(from + limit, matching.size());
+        return new Page(matching.subList(from, to).stream().mapToInt(Integer::intValue).toArray(), matching.size());
+    }
+
+    private boolean matchesFilters(int row, Map<String, String> filters) {
+        for (String column : filterColumns) {
+            String required = filters.get(column);
+            if (required != null && !required.isEmpty() && !required.equals(customers.getValue(row, column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Segment(List<String> key, int[] rows, float[] scores) {
+
+        boolean matches(List<String> columns, Map<String, String> filters) {
+            for (int i = 0; i < columns.size(); i++) {
+                String required = filters.get(columns.get(i));
+                if (required != null && !required.isEmpty() && !required.equals(key.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Slice [from, to) of a segment ranking, readable from either end.
+     */
+    private record Range(int[] rows, float[] scores, int from, int to) {
+
+        int size() {
+            return to - from;
+        }
+
+        private int index(int position, boolean ascending) {
+            return ascending ? to - 1 - position : from + position;
+        }
+
+        int at(int position, boolean ascending) {
+            return rows[index(position, ascending)];
+        }
+
+        // Rows that come before every row scored `score` in the merged ranking
+        int countBefore(float score, boolean ascending) {
+            return ascending ? to - firstIndexAtMost(scores, from, to, score, true)
+                    : firstIndexAtMost(scores, from, to, score, false) - from;
+        }
+
+        // Whether this range's element at `position` comes first in the merged ranking
+        boolean before(int position, Range other, int otherPosition, boolean ascending) {
+            float score = scores[index(position, ascending)];
+            float otherScore = other.scores[other.index(otherPosition, ascending)];
+            if (score != otherScore) {
+                return ascending ? score < otherScore : score > otherScore;
+            }
+            int row = at(position, ascending);
+            int otherRow = other.at(otherPosition, ascending);
+            return ascending ? row > otherRow : row < otherRow;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.ai.churnprediction.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in admission control that keeps report downloads and interactive predictions apart.
+ * <ul>
+ *     <li>Interactive predictions run on a compute pool with one platform thread per core and a bounded queue.
+ *     With {@code spring.threads.virtual.enabled} the request threads are virtual and only park while their
+ *     prediction runs, so CPU-bound inference never pins a carrier thread. A full queue sheds the request.</li>
+ *     <li>With micro-batching enabled, single predictions do not take a compute thread: the caller holds one of
+ *     {@code compute-threads + queue-size} permits while it waits for its batch, so a batch can hold more rows
+ *     than there are compute threads and the batcher's forward pass does not compete with blocked pool
+ *     threads.</li>
+ *     <li>Report downloads are limited to {@code max-concurrent-reports}; further downloads are shed instead of
+ *     competing with the running ones and with interactive traffic for the cores. Reports are scored on the
+ *     {@link ReportWriter}'s own pool, not on the compute pool. Unless {@code churn.report.parallelism} is set,
+ *     that pool only gets the cores the compute pool leaves (at least one), so running reports do not compete
+ *     with interactive inference for every core.</li>
+ * </ul>
+ * Shed requests get an {@link OverloadedException}, answered with 429 and {@code Retry-After}.
+ * When disabled, work runs on the calling thread as before.
+ */
+@Component
+@Slf4j
+public class ServingBulkheads {
+
+    /**
+     * Report download that may fail with an {@link IOException}, e.g. when the client goes away.
+     */
+    @FunctionalInterface
+    public interface ReportTask {
+        void run() throws IOException;
+    }
+
+    @Getter
+    private final boolean enabled;
+    // Compute threads for interactive inference, 0 means one per core
+    private final int computeThreads;
+    // Interactive predictions waiting for a compute thread before new ones are shed
+    private final int queueSize;
+    private final int maxConcurrentReports;
+    private final long retryAfterSeconds;
+    // Single predictions are coalesced by the PredictionBatcher
+    private final boolean microBatching;
+
+    private ThreadPoolExecutor computePool;
+    // Single predictions waiting for their micro-batch
+    private Semaphore batchedPermits;
+    private Semaphore reportPermits;
+    @Getter
+    private final LongAdder rejectedPredictions = new LongAdder();
+    @Getter
+    private final LongAdder rejectedReports = new LongAdder();
+
+    public ServingBulkheads(@Value("${churn.serving.bulkhead.enabled:false}") boolean enabled,
+                            @Value("${churn.serving.bulkhead.compute-threads:0}") int computeThreads,
+                            @Value("${churn.serving.bulkhead.queue-size:256}") int queueSize,
+                            @Value("${churn.serving.bulkhead.max-concurrent-reports:2}") int maxConcurrentReports,
+                            @Value("${churn.serving.bulkhead.retry-after-seconds:1}") long retryAfterSeconds,
+                            @Value("${churn.serving.micro-batch.enabled:false}") boolean microBatching) {
+        this.enabled = enabled;
+        this.computeThreads = computeThreads;
+        this.queueSize = queueSize;
+        this.maxConcurrentReports = maxConcurrentReports;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.microBatching = microBatching;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        int threads = computeThreads > 0 ? computeThreads : Runtime.getRuntime().availableProcessors();
+        computePool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                Thread.ofPlatform().name("inference-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        computePool.prestartAllCoreThreads();
+        batchedPermits = new Semaphore(threads + Math.max(1, queueSize));
+        reportPermits = new Semaphore(Math.max(1, maxConcurrentReports));
+        log.info("Bulkheads enabled: {} compute threads, queue of {}, {} concurrent reports",
+                threads, queueSize, maxConcurrentReports);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (computePool != null) {
+            computePool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs an interactive prediction on the compute pool and waits for it.
+     *
+     * @throws OverloadedException when the compute queue is full
+     */
+    public <T> T interactive(Callable<T> task) {
+        if (!enabled) {
+            return call(task);
+        }
+        Future<T> future;
+        try {
+            future = computePool.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedPredictions.increment();
+            throw new OverloadedException("Inference queue full", retryAfterSeconds);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a prediction", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs a single prediction like {@link #interactive}, except that with micro-batching it runs on the calling
+     * thread while holding a permit, since it only encodes the request and waits for the batcher.
+     *
+     * @throws OverloadedException when all permits are taken
+     */
+    public <T> T single(Callable<T> task) {
+        if (!enabled || !microBatching) {
+            return interactive(task);
+        }
+        if (!batchedPermits.tryAcquire()) {
+            rejectedPredictions.increment();
+            throw new OverloadedException("Inference queue full", retryAfterSeconds);
+        }
+        try {
+            return call(task);
+        } finally {
+            batchedPermits.release();
+        }
+    }
+
+    /**
+     * Runs a report download when fewer than {@code max-concurrent-reports} are running.
+     *
+     * @throws OverloadedException when the report bulkhead is full, before anything has been written
+     */
+    public void report(ReportTask task) throws IOException {
+        if (!enabled) {
+            task.run();
+            return;
+        }
+        if (!reportPermits.tryAcquire()) {
+            rejectedReports.increment();
+            throw new OverloadedException("Too many report downloads", retryAfterSeconds);
+        }
+        try {
+            task.run();
+        } finally {
+            reportPermits.release();
+        }
+    }
+
+    /**
+     * @return interactive predictions waiting for a compute thread
+     */
+    public int getQueuedPredictions() {
+        return computePool != null ? computePool.getQueue().size() : 0;
+    }
+
+    /**
+     * @return report downloads running now
+     */
+    public int getActiveReports() {
+        return reportPermits != null ? Math.max(1, maxConcurrentReports) - reportPermits.availablePermits() : 0;
+    }
+
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
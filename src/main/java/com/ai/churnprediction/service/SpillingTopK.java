@@ -0,0 +1,302 @@
+package com.ai.churnprediction.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The {@code k} customers with the highest churn probability out of a stream of any length, in bounded memory
+ * and bounded disk.
+ * <p>
+ * A min-heap keeps the best {@code k} customers seen so far and drops every other customer right away. The heap
+ * draws on a {@link MemoryBudget} that may be shared with other rankings; once the budget is used up, the ranking
+ * holding the most entries sorts them and spills them to a run file. Every {@code fanIn} runs of one level are
+ * merged into one run of the next level, cut to {@code k} entries because nothing after the k-th can be emitted,
+ * and the k-th entry of a full run becomes a cutoff below which offered customers are dropped. {@link #drain}
+ * merges the remaining runs, in passes when there are more than {@code fanIn}, so at most {@code fanIn} files are
+ * open at once. Ties are ranked by customer ID, so the ranking does not depend on the input order. Not thread
+ * safe; {@link #close()} deletes the run files.
+ */
+final class SpillingTopK implements Closeable {
+
+    record Ranked(String customerID, double probability) {
+    }
+
+    // Highest probability first
+    static final Comparator<Ranked> RANKING = Comparator.comparingDouble(Ranked::probability).reversed()
+            .thenComparing(Ranked::customerID);
+
+    // Runs merged at once, each with an open file and a read buffer
+    static final int DEFAULT_FAN_IN = 32;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    @FunctionalInterface
+    interface RankedConsumer {
+        void accept(Ranked ranked) throws IOException;
+    }
+
+    /**
+     * Entries a group of rankings may hold in memory together. When it is used up, the member holding the most
+     * entries spills them. Not thread safe.
+     */
+    static final class MemoryBudget {
+        private final int limit;
+        private final List<SpillingTopK> members = new ArrayList<>();
+        private int held;
+
+        MemoryBudget(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be positive");
+            }
+            this.limit = limit;
+        }
+
+        private void reserve() throws IOException {
+            if (held >= limit) {
+                SpillingTopK largest = members.getFirst();
+                for (SpillingTopK member : members) {
+                    if (member.heap.size() > largest.heap.size()) {
+                        largest = member;
+                    }
+                }
+                largest.spill();
+            }
+            held++;
+        }
+    }
+
+    private record Run(Path path, int size, Ranked last) {
+    }
+
+    private final int k;
+    private final MemoryBudget budget;
+    private final Path spillDirectory;
+    private final int fanIn;
+    // Worst of the best k held in memory on top
+    private final PriorityQueue<Ranked> heap = new PriorityQueue<>(RANKING.reversed());
+    // Sorted runs per merge level
+    private final List<List<Run>> levels = new ArrayList<>();
+    // k-th customer of a full run, nothing ranked after it can make the top k
+    private Ranked cutoff;
+    private int spills;
+
+    /**
+     * @param spillDirectory where sorted runs are written when {@code k > maxInMemory}
+     */
+    SpillingTopK(int k, int maxInMemory, Path spillDirectory) {
+        this(k, new MemoryBudget(maxInMemory), spillDirectory, DEFAULT_FAN_IN);
+    }
+
+    /**
+     * @param budget         entries held in memory, shared with the other rankings of the same budget
+     * @param spillDirectory where sorted runs are written when the budget is used up
+     * @param fanIn          runs merged at once
+     */
+    SpillingTopK(int k, MemoryBudget budget, Path spillDirectory, int fanIn) {
+        if (k < 1 || fanIn < 2) {
+            throw new IllegalArgumentException("k must be positive and fanIn at least 2");
+        }
+        this.k = k;
+        this.budget = budget;
+        this.spillDirectory = spillDirectory;
+        this.fanIn = fanIn;
+        budget.members.add(this);
+    }
+
+    void offer(String customerID, double probability) throws IOException {
+        // Most customers rank below the cutoff or the k-th, compared without allocating
+        if (cutoff != null && !ranksBefore(customerID, probability, cutoff)) {
+            return;
+        }
+        if (heap.size() >= k) {
+            if (ranksBefore(customerID, probability, heap.peek())) {
+                heap.poll();
+                heap.add(new Ranked(customerID, probability));
+            }
+            return;
+        }
+        budget.reserve();
+        heap.add(new Ranked(customerID, probability));
+    }
+
+    /**
+     * Passes the best {@code k} customers to {@code consumer}, highest probability first.
+     */
+    void drain(RankedConsumer consumer) throws IOException {
+        if (levels.isEmpty()) {
+            List<Ranked> ranked = new ArrayList<>(heap);
+            ranked.sort(RANKING);
+            release();
+            for (Ranked entry : ranked) {
+                consumer.accept(entry);
+            }
+            return;
+        }
+        spill();
+        List<Run> runs = new ArrayList<>();
+        levels.forEach(runs::addAll);
+        levels.clear();
+        levels.add(runs);
+        while (runs.size() > fanIn) {
+            List<Run> group = runs.subList(0, fanIn);
+            Run merged = mergeRuns(group);
+            group.clear();
+            runs.add(merged);
+        }
+        merge(runs, consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+        budget.members.remove(this);
+        for (List<Run> level : levels) {
+            for (Run run : level) {
+                Files.deleteIfExists(run.path());
+            }
+        }
+        levels.clear();
+    }
+
+    /**
+     * @return times the heap was spilled to a run file
+     */
+    int spilledRuns() {
+        return spills;
+    }
+
+    private void release() {
+        budget.held -= heap.size();
+        heap.clear();
+    }
+
+    private void spill() throws IOException {
+        if (heap.isEmpty()) {
+            return;
+        }
+        List<Ranked> sorted = new ArrayList<>(heap);
+        sorted.sort(RANKING);
+        release();
+        Path path = Files.createTempFile(spillDirectory, "at-risk-", ".run");
+        try (DataOutputStream out = openRun(path)) {
+            for (Ranked entry : sorted) {
+                write(out, entry);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        spills++;
+        addRun(new Run(path, sorted.size(), sorted.getLast()), 0);
+    }
+
+    private void addRun(Run run, int level) throws IOException {
+        if (run.size() == k && (cutoff == null || RANKING.compare(run.last(), cutoff) < 0)) {
+            cutoff = run.last();
+        }
+        if (levels.size() == level) {
+            levels.add(new ArrayList<>());
+        }
+        List<Run> runs = levels.get(level);
+        runs.add(run);
+        if (runs.size() >= fanIn) {
+            Run merged = mergeRuns(runs);
+            runs.clear();
+            addRun(merged, level + 1);
+        }
+    }
+
+    // Merges runs into one run of at most k entries and deletes them
+    private Run mergeRuns(List<Run> runs) throws IOException {
+        Path path = Files.createTempFile(spillDirectory, "at-risk-", ".run");
+        Ranked last;
+        try (DataOutputStream out = openRun(path)) {
+            last = merge(runs, entry -> write(out, entry));
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        long size = 0;
+        for (Run run : runs) {
+            size += run.size();
+            Files.deleteIfExists(run.path());
+        }
+        return new Run(path, (int) Math.min(k, size), last);
+    }
+
+    // Passes the best k entries of the runs to consumer and returns the last one
+    private Ranked merge(List<Run> runs, RankedConsumer consumer) throws IOException {
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            PriorityQueue<RunReader> merge = new PriorityQueue<>(runs.size(),
+                    (a, b) -> RANKING.compare(a.head, b.head));
+            for (Run run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) {
+                    merge.add(reader);
+                }
+            }
+            Ranked last = null;
+            for (int emitted = 0; emitted < k && !merge.isEmpty(); emitted++) {
+                RunReader best = merge.poll();
+                last = best.head;
+                consumer.accept(last);
+                if (best.advance()) {
+                    merge.add(best);
+                }
+            }
+            return last;
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    private static boolean ranksBefore(String customerID, double probability, Ranked other) {
+        return probability > other.probability() || probability == other.probability()
+                && customerID.compareTo(other.customerID()) < 0;
+    }
+
+    private static DataOutputStream openRun(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_BYTES));
+    }
+
+    private static void write(DataOutputStream out, Ranked entry) throws IOException {
+        out.writeUTF(entry.customerID());
+        out.writeDouble(entry.probability());
+    }
+
+    /**
+     * Reads one sorted run back entry by entry.
+     */
+    private static final class RunReader {
+        private final DataInputStream in;
+        private int remaining;
+        private Ranked head;
+
+        RunReader(Run run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path()), BUFFER_BYTES));
+            this.remaining = run.size();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            head = new Ranked(in.readUTF(), in.readDouble());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.Histogram;
+import com.ai.churnprediction.repository.CustomerRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up the serving path after startup and gates readiness on it.
+ * <ol>
+ *     <li>Sampled customers and synthetic payloads are scored with {@link ChurnPrediction#predictChurnBatch(List)}
+ *     at every batch size the service runs: powers of two up to {@code churn.scoring.batch-size} (report and
+ *     cache fill chunks) and the micro-batch size.</li>
+ *     <li>With micro-batching enabled, concurrent {@link ChurnPrediction#predictChurnUncached(Map)} calls exercise
+ *     the batcher.</li>
+ *     <li>Single {@code predictChurnUncached} calls run in rounds until the median latency of {@code stable-rounds}
+ *     consecutive rounds stays within {@code tolerance} of the round before, or {@code max-seconds} have passed.</li>
+ * </ol>
+ * Synthetic payloads recombine the column values of the sampled customers and scale their numbers, so they run
+ * the transform and the network like new requests. Single predictions bypass the prediction cache, which keeps
+ * the entries of real requests and their hit ratio.
+ */
+@Component
+@Slf4j
+public class WarmupService {
+
+    public enum State {
+        WARMING_UP, READY
+    }
+
+    /**
+     * @param stabilized  whether latency settled before {@code max-seconds}
+     * @param p50Micros   median latency of a single prediction in the last round
+     * @param p99Micros   99th percentile of a single prediction in the last round
+     */
+    public record WarmupReport(long durationMillis, long predictions, int rounds, boolean stabilized,
+                               double p50Micros, double p99Micros) {
+    }
+
+    private static final int BATCH_REPEATS = 3;
+
+    @Autowired
+    private ChurnPrediction churnPrediction;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private PredictionBatcher predictionBatcher;
+
+    @Value("${churn.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${churn.warmup.max-seconds:60}")
+    private long maxSeconds;
+
+    // Single predictions per latency measurement
+    @Value("${churn.warmup.round-size:500}")
+    private int roundSize;
+
+    @Value("${churn.warmup.stable-rounds:3}")
+    private int stableRounds;
+
+    // Relative change of the median latency between rounds that still counts as stable
+    @Value("${churn.warmup.tolerance:0.1}")
+    private double tolerance;
+
+    @Value("${churn.warmup.sample-size:1000}")
+    private int sampleSize;
+
+    @Value("${churn.scoring.batch-size:1024}")
+    private int scoringBatchSize;
+
+    @Getter
+    private volatile State state = State.WARMING_UP;
+    // Null until the warm-up has finished
+    @Getter
+    private volatile WarmupReport report;
+
+    public WarmupService() {
+    }
+
+    // Warms up `churnPrediction` with the customers of `customerRepository`, for tests
+    WarmupService(ChurnPrediction churnPrediction, CustomerRepository customerRepository,
+                  PredictionBatcher predictionBatcher, boolean enabled, long maxSeconds, int roundSize,
+                  int stableRounds, double tolerance, int sampleSize, int scoringBatchSize) {
+        this.churnPrediction = churnPrediction;
+        this.customerRepository = customerRepository;
+        this.predictionBatcher = predictionBatcher;
+        this.enabled = enabled;
+        this.maxSeconds = maxSeconds;
+        this.roundSize = roundSize;
+        this.stableRounds = stableRounds;
+        this.tolerance = tolerance;
+        this.sampleSize = sampleSize;
+        this.scoringBatchSize = scoringBatchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            state = State.READY;
+            log.info("Warm-up disabled, ready");
+            return;
+        }
+        Thread.ofPlatform().name("warmup").daemon().start(this::run);
+    }
+
+    // Runs the whole warm-up on the calling thread
+    void run() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(maxSeconds);
+        Random random = new Random(42);
+        long predictions = 0;
+        int rounds = 0;
+        boolean stabilized = false;
+        Histogram last = new Histogram();
+        try {
+            List<Map<String, Object>> samples = sample(random);
+            if (samples.isEmpty()) {
+                log.warn("No customers to warm up with");
+            } else {
+                for (int size : batchSizes()) {
+                    for (int i = 0; i < BATCH_REPEATS; i++) {
+                        churnPrediction.predictChurnBatch(i == 0
+                                ? copies(samples, size, random)
+                                : synthetic(samples, size, random));
+                        predictions += size;
+                    }
+                }
+                if (predictionBatcher.isEnabled()) {
+                    predictions += concurrentRound(synthetic(samples, roundSize * 4, random));
+                }
+                for (Map<String, Object> payload : samples) {
+                    churnPrediction.predictChurnUncached(payload);
+                    predictions++;
+                }
+
+                long previous = -1;
+                int stable = 0;
+                while (stable < stableRounds && System.nanoTime() < deadline) {
+                    Histogram round = new Histogram();
+                    for (Map<String, Object> payload : synthetic(samples, roundSize, random)) {
+                        long callStart = System.nanoTime();
+                        churnPrediction.predictChurnUncached(payload);
+                        round.record(System.nanoTime() - callStart);
+                    }
+                    predictions += roundSize;
+                    rounds++;
+                    long median = round.percentile(0.5);
+                    stable = previous > 0 && Math.abs(median - previous) <= tolerance * previous ? stable + 1 : 0;
+                    previous = median;
+                    last = round;
+                }
+                stabilized = stable >= stableRounds;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Warm-up failed, reporting ready anyway", e);
+        }
+        report = new WarmupReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), predictions, rounds,
+                stabilized, last.percentile(0.5) / 1000.0, last.percentile(0.99) / 1000.0);
+        state = State.READY;
+        if (stabilized) {
+            log.info("Warm-up finished in {} ms after {} predictions, stabilized latency p50 {} us, p99 {} us",
+                    report.durationMillis(), predictions, report.p50Micros(), report.p99Micros());
+        } else {
+            log.warn("Warm-up stopped after {} ms and {} predictions before latency stabilized, p50 {} us, p99 {} us",
+                    report.durationMillis(), predictions, report.p50Micros(), report.p99Micros());
+        }
+    }
+
+    // Powers of two up to the scoring batch size, the scoring batch size and the micro-batch size
+    private List<Integer> batchSizes() {
+        TreeSet<Integer> sizes = new TreeSet<>();
+        int maxSize = Math.max(1, scoringBatchSize);
+        for (int size = 1; size < maxSize; size *= 2) {
+            sizes.add(size);
+        }
+        sizes.add(maxSize);
+        if (predictionBatcher.isEnabled()) {
+            sizes.add(predictionBatcher.getMaxBatchSize());
+        }
+        return new ArrayList<>(sizes);
+    }
+
+    // Single predictions from as many threads as a micro-batch holds, so the batcher flushes full batches
+    private int concurrentRound(List<Map<String, Object>> payloads) {
+        int threads = Math.max(1, Math.min(predictionBatcher.getMaxBatchSize(), 64));
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("warmup-", 0).daemon().factory());
+        try {
+            List<Future<?>> futures = new ArrayList<>(payloads.size());
+            for (Map<String, Object> payload : payloads) {
+                futures.add(executor.submit(() -> churnPrediction.predictChurnUncached(payload)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Concurrent warm-up round failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return payloads.size();
+    }
+
+    private List<Map<String, Object>> sample(Random random) {
+        int size = customerRepository.size();
+        List<Map<String, Object>> samples = new ArrayList<>(Math.min(size, sampleSize));
+        for (int i = 0; i < Math.min(size, sampleSize); i++) {
+            samples.add(customerRepository.getRow(size <= sampleSize ? i : random.nextInt(size)));
+        }
+        return samples;
+    }
+
+    private static List<Map<String, Object>> copies(List<Map<String, Object>> samples, int count, Random random) {
+        List<Map<String, Object>> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            payloads.add(new LinkedHashMap<>(samples.get(random.nextInt(samples.size()))));
+        }
+        return payloads;
+    }
+
+    // Every column from a random sample, numbers scaled by a random factor between 0.5 and 1.5
+    private static List<Map<String, Object>> synthetic(List<Map<String, Object>> samples, int count, Random random) {
+        List<Map<String, Object>> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            for (String column : samples.get(0).keySet()) {
+                Object value = samples.get(random.nextInt(samples.size())).get(column);
+                payload.put(column, scaled(value, 0.5 + random.nextDouble()));
+            }
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    private static Object scaled(Object value, double factor) {
+        String text = value == null ? "" : value.toString().trim();
+        if (text.isEmpty() || !Character.isDigit(text.charAt(text.length() - 1))) {
+            return value;
+        }
+        try {
+            if (text.indexOf('.') < 0) {
+                return String.valueOf(Math.round(Long.parseLong(text) * factor));
+            }
+            return String.valueOf(Double.parseDouble(text) * factor);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+}
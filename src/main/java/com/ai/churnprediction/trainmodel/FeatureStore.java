@@ -0,0 +1,217 @@
+package com.ai.churnprediction.trainmodel;
+
+import com.ai.churnprediction.trainmodel.api.datavec.DatasetSplitter;
+import com.ai.churnprediction.trainmodel.api.datavec.DatavecUtility;
+import com.ai.churnprediction.trainmodel.api.nd4j.FeatureMatrix;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.schema.Schema;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Transformed train, validation and test splits kept between training runs, so a run on an unchanged dataset
+ * skips the ETL (cleaning, splitting, analysis and the full TransformProcess) and starts fitting right away.
+ * <p>
+ * An entry lives in {@code <store>/<CSV hash>-<settings hash>}, the SHA-256 of the raw CSV and of the split
+ * settings, and holds the training analysis, the JSON of the full transform, the first raw test rows for the
+ * golden sample and one {@link FeatureMatrix} per split. It is only reused when the transform built from its
+ * analysis by the current {@link DatavecUtility#buildFullTransform} has the stored JSON, so changing the encoding
+ * or normalization invalidates it. Entries are built in a temporary directory and moved in place.
+ * Delete the store directory to drop all entries.
+ */
+public final class FeatureStore {
+
+    // Raw test rows kept per entry for the golden sample
+    public static final int RAW_TEST_ROWS = 1000;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int TRANSFORM_BATCH_SIZE = 1000;
+    private static final String LABEL_COLUMN = "Churn";
+    private static final String CLEAN_COLUMN = "TotalCharges";
+
+    private FeatureStore() {
+    }
+
+    /**
+     * @param fullTransform transform the matrices were built with, to save next to the model
+     * @param rawTestRows   header and first {@link #RAW_TEST_ROWS} cleaned test rows as CSV
+     * @param cached        whether the entry was reused from an earlier run
+     */
+    public record Entry(Path directory, DataAnalysis analysis, TransformProcess fullTransform, FeatureMatrix train,
+                        FeatureMatrix validation, FeatureMatrix test, File rawTestRows, boolean cached,
+                        boolean temporary) {
+
+        /**
+         * Deletes the entry when it was only built for this run because the store is disabled.
+         */
+        public void release() throws IOException {
+            if (temporary) {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    /**
+     * Returns the transformed splits of {@code csv} for {@code options}, building and storing them in
+     * {@code options.featureStore()} on a miss. With a blank store directory the splits are built into a temporary
+     * directory that {@link Entry#release()} deletes.
+     *
+     * @param cleanedSchema schema of the rows after cleaning, as the splitter and the transform expect it
+     */
+    public static Entry prepare(File csv, Schema cleanedSchema, TrainingOptions options) throws IOException {
+        boolean enabled = !options.featureStore().isBlank();
+        Path root = Path.of(enabled ? options.featureStore() : System.getProperty("user.dir")).toAbsolutePath();
+        Files.createDirectories(root);
+        Path entry = null;
+        if (enabled) {
+            entry = root.resolve(sha256(csv.toPath()).substring(0, 16) + "-" + settingsHash(options).substring(0, 16));
+            Optional<Entry> cached = open(entry, cleanedSchema, true, false);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+            deleteRecursively(entry);
+        }
+
+        Path building = Files.createTempDirectory(root, ".feature-store-");
+        try {
+            build(csv, cleanedSchema, options, building);
+            if (!enabled) {
+                return open(building, cleanedSchema, false, true).orElseThrow();
+            }
+            try {
+                Files.move(building, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // Built by a concurrent run in the meantime
+                deleteRecursively(building);
+            }
+            return open(entry, cleanedSchema, false, false)
+                    .orElseThrow(() -> new IOException("Feature store entry unusable right after building it"));
+        } catch (IOException | RuntimeException e) {
+            deleteRecursively(building);
+            throw e;
+        }
+    }
+
+    private static void build(File csv, Schema cleanedSchema, TrainingOptions options, Path directory)
+            throws IOException {
+        // One parallel pass over the raw CSV: clean the blank TotalCharges, split the data stratified by churn
+        // label and analyze the training split for normalization, so no test data leaks into it
+        DatasetSplitter.SplitFiles split = DatasetSplitter.split(csv, cleanedSchema, LABEL_COLUMN, CLEAN_COLUMN,
+                options.testFraction(), options.validationFraction(), options.shuffleBucketRows(), options.seed(),
+                options.etlThreads(), directory.toFile());
+        try {
+            // Round trip the analysis so this run transforms exactly like a later run that reads it back
+            String analysisJson = split.trainAnalysis().toJson();
+            TransformProcess fullTransform = DatavecUtility.buildFullTransform(cleanedSchema,
+                    DataAnalysis.fromJson(analysisJson));
+            FeatureMatrix.write(transformed(fullTransform, split.train()), directory.resolve("train.bin"));
+            FeatureMatrix.write(transformed(fullTransform, split.validation()), directory.resolve("validation.bin"));
+            FeatureMatrix.write(transformed(fullTransform, split.test()), directory.resolve("test.bin"));
+            copyHead(split.test().toPath(), directory.resolve("raw-test-rows.csv"), RAW_TEST_ROWS + 1);
+            Files.writeString(directory.resolve("analysis.json"), analysisJson);
+            Files.writeString(directory.resolve("transform.json"), fullTransform.toJson());
+        } finally {
+            split.delete();
+        }
+    }
+
+    private static Optional<Entry> open(Path directory, Schema cleanedSchema, boolean cached, boolean temporary)
+            throws IOException {
+        Path transformFile = directory.resolve("transform.json");
+        if (!Files.isRegularFile(transformFile)) {
+            return Optional.empty();
+        }
+        DataAnalysis analysis = DataAnalysis.fromJson(Files.readString(directory.resolve("analysis.json")));
+        TransformProcess fullTransform = DatavecUtility.buildFullTransform(cleanedSchema, analysis);
+        if (!fullTransform.toJson().equals(Files.readString(transformFile))) {
+            System.out.println("Feature store entry " + directory.getFileName() + " was built with another transform");
+            return Optional.empty();
+        }
+        return Optional.of(new Entry(directory, analysis, fullTransform,
+                FeatureMatrix.open(directory.resolve("train.bin")),
+                FeatureMatrix.open(directory.resolve("validation.bin")),
+                FeatureMatrix.open(directory.resolve("test.bin")),
+                directory.resolve("raw-test-rows.csv").toFile(), cached, temporary));
+    }
+
+    private static DataSetIterator transformed(TransformProcess fullTransform, File csv) throws IOException {
+        try {
+            return DatavecUtility.applyFinalTransform(fullTransform, csv, TRANSFORM_BATCH_SIZE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while transforming " + csv, e);
+        }
+    }
+
+    // Everything the split depends on besides the CSV
+    private static String settingsHash(TrainingOptions options) {
+        return sha256(String.join("|", String.valueOf(FORMAT_VERSION), LABEL_COLUMN, CLEAN_COLUMN,
+                String.valueOf(options.testFraction()), String.valueOf(options.validationFraction()),
+                String.valueOf(options.shuffleBucketRows()), String.valueOf(options.seed()),
+                String.valueOf(options.etlThreads())));
+    }
+
+    private static void copyHead(Path source, Path target, int lines) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            String line;
+            for (int i = 0; i < lines && (line = reader.readLine()) != null; i++) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[1 << 20];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
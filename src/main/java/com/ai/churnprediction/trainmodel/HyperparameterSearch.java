@@ -0,0 +1,242 @@
+package com.ai.churnprediction.trainmodel;
+
+import com.ai.churnprediction.trainmodel.SearchOptions.Candidate;
+import com.ai.churnprediction.trainmodel.api.datavec.DatavecUtility;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.MedianStoppingRule;
+
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.schema.InferredSchema;
+import org.datavec.api.transform.schema.Schema;
+
+import org.deeplearning4j.datasets.iterator.ExistingDataSetIterator;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.evaluation.classification.ROC;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains every candidate of a search space (see {@link SearchOptions}) and writes a leaderboard of
+ * test accuracy, F1 and AUC, training time and single-row inference latency to hyperparameter-leaderboard.csv.
+ * 1. Splits, analyzes and transforms the dataset once, exactly like {@link TrainModel} and sharing its
+ *    {@link FeatureStore}, and keeps the transformed splits in memory. Minibatches are cut once per batch size
+ *    and shared by all candidates, so no candidate repeats the ETL.
+ * 2. Trains --parallel-trials candidates at a time, each on its own thread with its own network.
+ * 3. Scores every candidate on the validation split after each epoch. A candidate below the median of the others
+ *    at that epoch is pruned, see {@link MedianStoppingRule}.
+ * 4. Evaluates the remaining candidates on the test split and times single-row predictions one candidate at a time,
+ *    once training is over, so the latency is not distorted by the other candidates.
+ * Candidates are ranked by validation AUC; the test split is only reported. Train the winner with
+ * {@link TrainModel} and the printed arguments. Unlike TrainModel, the transformed splits must fit in memory.
+ */
+public class HyperparameterSearch {
+
+    private static final String LEADERBOARD_FILE = "hyperparameter-leaderboard.csv";
+    private static final int EVALUATION_BATCH_SIZE = 1000;
+    private static final int LATENCY_WARMUP_RUNS = 200;
+
+    /**
+     * A candidate after training, {@code model} is null when it was pruned.
+     */
+    private record Trained(Candidate candidate, MultiLayerNetwork model, int epochsTrained, double validationAuc,
+                           long trainingMillis) {
+    }
+
+    /**
+     * One leaderboard row, test metrics and latency are NaN for pruned candidates.
+     */
+    private record Trial(Trained trained, double accuracy, double f1, double testAuc, double latencyP50Micros,
+                         double latencyP99Micros, long parameters) {
+
+        boolean pruned() {
+            return trained.model() == null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SearchOptions options = SearchOptions.parse(args);
+        TrainingOptions training = options.training();
+        List<Candidate> candidates = options.candidates();
+        System.out.printf("Searching %d candidates, %d at a time: %s%n", candidates.size(), options.parallelTrials(),
+                options);
+
+        // Step 1: The ETL of TrainModel, once for all candidates
+        CachedSplits data = loadSplits(training);
+        System.out.printf("Cached %d train, %d validation, %d test rows with %d features%n",
+                data.train.numExamples(), data.validation.numExamples(), data.test.numExamples(), data.numInputs());
+
+        // Step 2 and 3: Train the candidates in parallel, pruning on the validation AUC
+        MedianStoppingRule pruning = new MedianStoppingRule(options.pruneAfterEpochs(), options.pruneMinTrials());
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(options.parallelTrials(), candidates.size()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hyperparameter-search");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        List<Trained> trained = new ArrayList<>();
+        try {
+            List<Callable<Trained>> tasks = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                tasks.add(() -> train(candidate, data, pruning, training.seed()));
+            }
+            for (Future<Trained> future : workers.invokeAll(tasks)) {
+                trained.add(future.get());
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        // Step 4: Test metrics and latency, one candidate at a time
+        List<Trial> trials = new ArrayList<>();
+        for (Trained result : trained) {
+            trials.add(evaluate(result, data, options.latencyRuns()));
+        }
+        // Completed candidates by validation AUC, then the pruned ones that got furthest
+        trials.sort(Comparator.comparing(Trial::pruned)
+                .thenComparing(trial -> trial.pruned() ? trial.trained().epochsTrained() : 0,
+                        Comparator.reverseOrder())
+                .thenComparing(trial -> trial.trained().validationAuc(), Comparator.reverseOrder()));
+        writeLeaderboard(new File(LEADERBOARD_FILE), trials);
+
+        System.out.println("Leaderboard saved to " + LEADERBOARD_FILE);
+        trials.stream().limit(10).forEach(trial -> System.out.printf(Locale.ROOT,
+                "%s: validation AUC %.4f, test accuracy %.4f, F1 %.4f, AUC %.4f, %.1f s, p50 %.0f us%s%n",
+                trial.trained().candidate(), trial.trained().validationAuc(), trial.accuracy(), trial.f1(),
+                trial.testAuc(), trial.trained().trainingMillis() / 1e3, trial.latencyP50Micros(),
+                trial.pruned() ? " (pruned)" : ""));
+        if (!trials.isEmpty() && !trials.get(0).pruned()) {
+            System.out.println("Train the best candidate with: TrainModel " + trials.get(0).trained().candidate());
+        }
+    }
+
+    private static Trained train(Candidate candidate, CachedSplits data, MedianStoppingRule pruning, long seed) {
+        long start = System.nanoTime();
+        MultiLayerNetwork model = new MultiLayerNetwork(DeepLearning4JUtility.buildModelConfig(data.numInputs(),
+                candidate.hiddenLayers(), candidate.learningRate(), seed));
+        model.init();
+        List<DataSet> batches = data.trainBatches(candidate.batchSize());
+        double validationAuc = Double.NaN;
+        for (int epoch = 1; epoch <= candidate.epochs(); epoch++) {
+            model.fit(new ExistingDataSetIterator(batches));
+            ROC roc = model.evaluateROC(new ExistingDataSetIterator(data.validationBatches), 0);
+            validationAuc = roc.calculateAUC();
+            // The last epoch still reports, as a reference for the candidates behind
+            if (pruning.report(epoch, validationAuc) && epoch < candidate.epochs()) {
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf(Locale.ROOT, "Pruned %s after epoch %d, validation AUC %.4f%n", candidate, epoch,
+                        validationAuc);
+                return new Trained(candidate, null, epoch, validationAuc, millis);
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf(Locale.ROOT, "Trained %s in %.1f s, validation AUC %.4f%n", candidate, millis / 1e3,
+                validationAuc);
+        return new Trained(candidate, model, candidate.epochs(), validationAuc, millis);
+    }
+
+    private static Trial evaluate(Trained trained, CachedSplits data, int latencyRuns) {
+        MultiLayerNetwork model = trained.model();
+        if (model == null) {
+            return new Trial(trained, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0);
+        }
+        Evaluation evaluation = model.evaluate(new ExistingDataSetIterator(data.testBatches));
+        ROC roc = model.evaluateROC(new ExistingDataSetIterator(data.testBatches), 0);
+
+        // Latency of one customer, the way the service predicts a single request
+        INDArray row = data.test.getFeatures().getRow(0, true);
+        for (int i = 0; i < LATENCY_WARMUP_RUNS; i++) {
+            model.output(row);
+        }
+        long[] nanos = new long[latencyRuns];
+        for (int i = 0; i < latencyRuns; i++) {
+            long start = System.nanoTime();
+            model.output(row);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return new Trial(trained, evaluation.accuracy(), evaluation.f1(), roc.calculateAUC(),
+                nanos[(latencyRuns - 1) / 2] / 1e3, nanos[(int) Math.ceil(latencyRuns * 0.99) - 1] / 1e3,
+                model.numParams());
+    }
+
+    private static void writeLeaderboard(File file, List<Trial> trials) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+            writer.write("rank,hidden_layers,learning_rate,epochs,batch_size,status,epochs_trained,validation_auc,"
+                    + "test_accuracy,test_f1,test_auc,training_seconds,latency_p50_micros,latency_p99_micros,"
+                    + "parameters");
+            writer.newLine();
+            int rank = 0;
+            for (Trial trial : trials) {
+                Trained trained = trial.trained();
+                Candidate candidate = trained.candidate();
+                writer.write(String.format(Locale.ROOT, "%d,%s,%s,%d,%d,%s,%d,%.5f,%.5f,%.5f,%.5f,%.3f,%.1f,%.1f,%d",
+                        ++rank, TrainingOptions.formatLayers(candidate.hiddenLayers()), candidate.learningRate(),
+                        candidate.epochs(), candidate.batchSize(), trial.pruned() ? "pruned" : "completed",
+                        trained.epochsTrained(), trained.validationAuc(), trial.accuracy(), trial.f1(),
+                        trial.testAuc(), trained.trainingMillis() / 1e3, trial.latencyP50Micros(),
+                        trial.latencyP99Micros(), trial.parameters()));
+                writer.newLine();
+            }
+        }
+    }
+
+    // The splits of TrainModel, reused from the feature store when an earlier run transformed them
+    private static CachedSplits loadSplits(TrainingOptions training) throws IOException {
+        Schema inputSchema = new InferredSchema(AiUtil.DATASET_PATH).build();
+        TransformProcess preProcess = DatavecUtility.simplifyTotalCharges(inputSchema);
+        FeatureStore.Entry entry = FeatureStore.prepare(new File(AiUtil.DATASET_PATH), preProcess.getFinalSchema(),
+                training);
+        try {
+            return new CachedSplits(entry.train().toDataSet(), entry.validation().toDataSet(),
+                    entry.test().toDataSet());
+        } finally {
+            entry.release();
+        }
+    }
+
+    /**
+     * The transformed splits, shared read-only by all candidates. Training minibatches are cut once per batch size.
+     */
+    private static final class CachedSplits {
+        private final DataSet train;
+        private final DataSet validation;
+        private final DataSet test;
+        private final List<DataSet> validationBatches;
+        private final List<DataSet> testBatches;
+        private final Map<Integer, List<DataSet>> trainBatches = new ConcurrentHashMap<>();
+
+        CachedSplits(DataSet train, DataSet validation, DataSet test) {
+            this.train = train;
+            this.validation = validation;
+            this.test = test;
+            this.validationBatches = validation.batchBy(EVALUATION_BATCH_SIZE);
+            this.testBatches = test.batchBy(EVALUATION_BATCH_SIZE);
+        }
+
+        int numInputs() {
+            return (int) train.getFeatures().size(1);
+        }
+
+        List<DataSet> trainBatches(int batchSize) {
+            return trainBatches.computeIfAbsent(batchSize, train::batchBy);
+        }
+    }
+}
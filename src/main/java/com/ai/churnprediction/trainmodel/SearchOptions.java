@@ -0,0 +1,100 @@
+package com.ai.churnprediction.trainmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Settings of {@link HyperparameterSearch}, given as {@code --key=value} arguments. The search space keys take
+ * comma separated values and every combination of them is trained, for example
+ * {@code --hidden-layers=32x16,64x32 --learning-rates=0.01,0.001 --epochs=10,20 --batch-sizes=128,256}.
+ * All other keys are {@link TrainingOptions} and configure the data split, the seed and the ETL threads.
+ *
+ * @param hiddenLayers     candidate layer sizes, each like {@code --hidden-layers} of {@link TrainingOptions}
+ * @param learningRates    candidate learning rates
+ * @param epochs           candidate numbers of passes over the training split
+ * @param batchSizes       candidate minibatch sizes
+ * @param parallelTrials   candidates trained at the same time, each on its own thread
+ * @param pruneAfterEpochs first epoch after which a candidate below the median validation AUC is stopped
+ * @param pruneMinTrials   candidates that must have reached an epoch before others are pruned there
+ * @param latencyRuns      single-row predictions timed per candidate for the latency percentiles
+ * @param training         split, seed and ETL settings shared by all candidates
+ */
+public record SearchOptions(List<List<Integer>> hiddenLayers, List<Double> learningRates, List<Integer> epochs,
+                            List<Integer> batchSizes, int parallelTrials, int pruneAfterEpochs, int pruneMinTrials,
+                            int latencyRuns, TrainingOptions training) {
+
+    private static final Set<String> KEYS = Set.of("hidden-layers", "learning-rates", "epochs", "batch-sizes",
+            "parallel-trials", "prune-after-epochs", "prune-min-trials", "latency-runs");
+
+    /**
+     * One point of the search space, printed as the {@link TrainModel} arguments that train it.
+     */
+    public record Candidate(List<Integer> hiddenLayers, double learningRate, int epochs, int batchSize) {
+
+        @Override
+        public String toString() {
+            return "--hidden-layers=" + TrainingOptions.formatLayers(hiddenLayers) + " --learning-rate=" + learningRate
+                    + " --max-epochs=" + epochs + " --batch-size=" + batchSize;
+        }
+    }
+
+    public static SearchOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> trainingArgs = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String key = arg.startsWith("--") && separator > 0 ? arg.substring(2, separator) : "";
+            if (KEYS.contains(key)) {
+                values.put(key, arg.substring(separator + 1));
+            } else {
+                trainingArgs.add(arg);
+            }
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        SearchOptions options = new SearchOptions(
+                list(values.getOrDefault("hidden-layers", "16x8,32x16,64x32"), TrainingOptions::parseLayers),
+                list(values.getOrDefault("learning-rates", "0.01,0.003,0.001"), Double::parseDouble),
+                list(values.getOrDefault("epochs", "10,20"), Integer::parseInt),
+                list(values.getOrDefault("batch-sizes", "128,256"), Integer::parseInt),
+                Integer.parseInt(values.getOrDefault("parallel-trials", String.valueOf(Math.max(1, cores / 2)))),
+                Integer.parseInt(values.getOrDefault("prune-after-epochs", "3")),
+                Integer.parseInt(values.getOrDefault("prune-min-trials", "4")),
+                Integer.parseInt(values.getOrDefault("latency-runs", "1000")),
+                TrainingOptions.parse(trainingArgs.toArray(new String[0])));
+        if (options.parallelTrials < 1 || options.latencyRuns < 1) {
+            throw new IllegalArgumentException("parallel-trials and latency-runs must be at least 1");
+        }
+        if (options.learningRates.stream().anyMatch(rate -> rate <= 0)
+                || options.epochs.stream().anyMatch(epochs -> epochs < 1)
+                || options.batchSizes.stream().anyMatch(batchSize -> batchSize < 1)) {
+            throw new IllegalArgumentException("learning-rates must be positive, epochs and batch-sizes at least 1");
+        }
+        return options;
+    }
+
+    /**
+     * @return every combination of the search space, in the order the values were given
+     */
+    public List<Candidate> candidates() {
+        List<Candidate> candidates = new ArrayList<>();
+        for (List<Integer> layers : hiddenLayers) {
+            for (int epochCount : epochs) {
+                for (int batchSize : batchSizes) {
+                    for (double learningRate : learningRates) {
+                        candidates.add(new Candidate(layers, learningRate, epochCount, batchSize));
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static <T> List<T> list(String value, Function<String, T> parser) {
+        return Arrays.stream(value.split(",")).map(String::trim).map(parser).toList();
+    }
+}
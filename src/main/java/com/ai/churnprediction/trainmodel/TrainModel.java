@@ -2,20 +2,25 @@ package com.ai.churnprediction.trainmodel;
 
 import com.ai.churnprediction.trainmodel.api.datavec.DatavecUtility;
 import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
-import com.ai.churnprediction.trainmodel.api.nd4j.ND4JUtility;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.TrainingThroughput;
+import com.ai.churnprediction.trainmodel.api.nd4j.FeatureMatrix;
 
+import com.ai.churnprediction.service.GoldenSample;
 import com.ai.churnprediction.util.AiUtil;
 import org.datavec.api.transform.TransformProcess;
 import org.datavec.api.transform.analysis.DataAnalysis;
 import org.datavec.api.transform.schema.InferredSchema;
 import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
 
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.evaluation.classification.Evaluation;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.dataset.SplitTestAndTrain;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -24,61 +29,87 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class handles the complete machine learning pipeline using the Kaggle Telco Customer Churn dataset with Java + DL4J.
- * 1. Cleans the raw CSV data
+ * 1. Cleans the raw CSV data, splits it into stratified, shuffled train / validation / test files and analyzes
+ *    the training rows, all in one parallel pass
  * 2. Transforms and prepares the data for AI training
- * 3. Builds and trains a neural network
- * 4. Saves the model and transformation process for future predictions
+ * 3. Builds and trains a neural network in minibatches, stopping early on the validation loss,
+ *    on one thread or on several model replicas with parameter averaging
+ * 4. Saves the model and transformation process for future predictions, and the training analysis the
+ *    service's drift monitor compares live requests with
+ * The data is streamed from disk in every step, so the dataset does not have to fit in memory.
+ * Steps 1 and 2 are cached in --feature-store, a rerun on an unchanged CSV starts training right away.
+ * Settings are passed as --key=value arguments, see {@link TrainingOptions}.
  */
 public class TrainModel {
 
+    private static final int GOLDEN_SAMPLE_ROWS = 100;
+
     public static void main(String[] args) throws Exception {
-        // Step 0: Clean the CSV file
-        File cleanedCsv = cleanCsvFile();
+        TrainingOptions options = TrainingOptions.parse(args);
+        System.out.println("Training options: " + options);
 
-        // Step 1: Define schema
+        // Step 0: Define schema
         Schema inputSchema = new InferredSchema(AiUtil.DATASET_PATH).build();
         System.out.println("Input Schema: " + inputSchema);
 
-        // Step 2: Fix TotalCharges column before analysis
+        // Step 1: Fix TotalCharges column before analysis
         TransformProcess preProcess = DatavecUtility.simplifyTotalCharges(inputSchema);
 
-        // Step 3: Analyze data for normalization
-        DataAnalysis analysis = DatavecUtility.staticalAnalysis(cleanedCsv,preProcess);
-        //Visualization
-        DatavecUtility.htmlDataAnalysis(analysis);
-        
-        // Step 4: Full TransformProcess including encoding and normalization
-        TransformProcess fullTransform = DatavecUtility.buildFullTransform(preProcess.getFinalSchema(), analysis);
-        
-        // Step 5: Apply final transform to get DataSet
-        //Split data: 80% train, 20% test
-        SplitTestAndTrain split = ND4JUtility.getDataSet(fullTransform,cleanedCsv).splitTestAndTrain(0.8);
-        DataSet trainData = split.getTrain();
-        DataSet testData = split.getTest();
-
-        // Step 6: Configure model and Build Neural Network
-        MultiLayerNetwork model = DeepLearning4JUtility.configureModel(trainData);
-
-        // Step 7: Train the model
-        trainModel(trainData,model);
-
-        // Step 8: Evaluate on test data
-        testAndEvaluateModel(testData,model);
-
-        // Step 9: Save model and transform. We can reuse the model later to make predictions without retraining.
-        File modelFile  = saveModelAndTransformProcess(model,fullTransform);
+        // Step 2 and 3: One parallel pass over the raw CSV: clean the blank TotalCharges, split the data stratified
+        // by churn label (70% train, 10% validation, 20% test by default) and analyze the training split for
+        // normalization, so no test data leaks into it. Then the full TransformProcess including encoding and
+        // normalization. Skipped when an earlier run already transformed the same CSV with the same settings.
+        FeatureStore.Entry data = FeatureStore.prepare(new File(AiUtil.DATASET_PATH), preProcess.getFinalSchema(),
+                options);
+        System.out.printf("%s: %d train, %d validation, %d test rows%n",
+                data.cached() ? "Reused transformed splits from " + data.directory() : "Split",
+                data.train().rows(), data.validation().rows(), data.test().rows());
+        DataAnalysis analysis = data.analysis();
+        TransformProcess fullTransform = data.fullTransform();
+        if (!data.cached()) {
+            //Visualization
+            DatavecUtility.htmlDataAnalysis(analysis);
+        }
 
-        // 10. Make a prediction with loaded model (from disk) (using test features or to demonstrate loading)
-        modelDemonstration(modelFile,testData);
+        // Step 4: Minibatch iterators over the transformed splits
+        TrainingThroughput throughput = new TrainingThroughput();
+        DataSetIterator trainData = data.train().iterator(options.batchSize());
+        trainData.setPreProcessor(throughput);
+        DataSetIterator validationData = data.validation().iterator(options.batchSize());
+        DataSetIterator testData = data.test().iterator(options.batchSize());
+
+        // Step 5: Configure model and Build Neural Network
+        MultiLayerNetwork model = DeepLearning4JUtility.configureModel(fullTransform.getFinalSchema().numColumns() - 1,
+                options.hiddenLayers(), options.learningRate(), options.seed());
+
+        // Step 6: Train the model on --workers replicas, keeping the epoch with the best validation loss.
+        // The next training batches are prepared while the current ones train.
+        MultiLayerNetwork bestModel = DeepLearning4JUtility.trainWithEarlyStopping(model, trainData, validationData,
+                options.maxEpochs(), options.patience(), options.workers(), options.prefetchBatches(),
+                options.averagingFrequency(), throughput).getBestModel();
+
+        // Step 7: Evaluate on test data
+        testAndEvaluateModel(testData,bestModel);
+
+        // Step 8: Save model and transform. We can reuse the model later to make predictions without retraining.
+        File modelFile  = saveModelAndTransformProcess(bestModel,fullTransform);
+        // Predictions the service has to reproduce before it serves this model
+        writeGoldenSample(bestModel, fullTransform, data.rawTestRows());
+        // Training statistics the service compares live requests with to detect drift
+        writeTrainingAnalysis(analysis, fullTransform, data.train(), options.batchSize());
+
+        // 9. Make a prediction with loaded model (from disk) (using test features or to demonstrate loading)
+        testData.reset();
+        modelDemonstration(modelFile,testData.next());
 
         // Clean up
-        if(cleanedCsv.exists()) {
-            cleanedCsv.delete();
-        }
+        data.release();
     }
 
     
@@ -86,29 +117,18 @@ public class TrainModel {
         MultiLayerNetwork loadedModel = ModelSerializer.restoreMultiLayerNetwork(modelFile);
         INDArray prediction = loadedModel.output(testData.getFeatures());
         System.out.println("Prediction example (first 5 rows):");
-        for (int i = 0; i < 5; i++) {
+        for (int i = 0; i < Math.min(5, testData.numExamples()); i++) {
             System.out.println(prediction.getRow(i));
         }
     }
 
-    private static void testAndEvaluateModel(DataSet testData, MultiLayerNetwork model) {
-        INDArray output = model.output(testData.getFeatures());
-        Evaluation eval = new Evaluation();
-        eval.eval(testData.getLabels(), output);
+    private static void testAndEvaluateModel(DataSetIterator testData, MultiLayerNetwork model) {
+        testData.reset();
+        Evaluation eval = model.evaluate(testData);
         System.out.println("Evaluation stats:");
         System.out.println(eval.stats());
     }
 
-    //One pass through the whole dataset. One complete pass through the training data. More epochs = more learning (but risk of overfitting).
-    private static void trainModel(DataSet trainData, MultiLayerNetwork model) {
-        int nEpochs = 10;
-        for (int i = 0; i < nEpochs; i++) {
-            System.out.println("Epoch " + (i + 1) + " started");
-            model.fit(trainData);  // Adjusts weights to reduce prediction error
-            System.out.println("Epoch " + (i + 1) + " completed");
-        }
-    }
-
 
 
 
@@ -136,14 +156,66 @@ public class TrainModel {
 
 
     /**
-     *   Cleans the CSV file by replacing empty TotalCharges with 0.0
+     * Writes the first test rows with the probabilities {@code model} predicts for them to golden-predictions.csv.
+     * The rows go through {@code TransformProcess.execute} like in the service, so a model served with a different
+     * transform or encoder fails the check.
+     */
+    private static void writeGoldenSample(MultiLayerNetwork model, TransformProcess fullTransform, File testCsv)
+            throws IOException {
+        List<String> lines = Files.readAllLines(testCsv.toPath());
+        List<String> columns = Arrays.asList(lines.get(0).split(","));
+        List<String[]> rows = new ArrayList<>();
+        List<INDArray> features = new ArrayList<>();
+        for (String line : lines.subList(1, Math.min(lines.size(), GOLDEN_SAMPLE_ROWS + 1))) {
+            String[] values = line.split(",", -1);
+            List<Writable> record = new ArrayList<>();
+            for (String value : values) {
+                record.add(new Text(value));
+            }
+            List<Writable> transformed = fullTransform.execute(record);
+            transformed.removeLast(); // Churn label
+            double[] row = transformed.stream().mapToDouble(Writable::toDouble).toArray();
+            features.add(Nd4j.create(row, new long[]{1, row.length}, 'c'));
+            rows.add(values);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        INDArray output = model.output(Nd4j.vstack(features));
+        double[] probabilities = new double[rows.size()];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = output.getDouble(i, 0);
+        }
+        GoldenSample.write(new File("golden-predictions.csv"), columns, rows, probabilities);
+        System.out.println("Golden sample of " + rows.size() + " predictions saved!");
+    }
+
+    /**
+     * Writes the training analysis with the count of every category to data-analysis.json.
+     */
+    private static void writeTrainingAnalysis(DataAnalysis analysis, TransformProcess fullTransform,
+                                              FeatureMatrix train, int batchSize) throws IOException {
+        double[] sums = new double[train.numFeatures()];
+        DataSetIterator rows = train.iterator(batchSize);
+        while (rows.hasNext()) {
+            double[] batchSums = rows.next().getFeatures().sum(0).toDoubleVector();
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += batchSums[i];
+            }
+        }
+        DataAnalysis withCounts = DatavecUtility.withCategoryCounts(analysis, fullTransform, sums);
+        Files.writeString(new File("data-analysis.json").toPath(), withCounts.toJson());
+        System.out.println("Training analysis saved!");
+    }
+
+    /**
+     *   Cleans {@code sourceCsv} into {@code cleanedFile}, replacing empty TotalCharges with 0.0
      */
-    private static File cleanCsvFile() throws IOException {
-        File cleanedFile = new File(System.getProperty("user.dir"), "cleaned_telco.csv");
+    public static File cleanCsvFile(String sourceCsv, File cleanedFile) throws IOException {
         if (cleanedFile.exists()) {
             cleanedFile.delete();
         }
-        try (BufferedReader reader = new BufferedReader(new FileReader(AiUtil.DATASET_PATH));
+        try (BufferedReader reader = new BufferedReader(new FileReader(sourceCsv));
              BufferedWriter writer = new BufferedWriter(new FileWriter(cleanedFile))) {
 
             String header = reader.readLine();
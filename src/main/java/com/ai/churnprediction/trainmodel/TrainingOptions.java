@@ -0,0 +1,100 @@
+package com.ai.churnprediction.trainmodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Training settings, given to {@link TrainModel} as {@code --key=value} arguments, for example
+ * {@code --batch-size=256 --max-epochs=50}. Every setting has a default, unknown keys are rejected.
+ *
+ * @param batchSize          records per minibatch
+ * @param maxEpochs          upper bound of passes over the training split
+ * @param patience           epochs without a better validation loss before training stops early
+ * @param testFraction       share of every label held out for the final evaluation
+ * @param validationFraction share of every label held out for early stopping
+ * @param prefetchBatches    minibatches prepared ahead of the training loop
+ * @param shuffleBucketRows  rows shuffled in memory at once when shuffling the training split
+ * @param seed               seed of the split and of the training shuffle
+ * @param workers            model replicas trained in parallel, 1 trains on the calling thread only
+ * @param averagingFrequency minibatches each replica trains before the parameters of all replicas are averaged
+ * @param etlThreads         threads cleaning, splitting and analyzing the raw CSV
+ * @param hiddenLayers       neurons of every hidden layer, given as {@code --hidden-layers=32x16}
+ * @param learningRate       learning rate of the Adam updater
+ * @param featureStore       directory caching the transformed splits between runs, see {@link FeatureStore};
+ *                           blank transforms the data again on every run
+ */
+public record TrainingOptions(int batchSize, int maxEpochs, int patience, double testFraction,
+                              double validationFraction, int prefetchBatches, int shuffleBucketRows, long seed,
+                              int workers, int averagingFrequency, int etlThreads, List<Integer> hiddenLayers,
+                              double learningRate, String featureStore) {
+
+    private static final Set<String> KEYS = Set.of("batch-size", "max-epochs", "patience", "test-fraction",
+            "validation-fraction", "prefetch-batches", "shuffle-bucket-rows", "seed", "workers", "averaging-frequency",
+            "etl-threads", "hidden-layers", "learning-rate", "feature-store");
+
+    public static TrainingOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            String key = arg.substring(2, separator);
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown training option: --" + key);
+            }
+            values.put(key, arg.substring(separator + 1));
+        }
+        TrainingOptions options = new TrainingOptions(
+                Integer.parseInt(values.getOrDefault("batch-size", "256")),
+                Integer.parseInt(values.getOrDefault("max-epochs", "50")),
+                Integer.parseInt(values.getOrDefault("patience", "5")),
+                Double.parseDouble(values.getOrDefault("test-fraction", "0.2")),
+                Double.parseDouble(values.getOrDefault("validation-fraction", "0.1")),
+                Integer.parseInt(values.getOrDefault("prefetch-batches", "4")),
+                Integer.parseInt(values.getOrDefault("shuffle-bucket-rows", "200000")),
+                Long.parseLong(values.getOrDefault("seed", "123")),
+                Integer.parseInt(values.getOrDefault("workers", "1")),
+                Integer.parseInt(values.getOrDefault("averaging-frequency", "5")),
+                Integer.parseInt(values.getOrDefault("etl-threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                parseLayers(values.getOrDefault("hidden-layers", "32x16")),
+                Double.parseDouble(values.getOrDefault("learning-rate", "0.01")),
+                values.getOrDefault("feature-store", "feature-store"));
+        if (options.testFraction + options.validationFraction >= 1) {
+            throw new IllegalArgumentException("test-fraction + validation-fraction must be below 1");
+        }
+        if (options.workers < 1 || options.averagingFrequency < 1 || options.etlThreads < 1) {
+            throw new IllegalArgumentException("workers, averaging-frequency and etl-threads must be at least 1");
+        }
+        if (options.learningRate <= 0) {
+            throw new IllegalArgumentException("learning-rate must be positive");
+        }
+        return options;
+    }
+
+    /**
+     * Parses layer sizes separated by {@code x}, for example {@code 64x32x16}.
+     */
+    public static List<Integer> parseLayers(String value) {
+        List<Integer> layers = new ArrayList<>();
+        for (String size : value.split("x")) {
+            int neurons = Integer.parseInt(size.trim());
+            if (neurons < 1) {
+                throw new IllegalArgumentException("Layer sizes must be at least 1: " + value);
+            }
+            layers.add(neurons);
+        }
+        return List.copyOf(layers);
+    }
+
+    /**
+     * Formats {@code layers} the way {@link #parseLayers} reads them.
+     */
+    public static String formatLayers(List<Integer> layers) {
+        return String.join("x", layers.stream().map(String::valueOf).toList());
+    }
+}
@@ -0,0 +1,287 @@
+package com.ai.churnprediction.trainmodel.api.datavec;
+
+import com.tdunning.math.stats.TDigest;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.analysis.columns.CategoricalAnalysis;
+import org.datavec.api.transform.analysis.columns.ColumnAnalysis;
+import org.datavec.api.transform.analysis.columns.DoubleAnalysis;
+import org.datavec.api.transform.analysis.columns.IntegerAnalysis;
+import org.datavec.api.transform.analysis.columns.LongAnalysis;
+import org.datavec.api.transform.analysis.columns.StringAnalysis;
+import org.datavec.api.transform.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-column statistics of a CSV file, the same figures {@link org.datavec.local.transforms.AnalyzeLocal} computes,
+ * gathered in a single pass. Every worker thread fills its own instance with {@link #add(String[])} and the
+ * instances are combined with {@link #merge(ColumnStatistics)}, so no state is shared while reading.
+ * <ul>
+ *     <li>Integer, long and double columns: count, mean and variance (merged with Chan's formula), min, max,
+ *     sign counts and a t-digest from which the histogram is derived.</li>
+ *     <li>Categorical columns: the count of every category.</li>
+ *     <li>String columns: the statistics of the value lengths and the number of distinct values. Distinct values are
+ *     only tracked up to {@value #MAX_TRACKED_STRINGS}, above that the unique count is reported as -1.</li>
+ * </ul>
+ */
+public class ColumnStatistics {
+
+    private static final int MAX_TRACKED_STRINGS = 10_000;
+    private static final int HISTOGRAM_BUCKETS = 20;
+    private static final double DIGEST_COMPRESSION = 100;
+
+    private final Schema schema;
+    private final Column[] columns;
+
+    public ColumnStatistics(Schema schema) {
+        this.schema = schema;
+        this.columns = new Column[schema.numColumns()];
+        for (int i = 0; i < columns.length; i++) {
+            ColumnType type = schema.getType(i);
+            columns[i] = switch (type) {
+                case Integer, Long, Double, Float -> new Numeric(type);
+                case Categorical, String -> new Text(type);
+                default -> throw new IllegalArgumentException("Unsupported column type " + type
+                        + " of column " + schema.getName(i));
+            };
+        }
+    }
+
+    /**
+     * Adds one row, already cleaned, with a value for every column of the schema.
+     */
+    public void add(String[] values) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].add(values[i]);
+        }
+    }
+
+    public void merge(ColumnStatistics other) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].merge(other.columns[i]);
+        }
+    }
+
+    public DataAnalysis toDataAnalysis() {
+        List<ColumnAnalysis> analyses = new ArrayList<>(columns.length);
+        for (Column column : columns) {
+            analyses.add(column.toColumnAnalysis());
+        }
+        return new DataAnalysis(schema, analyses);
+    }
+
+    private interface Column {
+        void add(String value);
+
+        void merge(Column other);
+
+        ColumnAnalysis toColumnAnalysis();
+    }
+
+    private static final class Moments {
+        private long count;
+        private double mean;
+        private double m2;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private long countMin;
+        private long countMax;
+        private long countZero;
+        private long countNegative;
+        private final TDigest digest = TDigest.createDigest(DIGEST_COMPRESSION);
+
+        void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            if (value < min) {
+                min = value;
+                countMin = 0;
+            }
+            if (value == min) {
+                countMin++;
+            }
+            if (value > max) {
+                max = value;
+                countMax = 0;
+            }
+            if (value == max) {
+                countMax++;
+            }
+            if (value == 0) {
+                countZero++;
+            } else if (value < 0) {
+                countNegative++;
+            }
+            digest.add(value);
+        }
+
+        void merge(Moments other) {
+            if (other.count == 0) {
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+            count = total;
+            if (other.min < min) {
+                min = other.min;
+                countMin = other.countMin;
+            } else if (other.min == min) {
+                countMin += other.countMin;
+            }
+            if (other.max > max) {
+                max = other.max;
+                countMax = other.countMax;
+            } else if (other.max == max) {
+                countMax += other.countMax;
+            }
+            countZero += other.countZero;
+            countNegative += other.countNegative;
+            digest.add(other.digest);
+        }
+
+        double sampleVariance() {
+            return count > 1 ? m2 / (count - 1) : 0;
+        }
+
+        long countPositive() {
+            return count - countZero - countNegative;
+        }
+
+        // Equal width buckets between min and max, the counts read from the digest
+        double[] histogramBuckets() {
+            double[] buckets = new double[HISTOGRAM_BUCKETS + 1];
+            for (int i = 0; i <= HISTOGRAM_BUCKETS; i++) {
+                buckets[i] = count == 0 ? 0 : min + (max - min) * i / HISTOGRAM_BUCKETS;
+            }
+            return buckets;
+        }
+
+        long[] histogramBucketCounts(double[] buckets) {
+            long[] counts = new long[HISTOGRAM_BUCKETS];
+            long assigned = 0;
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                long upTo = i == HISTOGRAM_BUCKETS - 1 ? count : Math.round(digest.cdf(buckets[i + 1]) * count);
+                counts[i] = Math.max(0, upTo - assigned);
+                assigned += counts[i];
+            }
+            return counts;
+        }
+    }
+
+    private static final class Numeric implements Column {
+        private final ColumnType type;
+        private final Moments moments = new Moments();
+
+        Numeric(ColumnType type) {
+            this.type = type;
+        }
+
+        @Override
+        public void add(String value) {
+            moments.add(Double.parseDouble(value.trim()));
+        }
+
+        @Override
+        public void merge(Column other) {
+            moments.merge(((Numeric) other).moments);
+        }
+
+        @Override
+        public ColumnAnalysis toColumnAnalysis() {
+            double[] buckets = moments.histogramBuckets();
+            long[] bucketCounts = moments.histogramBucketCounts(buckets);
+            double variance = moments.sampleVariance();
+            return switch (type) {
+                case Integer -> new IntegerAnalysis.Builder()
+                        .min((int) moments.min).max((int) moments.max)
+                        .mean(moments.mean).sampleStdev(Math.sqrt(variance)).sampleVariance(variance)
+                        .countZero(moments.countZero).countNegative(moments.countNegative)
+                        .countPositive(moments.countPositive())
+                        .countMinValue(moments.countMin).countMaxValue(moments.countMax)
+                        .countTotal(moments.count).histogramBuckets(buckets).histogramBucketCounts(bucketCounts)
+                        .digest(moments.digest)
+                        .build();
+                case Long -> new LongAnalysis.Builder()
+                        .min((long) moments.min).max((long) moments.max)
+                        .mean(moments.mean).sampleStdev(Math.sqrt(variance)).sampleVariance(variance)
+                        .countZero(moments.countZero).countNegative(moments.countNegative)
+                        .countPositive(moments.countPositive())
+                        .countMinValue(moments.countMin).countMaxValue(moments.countMax)
+                        .countTotal(moments.count).histogramBuckets(buckets).histogramBucketCounts(bucketCounts)
+                        .digest(moments.digest)
+                        .build();
+                default -> new DoubleAnalysis.Builder()
+                        .min(moments.min).max(moments.max)
+                        .mean(moments.mean).sampleStdev(Math.sqrt(variance)).sampleVariance(variance)
+                        .countZero(moments.countZero).countNegative(moments.countNegative)
+                        .countPositive(moments.countPositive())
+                        .countMinValue(moments.countMin).countMaxValue(moments.countMax)
+                        .countTotal(moments.count).histogramBuckets(buckets).histogramBucketCounts(bucketCounts)
+                        .digest(moments.digest)
+                        .build();
+            };
+        }
+    }
+
+    private static final class Text implements Column {
+        private final ColumnType type;
+        private final Moments lengths = new Moments();
+        private Map<String, Long> counts = new HashMap<>();
+
+        Text(ColumnType type) {
+            this.type = type;
+        }
+
+        @Override
+        public void add(String value) {
+            lengths.add(value.length());
+            if (counts != null) {
+                counts.merge(value, 1L, Long::sum);
+                overflowCheck();
+            }
+        }
+
+        @Override
+        public void merge(Column other) {
+            Text text = (Text) other;
+            lengths.merge(text.lengths);
+            if (counts != null && text.counts != null) {
+                text.counts.forEach((value, count) -> counts.merge(value, count, Long::sum));
+                overflowCheck();
+            } else {
+                counts = null;
+            }
+        }
+
+        // Categories are always counted, the distinct values of free text only up to the limit
+        private void overflowCheck() {
+            if (type == ColumnType.String && counts.size() > MAX_TRACKED_STRINGS) {
+                counts = null;
+            }
+        }
+
+        @Override
+        public ColumnAnalysis toColumnAnalysis() {
+            if (type == ColumnType.Categorical) {
+                return new CategoricalAnalysis(counts);
+            }
+            double[] buckets = lengths.histogramBuckets();
+            double variance = lengths.sampleVariance();
+            return new StringAnalysis.Builder()
+                    .countUnique(counts == null ? -1 : counts.size())
+                    .minLength((int) lengths.min).maxLength((int) lengths.max)
+                    .meanLength(lengths.mean).sampleStdevLength(Math.sqrt(variance)).sampleVarianceLength(variance)
+                    .countTotal(lengths.count)
+                    .histogramBuckets(buckets).histogramBucketCounts(lengths.histogramBucketCounts(buckets))
+                    .build();
+        }
+    }
+}
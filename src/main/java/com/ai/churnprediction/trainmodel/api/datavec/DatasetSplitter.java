@@ -0,0 +1,417 @@
+package com.ai.churnprediction.trainmodel.api.datavec;
+
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.schema.Schema;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The training ETL: splits the raw CSV into cleaned train, validation and test files and analyzes the training rows,
+ * parsing every row once and without holding the file in memory.
+ * <ol>
+ *     <li>The file is memory mapped and cut into byte ranges that end on a line break. A first, light scan
+ *     counts the rows of every label per range.</li>
+ *     <li>The test and validation rows of every label are spread over the ranges by selection sampling, then every
+ *     range runs selection sampling over its own rows on a worker thread. Each row goes to the test or validation
+ *     split with probability (rows still needed / rows of that label still to come), so every split gets exactly its
+ *     share of every label (stratified) and every subset of that size is equally likely.</li>
+ *     <li>In the same pass the workers clean the blank values of the cleaned column, feed the training rows into
+ *     their own {@link ColumnStatistics} and write the rows to per-range part files.</li>
+ *     <li>The parts are joined in range order. Training rows were spread over random buckets, each bucket is shuffled
+ *     in memory and appended to the train file. Memory stays bounded by one bucket while the order is a uniform
+ *     shuffle. The result only depends on the seed and the number of ranges.</li>
+ * </ol>
+ * Values are split on commas, quoted values are not supported.
+ */
+public class DatasetSplitter {
+
+    // Mapped ranges stay well below the 2 GB limit of a single MappedByteBuffer
+    private static final long MAX_CHUNK_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * @param trainAnalysis statistics of the cleaned training rows, to normalize with
+     */
+    public record SplitFiles(File train, File validation, File test, long trainRows, long validationRows, long testRows,
+                             DataAnalysis trainAnalysis) {
+
+        public void delete() {
+            train.delete();
+            validation.delete();
+            test.delete();
+        }
+    }
+
+    /**
+     * @param schema      schema of the rows after cleaning, used for the statistics
+     * @param cleanColumn column whose blank values are replaced with 0.0
+     */
+    public static SplitFiles split(File csv, Schema schema, String labelColumn, String cleanColumn,
+                                   double testFraction, double validationFraction, int shuffleBucketRows,
+                                   long seed, int parallelism, File directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long headerEnd = lineEnd(channel, 0, fileSize);
+            String header = new LineReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd)).nextLine();
+            if (header == null) {
+                throw new IOException("Empty file: " + csv);
+            }
+            List<String> columns = Arrays.asList(header.split(","));
+            if (!columns.equals(schema.getColumnNames())) {
+                throw new IllegalArgumentException("Columns of " + csv + " do not match the schema: " + columns);
+            }
+            int labelIndex = columns.indexOf(labelColumn);
+            if (labelIndex < 0) {
+                throw new IllegalArgumentException("No label column " + labelColumn + " in " + csv);
+            }
+            int cleanIndex = columns.indexOf(cleanColumn);
+
+            List<long[]> ranges = ranges(channel, headerEnd, fileSize, parallelism);
+            ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, ranges.size())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "training-etl");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            List<RangePart> parts = new ArrayList<>();
+            try {
+                // Scan 1: rows per label and range
+                List<Callable<Map<String, long[]>>> counts = new ArrayList<>();
+                for (long[] range : ranges) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                    counts.add(() -> countLabels(new LineReader(buffer), labelIndex));
+                }
+                List<Map<String, long[]>> rangeCounts = getAll(workers.invokeAll(counts), csv);
+
+                // Selection sampling over the ranges: per range and label {rows, test rows, validation rows}
+                SplittableRandom random = new SplittableRandom(seed);
+                List<Map<String, long[]>> quotas = quotas(rangeCounts, testFraction, validationFraction, random);
+                long totalRows = rangeCounts.stream().flatMap(m -> m.values().stream()).mapToLong(c -> c[0]).sum();
+                int bucketCount = (int) Math.max(1, (totalRows + shuffleBucketRows - 1) / Math.max(1, shuffleBucketRows));
+
+                // Scan 2: clean, assign, analyze and write every range
+                List<Callable<RangePart>> tasks = new ArrayList<>();
+                for (int r = 0; r < ranges.size(); r++) {
+                    long[] range = ranges.get(r);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                    RangePart part = new RangePart(directory, bucketCount, schema, quotas.get(r), random.split());
+                    parts.add(part);
+                    tasks.add(() -> part.process(new LineReader(buffer), columns.size(), labelIndex, cleanIndex));
+                }
+                getAll(workers.invokeAll(tasks), csv);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                parts.forEach(RangePart::delete);
+                throw new IOException("Interrupted while splitting " + csv, e);
+            } catch (IOException | RuntimeException e) {
+                parts.forEach(RangePart::delete);
+                throw e;
+            } finally {
+                workers.shutdownNow();
+            }
+
+            try {
+                return join(parts, header, schema, seed, directory);
+            } finally {
+                parts.forEach(RangePart::delete);
+            }
+        }
+    }
+
+    private static SplitFiles join(List<RangePart> parts, String header, Schema schema, long seed, File directory)
+            throws IOException {
+        File train = new File(directory, "train.csv");
+        File validation = new File(directory, "validation.csv");
+        File test = new File(directory, "test.csv");
+        ColumnStatistics statistics = new ColumnStatistics(schema);
+        long trainRows = 0;
+        long validationRows = 0;
+        long testRows = 0;
+        try (BufferedWriter validationWriter = writer(validation, header);
+             BufferedWriter testWriter = writer(test, header)) {
+            for (RangePart part : parts) {
+                append(validationWriter, part.validation);
+                append(testWriter, part.test);
+                statistics.merge(part.statistics);
+                trainRows += part.trainRows;
+                validationRows += part.validationRows;
+                testRows += part.testRows;
+            }
+        }
+
+        Random random = new Random(seed);
+        try (BufferedWriter trainWriter = writer(train, header)) {
+            int bucketCount = parts.isEmpty() ? 0 : parts.get(0).buckets.length;
+            for (int b = 0; b < bucketCount; b++) {
+                List<String> lines = new ArrayList<>();
+                for (RangePart part : parts) {
+                    lines.addAll(Files.readAllLines(part.buckets[b].toPath(), StandardCharsets.UTF_8));
+                }
+                Collections.shuffle(lines, random);
+                for (String line : lines) {
+                    write(trainWriter, line);
+                }
+            }
+        }
+        return new SplitFiles(train, validation, test, trainRows, validationRows, testRows, statistics.toDataAnalysis());
+    }
+
+    /**
+     * One range of the source file with its part files and statistics.
+     */
+    private static final class RangePart {
+        private final File test;
+        private final File validation;
+        private final File[] buckets;
+        private final ColumnStatistics statistics;
+        private final Map<String, long[]> quotas;
+        private final SplittableRandom random;
+        private long trainRows;
+        private long validationRows;
+        private long testRows;
+
+        RangePart(File directory, int bucketCount, Schema schema, Map<String, long[]> quotas, SplittableRandom random)
+                throws IOException {
+            this.test = File.createTempFile("test-part-", ".csv", directory);
+            this.validation = File.createTempFile("validation-part-", ".csv", directory);
+            this.buckets = new File[bucketCount];
+            for (int i = 0; i < bucketCount; i++) {
+                buckets[i] = File.createTempFile("train-bucket-" + i + "-", ".csv", directory);
+            }
+            this.statistics = new ColumnStatistics(schema);
+            this.quotas = quotas;
+            this.random = random;
+        }
+
+        RangePart process(LineReader reader, int columnCount, int labelIndex, int cleanIndex) throws IOException {
+            BufferedWriter[] bucketWriters = new BufferedWriter[buckets.length];
+            try (BufferedWriter testWriter = writer(test, null);
+                 BufferedWriter validationWriter = writer(validation, null)) {
+                for (int i = 0; i < buckets.length; i++) {
+                    bucketWriters[i] = writer(buckets[i], null);
+                }
+                String line;
+                while ((line = reader.nextLine()) != null) {
+                    String[] tokens = line.split(",", -1);
+                    if (tokens.length != columnCount) {
+                        throw new IOException("Expected " + columnCount + " values but got " + tokens.length
+                                + " in line: " + line);
+                    }
+                    if (cleanIndex >= 0 && tokens[cleanIndex].trim().isEmpty()) {
+                        tokens[cleanIndex] = "0.0";
+                        line = String.join(",", tokens);
+                    }
+                    long[] counts = quotas.get(tokens[labelIndex].trim());
+                    double draw = random.nextDouble() * counts[0]--;
+                    if (draw < counts[1]) {
+                        counts[1]--;
+                        write(testWriter, line);
+                        testRows++;
+                    } else if (draw < counts[1] + counts[2]) {
+                        counts[2]--;
+                        write(validationWriter, line);
+                        validationRows++;
+                    } else {
+                        statistics.add(tokens);
+                        write(bucketWriters[random.nextInt(buckets.length)], line);
+                        trainRows++;
+                    }
+                }
+            } finally {
+                for (BufferedWriter bucketWriter : bucketWriters) {
+                    if (bucketWriter != null) {
+                        bucketWriter.close();
+                    }
+                }
+            }
+            return this;
+        }
+
+        void delete() {
+            test.delete();
+            validation.delete();
+            for (File bucket : buckets) {
+                bucket.delete();
+            }
+        }
+    }
+
+    private static Map<String, long[]> countLabels(LineReader reader, int labelIndex) {
+        Map<String, long[]> counts = new HashMap<>();
+        String line;
+        while ((line = reader.nextLine()) != null) {
+            counts.computeIfAbsent(label(line, labelIndex), l -> new long[1])[0]++;
+        }
+        return counts;
+    }
+
+    // The test and validation rows of every label, drawn range by range like the rows within a range
+    private static List<Map<String, long[]>> quotas(List<Map<String, long[]>> rangeCounts, double testFraction,
+                                                    double validationFraction, SplittableRandom random) {
+        Map<String, long[]> remaining = new HashMap<>();
+        for (Map<String, long[]> counts : rangeCounts) {
+            counts.forEach((label, count) -> remaining.computeIfAbsent(label, l -> new long[1])[0] += count[0]);
+        }
+        // Per label: rows still to come, test rows and validation rows still needed
+        remaining.replaceAll((label, count) -> {
+            long rows = count[0];
+            long test = Math.round(rows * testFraction);
+            long validation = Math.min(rows - test, Math.round(rows * validationFraction));
+            return new long[]{rows, test, validation};
+        });
+        List<Map<String, long[]>> quotas = new ArrayList<>(rangeCounts.size());
+        for (Map<String, long[]> counts : rangeCounts) {
+            Map<String, long[]> quota = new HashMap<>();
+            counts.forEach((label, count) -> {
+                long[] left = remaining.get(label);
+                long test = 0;
+                long validation = 0;
+                for (long i = 0; i < count[0]; i++) {
+                    double draw = random.nextDouble() * left[0]--;
+                    if (draw < left[1]) {
+                        left[1]--;
+                        test++;
+                    } else if (draw < left[1] + left[2]) {
+                        left[2]--;
+                        validation++;
+                    }
+                }
+                quota.put(label, new long[]{count[0], test, validation});
+            });
+            quotas.add(quota);
+        }
+        return quotas;
+    }
+
+    private static <T> List<T> getAll(List<Future<T>> futures, File csv) throws IOException, InterruptedException {
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IOException("Failed to split " + csv, e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // Ranges [start, end) of roughly equal size, each ending right after a line break or at the end of the file
+    private static List<long[]> ranges(FileChannel channel, long from, long fileSize, int parallelism) throws IOException {
+        long bytes = fileSize - from;
+        long chunks = Math.max(parallelism, (bytes + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        long target = Math.max(1, bytes / chunks);
+        List<long[]> ranges = new ArrayList<>();
+        long start = from;
+        while (start < fileSize) {
+            long end = start + target >= fileSize ? fileSize : lineEnd(channel, start + target, fileSize);
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    // Position just after the first line break at or after `position`, or the file size
+    private static long lineEnd(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Decodes the non-empty lines of one mapped range.
+     */
+    private static final class LineReader {
+        private final ByteBuffer buffer;
+        private byte[] bytes = new byte[512];
+
+        LineReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        String nextLine() {
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                int end = start;
+                while (end < buffer.limit() && buffer.get(end) != '\n') {
+                    end++;
+                }
+                int length = end - start;
+                if (length > 0 && buffer.get(end - 1) == '\r') {
+                    length--;
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                buffer.position(Math.min(end + 1, buffer.limit()));
+                if (length > 0) {
+                    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String label(String line, int labelIndex) {
+        String[] tokens = line.split(",", -1);
+        return labelIndex < tokens.length ? tokens[labelIndex].trim() : "";
+    }
+
+    private static void append(BufferedWriter writer, File part) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(part.toPath(), StandardCharsets.UTF_8)) {
+            reader.transferTo(writer);
+        }
+    }
+
+    private static BufferedWriter writer(File file, String header) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        if (header != null) {
+            write(writer, header);
+        }
+        return writer;
+    }
+
+    private static void write(BufferedWriter writer, String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+    }
+}
@@ -6,6 +6,8 @@ import org.datavec.api.records.reader.impl.transform.TransformProcessRecordReade
 import org.datavec.api.split.FileSplit;
 import org.datavec.api.transform.TransformProcess;
 import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.analysis.columns.CategoricalAnalysis;
+import org.datavec.api.transform.analysis.columns.ColumnAnalysis;
 import org.datavec.api.transform.condition.ConditionOp;
 import org.datavec.api.transform.condition.column.StringColumnCondition;
 import org.datavec.api.transform.schema.Schema;
@@ -20,7 +22,11 @@ import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DatavecUtility {
 
@@ -125,6 +131,43 @@ public class DatavecUtility {
     }
 
 
+    /**
+     * Turns the columns that {@code fullTransform} one-hot encodes into categorical columns with the count of every
+     * category. They are plain strings in the analyzed schema, so the analysis has no category counts; the counts
+     * are read from the sums of the one-hot columns of the transformed rows instead.
+     *
+     * @param featureSums sum over all transformed rows of every feature column, in final schema order
+     */
+    public static DataAnalysis withCategoryCounts(DataAnalysis analysis, TransformProcess fullTransform,
+                                                  double[] featureSums) {
+        List<String> features = fullTransform.getFinalSchema().getColumnNames();
+        Map<String, Map<String, Long>> categoryCounts = new LinkedHashMap<>();
+        for (int i = 0; i < featureSums.length; i++) {
+            // One-hot columns are named `Column[category]`
+            String name = features.get(i);
+            int open = name.indexOf('[');
+            if (open > 0 && name.endsWith("]")) {
+                categoryCounts.computeIfAbsent(name.substring(0, open), column -> new LinkedHashMap<>())
+                        .put(name.substring(open + 1, name.length() - 1), Math.round(featureSums[i]));
+            }
+        }
+
+        Schema schema = analysis.getSchema();
+        Schema.Builder builder = new Schema.Builder();
+        List<ColumnAnalysis> columns = new ArrayList<>(schema.numColumns());
+        for (int i = 0; i < schema.numColumns(); i++) {
+            Map<String, Long> counts = categoryCounts.get(schema.getName(i));
+            if (counts != null) {
+                builder.addColumnCategorical(schema.getName(i), new ArrayList<>(counts.keySet()));
+                columns.add(new CategoricalAnalysis(counts));
+            } else {
+                builder.addColumn(schema.getMetaData(i));
+                columns.add(analysis.getColumnAnalysis().get(i));
+            }
+        }
+        return new DataAnalysis(builder.build(), columns);
+    }
+
     /**
      * Generates an HTML report of the data analysis.
      *
@@ -137,11 +180,18 @@ public class DatavecUtility {
 
 
     public static DataSetIterator applyFinalTransform(TransformProcess fullTransform, File cleanedCsv) throws IOException, InterruptedException {
+        return applyFinalTransform(fullTransform, cleanedCsv, 1000);
+    }
+
+    /**
+     * Streams the transformed records of {@code cleanedCsv} in minibatches of {@code batchSize},
+     * reading the file again on every reset instead of holding it in memory.
+     */
+    public static DataSetIterator applyFinalTransform(TransformProcess fullTransform, File cleanedCsv, int batchSize) throws IOException, InterruptedException {
         RecordReader finalReader = new CSVRecordReader(1, ',');
         finalReader.initialize(new FileSplit(cleanedCsv));
         RecordReader transformedReader = new TransformProcessRecordReader(finalReader, fullTransform);
 
-        int batchSize = 1000;
         int labelIndex = fullTransform.getFinalSchema().getColumnNames().indexOf("Churn");
         int numClasses = 1; // Binary classification
         return new RecordReaderDataSetIterator(transformedReader, batchSize, labelIndex, numClasses);
@@ -1,4 +1,13 @@
 package com.ai.churnprediction.trainmodel.api.deeplearning4j;
+import org.deeplearning4j.earlystopping.EarlyStoppingConfiguration;
+import org.deeplearning4j.earlystopping.EarlyStoppingResult;
+import org.deeplearning4j.earlystopping.saver.InMemoryModelSaver;
+import org.deeplearning4j.earlystopping.scorecalc.DataSetLossCalculator;
+import org.deeplearning4j.earlystopping.termination.MaxEpochsTerminationCondition;
+import org.deeplearning4j.earlystopping.termination.ScoreImprovementEpochTerminationCondition;
+import org.deeplearning4j.earlystopping.trainer.EarlyStoppingTrainer;
+import org.deeplearning4j.earlystopping.trainer.IEarlyStoppingTrainer;
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -6,12 +15,15 @@ import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
+import org.deeplearning4j.parallelism.EarlyStoppingParallelTrainer;
 
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
+import java.util.List;
 
 public class DeepLearning4JUtility {
 
@@ -20,28 +32,82 @@ public class DeepLearning4JUtility {
         int inputNum = trainData.getFeatures().columns();
         System.out.println("Input features: " + trainData.getFeatures());
         System.out.println("Number of features (input columns) your model expects." + inputNum);
-        MultiLayerConfiguration conf = buildModelConfig(inputNum);
+        return configureModel(inputNum);
+    }
+
+    public static MultiLayerNetwork configureModel(int inputNum) {
+        return configureModel(inputNum, List.of(32, 16), 0.01, 123);
+    }
+
+    public static MultiLayerNetwork configureModel(int inputNum, List<Integer> hiddenLayers, double learningRate,
+                                                   long seed) {
+        MultiLayerConfiguration conf = buildModelConfig(inputNum, hiddenLayers, learningRate, seed);
         MultiLayerNetwork model = new MultiLayerNetwork(conf);
         model.init();
         model.setListeners(new ScoreIterationListener(10));
         return model;
     }
 
+    /**
+     * Trains minibatch by minibatch over {@code trainData} until the loss on {@code validationData} has not improved
+     * for {@code patience} epochs or {@code maxEpochs} is reached.
+     * With more than one worker, every worker trains its own replica of {@code model} on a disjoint share of the
+     * minibatches and the parameters of all replicas are averaged every {@code averagingFrequency} minibatches.
+     * Up to {@code prefetchBatches} minibatches are prepared ahead of the training loop in both modes.
+     *
+     * @return the result holding the model of the epoch with the lowest validation loss
+     */
+    public static EarlyStoppingResult<MultiLayerNetwork> trainWithEarlyStopping(MultiLayerNetwork model,
+                                                                               DataSetIterator trainData,
+                                                                               DataSetIterator validationData,
+                                                                               int maxEpochs, int patience,
+                                                                               int workers, int prefetchBatches,
+                                                                               int averagingFrequency,
+                                                                               TrainingThroughput throughput) {
+        EarlyStoppingConfiguration<MultiLayerNetwork> config = new EarlyStoppingConfiguration.Builder<MultiLayerNetwork>()
+                .epochTerminationConditions(new MaxEpochsTerminationCondition(maxEpochs),
+                        new ScoreImprovementEpochTerminationCondition(patience))
+                .scoreCalculator(new DataSetLossCalculator(validationData, true))
+                .evaluateEveryNEpochs(1)
+                .modelSaver(new InMemoryModelSaver<>())
+                .build();
+        IEarlyStoppingTrainer<MultiLayerNetwork> trainer;
+        if (workers > 1) {
+            // ParallelWrapper prefetches on its own, so it gets the plain iterator
+            trainer = new EarlyStoppingParallelTrainer<>(config, model, trainData, null, throughput,
+                    workers, prefetchBatches, averagingFrequency);
+        } else {
+            trainer = new EarlyStoppingTrainer(config, model, new AsyncDataSetIterator(trainData, prefetchBatches));
+            trainer.setListener(throughput);
+        }
+        return trainer.fit();
+    }
+
     /**
      * Creates a neural network with:
      *  - Input layer: size = number of input columns
-     *  - Hidden layers: 32 → 16 neurons with ReLU activation
+     *  - Hidden layers: {@code hiddenLayers} neurons with ReLU activation, 32 → 16 by default
      *  - Output layer: 2 outputs (Yes/No churn) using Sigmoid + Binary Cross Entropy
-     * Adam optimizer is used with learning rate 0.01.
+     * Adam optimizer is used with {@code learningRate}, 0.01 by default.
      */
-    private static MultiLayerConfiguration buildModelConfig(int inputNum) {
-        return new NeuralNetConfiguration.Builder()
-                .seed(123)
+    public static MultiLayerConfiguration buildModelConfig(int inputNum, List<Integer> hiddenLayers,
+                                                           double learningRate, long seed) {
+        if (hiddenLayers.isEmpty()) {
+            throw new IllegalArgumentException("At least one hidden layer is needed");
+        }
+        NeuralNetConfiguration.ListBuilder layers = new NeuralNetConfiguration.Builder()
+                .seed(seed)
                 .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
-                .updater(new Adam(0.01)) // Adam optimizer with learning rate 0.01
-                .list()
-                .layer(new DenseLayer.Builder().nIn(inputNum).nOut(32).activation(Activation.RELU).build()) // Input Layer → Dense (32 neurons, ReLU)
-                .layer(new DenseLayer.Builder().nOut(16).activation(Activation.RELU).build())
+                .updater(new Adam(learningRate)) // Adam optimizer
+                .list();
+        for (int i = 0; i < hiddenLayers.size(); i++) {
+            DenseLayer.Builder layer = new DenseLayer.Builder().nOut(hiddenLayers.get(i)).activation(Activation.RELU);
+            if (i == 0) {
+                layer.nIn(inputNum); // Input Layer → Dense (ReLU)
+            }
+            layers.layer(layer.build());
+        }
+        return layers
                 .layer(new OutputLayer.Builder(LossFunctions.LossFunction.XENT) //Loss function: XENT (Cross-Entropy), good for binary classification.
                         .activation(Activation.SIGMOID)  // predicting churn (Yes/No = 1/0), a sigmoid gives a probability output
                         .nOut(1) // Binary output, Only 1 output neuron because you predict a single binary outcome — churn (yes=1, no=0).
@@ -0,0 +1,46 @@
+package com.ai.churnprediction.trainmodel.api.deeplearning4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Early pruning for a hyperparameter search: a candidate stops when its validation score after an epoch is below
+ * the median score other candidates reached after the same epoch. Higher scores are better.
+ * <p>
+ * Candidates report while they train, so the decision only uses the candidates that got that far before; that is
+ * the usual asynchronous form of the rule and needs no barrier between candidates. Nothing is pruned before
+ * {@code warmupEpochs} or before {@code minCandidates} other candidates have reported for that epoch.
+ * Safe for use by concurrently training candidates.
+ */
+public class MedianStoppingRule {
+
+    private final int warmupEpochs;
+    private final int minCandidates;
+    // Scores reported per epoch, including the ones of candidates pruned in that epoch
+    private final Map<Integer, List<Double>> scores = new HashMap<>();
+
+    public MedianStoppingRule(int warmupEpochs, int minCandidates) {
+        this.warmupEpochs = warmupEpochs;
+        this.minCandidates = Math.max(1, minCandidates);
+    }
+
+    /**
+     * Records {@code score} of a candidate after {@code epoch} (1-based).
+     *
+     * @return whether the candidate should stop training
+     */
+    public synchronized boolean report(int epoch, double score) {
+        List<Double> others = scores.computeIfAbsent(epoch, e -> new ArrayList<>());
+        boolean prune = epoch >= warmupEpochs && others.size() >= minCandidates && score < median(others);
+        others.add(score);
+        return prune;
+    }
+
+    private static double median(List<Double> values) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
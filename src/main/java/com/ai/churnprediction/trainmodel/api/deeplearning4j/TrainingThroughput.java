@@ -0,0 +1,57 @@
+package com.ai.churnprediction.trainmodel.api.deeplearning4j;
+
+import org.deeplearning4j.earlystopping.EarlyStoppingConfiguration;
+import org.deeplearning4j.earlystopping.EarlyStoppingResult;
+import org.deeplearning4j.earlystopping.listener.EarlyStoppingListener;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports training throughput in records per second.
+ * Set it as pre-processor of the training iterator to count the records of every minibatch, and as listener
+ * of the {@link org.deeplearning4j.earlystopping.trainer.EarlyStoppingTrainer} to print one line per epoch.
+ */
+public class TrainingThroughput implements DataSetPreProcessor, EarlyStoppingListener<MultiLayerNetwork> {
+
+    private final AtomicLong records = new AtomicLong();
+    private long totalRecords;
+    private long startNanos;
+    private long epochStartNanos;
+
+    @Override
+    public void preProcess(DataSet dataSet) {
+        records.addAndGet(dataSet.numExamples());
+    }
+
+    @Override
+    public void onStart(EarlyStoppingConfiguration<MultiLayerNetwork> config, MultiLayerNetwork model) {
+        startNanos = System.nanoTime();
+        epochStartNanos = startNanos;
+        records.set(0);
+    }
+
+    @Override
+    public void onEpoch(int epoch, double score, EarlyStoppingConfiguration<MultiLayerNetwork> config,
+                        MultiLayerNetwork model) {
+        long now = System.nanoTime();
+        long epochRecords = records.getAndSet(0);
+        totalRecords += epochRecords;
+        double seconds = (now - epochStartNanos) / 1e9;
+        epochStartNanos = now;
+        System.out.printf("Epoch %d: validation loss %.5f, %d records in %.1f s (%.0f records/s)%n",
+                epoch + 1, score, epochRecords, seconds, epochRecords / seconds);
+    }
+
+    @Override
+    public void onCompletion(EarlyStoppingResult<MultiLayerNetwork> result) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("Training finished after %d epochs (%s: %s), %d records in %.1f s (%.0f records/s)%n",
+                result.getTotalEpochs(), result.getTerminationReason(), result.getTerminationDetails(),
+                totalRecords, seconds, totalRecords / seconds);
+        System.out.printf("Best validation loss %.5f in epoch %d%n", result.getBestModelScore(),
+                result.getBestModelEpoch() + 1);
+    }
+}
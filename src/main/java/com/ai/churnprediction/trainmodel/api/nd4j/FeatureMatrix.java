@@ -0,0 +1,257 @@
+package com.ai.churnprediction.trainmodel.api.nd4j;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Transformed features and labels stored as a float matrix on disk and read back memory mapped, minibatch by
+ * minibatch, so the dataset does not have to fit in memory and nothing is parsed or transformed again.
+ * <p>
+ * Layout (big endian): magic, format version, feature and label column counts, then every row as its features
+ * followed by its labels, all float32. The row count follows from the file size. A matrix is written to a
+ * temporary file and moved in place, so it is either complete or absent.
+ * Instances are immutable; any number of threads can iterate over one matrix at the same time.
+ */
+public final class FeatureMatrix {
+
+    private static final byte[] MAGIC = "FEATMTRX".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = MAGIC.length + 3 * Integer.BYTES;
+    // Mapped segments hold whole rows and stay well below the 2 GB limit of a single MappedByteBuffer
+    private static final long MAX_SEGMENT_BYTES = 256L * 1024 * 1024;
+
+    private final int numFeatures;
+    private final int numLabels;
+    private final long rows;
+    private final int rowsPerSegment;
+    private final FloatBuffer[] segments;
+
+    private FeatureMatrix(int numFeatures, int numLabels, long rows, int rowsPerSegment, FloatBuffer[] segments) {
+        this.numFeatures = numFeatures;
+        this.numLabels = numLabels;
+        this.rows = rows;
+        this.rowsPerSegment = rowsPerSegment;
+        this.segments = segments;
+    }
+
+    /**
+     * Writes every minibatch of {@code source} to {@code file}, replacing it atomically.
+     *
+     * @return the number of rows written
+     */
+    public static long write(DataSetIterator source, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        long rows = 0;
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(source.inputColumns());
+                out.writeInt(source.totalOutcomes());
+                while (source.hasNext()) {
+                    DataSet batch = source.next();
+                    float[][] features = batch.getFeatures().toFloatMatrix();
+                    float[][] labels = batch.getLabels().toFloatMatrix();
+                    for (int r = 0; r < features.length; r++) {
+                        writeFloats(out, features[r], source.inputColumns());
+                        writeFloats(out, labels[r], source.totalOutcomes());
+                    }
+                    rows += features.length;
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return rows;
+    }
+
+    public static FeatureMatrix open(Path file) throws IOException {
+        return open(file, MAX_SEGMENT_BYTES);
+    }
+
+    static FeatureMatrix open(Path file, long maxSegmentBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Truncated feature matrix: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a feature matrix of format version " + FORMAT_VERSION + ": " + file);
+            }
+            int numFeatures = header.getInt();
+            int numLabels = header.getInt();
+            long rowBytes = (long) (numFeatures + numLabels) * Float.BYTES;
+            if (rowBytes <= 0 || (fileSize - HEADER_BYTES) % rowBytes != 0) {
+                throw new IOException("Truncated feature matrix: " + file);
+            }
+            long rows = (fileSize - HEADER_BYTES) / rowBytes;
+            int rowsPerSegment = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSegmentBytes / rowBytes));
+            FloatBuffer[] segments = new FloatBuffer[(int) ((rows + rowsPerSegment - 1) / rowsPerSegment)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s * rowsPerSegment;
+                long count = Math.min(rowsPerSegment, rows - first);
+                // The mapping stays valid after the channel is closed
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * rowBytes,
+                        count * rowBytes).asFloatBuffer();
+            }
+            return new FeatureMatrix(numFeatures, numLabels, rows, rowsPerSegment, segments);
+        }
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    /**
+     * @return minibatches of {@code batchSize} rows in stored order, the last one possibly smaller
+     */
+    public DataSetIterator iterator(int batchSize) {
+        return new BatchIterator(batchSize);
+    }
+
+    /**
+     * @return all rows in one DataSet, only for matrices that fit in memory
+     */
+    public DataSet toDataSet() {
+        if (rows * Math.max(numFeatures, numLabels) > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Feature matrix of " + rows + " rows does not fit in one DataSet");
+        }
+        return read(0, (int) rows);
+    }
+
+    private DataSet read(long from, int count) {
+        float[] features = new float[count * numFeatures];
+        float[] labels = new float[count * numLabels];
+        int width = numFeatures + numLabels;
+        for (int r = 0; r < count; r++) {
+            long row = from + r;
+            FloatBuffer segment = segments[(int) (row / rowsPerSegment)];
+            int index = (int) (row % rowsPerSegment) * width;
+            // Absolute gets leave the buffer position alone, so iterators do not interfere
+            segment.get(index, features, r * numFeatures, numFeatures);
+            segment.get(index + numFeatures, labels, r * numLabels, numLabels);
+        }
+        INDArray featureArray = Nd4j.create(features, new long[]{count, numFeatures}, 'c');
+        INDArray labelArray = Nd4j.create(labels, new long[]{count, numLabels}, 'c');
+        return new DataSet(featureArray, labelArray);
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values, int expected) throws IOException {
+        if (values.length != expected) {
+            throw new IOException("Expected " + expected + " columns but got " + values.length);
+        }
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private final class BatchIterator implements DataSetIterator {
+        private final int batchSize;
+        private long cursor;
+        private DataSetPreProcessor preProcessor;
+
+        BatchIterator(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public DataSet next(int num) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int count = (int) Math.min(num, rows - cursor);
+            DataSet batch = read(cursor, count);
+            cursor += count;
+            if (preProcessor != null) {
+                preProcessor.preProcess(batch);
+            }
+            return batch;
+        }
+
+        @Override
+        public DataSet next() {
+            return next(batchSize);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < rows;
+        }
+
+        @Override
+        public int inputColumns() {
+            return numFeatures;
+        }
+
+        @Override
+        public int totalOutcomes() {
+            return numLabels;
+        }
+
+        @Override
+        public boolean resetSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean asyncSupported() {
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            cursor = 0;
+        }
+
+        @Override
+        public int batch() {
+            return batchSize;
+        }
+
+        @Override
+        public void setPreProcessor(DataSetPreProcessor preProcessor) {
+            this.preProcessor = preProcessor;
+        }
+
+        @Override
+        public DataSetPreProcessor getPreProcessor() {
+            return preProcessor;
+        }
+
+        @Override
+        public List<String> getLabels() {
+            return null;
+        }
+    }
+}
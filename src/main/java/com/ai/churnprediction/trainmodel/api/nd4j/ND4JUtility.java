@@ -5,12 +5,18 @@ import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ND4JUtility {
-    // Step 5: Apply final transform
+    // Step 5: Apply final transform. Loads every row into one DataSet, only for files that fit in memory.
     public static DataSet getDataSet(TransformProcess fullTransform , File cleanedCsv) throws Exception {
         DataSetIterator fullIterator = DatavecUtility.applyFinalTransform(fullTransform,cleanedCsv);
-        DataSet allData = fullIterator.next();
+        List<DataSet> batches = new ArrayList<>();
+        while (fullIterator.hasNext()) {
+            batches.add(fullIterator.next());
+        }
+        DataSet allData = DataSet.merge(batches);
         allData.shuffle();
         return allData;
     }
@@ -1,21 +1,32 @@
 package com.ai.churnprediction.ui;
 
+import com.ai.churnprediction.repository.CustomerRepository;
+import com.ai.churnprediction.service.AtRiskExport;
 import com.ai.churnprediction.service.ChurnPrediction;
+import com.ai.churnprediction.service.ReportWriter;
+import com.ai.churnprediction.service.ScoreIndex;
+import com.ai.churnprediction.service.ServingBulkheads;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.OptionalDouble;
 
 @Controller
 @Slf4j
@@ -24,24 +35,71 @@ public class TelcoWebController {
     @Autowired
     private ChurnPrediction predictionService;
 
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ReportWriter reportWriter;
+
+    @Autowired
+    private AtRiskExport atRiskExport;
+
+    @Autowired
+    private ServingBulkheads bulkheads;
+
+    // Largest page the index page serves, whatever the size parameter asks for
+    @Value("${churn.index.max-page-size:100}")
+    private int maxPageSize;
+
     @GetMapping("/index")
     public String index(Model model,
                         @RequestParam(name = "search", required = false) String search,
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "10") int size) {
+                        @RequestParam(defaultValue = "10") int size,
+                        @RequestParam(defaultValue = "customer") String sort,
+                        @RequestParam(required = false) Double minProbability,
+                        @RequestParam(required = false) Double maxProbability,
+                        @RequestParam Map<String, String> params) {
         log.info("Loading index page with search: {}", search);
-
-        List<Map<String, Object>> filtered = predictionService.getFullData();
-        if (search != null && !search.isEmpty()) {
-            filtered = filtered.stream()
-                    .filter(row -> row.get("customerID").toString().contains(search))
-                    .toList();
+        size = Math.clamp(size, 1, Math.max(1, maxPageSize));
+        page = Math.max(0, page);
+
+        ScoreIndex.Sort sortOrder = ScoreIndex.Sort.parse(sort);
+        Map<String, String> filters = new LinkedHashMap<>();
+        int[] rows;
+        int totalRecords;
+        // Served from the precomputed ranking once the predictions of all customers are cached
+        ScoreIndex scoreIndex = predictionService.getScoreIndex();
+        // Row indices below refer to the customers the ranking was built for, even if the file was refreshed since
+        CustomerRepository customers = scoreIndex != null ? scoreIndex.getCustomers() : customerRepository.snapshot();
+        if (scoreIndex != null) {
+            scoreIndex.getFilterColumns().forEach(column -> filters.put(column, params.getOrDefault(column, "")));
+            ScoreIndex.Query query = new ScoreIndex.Query(search, sortOrder,
+                    minProbability != null ? minProbability : 0, maxProbability != null ? maxProbability : 1, filters);
+            ScoreIndex.Page result = scoreIndex.query(query, offset(page, size, Integer.MAX_VALUE), size);
+            rows = result.rows();
+            totalRecords = result.total();
+        } else {
+            // Row indices of the matching customers, null means all customers
+            int[] matches = search != null && !search.isEmpty() ? customers.searchByCustomerId(search) : null;
+            totalRecords = matches != null ? matches.length : customers.size();
+            int fromIndex = offset(page, size, totalRecords);
+            int toIndex = Math.min(fromIndex + size, totalRecords);
+            rows = new int[toIndex - fromIndex];
+            for (int i = fromIndex; i < toIndex; i++) {
+                rows[i - fromIndex] = matches != null ? matches[i] : i;
+            }
         }
 
-        int totalRecords = filtered.size();
-        int fromIndex = Math.min(page * size, totalRecords);
-        int toIndex = Math.min(fromIndex + size, totalRecords);
-        List<Map<String, Object>> pageData = filtered.subList(fromIndex, toIndex);
+        List<Map<String, Object>> pageData = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            Map<String, Object> customer = customers.getRow(row);
+            if (scoreIndex != null) {
+                float prob = scoreIndex.getProbability(row);
+                customer.put("probability", String.format("Churn: %s (%.4f)", prob >= 0.5 ? "Yes" : "No", prob));
+            }
+            pageData.add(customer);
+        }
 
         int totalPages = (int) Math.ceil((double) totalRecords / size);
 
@@ -53,6 +111,12 @@ public class TelcoWebController {
         model.addAttribute("pageSizes", List.of(10, 20, 50, 100));
         model.addAttribute("totalRecords", totalRecords);
         model.addAttribute("paginationRange", getPaginationRange(page, totalPages));
+        model.addAttribute("sort", sortOrder.name().toLowerCase());
+        model.addAttribute("minProbability", minProbability);
+        model.addAttribute("maxProbability", maxProbability);
+        model.addAttribute("filters", filters);
+        model.addAttribute("filterValues", scoreIndex != null ? scoreIndex.getFilterValues() : Map.of());
+        model.addAttribute("pageQuery", pageQuery(search, size, sortOrder, minProbability, maxProbability, filters));
         return "index";
     }
 
@@ -60,28 +124,66 @@ public class TelcoWebController {
     @ResponseBody
     public String predict(@RequestParam String customerID) {
         log.info("Predicting churn for customerID: {}", customerID);
-        Optional<Map<String, Object>> customer = predictionService.getFullData().stream()
-                .filter(row -> row.get("customerID").equals(customerID))
-                .findFirst();
+        OptionalDouble probability = bulkheads.interactive(() -> predictionService.predictCustomer(customerID));
 
-        if (customer.isEmpty()) return "Customer not found.";
+        if (probability.isEmpty()) return "Customer not found.";
 
-        double prob = predictionService.predictChurn(customer.get());
+        double prob = probability.getAsDouble();
         String label = prob >= 0.5 ? "Yes" : "No";
 
         return String.format("Churn: %s (%.4f)", label, prob);
     }
 
     @GetMapping("/download-report")
-    public void downloadCsvReport(HttpServletResponse response) throws IOException {
-        // Set response headers
-        response.setContentType("text/csv");
-        response.setHeader("Content-Disposition", "attachment; filename=predict_report.csv");
-        // Loop through data with predictions (replace with your actual logic)
-        predictionService.getAllPredictions(response); // create this service method
+    public void downloadCsvReport(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Shed before the headers are set when too many reports are running
+        bulkheads.report(() -> {
+            // Set response headers
+            response.setContentType("text/csv");
+            response.setHeader("Content-Disposition", "attachment; filename=predict_report.csv");
+            // Streams the rows chunk by chunk while later chunks are still being scored
+            reportWriter.write(request, response);
+        });
+    }
+
+    // The `top` customers most likely to churn, per value of the `segment` column when given (e.g. Contract)
+    @GetMapping("/download-at-risk")
+    public void downloadAtRisk(@RequestParam(defaultValue = "1000") int top,
+                               @RequestParam(required = false) String segment,
+                               HttpServletResponse response) throws IOException {
+        bulkheads.report(() -> {
+            response.setContentType("text/csv");
+            response.setHeader("Content-Disposition", "attachment; filename=at_risk_customers.csv");
+            try {
+                // Streams the customer file; nothing is written until every customer has been ranked
+                atRiskExport.write(top, segment, response.getOutputStream());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        });
     }
 
 
+    // First row of the page, at most `total` when the page lies past the end
+    private static int offset(int page, int size, int total) {
+        return (int) Math.min((long) page * size, total);
+    }
+
+    // Query string of the current search and filters, for the pagination links
+    private String pageQuery(String search, int size, ScoreIndex.Sort sort, Double minProbability, Double maxProbability,
+                             Map<String, String> filters) {
+        UriComponentsBuilder builder = UriComponentsBuilder.newInstance()
+                .queryParam("size", size)
+                .queryParam("sort", sort.name().toLowerCase());
+        if (search != null && !search.isEmpty()) builder.queryParam("search", search);
+        if (minProbability != null) builder.queryParam("minProbability", minProbability);
+        if (maxProbability != null) builder.queryParam("maxProbability", maxProbability);
+        filters.forEach((column, value) -> {
+            if (!value.isEmpty()) builder.queryParam(column, value);
+        });
+        return builder.encode().build().getQuery();
+    }
+
     private List<Integer> getPaginationRange(int currentPage, int totalPages) {
         int start = Math.max(0, currentPage - 2);
         int end = Math.min(totalPages - 1, currentPage + 2);
@@ -13,8 +13,12 @@ public class AiUtil {
     public static final String DATASET_PATH = "src/main/resources/WA_Fn-UseC_-Telco-Customer-Churn.csv";
 
     public static List<Map<String, Object>> loadCsvData() throws IOException {
+        return loadCsvData(AiUtil.DATASET_PATH);
+    }
+
+    public static List<Map<String, Object>> loadCsvData(String csvPath) throws IOException {
         List<Map<String, Object>> data = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(AiUtil.DATASET_PATH))) {
+        try (CSVReader reader = new CSVReader(new FileReader(csvPath))) {
             String[] headers = reader.readNext();
             String[] row;
             while ((row = reader.readNext()) != null) {
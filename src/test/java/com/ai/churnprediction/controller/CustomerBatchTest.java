@@ -0,0 +1,52 @@
+package com.ai.churnprediction.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Reads JSON batches one customer at a time and checks that binding stops one customer past the limit.
+ */
+class CustomerBatchTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void readsCustomersInOrder() {
+        List<ChurnRequest> requests = read("""
+                [{"customerID": "A", "tenure": 3, "MonthlyCharges": 20.5},
+                 {"customerID": "B", "Contract": "Two year"}]""", 10);
+        assertEquals(2, requests.size());
+        assertEquals("A", requests.get(0).customerID());
+        assertEquals(3, requests.get(0).tenure());
+        assertEquals("Two year", requests.get(1).contract());
+        assertNull(requests.get(1).tenure());
+        assertEquals(List.of(), read("[]", 10));
+    }
+
+    @Test
+    void stopsOneCustomerPastTheLimit() {
+        // The third element is not even valid: it is never reached
+        List<ChurnRequest> requests = read("[{\"customerID\": \"A\"}, {\"customerID\": \"B\"}, oops", 1);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void rejectsBodiesThatAreNotArraysOfCustomers() {
+        assertThrows(IllegalArgumentException.class, () -> read("{\"customerID\": \"A\"}", 10));
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"customerID\": \"A\"}, 1]", 10));
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"customerID\": \"A\"}", 10));
+        assertThrows(IllegalArgumentException.class, () -> read("[{\"tenure\": \"many\"}]", 10));
+        assertThrows(IllegalArgumentException.class, () -> read("", 10));
+    }
+
+    private static List<ChurnRequest> read(String json, int maxCustomers) {
+        return CustomerBatch.read(MAPPER, json.getBytes(StandardCharsets.UTF_8), maxCustomers);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ai.churnprediction.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the binary batch format against rows written with {@link DataOutputStream}, as a Java caller would.
+ */
+class FeatureRowsTest {
+
+    @Test
+    void decodesRowsAndMarksRowsOfTheWrongWidth() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeRow(out, 1f, 2f, 3f);
+        writeRow(out, 4f, 5f);
+        writeRow(out, 6f, 7f, 8f);
+
+        FeatureRows.Decoded decoded = FeatureRows.decode(bytes.toByteArray(), 3, 10);
+
+        assertEquals(3, decoded.rows());
+        assertArrayEquals(new boolean[]{true, false, true}, decoded.valid());
+        assertArrayEquals(new double[]{1, 2, 3, 0, 0, 0, 6, 7, 8}, decoded.features());
+    }
+
+    @Test
+    void rejectsTruncatedBodies() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeRow(out, 1f, 2f);
+        writeRow(out, 3f, 4f);
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 2);
+
+        assertThrows(IllegalArgumentException.class, () -> FeatureRows.decode(truncated, 2, 10));
+        // A row claiming more features than the body has left
+        assertThrows(IllegalArgumentException.class, () -> FeatureRows.decode(new byte[]{0, 0, 0, 9, 0, 0}, 2, 10));
+    }
+
+    @Test
+    void stopsOneRowPastTheLimit() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeRow(out, 1f, 2f);
+        writeRow(out, 3f, 4f);
+        writeRow(out, 5f, 6f);
+        // Never decoded: the batch is already too large
+        out.writeInt(1_000_000);
+        byte[] body = bytes.toByteArray();
+
+        assertEquals(2, FeatureRows.decode(body, 2, 1).rows());
+        assertEquals(3, FeatureRows.decode(body, 2, 2).rows());
+        assertThrows(IllegalArgumentException.class, () -> FeatureRows.decode(body, 2, 3));
+    }
+
+    @Test
+    void encodesCountAndFloatProbabilities() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                FeatureRows.encode(new double[]{0.25, Double.NaN})));
+
+        assertEquals(2, in.readInt());
+        assertEquals(0.25f, in.readFloat());
+        assertTrue(Float.isNaN(in.readFloat()));
+    }
+
+    private static void writeRow(DataOutputStream out, float... features) throws IOException {
+        out.writeInt(features.length);
+        for (float feature : features) {
+            out.writeFloat(feature);
+        }
+    }
+}
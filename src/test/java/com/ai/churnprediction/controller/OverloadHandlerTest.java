@@ -0,0 +1,21 @@
+package com.ai.churnprediction.controller;
+
+import com.ai.churnprediction.service.OverloadedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OverloadHandlerTest {
+
+    @Test
+    void answersShedRequestsWith429AndRetryAfter() {
+        ResponseEntity<String> response = new OverloadHandler()
+                .overloaded(new OverloadedException("Inference queue full", 7));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("7", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("Inference queue full", response.getBody());
+    }
+}
@@ -0,0 +1,117 @@
+package com.ai.churnprediction.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the text exposition format line by line: help and type lines, summaries, cumulative histogram buckets
+ * and the escaping of help texts and label values.
+ */
+class PrometheusWriterTest {
+
+    @Test
+    void writesCountersAndGaugesWithHelpAndType() {
+        String text = new PrometheusWriter()
+                .counter("churn_requests_total", "Prediction requests served", 42)
+                .gauge("churn_queue", "Queued predictions", 2.5)
+                .gauge("churn_empty", "Nothing yet", Double.NaN)
+                .toString();
+        assertEquals(List.of(
+                "# HELP churn_requests_total Prediction requests served",
+                "# TYPE churn_requests_total counter",
+                "churn_requests_total 42",
+                "# HELP churn_queue Queued predictions",
+                "# TYPE churn_queue gauge",
+                "churn_queue 2.50000000",
+                "# HELP churn_empty Nothing yet",
+                "# TYPE churn_empty gauge",
+                "churn_empty NaN"), lines(text));
+        assertTrue(text.endsWith("\n"));
+    }
+
+    @Test
+    void writesSummariesWithLabels() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        String text = new PrometheusWriter()
+                .summary("churn_stage_seconds", "Stage latency")
+                .summarySamples("churn_stage_seconds", PrometheusWriter.label("stage", "transform"), histogram, 1)
+                .toString();
+        assertEquals(List.of(
+                "# HELP churn_stage_seconds Stage latency",
+                "# TYPE churn_stage_seconds summary",
+                "churn_stage_seconds{stage=\"transform\",quantile=\"0.5\"} 5",
+                "churn_stage_seconds{stage=\"transform\",quantile=\"0.9\"} 9",
+                "churn_stage_seconds{stage=\"transform\",quantile=\"0.99\"} 10",
+                "churn_stage_seconds{stage=\"transform\",quantile=\"0.999\"} 10",
+                "churn_stage_seconds_sum{stage=\"transform\"} 55",
+                "churn_stage_seconds_count{stage=\"transform\"} 10"), lines(text));
+    }
+
+    @Test
+    void writesCumulativeHistogramBuckets() {
+        Histogram nanos = new Histogram();
+        // 1 ms, 2 ms, 2 ms, 40 ms and 3 s
+        for (long value : new long[]{1_000_000, 2_000_000, 2_000_000, 40_000_000, 3_000_000_000L}) {
+            nanos.record(value);
+        }
+        String text = new PrometheusWriter()
+                .histogram("churn_latency_seconds", "Latency", nanos, 1e-9, 0.0005, 0.005, 0.05, 1, 10)
+                .toString();
+        assertEquals(List.of(
+                "# HELP churn_latency_seconds Latency",
+                "# TYPE churn_latency_seconds histogram",
+                "churn_latency_seconds_bucket{le=\"0.0005\"} 0",
+                "churn_latency_seconds_bucket{le=\"0.005\"} 3",
+                "churn_latency_seconds_bucket{le=\"0.05\"} 4",
+                "churn_latency_seconds_bucket{le=\"1\"} 4",
+                "churn_latency_seconds_bucket{le=\"10\"} 5",
+                "churn_latency_seconds_bucket{le=\"+Inf\"} 5",
+                "churn_latency_seconds_sum 3.04500000",
+                "churn_latency_seconds_count 5"), lines(text));
+    }
+
+    @Test
+    void histogramBucketsAreExactToTheBucketResolution() {
+        Histogram histogram = new Histogram();
+        for (long value = 0; value < 10_000; value++) {
+            histogram.record(value);
+        }
+        long[] bounds = {0, 15, 100, 1_000, 5_000, 20_000};
+        long[] cumulative = histogram.cumulativeCounts(bounds);
+        assertEquals(bounds.length + 1, cumulative.length);
+        assertEquals(1, cumulative[0]);
+        assertEquals(16, cumulative[1]);
+        for (int i = 2; i < bounds.length; i++) {
+            // Never counts a value above the bound, and misses at most one bucket (about 6%) below it
+            long exact = Math.min(bounds[i] + 1, 10_000);
+            assertTrue(cumulative[i] <= exact && cumulative[i] >= exact * 0.93,
+                    "le=" + bounds[i] + " counted " + cumulative[i]);
+            assertTrue(cumulative[i] >= cumulative[i - 1]);
+        }
+        assertEquals(10_000, cumulative[bounds.length]);
+        assertEquals(10_000, cumulative[bounds.length - 1]);
+    }
+
+    @Test
+    void escapesHelpTextsAndLabelValues() {
+        assertEquals("stage=\"a\\\\b \\\"quoted\\\"\\nnext\"",
+                PrometheusWriter.label("stage", "a\\b \"quoted\"\nnext"));
+        String text = new PrometheusWriter()
+                .counter("churn_odd_total", "Back\\slash and\nline feed", 1)
+                .toString();
+        assertEquals("# HELP churn_odd_total Back\\\\slash and\\nline feed", lines(text).get(0));
+        assertEquals(3, lines(text).size());
+    }
+
+    private static List<String> lines(String text) {
+        return Arrays.asList(text.split("\n"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.ai.churnprediction.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation per request is only recorded when the prediction runs on the request thread.
+ */
+class ServingMetricsTest {
+
+    @Test
+    void tracksAllocationOnlyWhenTheWorkStaysOnTheRequestThread() {
+        assertTrue(new ServingMetrics(true, false, false, false).threadAllocatedBytes() >= 0);
+        assertEquals(-1, new ServingMetrics(false, false, false, false).threadAllocatedBytes());
+        assertEquals(-1, new ServingMetrics(true, true, false, false).threadAllocatedBytes());
+        assertEquals(-1, new ServingMetrics(true, false, true, false).threadAllocatedBytes());
+        assertEquals(-1, new ServingMetrics(true, false, false, true).threadAllocatedBytes());
+    }
+
+    @Test
+    void recordsRequestsWithoutAllocationWhenTrackingIsOff() {
+        ServingMetrics metrics = new ServingMetrics(true, true, false, false);
+        metrics.recordRequest(System.nanoTime(), metrics.threadAllocatedBytes(), true);
+        assertEquals(1, metrics.getRequests().sum());
+        assertEquals(1, metrics.getFailures().sum());
+        assertEquals(1, metrics.getRequestNanos().getCount());
+        assertEquals(0, metrics.getRequestAllocatedBytes().getCount());
+
+        ServingMetrics tracking = new ServingMetrics(true, false, false, false);
+        long allocated = tracking.threadAllocatedBytes();
+        byte[][] garbage = new byte[64][];
+        for (int i = 0; i < garbage.length; i++) {
+            garbage[i] = new byte[1024];
+        }
+        tracking.recordRequest(System.nanoTime(), allocated, false);
+        assertEquals(1, tracking.getRequestAllocatedBytes().getCount());
+        assertTrue(tracking.getRequestAllocatedBytes().getSum() >= 64 * 1024);
+    }
+}
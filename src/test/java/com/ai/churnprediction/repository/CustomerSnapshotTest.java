@@ -0,0 +1,152 @@
+package com.ai.churnprediction.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes snapshots of a small customer file with every column kind and checks what reading them back returns:
+ * the same customers, nothing when the snapshot is stale, or an {@link IOException} when it is damaged.
+ */
+class CustomerSnapshotTest {
+
+    // Offset of the format version, right after the magic
+    private static final int VERSION_OFFSET = 8;
+
+    @Test
+    void roundTripEqualsParsedFile(@TempDir Path directory) throws IOException {
+        Path csv = writeCustomers(directory, 600);
+        CustomerSnapshot.Source source = CustomerSnapshot.Source.of(csv);
+        ColumnarCustomerRepository loaded = ColumnarCustomerRepository.load(csv);
+        Path snapshot = directory.resolve("customers.snapshot");
+
+        assertTrue(CustomerSnapshot.write(loaded, source, snapshot));
+        assertTrue(CustomerSnapshot.minimumBytes(loaded) <= Files.size(snapshot));
+        ColumnarCustomerRepository restored = CustomerSnapshot.read(snapshot, source).orElseThrow();
+        assertSameCustomers(loaded, restored);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count(), "Temporary file left behind");
+        }
+    }
+
+    @Test
+    void missingOrStaleSnapshotIsEmpty(@TempDir Path directory) throws IOException {
+        Path csv = writeCustomers(directory, 20);
+        CustomerSnapshot.Source source = CustomerSnapshot.Source.of(csv);
+        Path snapshot = directory.resolve("customers.snapshot");
+        assertEquals(Optional.empty(), CustomerSnapshot.read(snapshot, source));
+
+        CustomerSnapshot.write(ColumnarCustomerRepository.load(csv), source, snapshot);
+        assertEquals(Optional.empty(), CustomerSnapshot.read(snapshot,
+                new CustomerSnapshot.Source(source.size() + 1, source.lastModified(), source.crc())));
+        assertEquals(Optional.empty(), CustomerSnapshot.read(snapshot,
+                new CustomerSnapshot.Source(source.size(), source.lastModified() + 1, source.crc())));
+        assertEquals(Optional.empty(), CustomerSnapshot.read(snapshot,
+                new CustomerSnapshot.Source(source.size(), source.lastModified(), source.crc() ^ 1)));
+
+        // Another format version is stale, not corrupt, even though its checksum no longer matches
+        overwrite(snapshot, VERSION_OFFSET, ByteBuffer.allocate(Integer.BYTES).putInt(1).flip());
+        assertEquals(Optional.empty(), CustomerSnapshot.read(snapshot, source));
+    }
+
+    @Test
+    void sameSizeEditWithinTheSameMtimeIsStale(@TempDir Path directory) throws IOException {
+        Path csv = writeCustomers(directory, 20);
+        FileTime modified = Files.getLastModifiedTime(csv);
+        CustomerSnapshot.Source before = CustomerSnapshot.Source.of(csv);
+
+        // Same length and timestamp, as after `cp -p` of an edited copy
+        Files.writeString(csv, Files.readString(csv).replace("One year", "Two year"));
+        Files.setLastModifiedTime(csv, modified);
+        CustomerSnapshot.Source after = CustomerSnapshot.Source.of(csv);
+        assertEquals(before.size(), after.size());
+        assertEquals(before.lastModified(), after.lastModified());
+        assertNotEquals(before, after);
+
+        Path snapshot = directory.resolve("customers.snapshot");
+        CustomerSnapshot.write(ColumnarCustomerRepository.load(csv), before, snapshot);
+        assertEquals(Optional.empty(), CustomerSnapshot.read(snapshot, after));
+    }
+
+    @Test
+    void rejectsDamagedSnapshots(@TempDir Path directory) throws IOException {
+        Path csv = writeCustomers(directory, 200);
+        CustomerSnapshot.Source source = CustomerSnapshot.Source.of(csv);
+        ColumnarCustomerRepository loaded = ColumnarCustomerRepository.load(csv);
+        Path snapshot = directory.resolve("customers.snapshot");
+        CustomerSnapshot.write(loaded, source, snapshot);
+        byte[] valid = Files.readAllBytes(snapshot);
+
+        // Flipped bit in the column data
+        byte[] flipped = valid.clone();
+        flipped[valid.length / 2] ^= 1;
+        Files.write(snapshot, flipped);
+        assertThrows(IOException.class, () -> CustomerSnapshot.read(snapshot, source));
+
+        byte[] magic = valid.clone();
+        magic[0] = 'X';
+        Files.write(snapshot, magic);
+        assertThrows(IOException.class, () -> CustomerSnapshot.read(snapshot, source));
+
+        for (int length : new int[]{0, 10, 40, valid.length / 2, valid.length - 1}) {
+            Files.write(snapshot, Arrays.copyOf(valid, length));
+            assertThrows(IOException.class, () -> CustomerSnapshot.read(snapshot, source), "Truncated to " + length);
+        }
+
+        Files.write(snapshot, valid);
+        assertSameCustomers(loaded, CustomerSnapshot.read(snapshot, source).orElseThrow());
+    }
+
+    static void assertSameCustomers(ColumnarCustomerRepository expected, ColumnarCustomerRepository actual) {
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getRow(row), actual.getRow(row), "Row " + row);
+            assertEquals(expected.getRowHash(row), actual.getRowHash(row), "Hash of row " + row);
+            assertEquals(row, actual.indexOf(expected.getCustomerId(row)));
+        }
+        for (String fragment : new String[]{"C1", "0-", "99", "nobody"}) {
+            assertArrayEquals(expected.searchByCustomerId(fragment), actual.searchByCustomerId(fragment), fragment);
+        }
+    }
+
+    /**
+     * Customers with an ID, dictionary columns (one with over 256 distinct values, so its codes are ints) and
+     * numeric columns with blanks and values that do not print back the same.
+     */
+    static Path writeCustomers(Path directory, int rows) throws IOException {
+        String[] contracts = {"Month-to-month", "One year", "Two year"};
+        StringBuilder csv = new StringBuilder("customerID,Contract,City,tenure,TotalCharges\n");
+        for (int row = 0; row < rows; row++) {
+            csv.append('C').append(row).append("-X").append(',')
+                    .append(contracts[row * 7 % contracts.length]).append(',')
+                    .append("City ").append(row % 300).append(',')
+                    .append(row % 72).append(',')
+                    .append(row % 10 == 0 ? " " : row % 10 == 1 ? "20.50" : Double.toString(row * 1.25))
+                    .append('\n');
+        }
+        return Files.writeString(directory.resolve("customers.csv"), csv);
+    }
+
+    private static void overwrite(Path file, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ai.churnprediction.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.ai.churnprediction.repository.CustomerSnapshotTest.assertSameCustomers;
+import static com.ai.churnprediction.repository.CustomerSnapshotTest.writeCustomers;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Parses files with every parallelism from one thread to more threads than lines and checks the result against
+ * the sequential CSV reader, so every range split and every join of range builders is covered.
+ */
+class ParallelCsvParserTest {
+
+    @Test
+    void matchesSequentialParsingForAnyParallelism(@TempDir Path directory) throws IOException {
+        Path csv = writeCustomers(directory, 700);
+        ColumnarCustomerRepository expected = ColumnarCustomerRepository.load(csv);
+        for (int parallelism : new int[]{1, 2, 3, 7, 64}) {
+            assertSameCustomers(expected, ParallelCsvParser.parse(csv, parallelism));
+        }
+    }
+
+    @Test
+    void splitsOnLineBoundariesWhenThreadsOutnumberLines(@TempDir Path directory) throws IOException {
+        Path csv = Files.writeString(directory.resolve("customers.csv"), """
+                customerID,Contract,tenure
+                A-1,Month-to-month,1
+                B-22,Two year,22
+                C-333,One year,333
+                """);
+        ColumnarCustomerRepository expected = ColumnarCustomerRepository.load(csv);
+        for (int parallelism = 1; parallelism <= 200; parallelism += 13) {
+            ColumnarCustomerRepository parsed = ParallelCsvParser.parse(csv, parallelism);
+            assertEquals(3, parsed.size(), "Parallelism " + parallelism);
+            assertSameCustomers(expected, parsed);
+        }
+    }
+
+    @Test
+    void handlesQuotesLineEndingsAndEmptyLines(@TempDir Path directory) throws IOException {
+        Path csv = Files.writeString(directory.resolve("customers.csv"),
+                "customerID,PaymentMethod,Note\r\n"
+                        + "A,\"Bank transfer, automatic\",\"says \"\"hi\"\"\"\r\n"
+                        + "\r\n"
+                        + "B,Mailed check,\n"
+                        + "\n"
+                        + "\"C,1\",\"\",plain\n");
+        for (int parallelism : new int[]{1, 4, 50}) {
+            ColumnarCustomerRepository parsed = ParallelCsvParser.parse(csv, parallelism);
+            assertEquals(3, parsed.size());
+            assertEquals("Bank transfer, automatic", parsed.getValue(0, "PaymentMethod"));
+            assertEquals("says \"hi\"", parsed.getValue(0, "Note"));
+            assertEquals("", parsed.getValue(1, "Note"));
+            assertEquals(2, parsed.indexOf("C,1"));
+            assertEquals("", parsed.getValue(2, "PaymentMethod"));
+        }
+    }
+
+    @Test
+    void rejectsQuotedLineBreaks(@TempDir Path directory) throws IOException {
+        Path csv = Files.writeString(directory.resolve("customers.csv"), "customerID,Note\nA,\"two\nlines\"\n");
+        assertThrows(IOException.class, () -> ParallelCsvParser.parse(csv, 1));
+        Path empty = Files.writeString(directory.resolve("empty.csv"), "");
+        assertThrows(IOException.class, () -> ParallelCsvParser.parse(empty, 2));
+    }
+
+    @Test
+    void joinedBuildersRemapDictionaryCodes() {
+        List<String> columns = List.of("customerID", "Contract", "City");
+        ColumnarCustomerRepository.Builder first = new ColumnarCustomerRepository.Builder(columns)
+                .addRow(new String[]{"A", "Two year", "City 0"})
+                .addRow(new String[]{"B", "One year", "City 1"});
+        // Seen in another order, so the same values have other codes in this range; its City column has over
+        // 256 distinct values, so its codes are ints while the first range still has byte codes
+        ColumnarCustomerRepository.Builder second = new ColumnarCustomerRepository.Builder(columns)
+                .addRow(new String[]{"C", "One year", "City 299"})
+                .addRow(new String[]{"D", "Month-to-month", "City 1"});
+        for (int city = 0; city < 300; city++) {
+            second.addRow(new String[]{"E" + city, "Two year", "City " + (299 - city)});
+        }
+
+        ColumnarCustomerRepository joined = first.addAll(second).build();
+        assertEquals(304, joined.size());
+        assertEquals(List.of("Two year", "One year", "One year", "Month-to-month", "Two year"),
+                List.of(joined.getValue(0, "Contract"), joined.getValue(1, "Contract"), joined.getValue(2, "Contract"),
+                        joined.getValue(3, "Contract"), joined.getValue(4, "Contract")));
+        assertEquals("City 1", joined.getValue(1, "City"));
+        assertEquals("City 299", joined.getValue(2, "City"));
+        assertEquals("City 1", joined.getValue(3, "City"));
+        for (int city = 0; city < 300; city++) {
+            assertEquals("City " + (299 - city), joined.getValue(4 + city, "City"));
+            assertEquals(4 + city, joined.indexOf("E" + city));
+        }
+    }
+}
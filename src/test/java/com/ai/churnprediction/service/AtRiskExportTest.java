@@ -0,0 +1,98 @@
+package com.ai.churnprediction.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Streams a small customer file in chunks through the export, with a scorer that reads the probability from a
+ * column, and checks the header, ranks and order per segment, including rankings that spill to disk.
+ */
+class AtRiskExportTest {
+
+    private static final String CUSTOMERS = """
+            customerID,Contract,Score
+            A,Month-to-month,0.90
+            B,Two year,0.20
+            C,Month-to-month,0.35
+            D,Two year,0.75
+            E,Month-to-month,0.90
+            F,Month-to-month,bad
+            G,Two year
+            H,One year,0.50
+            I,Month-to-month,0.10
+            """;
+
+    @Test
+    void ranksPerSegment(@TempDir Path directory) throws IOException {
+        AtRiskExport export = export(directory, 2);
+        assertEquals(List.of(
+                "Contract,Rank,CustomerID,Probability",
+                "Month-to-month,1,A,0.9000",
+                "Month-to-month,2,E,0.9000",
+                "Month-to-month,3,C,0.3500",
+                "One year,1,H,0.5000",
+                "Two year,1,D,0.7500",
+                "Two year,2,B,0.2000"), write(export, 3, "Contract"));
+    }
+
+    @Test
+    void ranksAllCustomersWithoutSegment(@TempDir Path directory) throws IOException {
+        // One ranked customer in memory, so the top 4 spills runs to disk
+        AtRiskExport export = export(directory, 1);
+        assertEquals(List.of(
+                "Rank,CustomerID,Probability",
+                "1,A,0.9000",
+                "2,E,0.9000",
+                "3,D,0.7500",
+                "4,H,0.5000"), write(export, 4, null));
+        try (Stream<Path> files = Files.list(directory.resolve("spill"))) {
+            assertEquals(0, files.count(), "Runs left behind");
+        }
+    }
+
+    @Test
+    void rejectsUnknownSegmentColumn(@TempDir Path directory) throws IOException {
+        AtRiskExport export = export(directory, 2);
+        assertThrows(IllegalArgumentException.class, () -> write(export, 3, "Region"));
+        assertThrows(IllegalArgumentException.class, () -> write(export, 0, null));
+    }
+
+    private static List<String> write(AtRiskExport export, int top, String segmentColumn) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.write(top, segmentColumn, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private static AtRiskExport export(Path directory, int maxInMemory) throws IOException {
+        Path csv = Files.writeString(directory.resolve("customers.csv"), CUSTOMERS);
+        return new AtRiskExport(() -> AtRiskExportTest::score, csv, 2, maxInMemory,
+                directory.resolve("spill").toString(), 10);
+    }
+
+    // The Score column is the probability, anything else fails the row
+    private static ChurnPrediction.ItemPredictions score(List<Map<String, Object>> payloads) {
+        double[] probabilities = new double[payloads.size()];
+        String[] errors = new String[payloads.size()];
+        for (int i = 0; i < payloads.size(); i++) {
+            try {
+                probabilities[i] = Double.parseDouble(payloads.get(i).get("Score").toString());
+            } catch (NumberFormatException e) {
+                probabilities[i] = Double.NaN;
+                errors[i] = e.getMessage();
+            }
+        }
+        return new ChurnPrediction.ItemPredictions("test", probabilities, errors);
+    }
+}
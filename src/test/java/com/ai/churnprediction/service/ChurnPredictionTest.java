@@ -0,0 +1,146 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.ServingMetrics;
+import com.ai.churnprediction.repository.ColumnarCustomerRepository;
+import com.ai.churnprediction.trainmodel.api.datavec.DatavecUtility;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
+import org.datavec.api.records.reader.impl.transform.TransformProcessRecordReader;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.schema.InferredSchema;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.AnalyzeLocal;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Rescores a refreshed customer file with a scorer that records what it is asked for, and checks that unchanged
+ * customers keep their cached probability and only the others are scored, in chunks. Also scores Telco customers
+ * one by one and in chunks with a real model and every engine, and compares the probabilities.
+ */
+class ChurnPredictionTest {
+
+    private static final String CUSTOMERS = """
+            customerID,tenure
+            A,1
+            B,2
+            C,3
+            D,4
+            E,5
+            """;
+
+    @Test
+    void rescoresOnlyChangedRows(@TempDir Path directory) throws IOException {
+        ColumnarCustomerRepository next = ColumnarCustomerRepository.load(
+                Files.writeString(directory.resolve("customers.csv"), CUSTOMERS));
+        double[] cached = {0.1, 0.2, 0.3};
+        // A and C are unchanged rows 2 and 0 of the previous file, the others are new or changed
+        int[] previousRows = {2, -1, 0, -1, -1};
+        List<String> scored = new ArrayList<>();
+        double[] probabilities = new double[next.size()];
+
+        int rescored = ChurnPrediction.rescore(next, cached, previousRows, 2, recording(scored), probabilities);
+
+        assertEquals(3, rescored);
+        assertEquals(List.of("B", "D", "E"), scored);
+        assertArrayEquals(new double[]{0.3, 0.92, 0.1, 0.94, 0.95}, probabilities, 1e-12);
+    }
+
+    @Test
+    void rescoresAllRowsWithoutCache(@TempDir Path directory) throws IOException {
+        ColumnarCustomerRepository next = ColumnarCustomerRepository.load(
+                Files.writeString(directory.resolve("customers.csv"), CUSTOMERS));
+        List<String> scored = new ArrayList<>();
+        double[] probabilities = new double[next.size()];
+
+        int rescored = ChurnPrediction.rescore(next, null, new int[]{2, -1, 0, -1, -1}, 4, recording(scored),
+                probabilities);
+
+        assertEquals(5, rescored);
+        assertEquals(List.of("A", "B", "C", "D", "E"), scored);
+        assertArrayEquals(new double[]{0.91, 0.92, 0.93, 0.94, 0.95}, probabilities, 1e-12);
+    }
+
+    @Test
+    void batchScoresMatchSingleScores(@TempDir Path directory) throws Exception {
+        List<Map<String, Object>> customers = AiUtil.loadCsvData().subList(0, 300);
+        TransformProcess transform = buildTransform(customers);
+        int numFeatures = transform.getFinalSchema().numColumns() - 1;
+        File modelFile = directory.resolve("model.zip").toFile();
+        ModelSerializer.writeModel(DeepLearning4JUtility.configureModel(numFeatures), modelFile, false);
+        File transformFile = Files.writeString(directory.resolve("transform.json"), transform.toJson()).toFile();
+
+        for (ModelBundle.Engine engine : ModelBundle.Engine.values()) {
+            ModelBundle bundle = ModelBundle.load(modelFile, transformFile, 1, true, engine, new ServingMetrics(false));
+            // No cache generation for this model and no micro-batching: every single prediction is a forward pass
+            ChurnPrediction prediction = new ChurnPrediction(bundle, new PredictionCache(), new PredictionBatcher(),
+                    128);
+            double[] single = new double[customers.size()];
+            for (int i = 0; i < single.length; i++) {
+                single[i] = prediction.predictChurn(new HashMap<>(customers.get(i)));
+            }
+            double[] batch = prediction.predictChurnBatch(customers.stream()
+                    .<Map<String, Object>>map(HashMap::new).toList());
+
+            if (engine == ModelBundle.Engine.ND4J) {
+                // BLAS may sum a single row in another order than a chunk
+                assertArrayEquals(single, batch, 1e-6, engine.name());
+            } else {
+                assertArrayEquals(single, batch, 0.0, engine.name());
+            }
+        }
+    }
+
+    // Same preparation as TrainModel: blank TotalCharges as 0.0, analysis of the simplified columns
+    static TransformProcess buildTransform(List<Map<String, Object>> customers) throws Exception {
+        customers.forEach(row -> {
+            if (row.get("TotalCharges").toString().trim().isEmpty()) {
+                row.put("TotalCharges", "0.0");
+            }
+        });
+        Schema schema = new InferredSchema(AiUtil.DATASET_PATH).build();
+        TransformProcess preProcess = DatavecUtility.simplifyTotalCharges(schema);
+        List<List<Writable>> records = new ArrayList<>();
+        for (Map<String, Object> row : customers) {
+            List<Writable> record = new ArrayList<>();
+            for (String column : schema.getColumnNames()) {
+                record.add(new Text(row.get(column).toString()));
+            }
+            records.add(record);
+        }
+        DataAnalysis analysis = AnalyzeLocal.analyze(preProcess.getFinalSchema(),
+                new TransformProcessRecordReader(new CollectionRecordReader(records), preProcess));
+        return TransformProcess.fromJson(DatavecUtility.buildFullTransform(preProcess.getFinalSchema(), analysis)
+                .toJson());
+    }
+
+    // Scores 0.9 plus a hundredth of the tenure and records the customers in the order they were scored
+    private static Function<List<Map<String, Object>>, double[]> recording(List<String> scored) {
+        return payloads -> {
+            double[] scores = new double[payloads.size()];
+            for (int i = 0; i < payloads.size(); i++) {
+                scored.add(payloads.get(i).get("customerID").toString());
+                scores[i] = 0.9 + Double.parseDouble(payloads.get(i).get("tenure").toString()) / 100;
+            }
+            return scores;
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.ai.churnprediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Polls a change log that keeps three changes, before and across its retention boundary, with limits and after a
+ * restart.
+ */
+class CustomerChangeLogTest {
+
+    @Test
+    void emptyLogIsComplete() {
+        CustomerChangeLog.Changes changes = new CustomerChangeLog(3).since(0, 10);
+        assertTrue(changes.complete());
+        assertEquals(0, changes.latestSequence());
+        assertTrue(changes.changes().isEmpty());
+    }
+
+    @Test
+    void incompleteOnceUnseenChangesWereDropped() {
+        CustomerChangeLog log = log(5);
+
+        // Changes 1 and 2 were dropped
+        CustomerChangeLog.Changes fromStart = log.since(0, 10);
+        assertFalse(fromStart.complete());
+        assertEquals(List.of(3L, 4L, 5L), sequences(fromStart));
+        assertFalse(log.since(1, 10).complete());
+
+        // Change 2 was seen, so nothing was missed
+        CustomerChangeLog.Changes fromOldest = log.since(2, 10);
+        assertTrue(fromOldest.complete());
+        assertEquals(List.of(3L, 4L, 5L), sequences(fromOldest));
+        assertEquals(5, fromOldest.latestSequence());
+    }
+
+    @Test
+    void pagesWithLimit() {
+        CustomerChangeLog log = log(5);
+        CustomerChangeLog.Changes first = log.since(2, 2);
+        assertTrue(first.complete());
+        assertEquals(List.of(3L, 4L), sequences(first));
+        assertEquals(4, first.latestSequence());
+
+        CustomerChangeLog.Changes rest = log.since(first.latestSequence(), 2);
+        assertEquals(List.of(5L), sequences(rest));
+        CustomerChangeLog.Changes none = log.since(rest.latestSequence(), 2);
+        assertTrue(none.complete());
+        assertTrue(none.changes().isEmpty());
+        assertEquals(5, none.latestSequence());
+    }
+
+    @Test
+    void sequenceFromBeforeRestartIsIncomplete() {
+        CustomerChangeLog.Changes changes = log(2).since(9, 10);
+        assertFalse(changes.complete());
+        assertTrue(changes.changes().isEmpty());
+    }
+
+    private static CustomerChangeLog log(int changes) {
+        CustomerChangeLog log = new CustomerChangeLog(3);
+        for (int i = 1; i <= changes; i++) {
+            log.add("C" + i, CustomerChangeLog.Type.CHANGED, 0.5, "v1", Instant.EPOCH);
+        }
+        return log;
+    }
+
+    private static List<Long> sequences(CustomerChangeLog.Changes changes) {
+        return changes.changes().stream().map(CustomerChangeLog.Change::sequence).toList();
+    }
+}
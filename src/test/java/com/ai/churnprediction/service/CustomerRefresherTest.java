@@ -0,0 +1,62 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.repository.ColumnarCustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Diffs a refreshed customer file against the served one: unchanged customers in a new order, a changed row, an
+ * added and a removed customer.
+ */
+class CustomerRefresherTest {
+
+    @Test
+    void diffsAddedChangedAndRemovedRows(@TempDir Path directory) throws IOException {
+        ColumnarCustomerRepository previous = load(directory, "previous.csv", """
+                customerID,Contract,tenure
+                A,Month-to-month,1
+                B,One year,12
+                C,Two year,24
+                D,Month-to-month,3
+                """);
+        ColumnarCustomerRepository next = load(directory, "next.csv", """
+                customerID,Contract,tenure
+                C,Two year,24
+                E,One year,5
+                A,Month-to-month,1
+                B,One year,13
+                """);
+
+        CustomerRefresher.Diff diff = CustomerRefresher.diff(previous, next);
+        // C and A kept their rows of the previous file, B changed and E is new
+        assertArrayEquals(new int[]{2, -1, 0, -1}, diff.previousRows());
+        assertEquals(1, diff.added());
+        assertEquals(1, diff.changed());
+        assertEquals(List.of("D"), diff.removed());
+    }
+
+    @Test
+    void identicalFilesHaveNoChanges(@TempDir Path directory) throws IOException {
+        String csv = """
+                customerID,Contract,tenure
+                A,Month-to-month,1
+                B,One year,12
+                """;
+        CustomerRefresher.Diff diff = CustomerRefresher.diff(load(directory, "previous.csv", csv),
+                load(directory, "next.csv", csv));
+        assertArrayEquals(new int[]{0, 1}, diff.previousRows());
+        assertEquals(0, diff.added() + diff.changed() + diff.removed().size());
+    }
+
+    private static ColumnarCustomerRepository load(Path directory, String name, String csv) throws IOException {
+        return ColumnarCustomerRepository.load(Files.writeString(directory.resolve(name), csv));
+    }
+}
@@ -0,0 +1,62 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the Java forward pass against {@code model.output} on random rows, within the documented tolerances.
+ */
+class DenseNetworkTest {
+
+    private static final int FEATURES = 45;
+    private static final int ROWS = 512;
+
+    private static MultiLayerNetwork model;
+    private static double[] features;
+    private static double[] expected;
+
+    @BeforeAll
+    static void scoreWithNd4j() {
+        Nd4j.getRandom().setSeed(7);
+        model = DeepLearning4JUtility.configureModel(FEATURES);
+        INDArray inputs = Nd4j.rand(DataType.FLOAT, ROWS, FEATURES).muli(4).subi(2);
+        // Row-major copy, the layout ModelBundle passes to predict
+        features = inputs.dup('c').data().asDouble();
+        expected = model.output(inputs).toDoubleVector();
+    }
+
+    @Test
+    void floatWeightsMatchNd4j() {
+        assertWithin(DenseNetwork.extract(model, false), DenseNetwork.FLOAT_TOLERANCE);
+    }
+
+    @Test
+    void int8WeightsStayWithinTolerance() {
+        assertWithin(DenseNetwork.extract(model, true), DenseNetwork.INT8_TOLERANCE);
+    }
+
+    @Test
+    void singleRowsMatchBatch() {
+        DenseNetwork network = DenseNetwork.extract(model, false);
+        double[] batch = network.predict(features, ROWS);
+        for (int r = 0; r < ROWS; r++) {
+            double[] row = new double[FEATURES];
+            System.arraycopy(features, r * FEATURES, row, 0, FEATURES);
+            assertEquals(batch[r], network.predict(row, 1)[0], 0.0, "Row " + r);
+        }
+    }
+
+    private static void assertWithin(DenseNetwork network, double tolerance) {
+        double[] actual = network.predict(features, ROWS);
+        for (int r = 0; r < ROWS; r++) {
+            assertEquals(expected[r], actual[r], tolerance, "Row " + r);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ai.churnprediction.service;
+
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.analysis.columns.CategoricalAnalysis;
+import org.datavec.api.transform.analysis.columns.DoubleAnalysis;
+import org.datavec.api.transform.schema.Schema;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds live requests drawn from the training distribution and from a shifted one into the drift monitor and
+ * checks that only the shifted columns are flagged, plus the PSI and KS scores and bucketing on known inputs,
+ * prediction-only requests and that a window left idle for longer than a window is not reported.
+ */
+class DriftMonitorTest {
+
+    private static final int REQUESTS = 5000;
+
+    @Test
+    void flagsOnlyShiftedColumns() {
+        DriftMonitor monitor = new DriftMonitor(null, trainingAnalysis(), Duration.ofHours(1), 500, 0.2, 0.1);
+        Random random = new Random(42);
+        for (int i = 0; i < REQUESTS; i++) {
+            // tenure shifted up by half the training range, Contract still 50/50
+            Map<String, Object> payload = Map.of("tenure", 50 + random.nextDouble() * 100,
+                    "Contract", random.nextBoolean() ? "Month-to-month" : "Two year");
+            monitor.record(payload, random.nextDouble());
+        }
+
+        DriftMonitor.DriftReport report = monitor.report(null);
+        assertEquals(REQUESTS, report.requests());
+        assertEquals(List.of("tenure"), report.drifting());
+        DriftMonitor.ColumnDrift tenure = report.columns().getFirst();
+        assertEquals(REQUESTS, tenure.samples());
+        assertEquals(100, tenure.liveMean(), 2);
+        assertEquals(0.5, tenure.ks(), 0.05);
+        DriftMonitor.ColumnDrift contract = report.columns().get(1);
+        assertTrue(contract.psi() < 0.01, "PSI " + contract.psi());
+        assertEquals(0.5, contract.liveShares().get("Two year"), 0.03);
+    }
+
+    @Test
+    void needsMinimumSamples() {
+        DriftMonitor monitor = new DriftMonitor(null, trainingAnalysis(), Duration.ofHours(1), 500, 0.2, 0.1);
+        for (int i = 0; i < 100; i++) {
+            monitor.record(Map.of("tenure", "1000", "Contract", "Unknown"), 0.9);
+        }
+        DriftMonitor.DriftReport report = monitor.report(new double[]{0.1, 0.2, 0.3});
+        assertTrue(report.drifting().isEmpty());
+        assertEquals(100, report.columns().get(1).invalid(), "Unknown category");
+        assertFalse(report.output().drifting());
+    }
+
+    @Test
+    void countsPredictionsWithoutInputs() {
+        DriftMonitor monitor = new DriftMonitor(null, trainingAnalysis(), Duration.ofHours(1), 500, 0.2, 0.1);
+        monitor.recordPredictions(new double[]{0.1, Double.NaN, 0.9});
+        DriftMonitor.DriftReport report = monitor.report(null);
+        assertEquals(2, report.requests());
+        assertEquals(2, report.output().samples());
+        assertEquals(0, report.columns().getFirst().samples());
+    }
+
+    @Test
+    void dropsWindowAfterIdleGap() throws InterruptedException {
+        DriftMonitor monitor = new DriftMonitor(null, trainingAnalysis(), Duration.ofMillis(50), 500, 0.2, 0.1);
+        for (int i = 0; i < 10; i++) {
+            monitor.record(Map.of("tenure", 10, "Contract", "Two year"), 0.5);
+        }
+        // More than two windows without traffic
+        Thread.sleep(150);
+        monitor.record(Map.of("tenure", 10, "Contract", "Two year"), 0.5);
+        assertEquals(1, monitor.report(null).requests());
+    }
+
+    @Test
+    void scoresKnownDistributions() {
+        assertEquals(0, DriftMonitor.psi(new long[]{10, 20, 30}, new long[]{1, 2, 3}), 1e-12);
+        assertEquals(0, DriftMonitor.ks(new long[]{10, 20, 30}, new long[]{1, 2, 3}), 1e-12);
+        // 50/50 against 25/75
+        assertEquals(0.25 * Math.log(3), DriftMonitor.psi(new long[]{50, 50}, new long[]{25, 75}), 1e-12);
+        assertEquals(0.25, DriftMonitor.ks(new long[]{50, 50}, new long[]{25, 75}), 1e-12);
+    }
+
+    @Test
+    void bucketsByTrainingEdges() {
+        DriftMonitor.Sketch sketch = new DriftMonitor.Sketch(new double[]{0, 10, 20}, 100);
+        assertEquals(0, sketch.bucket(-1));
+        assertEquals(1, sketch.bucket(0));
+        assertEquals(1, sketch.bucket(9.99));
+        assertEquals(2, sketch.bucket(10));
+        assertEquals(2, sketch.bucket(20));
+        assertEquals(3, sketch.bucket(20.01));
+    }
+
+    // tenure uniform over [0, 100] in 10 buckets, Contract half Month-to-month and half Two year
+    private static DataAnalysis trainingAnalysis() {
+        double[] edges = new double[11];
+        long[] counts = new long[10];
+        for (int i = 0; i <= 10; i++) {
+            edges[i] = i * 10;
+        }
+        Arrays.fill(counts, 1000);
+        Schema schema = new Schema.Builder()
+                .addColumnDouble("tenure")
+                .addColumnCategorical("Contract", List.of("Month-to-month", "Two year"))
+                .build();
+        DoubleAnalysis tenure = new DoubleAnalysis.Builder()
+                .min(0).max(100).mean(50).sampleStdev(28.9).sampleVariance(833)
+                .countTotal(10_000).histogramBuckets(edges).histogramBucketCounts(counts)
+                .build();
+        CategoricalAnalysis contract = new CategoricalAnalysis(Map.of("Month-to-month", 5000L, "Two year", 5000L));
+        return new DataAnalysis(schema, List.of(tenure, contract));
+    }
+}
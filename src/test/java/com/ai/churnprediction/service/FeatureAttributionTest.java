@@ -0,0 +1,97 @@
+package com.ai.churnprediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the sampled Shapley values against models with a known answer: exact per-column contributions of a
+ * linear model, and contributions that add up to the probability minus the baseline for a nonlinear one.
+ */
+class FeatureAttributionTest {
+
+    private static final List<String> FEATURES = List.of("tenure", "Contract[Month-to-month]", "Contract[One year]",
+            "Contract[Two year]", "MonthlyCharges");
+    private static final double[] WEIGHTS = {-0.8, 1.5, -0.2, -1.1, 0.6};
+
+    @Test
+    void groupsOneHotColumns() {
+        FeatureAttribution attribution = new FeatureAttribution(FEATURES, new double[FEATURES.size()], 1);
+        assertArrayEquals(new String[]{"tenure", "Contract", "MonthlyCharges"}, attribution.getColumns());
+    }
+
+    @Test
+    void linearModelGetsExactContributions() {
+        double[] background = {0.5, 0, 1, 0, -0.2};
+        double[] customer = {-1.0, 1, 0, 0, 1.3};
+        FeatureAttribution attribution = new FeatureAttribution(FEATURES, background, 1);
+        FeatureAttribution.Attribution result = attribution.explain(FeatureAttributionTest::linear, customer, 1, 5,
+                new long[]{7})[0];
+
+        double[] expected = {
+                WEIGHTS[0] * (customer[0] - background[0]),
+                WEIGHTS[1] * (customer[1] - background[1]) + WEIGHTS[2] * (customer[2] - background[2]),
+                WEIGHTS[4] * (customer[4] - background[4])};
+        assertArrayEquals(expected, result.contributions(), 1e-12);
+        assertEquals(linear(customer, 1)[0], result.probability(), 1e-12);
+        assertEquals(linear(background, 1)[0], result.baseline(), 1e-12);
+    }
+
+    @Test
+    void contributionsAddUpToProbabilityMinusBaseline() {
+        double[] background = {
+                0.5, 0, 1, 0, -0.2,
+                -0.3, 1, 0, 0, 0.9,
+                1.2, 0, 0, 1, -1.0};
+        double[] customers = {
+                -1.0, 1, 0, 0, 1.3,
+                2.0, 0, 0, 1, -0.5};
+        FeatureAttribution attribution = new FeatureAttribution(FEATURES, background, 3);
+        FeatureAttribution.Attribution[] results = attribution.explain(FeatureAttributionTest::nonlinear, customers, 2,
+                16, new long[]{1, 2});
+
+        for (int r = 0; r < results.length; r++) {
+            double sum = 0;
+            for (double contribution : results[r].contributions()) {
+                sum += contribution;
+            }
+            double[] row = Arrays.copyOfRange(customers, r * FEATURES.size(), (r + 1) * FEATURES.size());
+            assertEquals(nonlinear(row, 1)[0], results[r].probability(), 1e-12);
+            assertEquals(results[r].probability() - results[r].baseline(), sum, 1e-12);
+        }
+        // Same seed, same explanation
+        assertArrayEquals(results[1].contributions(), attribution.explain(FeatureAttributionTest::nonlinear,
+                Arrays.copyOfRange(customers, FEATURES.size(), customers.length), 1, 16,
+                new long[]{2})[0].contributions());
+    }
+
+    @Test
+    void topDriversArePositiveAndLargestFirst() {
+        double[] contributions = {0.05, -0.3, 0.2, 0.0, 0.1};
+        assertArrayEquals(new int[]{2, 4}, FeatureAttribution.topDrivers(contributions, 2));
+        assertArrayEquals(new int[]{2, 4, 0}, FeatureAttribution.topDrivers(contributions, 4));
+    }
+
+    private static double[] linear(double[] features, int rows) {
+        double[] out = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < WEIGHTS.length; i++) {
+                out[r] += WEIGHTS[i] * features[r * WEIGHTS.length + i];
+            }
+        }
+        return out;
+    }
+
+    // Sigmoid of a quadratic, so columns interact
+    private static double[] nonlinear(double[] features, int rows) {
+        double[] out = linear(features, rows);
+        for (int r = 0; r < rows; r++) {
+            out[r] = 1 / (1 + Math.exp(-out[r] * out[r] - out[r]));
+        }
+        return out;
+    }
+}
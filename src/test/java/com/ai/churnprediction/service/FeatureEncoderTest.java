@@ -0,0 +1,103 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.trainmodel.api.datavec.DatavecUtility;
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
+import org.datavec.api.records.reader.impl.transform.TransformProcessRecordReader;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.schema.InferredSchema;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.AnalyzeLocal;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that the compiled encoder produces exactly the features of {@code TransformProcess.execute}
+ * for every customer of the bundled Telco dataset.
+ */
+class FeatureEncoderTest {
+
+    private static TransformProcess transformProcess;
+    private static List<Map<String, Object>> customers;
+
+    @BeforeAll
+    static void buildTransform() throws Exception {
+        customers = AiUtil.loadCsvData();
+        // Same cleaning as TrainModel.cleanCsvFile and ChurnPrediction
+        customers.forEach(row -> {
+            if (row.get("TotalCharges").toString().trim().isEmpty()) {
+                row.put("TotalCharges", "0.0");
+            }
+        });
+
+        Schema schema = new InferredSchema(AiUtil.DATASET_PATH).build();
+        TransformProcess preProcess = DatavecUtility.simplifyTotalCharges(schema);
+        List<List<Writable>> records = new ArrayList<>();
+        customers.forEach(row -> records.add(toRecord(row, schema)));
+        DataAnalysis analysis = AnalyzeLocal.analyze(preProcess.getFinalSchema(),
+                new TransformProcessRecordReader(new CollectionRecordReader(records), preProcess));
+
+        // Round trip through JSON like the service does with transformProcess.json
+        TransformProcess fullTransform = DatavecUtility.buildFullTransform(preProcess.getFinalSchema(), analysis);
+        transformProcess = TransformProcess.fromJson(fullTransform.toJson());
+    }
+
+    @Test
+    void matchesTransformProcessForEveryCustomer() {
+        FeatureEncoder encoder = FeatureEncoder.compile(transformProcess);
+        Schema inputSchema = transformProcess.getInitialSchema();
+        assertEquals(transformProcess.getFinalSchema().numColumns() - 1, encoder.numFeatures());
+
+        double[] actual = new double[encoder.numFeatures()];
+        for (Map<String, Object> customer : customers) {
+            List<Writable> transformed = transformProcess.execute(toRecord(customer, inputSchema));
+            transformed.removeLast();
+            double[] expected = transformed.stream().mapToDouble(w -> Double.parseDouble(w.toString())).toArray();
+
+            encoder.encode(customer, actual, 0);
+            assertArrayEquals(expected, actual, 0.0, "Features differ for " + customer.get("customerID"));
+        }
+    }
+
+    @Test
+    void acceptsNumericPayloadValues() {
+        FeatureEncoder encoder = FeatureEncoder.compile(transformProcess);
+        Map<String, Object> customer = new HashMap<>(customers.get(0));
+        double[] expected = new double[encoder.numFeatures()];
+        encoder.encode(customer, expected, 0);
+
+        customer.put("tenure", Integer.parseInt(customer.get("tenure").toString()));
+        customer.put("MonthlyCharges", Double.parseDouble(customer.get("MonthlyCharges").toString()));
+        double[] actual = new double[encoder.numFeatures()];
+        encoder.encode(customer, actual, 0);
+        assertArrayEquals(expected, actual, 0.0);
+    }
+
+    @Test
+    void rejectsUnknownCategory() {
+        FeatureEncoder encoder = FeatureEncoder.compile(transformProcess);
+        Map<String, Object> customer = new HashMap<>(customers.get(0));
+        customer.put("Contract", "Ten year");
+        assertThrows(IllegalStateException.class, () -> encoder.encode(customer, new double[encoder.numFeatures()], 0));
+    }
+
+    private static List<Writable> toRecord(Map<String, Object> row, Schema schema) {
+        List<Writable> record = new ArrayList<>();
+        for (String column : schema.getColumnNames()) {
+            record.add(new Text(row.get(column).toString()));
+        }
+        return record;
+    }
+}
@@ -0,0 +1,61 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Hammers the pool from many threads and checks every result against single-threaded scoring.
+ */
+class InferencePoolTest {
+
+    private static final int FEATURES = 45;
+    private static final int ROWS = 256;
+
+    @Test
+    void concurrentScoringMatchesSingleThreaded() throws Exception {
+        Nd4j.getRandom().setSeed(42);
+        MultiLayerNetwork model = DeepLearning4JUtility.configureModel(FEATURES);
+        INDArray inputs = Nd4j.rand(ROWS, FEATURES);
+
+        double[] expected = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            expected[i] = model.output(inputs.getRow(i, true).dup()).getDouble(0);
+        }
+        INDArray expectedBatch = model.output(inputs);
+
+        InferencePool pool = new InferencePool(model, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int n = 0; n < 500; n++) {
+                        int row = random.nextInt(ROWS);
+                        double actual = pool.output(inputs.getRow(row, true).dup()).getDouble(0);
+                        assertEquals(expected[row], actual, 0.0, "Row " + row);
+                    }
+                    assertEquals(expectedBatch, pool.output(inputs));
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
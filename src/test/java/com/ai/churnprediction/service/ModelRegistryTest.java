@@ -0,0 +1,187 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.metrics.ServingMetrics;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.transform.TransformProcess;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deploys model files with and without matching golden samples and checks which pair the registry serves: a pair
+ * that does not reproduce its golden sample, or has none, never replaces the one serving.
+ */
+class ModelRegistryTest {
+
+    private static List<Map<String, Object>> customers;
+    private static TransformProcess transform;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void buildTransform() throws Exception {
+        customers = AiUtil.loadCsvData().subList(0, 50);
+        transform = ChurnPredictionTest.buildTransform(customers);
+    }
+
+    @Test
+    void rejectedCandidateLeavesTheActivePairServing() throws IOException {
+        deploy(network(0), true);
+        List<ModelBundle> activated = new ArrayList<>();
+        ModelRegistry registry = registry(true);
+        registry.start(activated::add);
+        ModelBundle serving = registry.getActive();
+        assertEquals(List.of(serving), activated);
+
+        // New weights next to the golden sample of the old ones
+        ModelSerializer.writeModel(network(0.5), modelFile(), false);
+        ModelRegistry.ModelStatus status = registry.reload();
+
+        assertSame(serving, registry.getActive());
+        assertEquals(serving.getVersion(), status.version());
+        assertEquals(1, status.failedReloads());
+        assertEquals(0, status.reloads());
+        assertNotNull(status.lastError());
+        assertEquals(1, activated.size());
+    }
+
+    @Test
+    void validatedCandidateIsSwappedInAtOnce() throws Exception {
+        deploy(network(0), true);
+        List<ModelBundle> activated = new CopyOnWriteArrayList<>();
+        ModelRegistry registry = registry(true);
+        registry.start(activated::add);
+        ModelBundle first = registry.getActive();
+
+        // Readers during the reload see the old or the new pair, never a missing one
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicBoolean sawNull = new AtomicBoolean();
+        Set<ModelBundle> seen = ConcurrentHashMap.newKeySet();
+        Thread reader = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                ModelBundle current = registry.getActive();
+                if (current == null) {
+                    sawNull.set(true);
+                } else {
+                    seen.add(current);
+                }
+            }
+        });
+        deploy(network(0.5), true);
+        ModelRegistry.ModelStatus status = registry.reload();
+        stop.set(true);
+        reader.join();
+
+        assertFalse(sawNull.get());
+        seen.removeAll(activated);
+        assertEquals(Set.of(), seen);
+        assertNull(status.lastError());
+        assertEquals(1, status.reloads());
+        assertEquals(2, activated.size());
+        assertSame(activated.get(1), registry.getActive());
+        assertNotEquals(first.getVersion(), registry.getActive().getVersion());
+
+        // Same files again: nothing to swap
+        registry.reload();
+        assertEquals(2, activated.size());
+        assertEquals(1, registry.status().reloads());
+    }
+
+    @Test
+    void missingGoldenSampleRejectsThePairUnlessOptedOut() throws IOException {
+        deploy(network(0), false);
+        assertThrows(IOException.class, () -> registry(true).start(bundle -> {
+        }));
+
+        ModelRegistry unvalidated = registry(false);
+        unvalidated.start(bundle -> {
+        });
+        assertNotNull(unvalidated.getActive());
+
+        // A serving registry keeps its validated pair when the golden file goes away
+        deploy(network(0), true);
+        ModelRegistry registry = registry(true);
+        registry.start(bundle -> {
+        });
+        ModelBundle serving = registry.getActive();
+        Files.delete(goldenFile().toPath());
+        ModelSerializer.writeModel(network(0.5), modelFile(), false);
+        ModelRegistry.ModelStatus status = registry.reload();
+        assertSame(serving, registry.getActive());
+        assertTrue(status.lastError().contains("require-golden"), status.lastError());
+        assertFalse(status.watching());
+    }
+
+    private ModelRegistry registry(boolean requireGolden) {
+        return new ModelRegistry(new ServingMetrics(false), modelFile().getPath(), transformFile().getPath(),
+                goldenFile().getPath(), 1e-6, requireGolden);
+    }
+
+    /**
+     * Writes the model, the transform and, with {@code golden}, the predictions of the model for the customers.
+     */
+    private void deploy(MultiLayerNetwork network, boolean golden) throws IOException {
+        ModelSerializer.writeModel(network, modelFile(), false);
+        Files.writeString(transformFile().toPath(), transform.toJson());
+        Files.deleteIfExists(goldenFile().toPath());
+        if (golden) {
+            ModelBundle bundle = ModelBundle.load(modelFile(), transformFile(), 1, true, ModelBundle.Engine.ND4J,
+                    new ServingMetrics(false));
+            List<String> columns = transform.getInitialSchema().getColumnNames();
+            List<String[]> rows = new ArrayList<>();
+            double[] features = new double[customers.size() * bundle.getNumFeatures()];
+            for (int i = 0; i < customers.size(); i++) {
+                Map<String, Object> customer = customers.get(i);
+                rows.add(columns.stream().map(column -> customer.get(column).toString()).toArray(String[]::new));
+                bundle.encode(new HashMap<>(customer), features, i * bundle.getNumFeatures());
+            }
+            GoldenSample.write(goldenFile(), columns, rows, bundle.predict(features, customers.size()));
+        }
+    }
+
+    // Freshly initialised network, its parameters shifted by `shift` to get other predictions
+    private static MultiLayerNetwork network(double shift) {
+        MultiLayerNetwork network = DeepLearning4JUtility.configureModel(
+                transform.getFinalSchema().numColumns() - 1);
+        network.setParams(network.params().add(shift));
+        return network;
+    }
+
+    private File modelFile() {
+        return directory.resolve("churn-model.zip").toFile();
+    }
+
+    private File transformFile() {
+        return directory.resolve("transformProcess.json").toFile();
+    }
+
+    private File goldenFile() {
+        return directory.resolve("golden-predictions.csv").toFile();
+    }
+}
@@ -0,0 +1,68 @@
+package com.ai.churnprediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the hand-written probability formatting against {@code String.format("%.4f")}, including values right at
+ * a rounding tie, and the {@code Accept-Encoding} negotiation of the gzip report.
+ */
+class ReportWriterTest {
+
+    @Test
+    void formatsProbabilitiesLikeStringFormat() {
+        double[] values = {0, -0.0, 1, 0.5, 0.00005, 0.99995, 0.00015, 0.12345, 0.49995, 0.00004999, 0.0000500001,
+                -0.00005, -0.99995, 1.00005, 12345.67895, 0.1 + 0.2, Double.MIN_VALUE, 1e15, 1e20,
+                Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            assertFormatted(value);
+        }
+    }
+
+    @Test
+    void formatsRandomProbabilitiesLikeStringFormat() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 200_000; i++) {
+            assertFormatted(random.nextDouble());
+            // Every tie on the 4th decimal, where float error decides the rounding
+            assertFormatted((random.nextInt(10_000) + 0.5) / 10_000);
+            assertFormatted(Float.intBitsToFloat(Float.floatToIntBits(random.nextFloat()) + random.nextInt(3) - 1));
+        }
+    }
+
+    @Test
+    void negotiatesGzipWithQValues() {
+        assertFalse(ReportWriter.acceptsGzip(null));
+        assertFalse(ReportWriter.acceptsGzip(""));
+        assertFalse(ReportWriter.acceptsGzip("identity"));
+        assertTrue(ReportWriter.acceptsGzip("gzip"));
+        assertTrue(ReportWriter.acceptsGzip("deflate, gzip;q=1.0, br"));
+        assertTrue(ReportWriter.acceptsGzip("GZIP ; Q = 0.5"));
+        assertTrue(ReportWriter.acceptsGzip("x-gzip"));
+        assertFalse(ReportWriter.acceptsGzip("gzip;q=0"));
+        assertFalse(ReportWriter.acceptsGzip("gzip;q=0.000, identity"));
+        assertFalse(ReportWriter.acceptsGzip("gzip;q=nope"));
+        // Wildcard only counts when gzip is not listed
+        assertTrue(ReportWriter.acceptsGzip("*"));
+        assertTrue(ReportWriter.acceptsGzip("br, *;q=0.1"));
+        assertFalse(ReportWriter.acceptsGzip("*;q=0"));
+        assertFalse(ReportWriter.acceptsGzip("*, gzip;q=0"));
+        assertTrue(ReportWriter.acceptsGzip("*;q=0, gzip"));
+        // Not gzip, even though the name contains it
+        assertFalse(ReportWriter.acceptsGzip("gzipped"));
+    }
+
+    private static void assertFormatted(double value) {
+        ReportWriter.LineBuffer buffer = new ReportWriter.LineBuffer(16);
+        ReportWriter.appendProbability(buffer, value);
+        assertEquals(String.format(Locale.ROOT, "%.4f", value),
+                new String(buffer.toByteArray(), StandardCharsets.US_ASCII), () -> "Formatting " + value);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.repository.ColumnarCustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pages through filtered rankings that merge several segments, with many tied scores, and checks every page
+ * against filtering and sorting all rows, including offsets past the end.
+ */
+class ScoreIndexTest {
+
+    private static final int CUSTOMERS = 2000;
+    private static final String[] CONTRACTS = {"Month-to-month", "One year", "Two year"};
+    private static final String[] PAYMENTS = {"Electronic check", "Mailed check", "Credit card"};
+
+    @Test
+    void pagesMatchFullSort(@TempDir Path directory) throws IOException {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("customerID,Contract,PaymentMethod\n");
+        double[] probabilities = new double[CUSTOMERS];
+        for (int row = 0; row < CUSTOMERS; row++) {
+            csv.append('C').append(row).append(',').append(CONTRACTS[random.nextInt(CONTRACTS.length)])
+                    .append(',').append(PAYMENTS[random.nextInt(PAYMENTS.length)]).append('\n');
+            // Two decimals, so many customers share a probability
+            probabilities[row] = random.nextInt(100) / 100.0;
+        }
+        ColumnarCustomerRepository customers = ColumnarCustomerRepository.load(
+                Files.writeString(directory.resolve("customers.csv"), csv));
+        ScoreIndex index = ScoreIndex.build(customers, probabilities, List.of("Contract", "PaymentMethod"));
+
+        for (ScoreIndex.Sort sort : List.of(ScoreIndex.Sort.RISK_DESC, ScoreIndex.Sort.RISK_ASC)) {
+            // Contract alone matches three segments, one per payment method
+            ScoreIndex.Query query = new ScoreIndex.Query(null, sort, 0.2, 0.9, Map.of("Contract", "One year"));
+            List<Integer> expected = expected(customers, probabilities, query);
+            for (int offset : new int[]{0, 1, 17, 100, expected.size() - 5, expected.size(), Integer.MAX_VALUE}) {
+                ScoreIndex.Page page = index.query(query, offset, 10);
+                assertEquals(expected.size(), page.total());
+                int from = Math.min(offset, expected.size());
+                int[] rows = expected.subList(from, Math.min(from + 10, expected.size())).stream()
+                        .mapToInt(Integer::intValue).toArray();
+                assertArrayEquals(rows, page.rows(), sort + " at " + offset);
+            }
+        }
+        ScoreIndex.Query all = new ScoreIndex.Query(null, ScoreIndex.Sort.RISK_DESC, 0, 1, Map.of());
+        assertThrows(IllegalArgumentException.class, () -> index.query(all, -10, 10));
+    }
+
+    private static List<Integer> expected(ColumnarCustomerRepository customers, double[] probabilities,
+                                          ScoreIndex.Query query) {
+        List<Integer> rows = new ArrayList<>(IntStream.range(0, CUSTOMERS)
+                .filter(row -> (float) probabilities[row] >= (float) query.minProbability()
+                        && (float) probabilities[row] <= (float) query.maxProbability()
+                        && customers.getValue(row, "Contract").equals(query.filters().get("Contract")))
+                .boxed().toList());
+        Comparator<Integer> descending = Comparator.<Integer>comparingDouble(row -> (float) probabilities[row])
+                .reversed().thenComparing(Comparator.naturalOrder());
+        rows.sort(query.sort() == ScoreIndex.Sort.RISK_ASC ? descending.reversed() : descending);
+        return rows;
+    }
+}
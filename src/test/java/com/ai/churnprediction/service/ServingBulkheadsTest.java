@@ -0,0 +1,192 @@
+package com.ai.churnprediction.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fills each bulkhead with tasks that block on a latch, checks that the next request is shed with the configured
+ * {@code Retry-After}, and that failed tasks give their slot back.
+ */
+class ServingBulkheadsTest {
+
+    private static final long RETRY_AFTER_SECONDS = 7;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<ServingBulkheads> started = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        callers.shutdownNow();
+        started.forEach(ServingBulkheads::stop);
+    }
+
+    @Test
+    void shedsPredictionsOnceTheComputeQueueIsFull() throws Exception {
+        // One compute thread and one queued prediction
+        ServingBulkheads bulkheads = start(true, 1, 1, false);
+        CountDownLatch running = new CountDownLatch(1);
+        Future<Integer> first = callers.submit(() -> bulkheads.interactive(() -> {
+            running.countDown();
+            return block();
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Future<Integer> queued = callers.submit(() -> bulkheads.interactive(this::block));
+        awaitQueued(bulkheads, 1);
+
+        OverloadedException shed = assertThrows(OverloadedException.class, () -> bulkheads.interactive(() -> 1));
+        assertEquals(RETRY_AFTER_SECONDS, shed.getRetryAfterSeconds());
+        assertEquals(1, bulkheads.getRejectedPredictions().sum());
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, bulkheads.interactive(() -> 2));
+    }
+
+    @Test
+    void failedPredictionsFreeTheirSlot() {
+        ServingBulkheads bulkheads = start(true, 1, 1, false);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalArgumentException.class, () -> bulkheads.interactive(() -> {
+                throw new IllegalArgumentException("bad request");
+            }));
+        }
+        assertEquals(3, bulkheads.interactive(() -> 3));
+        assertEquals(0, bulkheads.getRejectedPredictions().sum());
+    }
+
+    @Test
+    void microBatchedPredictionsHoldAPermitOnTheCallingThread() throws Exception {
+        // One compute thread and a queue of one: two permits
+        ServingBulkheads bulkheads = start(true, 1, 1, true);
+        Thread caller = Thread.currentThread();
+        assertEquals(caller, bulkheads.single(Thread::currentThread));
+
+        CountDownLatch holding = new CountDownLatch(2);
+        List<Future<Integer>> waiting = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            waiting.add(callers.submit(() -> bulkheads.single(() -> {
+                holding.countDown();
+                return block();
+            })));
+        }
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        assertThrows(OverloadedException.class, () -> bulkheads.single(() -> 1));
+        assertEquals(1, bulkheads.getRejectedPredictions().sum());
+        // Batch requests still use the compute pool, which is idle
+        assertEquals(4, bulkheads.interactive(() -> 4));
+
+        release.countDown();
+        for (Future<Integer> future : waiting) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS));
+        }
+        // Failures and timeouts of the batcher give the permit back
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> bulkheads.single(() -> {
+                throw new IllegalStateException("Micro-batched prediction timed out after 1000 ms");
+            }));
+        }
+        assertEquals(5, bulkheads.single(() -> 5));
+    }
+
+    @Test
+    void singlePredictionsUseTheComputePoolWithoutMicroBatching() {
+        ServingBulkheads bulkheads = start(true, 1, 1, false);
+        assertNotEquals(Thread.currentThread(), bulkheads.single(Thread::currentThread));
+        assertTrue(bulkheads.single(() -> Thread.currentThread().getName()).startsWith("inference-"));
+    }
+
+    @Test
+    void shedsReportsBeyondTheConcurrencyLimit() throws Exception {
+        ServingBulkheads bulkheads = start(true, 1, 1, false);
+        CountDownLatch running = new CountDownLatch(1);
+        Future<?> report = callers.submit(() -> {
+            bulkheads.report(() -> {
+                running.countDown();
+                block();
+            });
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertEquals(1, bulkheads.getActiveReports());
+
+        OverloadedException shed = assertThrows(OverloadedException.class, () -> bulkheads.report(() -> {
+        }));
+        assertEquals(RETRY_AFTER_SECONDS, shed.getRetryAfterSeconds());
+        assertEquals(1, bulkheads.getRejectedReports().sum());
+
+        release.countDown();
+        report.get(5, TimeUnit.SECONDS);
+        assertEquals(0, bulkheads.getActiveReports());
+        // A download that fails, e.g. because the client went away, frees its permit too
+        assertThrows(IOException.class, () -> bulkheads.report(() -> {
+            throw new IOException("Broken pipe");
+        }));
+        bulkheads.report(() -> {
+        });
+        assertEquals(1, bulkheads.getRejectedReports().sum());
+    }
+
+    @Test
+    void disabledBulkheadsRunOnTheCallingThread() throws IOException {
+        ServingBulkheads bulkheads = start(false, 1, 1, true);
+        assertEquals(Thread.currentThread(), bulkheads.interactive(Thread::currentThread));
+        assertEquals(Thread.currentThread(), bulkheads.single(Thread::currentThread));
+        bulkheads.report(() -> {
+        });
+        assertEquals(0, bulkheads.getQueuedPredictions());
+    }
+
+    @Test
+    void reportPoolLeavesCoresToTheComputePool() {
+        assertEquals(8, ReportWriter.parallelism(0, false, 0, 8));
+        assertEquals(3, ReportWriter.parallelism(3, true, 0, 8));
+        // Compute pool on every core: reports still get one thread
+        assertEquals(1, ReportWriter.parallelism(0, true, 0, 8));
+        assertEquals(2, ReportWriter.parallelism(0, true, 6, 8));
+        assertEquals(1, ReportWriter.parallelism(0, true, 16, 8));
+    }
+
+    private ServingBulkheads start(boolean enabled, int computeThreads, int queueSize, boolean microBatching) {
+        ServingBulkheads bulkheads = new ServingBulkheads(enabled, computeThreads, queueSize, 1, RETRY_AFTER_SECONDS,
+                microBatching);
+        bulkheads.start();
+        started.add(bulkheads);
+        return bulkheads;
+    }
+
+    // Holds the slot of the calling task until the test releases it
+    private int block() {
+        try {
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return 1;
+    }
+
+    private static void awaitQueued(ServingBulkheads bulkheads, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkheads.getQueuedPredictions() < queued) {
+            assertTrue(System.nanoTime() < deadline, "Prediction never queued");
+            Thread.sleep(1);
+        }
+    }
+}
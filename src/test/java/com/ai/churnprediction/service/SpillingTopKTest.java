@@ -0,0 +1,127 @@
+package com.ai.churnprediction.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ranks random probabilities, with ties, in memory, with spilled runs merged in passes and with rankings sharing
+ * one memory budget, and checks them against a full sort.
+ */
+class SpillingTopKTest {
+
+    private static final int CUSTOMERS = 10_000;
+
+    @Test
+    void keepsTopKInMemory(@TempDir Path directory) throws IOException {
+        List<SpillingTopK.Ranked> customers = customers();
+        try (SpillingTopK ranking = new SpillingTopK(500, 1000, directory)) {
+            assertEquals(expected(customers, 500), rank(ranking, customers));
+            assertEquals(0, ranking.spilledRuns());
+        }
+    }
+
+    @Test
+    void mergesSpilledRuns(@TempDir Path directory) throws IOException {
+        List<SpillingTopK.Ranked> customers = customers();
+        try (SpillingTopK ranking = new SpillingTopK(2500, 64, directory)) {
+            assertEquals(expected(customers, 2500), rank(ranking, customers));
+            assertTrue(ranking.spilledRuns() > 0);
+        }
+        assertEquals(0, runFiles(directory), "Runs left behind");
+    }
+
+    @Test
+    void mergesRunsWithBoundedFanIn(@TempDir Path directory) throws IOException {
+        List<SpillingTopK.Ranked> customers = customers();
+        try (SpillingTopK ranking = new SpillingTopK(300, new SpillingTopK.MemoryBudget(16), directory, 4)) {
+            for (SpillingTopK.Ranked customer : customers) {
+                ranking.offer(customer.customerID(), customer.probability());
+            }
+            // Runs are merged level by level instead of piling up, one file per spill
+            assertTrue(runFiles(directory) < 4 * 8, runFiles(directory) + " runs");
+            assertTrue(ranking.spilledRuns() > 4 * 8, ranking.spilledRuns() + " spills");
+            List<SpillingTopK.Ranked> ranked = new ArrayList<>();
+            ranking.drain(ranked::add);
+            assertEquals(expected(customers, 300), ranked);
+        }
+        assertEquals(0, runFiles(directory), "Runs left behind");
+    }
+
+    @Test
+    void sharesOneBudgetAcrossRankings(@TempDir Path directory) throws IOException {
+        List<SpillingTopK.Ranked> customers = customers();
+        SpillingTopK.MemoryBudget budget = new SpillingTopK.MemoryBudget(200);
+        try (SpillingTopK even = new SpillingTopK(150, budget, directory, SpillingTopK.DEFAULT_FAN_IN);
+             SpillingTopK odd = new SpillingTopK(150, budget, directory, SpillingTopK.DEFAULT_FAN_IN)) {
+            for (int i = 0; i < customers.size(); i++) {
+                SpillingTopK.Ranked customer = customers.get(i);
+                (i % 2 == 0 ? even : odd).offer(customer.customerID(), customer.probability());
+            }
+            // Two rankings of 150 do not fit in 200 entries together
+            assertTrue(even.spilledRuns() + odd.spilledRuns() > 0);
+            List<SpillingTopK.Ranked> ranked = new ArrayList<>();
+            even.drain(ranked::add);
+            assertEquals(expected(everyOther(customers, 0), 150), ranked);
+            ranked.clear();
+            odd.drain(ranked::add);
+            assertEquals(expected(everyOther(customers, 1), 150), ranked);
+        }
+    }
+
+    @Test
+    void returnsAllWhenFewerThanK(@TempDir Path directory) throws IOException {
+        List<SpillingTopK.Ranked> customers = customers().subList(0, 100);
+        try (SpillingTopK ranking = new SpillingTopK(1000, 64, directory)) {
+            assertEquals(expected(customers, 1000), rank(ranking, customers));
+        }
+    }
+
+    private static List<SpillingTopK.Ranked> rank(SpillingTopK ranking, List<SpillingTopK.Ranked> customers)
+            throws IOException {
+        for (SpillingTopK.Ranked customer : customers) {
+            ranking.offer(customer.customerID(), customer.probability());
+        }
+        List<SpillingTopK.Ranked> ranked = new ArrayList<>();
+        ranking.drain(ranked::add);
+        return ranked;
+    }
+
+    private static List<SpillingTopK.Ranked> expected(List<SpillingTopK.Ranked> customers, int k) {
+        return customers.stream().sorted(SpillingTopK.RANKING).limit(k).toList();
+    }
+
+    private static List<SpillingTopK.Ranked> everyOther(List<SpillingTopK.Ranked> customers, int first) {
+        List<SpillingTopK.Ranked> selected = new ArrayList<>();
+        for (int i = first; i < customers.size(); i += 2) {
+            selected.add(customers.get(i));
+        }
+        return selected;
+    }
+
+    private static long runFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<SpillingTopK.Ranked> customers() {
+        Random random = new Random(42);
+        List<SpillingTopK.Ranked> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            // Three decimals, so many customers share a probability
+            customers.add(new SpillingTopK.Ranked("C" + i, random.nextInt(1000) / 1000.0));
+        }
+        return customers;
+    }
+}
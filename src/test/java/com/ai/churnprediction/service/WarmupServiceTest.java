@@ -0,0 +1,115 @@
+package com.ai.churnprediction.service;
+
+import com.ai.churnprediction.controller.StatusController;
+import com.ai.churnprediction.metrics.ServingMetrics;
+import com.ai.churnprediction.repository.ColumnarCustomerRepository;
+import com.ai.churnprediction.trainmodel.api.deeplearning4j.DeepLearning4JUtility;
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.transform.TransformProcess;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Warms up a real model on Telco customers and checks that the prediction cache keeps exactly the entries and
+ * statistics of real requests, and that {@code /ready} answers 503 until the warm-up has finished.
+ */
+class WarmupServiceTest {
+
+    @Test
+    void warmUpBypassesThePredictionCache(@TempDir Path directory) throws Exception {
+        List<Map<String, Object>> customers = AiUtil.loadCsvData().subList(0, 200);
+        TransformProcess transform = ChurnPredictionTest.buildTransform(customers);
+        int numFeatures = transform.getFinalSchema().numColumns() - 1;
+        File modelFile = directory.resolve("model.zip").toFile();
+        ModelSerializer.writeModel(DeepLearning4JUtility.configureModel(numFeatures), modelFile, false);
+        File transformFile = Files.writeString(directory.resolve("transform.json"), transform.toJson()).toFile();
+        ModelBundle bundle = ModelBundle.load(modelFile, transformFile, 1, true, ModelBundle.Engine.ND4J,
+                new ServingMetrics(false));
+        PredictionCache cache = new PredictionCache(10_000);
+        cache.reset(bundle.getVersion());
+        ChurnPrediction prediction = new ChurnPrediction(bundle, cache, new PredictionBatcher(), 16);
+
+        // One real request before the warm-up
+        double probability = prediction.predictChurn(new HashMap<>(customers.get(0)));
+        PredictionCache.CacheStats before = cache.getStats();
+        assertEquals(1, before.cachedPayloads());
+
+        WarmupService warmup = new WarmupService(prediction, load(directory, customers), new PredictionBatcher(),
+                true, 30, 50, 2, 10.0, 100, 16);
+        warmup.run();
+
+        assertEquals(WarmupService.State.READY, warmup.getState());
+        assertTrue(warmup.getReport().predictions() > 100, () -> "Only " + warmup.getReport().predictions());
+        assertEquals(before, cache.getStats());
+        // The real entry survived and is still served from the cache
+        assertEquals(probability, prediction.predictChurn(new HashMap<>(customers.get(0))));
+        assertEquals(before.hits() + 1, cache.getStats().hits());
+    }
+
+    @Test
+    void readyAnswers503UntilTheWarmUpHasFinished(@TempDir Path directory) throws Exception {
+        // No customers: the warm-up has nothing to score and finishes at once
+        WarmupService warmup = new WarmupService(null, load(directory, List.of()), new PredictionBatcher(),
+                true, 30, 50, 2, 0.1, 100, 16);
+        StatusController status = new StatusController(warmup);
+
+        ResponseEntity<StatusController.Status> warming = status.ready();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, warming.getStatusCode());
+        assertEquals(WarmupService.State.WARMING_UP, warming.getBody().state());
+        assertNull(warming.getBody().warmup());
+        // Liveness does not wait for the warm-up
+        assertEquals(WarmupService.State.WARMING_UP, status.status().state());
+
+        warmup.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (warmup.getState() != WarmupService.State.READY) {
+            assertTrue(System.nanoTime() < deadline, "Warm-up never finished");
+            Thread.sleep(5);
+        }
+        ResponseEntity<StatusController.Status> ready = status.ready();
+        assertEquals(HttpStatus.OK, ready.getStatusCode());
+        assertNotNull(ready.getBody().warmup());
+        assertEquals(0, ready.getBody().warmup().predictions());
+    }
+
+    @Test
+    void disabledWarmUpIsReadyAtOnce(@TempDir Path directory) throws Exception {
+        WarmupService warmup = new WarmupService(null, load(directory, List.of()), new PredictionBatcher(),
+                false, 30, 50, 2, 0.1, 100, 16);
+        warmup.start();
+
+        assertEquals(HttpStatus.OK, new StatusController(warmup).ready().getStatusCode());
+        assertNull(warmup.getReport());
+    }
+
+    // Repository of `customers`, written with the columns of the Telco file
+    private static ColumnarCustomerRepository load(Path directory, List<Map<String, Object>> customers)
+            throws Exception {
+        String header = Files.readAllLines(Path.of(AiUtil.DATASET_PATH)).get(0);
+        StringBuilder csv = new StringBuilder(header).append('\n');
+        for (Map<String, Object> customer : customers) {
+            csv.append(Arrays.stream(header.split(","))
+                    .map(column -> customer.get(column).toString())
+                    .collect(Collectors.joining(","))).append('\n');
+        }
+        return ColumnarCustomerRepository.load(Files.writeString(directory.resolve("customers.csv"), csv));
+    }
+}
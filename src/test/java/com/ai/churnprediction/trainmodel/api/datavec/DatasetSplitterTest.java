@@ -0,0 +1,90 @@
+package com.ai.churnprediction.trainmodel.api.datavec;
+
+import com.ai.churnprediction.util.AiUtil;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.analysis.DataAnalysis;
+import org.datavec.api.transform.analysis.columns.CategoricalAnalysis;
+import org.datavec.api.transform.analysis.columns.ColumnAnalysis;
+import org.datavec.api.transform.analysis.columns.NumericalColumnAnalysis;
+import org.datavec.api.transform.schema.InferredSchema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Splits the bundled Telco dataset on several threads and checks the splits and the fused statistics against
+ * the sequential path: stratified row counts, cleaned TotalCharges and the {@code AnalyzeLocal} result of the train file.
+ */
+class DatasetSplitterTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    void parallelSplitIsStratifiedAndAnalyzesTrainRows(@TempDir Path directory) throws Exception {
+        File source = new File(AiUtil.DATASET_PATH);
+        TransformProcess preProcess = DatavecUtility.simplifyTotalCharges(
+                new InferredSchema(AiUtil.DATASET_PATH).build());
+        DatasetSplitter.SplitFiles split = DatasetSplitter.split(source, preProcess.getFinalSchema(), "Churn",
+                "TotalCharges", 0.2, 0.1, 1000, 123, 4, directory.toFile());
+
+        List<String> sourceRows = rows(source);
+        List<String> trainRows = rows(split.train());
+        List<String> validationRows = rows(split.validation());
+        List<String> testRows = rows(split.test());
+        assertEquals(sourceRows.size(), trainRows.size() + validationRows.size() + testRows.size());
+        assertEquals(trainRows.size(), split.trainRows());
+        assertEquals(validationRows.size(), split.validationRows());
+        assertEquals(testRows.size(), split.testRows());
+
+        Map<String, Long> sourceLabels = labels(sourceRows);
+        Map<String, Long> testLabels = labels(testRows);
+        Map<String, Long> validationLabels = labels(validationRows);
+        sourceLabels.forEach((label, count) -> {
+            assertEquals(Math.round(count * 0.2), testLabels.get(label), "Test rows of " + label);
+            assertEquals(Math.round(count * 0.1), validationLabels.get(label), "Validation rows of " + label);
+        });
+        assertFalse(trainRows.stream().anyMatch(row -> row.contains(", ,")), "Blank TotalCharges left");
+
+        DataAnalysis expected = DatavecUtility.staticalAnalysis(split.train(), preProcess);
+        DataAnalysis actual = split.trainAnalysis();
+        for (String column : preProcess.getFinalSchema().getColumnNames()) {
+            ColumnAnalysis expectedColumn = expected.getColumnAnalysis(column);
+            ColumnAnalysis actualColumn = actual.getColumnAnalysis(column);
+            assertEquals(expectedColumn.getClass(), actualColumn.getClass(), column);
+            assertEquals(expectedColumn.getCountTotal(), actualColumn.getCountTotal(), column);
+            if (expectedColumn instanceof NumericalColumnAnalysis numeric) {
+                NumericalColumnAnalysis fused = (NumericalColumnAnalysis) actualColumn;
+                assertEquals(numeric.getMean(), fused.getMean(), TOLERANCE * (1 + Math.abs(numeric.getMean())), column);
+                assertEquals(numeric.getSampleStdev(), fused.getSampleStdev(),
+                        TOLERANCE * (1 + numeric.getSampleStdev()), column);
+                assertEquals(numeric.getMinDouble(), fused.getMinDouble(), 0.0, column);
+                assertEquals(numeric.getMaxDouble(), fused.getMaxDouble(), 0.0, column);
+            } else if (expectedColumn instanceof CategoricalAnalysis categorical) {
+                assertEquals(categorical.getMapOfCounts(), ((CategoricalAnalysis) actualColumn).getMapOfCounts(), column);
+            }
+        }
+        split.delete();
+    }
+
+    private static List<String> rows(File csv) throws IOException {
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        return lines.subList(1, lines.size()).stream().filter(line -> !line.isEmpty()).toList();
+    }
+
+    private static Map<String, Long> labels(List<String> rows) {
+        return rows.stream().map(row -> row.substring(row.lastIndexOf(',') + 1).trim())
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+}
@@ -0,0 +1,35 @@
+package com.ai.churnprediction.trainmodel.api.deeplearning4j;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that candidates are only pruned below the median of the others, after the warmup epochs and once
+ * enough candidates reported.
+ */
+class MedianStoppingRuleTest {
+
+    @Test
+    void prunesBelowMedianAfterWarmup() {
+        MedianStoppingRule rule = new MedianStoppingRule(2, 3);
+        for (double score : new double[]{0.70, 0.80, 0.90}) {
+            assertFalse(rule.report(1, score));
+            assertFalse(rule.report(2, score));
+        }
+        assertFalse(rule.report(1, 0.10), "Pruned during warmup");
+        assertTrue(rule.report(2, 0.79));
+        assertFalse(rule.report(2, 0.80), "Pruned at the median");
+        assertFalse(rule.report(2, 0.95));
+    }
+
+    @Test
+    void waitsForEnoughCandidates() {
+        MedianStoppingRule rule = new MedianStoppingRule(1, 3);
+        assertFalse(rule.report(1, 0.90));
+        assertFalse(rule.report(1, 0.80));
+        assertFalse(rule.report(1, 0.10), "Pruned with only two candidates before");
+        assertTrue(rule.report(1, 0.20));
+    }
+}
@@ -0,0 +1,60 @@
+package com.ai.churnprediction.trainmodel.api.deeplearning4j;
+
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Trains the churn network once on one thread and once on four averaged replicas and checks that both
+ * reach the same test metrics within tolerance.
+ */
+class ParallelTrainingTest {
+
+    private static final int FEATURES = 45;
+    private static final int BATCH_SIZE = 64;
+    private static final double TOLERANCE = 0.05;
+
+    @Test
+    void parallelTrainingMatchesSingleThreaded() {
+        Nd4j.getRandom().setSeed(42);
+        INDArray weights = Nd4j.randn(FEATURES, 1);
+        DataSet train = labelled(6400, weights);
+        DataSet validation = labelled(1000, weights);
+        DataSet test = labelled(2000, weights);
+
+        Evaluation single = trainAndEvaluate(train, validation, test, 1);
+        Evaluation parallel = trainAndEvaluate(train, validation, test, 4);
+
+        assertTrue(single.accuracy() > 0.85, "Single-threaded accuracy " + single.accuracy());
+        assertEquals(single.accuracy(), parallel.accuracy(), TOLERANCE);
+        assertEquals(single.f1(), parallel.f1(), TOLERANCE);
+    }
+
+    private static Evaluation trainAndEvaluate(DataSet train, DataSet validation, DataSet test, int workers) {
+        MultiLayerNetwork model = DeepLearning4JUtility.configureModel(FEATURES);
+        MultiLayerNetwork best = DeepLearning4JUtility.trainWithEarlyStopping(model, batches(train), batches(validation),
+                20, 3, workers, 4, 5, new TrainingThroughput()).getBestModel();
+        return best.evaluate(batches(test));
+    }
+
+    private static ListDataSetIterator<DataSet> batches(DataSet data) {
+        return new ListDataSetIterator<>(data.asList(), BATCH_SIZE);
+    }
+
+    /**
+     * Random features, label 1 when a fixed linear combination of them is positive.
+     */
+    private static DataSet labelled(int rows, INDArray weights) {
+        INDArray features = Nd4j.rand(rows, FEATURES).subi(0.5);
+        INDArray labels = Transforms.sign(features.mmul(weights)).addi(1).divi(2);
+        return new DataSet(features, labels);
+    }
+}
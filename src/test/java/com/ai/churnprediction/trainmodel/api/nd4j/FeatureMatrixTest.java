@@ -0,0 +1,71 @@
+package com.ai.churnprediction.trainmodel.api.nd4j;
+
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Writes a random DataSet as a feature matrix and reads it back in minibatches that cross mapped segments,
+ * checking every value survives and a truncated file is rejected.
+ */
+class FeatureMatrixTest {
+
+    private static final int FEATURES = 45;
+    private static final int ROWS = 1003;
+
+    @Test
+    void roundTripsAcrossSegments(@TempDir Path directory) throws IOException {
+        Nd4j.getRandom().setSeed(42);
+        INDArray features = Nd4j.rand(DataType.FLOAT, ROWS, FEATURES);
+        INDArray labels = Nd4j.rand(DataType.FLOAT, ROWS, 1).gt(0.5).castTo(DataType.FLOAT);
+        Path file = directory.resolve("train.bin");
+        long written = FeatureMatrix.write(new ListDataSetIterator<>(new DataSet(features, labels).asList(), 100),
+                file);
+        assertEquals(ROWS, written);
+
+        // 7 rows per segment, so batches of 64 rows span several segments
+        FeatureMatrix matrix = FeatureMatrix.open(file, 7L * (FEATURES + 1) * Float.BYTES);
+        assertEquals(ROWS, matrix.rows());
+        assertEquals(FEATURES, matrix.numFeatures());
+
+        DataSetIterator iterator = matrix.iterator(64);
+        for (int pass = 0; pass < 2; pass++) {
+            List<DataSet> batches = new ArrayList<>();
+            while (iterator.hasNext()) {
+                batches.add(iterator.next());
+            }
+            assertEquals((ROWS + 63) / 64, batches.size());
+            DataSet read = DataSet.merge(batches);
+            assertEquals(features, read.getFeatures());
+            assertEquals(labels, read.getLabels());
+            iterator.reset();
+        }
+        assertEquals(features, matrix.toDataSet().getFeatures());
+    }
+
+    @Test
+    void rejectsTruncatedFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("test.bin");
+        INDArray features = Nd4j.rand(DataType.FLOAT, 10, FEATURES);
+        FeatureMatrix.write(new ListDataSetIterator<>(new DataSet(features, Nd4j.zeros(DataType.FLOAT, 10, 1))
+                .asList(), 10), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> FeatureMatrix.open(file));
+    }
+}